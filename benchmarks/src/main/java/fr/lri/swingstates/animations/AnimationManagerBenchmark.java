@@ -0,0 +1,73 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.animations;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.benchmarks.HeadlessCanvas;
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures one frame of the <code>AnimationManager</code> when <code>nbAnimations</code>
+ * animations are running. Animations are played by a <code>VirtualClock</code> that the benchmark
+ * advances by one frame period, so that every animation makes a step at each frame.
+ * This benchmark belongs to the package <code>fr.lri.swingstates.animations</code>
+ * since <code>AnimationManager</code> is not public.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class AnimationManagerBenchmark {
+
+	@Param({"10", "100", "1000", "10000"})
+	public int nbAnimations;
+
+	private AnimationManager manager;
+	private VirtualClock clock;
+
+	@Setup
+	public void setUp() {
+		AnimationManager.reset();
+		clock = new VirtualClock();
+		Animation.setClock(clock);
+		manager = AnimationManager.getInstance();
+		HeadlessCanvas canvas = new HeadlessCanvas(1000, 1000);
+		for(int i = 0; i < nbAnimations; i++) {
+			CShape s = canvas.newRectangle(i % 1000, i / 1000, 10, 10);
+			Animation anim = new AnimationTranslateBy(100, 100).setNbLaps(Animation.INFINITE_NUMBER_OF_LAPS);
+			s.animate(anim);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		AnimationManager.reset();
+	}
+
+	@Benchmark
+	public int tick() {
+		return clock.advance(manager.getFramePeriod());
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.animations.ANamedTag;
+import fr.lri.swingstates.animations.Animation;
+import fr.lri.swingstates.animations.AnimationTranslateBy;
+import fr.lri.swingstates.animations.VirtualClock;
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures the operations on a tag of <code>nbAnimations</code> animations:
+ * starting and stopping all of them, and testing whether the last tagged animation has the tag.
+ * Animations are played by a <code>VirtualClock</code>, so that no frame is played during the benchmark.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class AnimationTagBenchmark {
+
+	@Param({"1000", "10000"})
+	public int nbAnimations;
+
+	private ANamedTag tag;
+	private Animation last;
+
+	@Setup
+	public void setUp() {
+		Animation.resetAnimationManager();
+		Animation.setClock(new VirtualClock());
+		HeadlessCanvas canvas = new HeadlessCanvas(CanvasBenchmark.SIZE, CanvasBenchmark.SIZE);
+		tag = new ANamedTag("benchmark");
+		for(int i = 0; i < nbAnimations; i++) {
+			CShape s = canvas.newRectangle(i % CanvasBenchmark.SIZE, i / CanvasBenchmark.SIZE, 10, 10);
+			last = new AnimationTranslateBy(1, 1).setNbLaps(Animation.INFINITE_NUMBER_OF_LAPS);
+			last.setAnimatedElement(s);
+			last.addTag(tag);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		tag.stop();
+		Animation.resetAnimationManager();
+	}
+
+	@Benchmark
+	public ANamedTag startAndStopTag() {
+		tag.start();
+		return (ANamedTag)tag.stop();
+	}
+
+	@Benchmark
+	public boolean hasTag() {
+		return last.hasTag(tag);
+	}
+
+}
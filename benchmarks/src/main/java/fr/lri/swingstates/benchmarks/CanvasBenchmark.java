@@ -0,0 +1,88 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures picking (<code>Canvas.pick</code> and <code>Canvas.pickAll</code>)
+ * on a canvas containing <code>nbShapes</code> rectangles randomly laid out.
+ * Each invocation picks at the next point of a fixed sequence of random points.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class CanvasBenchmark {
+
+	static final int SIZE = 1000;
+	static final int NB_POINTS = 1024;
+
+	@Param({"1000", "10000", "100000", "1000000"})
+	public int nbShapes;
+
+	private HeadlessCanvas canvas;
+	private Point2D[] points = new Point2D[NB_POINTS];
+	private int next = 0;
+
+	/**
+	 * Fills a canvas with randomly laid out rectangles.
+	 * @param canvas The canvas.
+	 * @param nbShapes The number of rectangles.
+	 * @param seed The seed of the random generator.
+	 */
+	static void populate(HeadlessCanvas canvas, int nbShapes, long seed) {
+		Random random = new Random(seed);
+		for(int i = 0; i < nbShapes; i++)
+			canvas.newRectangle(random.nextInt(SIZE), random.nextInt(SIZE), 5+random.nextInt(20), 5+random.nextInt(20));
+	}
+
+	@Setup
+	public void setUp() {
+		canvas = new HeadlessCanvas(SIZE, SIZE);
+		populate(canvas, nbShapes, 42);
+		Random random = new Random(7);
+		for(int i = 0; i < NB_POINTS; i++)
+			points[i] = new Point2D.Double(random.nextInt(SIZE), random.nextInt(SIZE));
+	}
+
+	private Point2D nextPoint() {
+		next = (next + 1) & (NB_POINTS - 1);
+		return points[next];
+	}
+
+	@Benchmark
+	public CShape pick() {
+		return canvas.pick(nextPoint());
+	}
+
+	@Benchmark
+	public LinkedList<CShape> pickAll() {
+		return canvas.pickAll(nextPoint());
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.gestures.AbstractClassifier;
+import fr.lri.swingstates.gestures.Gesture;
+import fr.lri.swingstates.gestures.GestureClass;
+import fr.lri.swingstates.gestures.Score;
+import fr.lri.swingstates.gestures.dollar1.Dollar1Classifier;
+import fr.lri.swingstates.gestures.rubine.RubineClassifier;
+import fr.lri.swingstates.gestures.shapeMatching.ShapeMatchingClassifier;
+
+/**
+ * Measures <code>classify</code>, <code>sortedClasses</code> and <code>classifyAll</code> for the three classifiers
+ * (<code>RubineClassifier</code>, <code>ShapeMatchingClassifier</code> and <code>Dollar1Classifier</code>).
+ *
+ * <p>The gestures are the examples of the bundled file <code>classifier/classifierNCCC.cl</code>.
+ * This file is a list of gesture classes (an int followed by <code>GestureClass</code> records)
+ * and not the definition of one of the classifiers, so the classifiers are trained with its examples
+ * and the benchmarks classify each example in turn.
+ * The location of the file can be changed with the system property <code>swingstates.classifier</code>.</p>
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class ClassifierBenchmark {
+
+	/**
+	 * The default location of the gesture classes.
+	 */
+	public static final String DEFAULT_FILE = "classifier/classifierNCCC.cl";
+
+	@Param({"rubine", "shapeMatching", "dollar1", "protractor"})
+	public String classifierType;
+
+	private AbstractClassifier classifier;
+	private Gesture[] gestures;
+	private List<Gesture> gestureList;
+	private int next = 0;
+
+	/**
+	 * Reads a list of gesture classes.
+	 * @param file The file containing the gesture classes.
+	 * @return the gesture classes.
+	 * @throws IOException if a reading error occurs.
+	 */
+	public static ArrayList<GestureClass> readGestureClasses(File file) throws IOException {
+		ArrayList<GestureClass> res = new ArrayList<GestureClass>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			int nClasses = in.readInt();
+			for(int i = 0; i < nClasses; i++) {
+				GestureClass gc = new GestureClass(null);
+				gc.read(in);
+				res.add(gc);
+			}
+		} finally {
+			in.close();
+		}
+		return res;
+	}
+
+	/**
+	 * Builds a classifier and trains it with a list of gesture classes.
+	 * @param type The type of classifier ("rubine", "shapeMatching", "dollar1" or "protractor").
+	 * @param gestureClasses The gesture classes.
+	 * @return the trained classifier.
+	 */
+	public static AbstractClassifier newTrainedClassifier(String type, ArrayList<GestureClass> gestureClasses) {
+		AbstractClassifier c;
+		if(type.equals("rubine")) c = new RubineClassifier();
+		else if(type.equals("shapeMatching")) c = new ShapeMatchingClassifier();
+		else if(type.equals("dollar1")) c = new Dollar1Classifier();
+		else if(type.equals("protractor")) {
+			Dollar1Classifier protractor = new Dollar1Classifier();
+			protractor.setProtractor(true);
+			c = protractor;
+		}
+		else throw new IllegalArgumentException("unknown classifier "+type);
+		for(Iterator<GestureClass> i = gestureClasses.iterator(); i.hasNext(); ) {
+			GestureClass gc = i.next();
+			c.addClass(gc.getName());
+			for(Iterator<Gesture> j = gc.getGestures().iterator(); j.hasNext(); )
+				c.addExample(gc.getName(), j.next());
+		}
+		return c;
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		ArrayList<GestureClass> gestureClasses = readGestureClasses(new File(System.getProperty("swingstates.classifier", DEFAULT_FILE)));
+		classifier = newTrainedClassifier(classifierType, gestureClasses);
+		ArrayList<Gesture> all = new ArrayList<Gesture>();
+		for(Iterator<GestureClass> i = gestureClasses.iterator(); i.hasNext(); )
+			all.addAll(i.next().getGestures());
+		gestures = all.toArray(new Gesture[all.size()]);
+		gestureList = all;
+		// compiles the classifier (training for Rubine) before measuring
+		classifier.classify(gestures[0]);
+	}
+
+	private Gesture nextGesture() {
+		next = (next + 1) % gestures.length;
+		return gestures[next];
+	}
+
+	@Benchmark
+	public String classify() throws Exception {
+		return classifier.classify(nextGesture());
+	}
+
+	@Benchmark
+	public Vector<Score> sortedClasses() {
+		return classifier.sortedClasses(nextGesture());
+	}
+
+	/**
+	 * Classifies all the gestures with <code>classifyAll</code>. The score is the time for all the gestures.
+	 */
+	@Benchmark
+	public ArrayList<Score> classifyAll() throws Exception {
+		return classifier.classifyAll(gestureList);
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.animations.Easing;
+import fr.lri.swingstates.animations.EasingTable;
+
+/**
+ * Measures the evaluation of pacing functions for 1000 values of the parameter t:
+ * the sigmoid computed with <code>Math.atan</code>, as animations did before pacing functions
+ * were precomputed, and the precomputed sigmoid and cubic Bezier curve.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EasingBenchmark {
+
+	private static final int NB_VALUES = 1000;
+
+	private Easing bezier = EasingTable.cubicBezier(0.25, 0.1, 0.25, 1);
+
+	@Benchmark
+	public double sigmoid() {
+		double sum = 0;
+		for(int i = 0; i < NB_VALUES; i++) {
+			double t = (double)i/NB_VALUES;
+			sum += (Math.atan(4*(2*t-1))/Math.atan(4)+1)/2.0f;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double sigmoidTable() {
+		double sum = 0;
+		for(int i = 0; i < NB_VALUES; i++)
+			sum += Easing.SIGMOID.ease((double)i/NB_VALUES);
+		return sum;
+	}
+
+	@Benchmark
+	public double cubicBezierTable() {
+		double sum = 0;
+		for(int i = 0; i < NB_VALUES; i++)
+			sum += bezier.ease((double)i/NB_VALUES);
+		return sum;
+	}
+
+}
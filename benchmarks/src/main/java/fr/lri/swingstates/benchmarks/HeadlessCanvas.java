@@ -0,0 +1,59 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import fr.lri.swingstates.canvas.Canvas;
+
+/**
+ * A canvas that is never displayed on screen.
+ * Its graphics context is the one of an offscreen <code>BufferedImage</code>
+ * so that picking and painting can be measured in headless mode.
+ *
+ * @author SwingStates contributors
+ */
+public class HeadlessCanvas extends Canvas {
+
+	private BufferedImage image;
+	private Graphics2D graphics;
+
+	/**
+	 * Builds a headless canvas.
+	 * @param w The width of the canvas.
+	 * @param h The height of the canvas.
+	 */
+	public HeadlessCanvas(int w, int h) {
+		super(w, h);
+		setSize(w, h);
+		image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		graphics = image.createGraphics();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Graphics getGraphics() {
+		return graphics;
+	}
+
+	/**
+	 * Paints this canvas in its offscreen image.
+	 * @return the offscreen image.
+	 */
+	public BufferedImage paintOffscreen() {
+		Graphics2D g = image.createGraphics();
+		try {
+			paintComponent(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.canvas.CStateMachine;
+import fr.lri.swingstates.events.VirtualEvent;
+import fr.lri.swingstates.sm.transitions.Event;
+import fr.lri.swingstates.sm.transitions.Release;
+
+/**
+ * Measures the dispatch of events to the state machines attached to a canvas.
+ * The canvas has <code>nbMachines</code> machines; the machine <code>i</code> only reacts
+ * to the virtual event <code>"e<i>i</i>"</code>. The benchmarks send a virtual event that only the last machine
+ * can process, and a mouse move that none of the machines can process.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class MachineRoutingBenchmark {
+
+	/**
+	 * A machine that loops on a given virtual event.
+	 */
+	public static class NamedEventMachine extends CStateMachine {
+
+		public fr.lri.swingstates.sm.State start = new fr.lri.swingstates.sm.State() { };
+
+		public NamedEventMachine(String name) {
+			start.addTransition(new Event(name));
+			start.addTransition(new Release(BUTTON1));
+		}
+
+	}
+
+	@Param({"1", "10", "30", "100"})
+	public int nbMachines;
+
+	private HeadlessCanvas canvas;
+	private VirtualEvent last;
+	private MouseEvent move;
+
+	@Setup
+	public void setUp() {
+		canvas = new HeadlessCanvas(100, 100);
+		for(int i = 0; i < nbMachines; i++)
+			new NamedEventMachine("e"+i).attachTo(canvas);
+		last = new VirtualEvent("e"+(nbMachines-1));
+		move = new MouseEvent(canvas, MouseEvent.MOUSE_MOVED, 0, 0, 50, 50, 0, false);
+	}
+
+	@Benchmark
+	public VirtualEvent processVirtualEvent() {
+		canvas.processEvent(last);
+		return last;
+	}
+
+	@Benchmark
+	public MouseEvent processMouseMove() {
+		canvas.mouseMoved(move);
+		return move;
+	}
+
+}
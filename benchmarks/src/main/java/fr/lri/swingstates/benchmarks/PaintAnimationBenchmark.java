@@ -0,0 +1,74 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.animations.Animation;
+import fr.lri.swingstates.animations.AnimationFillPaint;
+import fr.lri.swingstates.canvas.CExtensionalTag;
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures one step of an <code>AnimationFillPaint</code> of a tag containing <code>nbShapes</code> shapes
+ * filled with 16 different colors. Steps are made within a batch of changes of the canvas,
+ * as during a frame of the animation manager.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class PaintAnimationBenchmark {
+
+	@Param({"1000", "10000"})
+	public int nbShapes;
+
+	private HeadlessCanvas canvas;
+	private CExtensionalTag tag;
+	private Animation animation;
+	private int frame = 0;
+
+	@Setup
+	public void setUp() {
+		canvas = new HeadlessCanvas(CanvasBenchmark.SIZE, CanvasBenchmark.SIZE);
+		tag = new CExtensionalTag(canvas) { };
+		for(int i = 0; i < nbShapes; i++) {
+			CShape s = canvas.newRectangle(i % CanvasBenchmark.SIZE, i / CanvasBenchmark.SIZE, 10, 10);
+			s.setFillPaint(Color.getHSBColor((i % 16) / 16f, 0.8f, 0.9f));
+			s.addTag(tag);
+		}
+		animation = new AnimationFillPaint(Color.WHITE).setAnimatedElement(tag);
+		animation.doStart();
+	}
+
+	@Benchmark
+	public void stepTag() {
+		// 100 frames per lap, so that most frames change the colors
+		frame = (frame + 1) % 100;
+		canvas.beginUpdate();
+		canvas.willChange(tag);
+		animation.step(frame / 100.0);
+		canvas.endUpdate();
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>Canvas.paintComponent</code> in headless mode:
+ * a canvas containing <code>nbShapes</code> rectangles is painted in a <code>BufferedImage</code>.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class PaintBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int nbShapes;
+
+	private HeadlessCanvas canvas;
+
+	@Setup
+	public void setUp() {
+		canvas = new HeadlessCanvas(CanvasBenchmark.SIZE, CanvasBenchmark.SIZE);
+		CanvasBenchmark.populate(canvas, nbShapes, 42);
+	}
+
+	@Benchmark
+	public BufferedImage paint() {
+		return canvas.paintOffscreen();
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.util.EventObject;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.events.VirtualEvent;
+import fr.lri.swingstates.sm.StateMachine;
+import fr.lri.swingstates.sm.Transition;
+import fr.lri.swingstates.sm.transitions.Event;
+
+/**
+ * Measures <code>StateMachine.fireTransition</code> on a state having many transitions.
+ * The state contains <code>nbTransitions</code> loop transitions <code>Event("e0")</code>, ...,
+ * <code>Event("eN-1")</code>; the benchmarks process an event matching the first transition,
+ * the last one, or none of them. When <code>compiled</code> is true, the machine is compiled
+ * into a dispatch table (see <code>StateMachine.compile()</code>) before the measures.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateMachineBenchmark {
+
+	/**
+	 * A state machine that exposes <code>fireTransition</code>.
+	 */
+	public static class DispatchMachine extends StateMachine {
+
+		public fr.lri.swingstates.sm.State start = new fr.lri.swingstates.sm.State() { };
+
+		public Transition dispatch(EventObject event) {
+			return fireTransition(event);
+		}
+
+	}
+
+	@Param({"1", "10", "100", "1000"})
+	public int nbTransitions;
+
+	@Param({"false", "true"})
+	public boolean compiled;
+
+	private DispatchMachine machine;
+	private VirtualEvent first;
+	private VirtualEvent last;
+	private VirtualEvent unknown;
+
+	@Setup
+	public void setUp() {
+		machine = new DispatchMachine();
+		machine.initStatesAndTransitions();
+		for(int i = 0; i < nbTransitions; i++)
+			machine.start.addTransition(new Event("e"+i));
+		first = new VirtualEvent("e0");
+		last = new VirtualEvent("e"+(nbTransitions-1));
+		unknown = new VirtualEvent("unknown");
+		if(compiled) machine.compile();
+	}
+
+	@Benchmark
+	public Transition fireFirstTransition() {
+		return machine.dispatch(first);
+	}
+
+	@Benchmark
+	public Transition fireLastTransition() {
+		return machine.dispatch(last);
+	}
+
+	@Benchmark
+	public Transition fireNoTransition() {
+		return machine.dispatch(unknown);
+	}
+
+}
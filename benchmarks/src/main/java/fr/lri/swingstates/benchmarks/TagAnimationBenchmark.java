@@ -0,0 +1,95 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.animations.Animation;
+import fr.lri.swingstates.animations.AnimationTranslateTo;
+import fr.lri.swingstates.canvas.CExtensionalTag;
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures one step of an <code>AnimationTranslateTo</code> of a tag containing <code>nbShapes</code> shapes,
+ * which uses the bulk path, and one step of <code>nbShapes</code> animations of single shapes,
+ * which translate the shapes one by one. Steps are made within a batch of changes of the canvas,
+ * as during a frame of the animation manager.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class TagAnimationBenchmark {
+
+	@Param({"1000", "10000"})
+	public int nbShapes;
+
+	private HeadlessCanvas canvas;
+	private CExtensionalTag tag;
+	private Animation tagAnimation;
+	private CShape[] shapes;
+	private Animation[] shapeAnimations;
+	private int frame = 0;
+
+	@Setup
+	public void setUp() {
+		canvas = new HeadlessCanvas(CanvasBenchmark.SIZE, CanvasBenchmark.SIZE);
+		tag = new CExtensionalTag(canvas) { };
+		shapes = new CShape[nbShapes];
+		shapeAnimations = new Animation[nbShapes];
+		for(int i = 0; i < nbShapes; i++) {
+			CShape s = canvas.newRectangle(i % CanvasBenchmark.SIZE, i / CanvasBenchmark.SIZE, 10, 10);
+			s.addTag(tag);
+			shapes[i] = canvas.newRectangle(i % CanvasBenchmark.SIZE, i / CanvasBenchmark.SIZE, 10, 10);
+			shapeAnimations[i] = new AnimationTranslateTo(500, 500).setAnimatedElement(shapes[i]);
+			shapeAnimations[i].doStart();
+		}
+		tagAnimation = new AnimationTranslateTo(500, 500).setAnimatedElement(tag);
+		tagAnimation.doStart();
+	}
+
+	private double nextT() {
+		frame = (frame + 1) % 25;
+		return frame / 25.0;
+	}
+
+	@Benchmark
+	public void stepTag() {
+		double t = nextT();
+		canvas.beginUpdate();
+		canvas.willChange(tag);
+		tagAnimation.step(t);
+		canvas.endUpdate();
+	}
+
+	@Benchmark
+	public void stepShapes() {
+		double t = nextT();
+		canvas.beginUpdate();
+		for(int i = 0; i < nbShapes; i++) {
+			canvas.willChange(shapes[i]);
+			shapeAnimations[i].step(t);
+		}
+		canvas.endUpdate();
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.lri.swingstates.canvas.CExtensionalTag;
+import fr.lri.swingstates.canvas.CShape;
+
+/**
+ * Measures <code>CShape.hasTag</code> on an extensional tag containing <code>tagSize</code> shapes,
+ * for the first shape added to the tag, the last one and a shape that does not have the tag.
+ *
+ * @author SwingStates contributors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class TagBenchmark {
+
+	@Param({"10", "1000", "100000"})
+	public int tagSize;
+
+	private CExtensionalTag tag;
+	private CShape first;
+	private CShape last;
+	private CShape untagged;
+
+	@Setup
+	public void setUp() {
+		HeadlessCanvas canvas = new HeadlessCanvas(CanvasBenchmark.SIZE, CanvasBenchmark.SIZE);
+		tag = new CExtensionalTag(canvas) { };
+		for(int i = 0; i < tagSize; i++) {
+			CShape s = canvas.newRectangle(i % CanvasBenchmark.SIZE, i / CanvasBenchmark.SIZE, 10, 10);
+			s.addTag(tag);
+			if(i == 0) first = s;
+			last = s;
+		}
+		untagged = canvas.newRectangle(0, 0, 10, 10);
+	}
+
+	@Benchmark
+	public boolean hasTagFirst() {
+		return first.hasTag(tag);
+	}
+
+	@Benchmark
+	public boolean hasTagLast() {
+		return last.hasTag(tag);
+	}
+
+	@Benchmark
+	public boolean hasTagMissing() {
+		return untagged.hasTag(tag);
+	}
+
+}
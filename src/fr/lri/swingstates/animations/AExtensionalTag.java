@@ -5,13 +5,21 @@
 */
 package fr.lri.swingstates.animations;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 
 
 
 /**
  * <p>A <code>AExtensionalTag</code> tag is a tag that can be explicitely attached to and detached from an animation, 
  * i.e. an animation can be added to or removed to the tag's collection.
+ * The collection is a synchronized hash set, so adding, removing and testing an animation
+ * take a constant time whatever the number of tagged animations. Browsing the tag
+ * (<code>reset</code>, <code>hasNext</code>, <code>nextAnimation</code>) iterates over a copy
+ * of the collection taken at the first call to <code>hasNext</code> or <code>nextAnimation</code>
+ * after <code>reset</code>, so animations can be tagged or untagged while the tag is browsed.</p>
  * 
  * @see fr.lri.swingstates.animations.ATag
  * @see fr.lri.swingstates.animations.Animation
@@ -21,13 +29,15 @@ import java.util.LinkedList;
 
 public class AExtensionalTag extends ATag {
 
+	private Iterator<Animation> animations = null;
+
 	/**
 	 * Builds a <code>AExtensionalTag</code> that can tag the animations.
 	 * @see fr.lri.swingstates.animations.Animation
 	 */
 	public AExtensionalTag() {
 		super();
-		collection = new LinkedList<Object>();
+		collection = Collections.synchronizedSet(new LinkedHashSet<Object>());
 	}
 	
 	/**
@@ -53,8 +63,8 @@ public class AExtensionalTag extends ATag {
 	 * @see AExtensionalTag#added(Animation)
 	 */
 	public AExtensionalTag addTo(Animation a){
-		if(collection.contains(a)) return this;
-		collection.add(a);
+		if(!collection.add(a)) return this;
+		a.tagAdded(this);
 		added(a);
 		return this;
 	}
@@ -69,9 +79,48 @@ public class AExtensionalTag extends ATag {
 	 */
 	public AExtensionalTag removeFrom(Animation a){
 		removed(a);
-		collection.remove(a);	
+		if(collection.remove(a)) a.tagRemoved(this);
 		return this;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean tagsAnimation(Animation a) {
+		return collection.contains(a);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		animations = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean hasNext() {
+		return animations().hasNext();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Animation nextAnimation() {
+		return animations().next();
+	}
+
+	private Iterator<Animation> animations() {
+		if(animations == null) {
+			Object[] tagged = collection.toArray();
+			ArrayList<Animation> copy = new ArrayList<Animation>(tagged.length);
+			for(int i = 0; i < tagged.length; i++)
+				copy.add((Animation)tagged[i]);
+			animations = copy.iterator();
+		}
+		return animations;
+	}
+
 
 }
@@ -5,7 +5,7 @@
 */
 package fr.lri.swingstates.animations;
 
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -21,7 +21,7 @@ import java.util.Hashtable;
  */
 public class ANamedTag extends AExtensionalTag {
 
-	static Hashtable<String, ANamedTag> namedTags = null;
+	static ConcurrentHashMap<String, ANamedTag> namedTags = new ConcurrentHashMap<String, ANamedTag>();
 	String name;
 	
 	/**
@@ -32,9 +32,6 @@ public class ANamedTag extends AExtensionalTag {
 	public ANamedTag(String n) {
 		super();
 		name = n;
-		
-		if(namedTags == null)
-			namedTags = new Hashtable<String, ANamedTag>();
 		namedTags.put(n, this);
 	}
 	
@@ -43,7 +40,7 @@ public class ANamedTag extends AExtensionalTag {
 	 * @see fr.lri.swingstates.sm.SwingStatesApplet#init()
 	 */
 	public static void initForApplet() {
-		namedTags = null;
+		namedTags.clear();
 	}
 	
 	/**
@@ -52,8 +49,8 @@ public class ANamedTag extends AExtensionalTag {
 	 * @return The tag, or null if no such tag exists.
 	 */
 	public static ANamedTag getTag(String t) {
-		if(namedTags == null) return null;
-		ANamedTag res = (ANamedTag)(namedTags.get(t));
+		if(t == null) return null;
+		ANamedTag res = namedTags.get(t);
 		if(res != null)
 			res.reset();
 		return res;
@@ -74,11 +71,10 @@ public class ANamedTag extends AExtensionalTag {
 	 * @return true if the name could be change, false otherwise.
 	 */
 	public boolean setName(String n) {
-		if(namedTags.get(n) != null)
+		if(namedTags.putIfAbsent(n, this) != null)
 			return false;
-		namedTags.remove(name);
+		namedTags.remove(name, this);
 		name = n;
-		namedTags.put(name, this);
 		return true;
 	}
 
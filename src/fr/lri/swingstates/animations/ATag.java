@@ -153,6 +153,19 @@ public class ATag extends Tag {
 		return this;
 	}
 	
+	/**
+	 * Calls <code>setEasing(Easing e)</code> for every <code>Animation</code> that has this tag.
+	 * @param e The pacing function.
+	 * @return this tag.
+	 * @see fr.lri.swingstates.animations.Animation#setEasing(Easing)
+	 */
+	public ATag setEasing(Easing e) {
+		reset(); 
+		while(hasNext())
+			nextAnimation().setEasing(e);
+		return this;
+	}
+	
 	/**
 	 * Calls <code>setNbLaps(int laps)</code> for every <code>Animation</code> that has this tag.
 	 * @param laps The number of laps.
@@ -267,11 +280,10 @@ public class ATag extends Tag {
 	public ATag removeTag(AExtensionalTag t) { 
 		if(t == null) return this;
 		if(t == this) {
+			// browses a copy of the animations of this tag
 			reset(); 
-			while(hasNext()) {
+			while(hasNext())
 				t.removeFrom(nextAnimation());
-				reset();
-			}
 		} else {
 			reset(); 
 			while(hasNext())
@@ -5,6 +5,8 @@
 */
 package fr.lri.swingstates.animations;
 
+import java.util.ArrayList;
+
 import fr.lri.swingstates.canvas.CElement;
 import fr.lri.swingstates.canvas.Canvas;
 import fr.lri.swingstates.events.VirtualAnimationEvent;
@@ -21,7 +23,11 @@ import fr.lri.swingstates.events.VirtualCElementEvent;
  * milliseconds (by default, 1000). During a "lap", the value of a parameter t starts at 0 and ends at 1 for odd laps 
  * (and starts at 1 and ends at 0 for even laps.
  * Value of parameter t whose value is updated every <code>delay</code> milliseconds (by default, 40).
- * t value follows a pacing funcyion (by default, a linear pacing function).
+ * t value follows a pacing function (by default, a linear pacing function, see <code>setEasing(Easing)</code>).
+ * Animations are played in frames whose rate is set by <code>Animation.setFrameRate(int)</code> (by default, 25 frames per second),
+ * so the parameter t cannot be updated more often than once per frame.
+ * t value is computed from the real time of the frame: when frames are late or skipped because the
+ * application is overloaded, animations jump to the value they should have instead of slowing down.
  * An animation can be started, stopped, suspended and resumed. 
  * </p>
  * 
@@ -79,12 +85,14 @@ public abstract class Animation {
 	private CElement animated;
 	
 	private double   t = 0;
+	private double   value = 0;
 	private int      delay = 40;
 	
 	private int      nbLaps = 1;
 	private long     lapDuration = 1000;
 	
 	private short      type = FUNCTION_LINEAR;
+	private Easing     easing = Easing.LINEAR;
 	
 	private long   startTime = 0;
 	private long   endTime = 0;
@@ -92,11 +100,14 @@ public abstract class Animation {
 	private long   lastSuspensionTime = 0;
 	private long   elapsed = 0;
 	private long   nextStepTime;
+	private long   currentLap = 0;
 	
 	private boolean suspended = false;
 	private boolean started = false;
+	private boolean ended = false;
 	
 	private Canvas canvas;
+	private ArrayList<AExtensionalTag> tags = null;
 	/**
 	 * Builds an animation and registers it to the animation manager.
 	 */
@@ -110,6 +121,41 @@ public abstract class Animation {
 		AnimationManager.reset();
 	}
 
+	/**
+	 * Sets the number of frames per second at which animations are played. By default, animations are played at 25 frames per second.
+	 * @param fps The number of frames per second.
+	 */
+	public static void setFrameRate(int fps) {
+		if(fps <= 0) return;
+		AnimationManager.getInstance().setFramePeriod(Math.round(1000f / fps));
+	}
+	
+	/**
+	 * @return the number of frames per second at which animations are played.
+	 */
+	public static int getFrameRate() {
+		return Math.round(1000f / AnimationManager.getInstance().getFramePeriod());
+	}
+
+	/**
+	 * Sets the clock that gives the time of animations and plays their frames.
+	 * By default, animations use a <code>SwingClock</code>, that follows the real time.
+	 * A <code>VirtualClock</code> plays animations without waiting, e.g. in tests and benchmarks.
+	 * The clock should be set before animations are started.
+	 * @param clock The clock.
+	 */
+	public static void setClock(AnimationClock clock) {
+		if(clock == null) return;
+		AnimationManager.getInstance().setClock(clock);
+	}
+	
+	/**
+	 * @return the clock that gives the time of animations and plays their frames.
+	 */
+	public static AnimationClock getClock() {
+		return AnimationManager.getInstance().getClock();
+	}
+
 	/**
 	 * Sets the delay between to successive values of the parameter t. By default, the value of the delay is 40 milliseconds.
 	 * @param d The delay in milliseconds.
@@ -143,11 +189,33 @@ public abstract class Animation {
 	 * By default, the type function is linear.
 	 * @param t The type of the pacing function.
 	 * @return this animation.
+	 * @see Animation#setEasing(Easing)
 	 */
 	public synchronized Animation setFunction(short t) {
 		type = t;
+		easing = t == FUNCTION_SIGMOID ? Easing.SIGMOID : Easing.LINEAR;
+		return this;
+	}
+
+	/**
+	 * Sets the pacing function of this animation: the value passed to <code>step(double)</code>
+	 * is the value of this function for the parameter t. By default, the pacing function is linear.
+	 * @param e The pacing function, e.g. <code>Easing.SIGMOID</code> or a function built by <code>EasingTable</code>.
+	 * @return this animation.
+	 * @see fr.lri.swingstates.animations.EasingTable
+	 */
+	public synchronized Animation setEasing(Easing e) {
+		easing = e == null ? Easing.LINEAR : e;
+		type = easing == Easing.SIGMOID ? FUNCTION_SIGMOID : FUNCTION_LINEAR;
 		return this;
 	}
+
+	/**
+	 * @return The pacing function of this animation.
+	 */
+	public Easing getEasing() {
+		return easing;
+	}
 	
 	/**
 	 * Sets the number of laps of this animation.
@@ -187,21 +255,39 @@ public abstract class Animation {
 	public final synchronized Animation start() {
 //		if(animated == null) return this;
 		t = 0;
+		ended = false;
 		elapsed = 0;
+		currentLap = 0;
 		pauseDuration = 0;
 		lastSuspensionTime = -1;
 		startTime = AnimationManager.getInstance().getCurrentTime();
-		if(nbLaps==0 || lapDuration==0) return this;
+		if(nbLaps==0) return this;
+		if(lapDuration==0) {
+			startWithoutDuration();
+			return this;
+		}
 		if(nbLaps<0) endTime=-1;
 		else endTime = startTime + nbLaps*lapDuration;
 		nextStepTime = startTime;
 		AnimationManager.getInstance().addAnim(this);
 		suspended = false;
 		started = true;
+		started();
 		doStart();
 		processAnimationEvent("AnimationStarted");
 		return this;
 	}
+
+	/**
+	 * Method called when this animation is started, before <code>doStart()</code>.
+	 */
+	void started() { }
+
+	/**
+	 * Method called by <code>start()</code> instead of starting this animation when the duration of its laps is 0.
+	 * By default, the animation is not played.
+	 */
+	void startWithoutDuration() { }
 	
 	/**
 	 * Method called when this animation is stopped.
@@ -217,10 +303,39 @@ public abstract class Animation {
 	public final synchronized Animation stop() {
 		AnimationManager.getInstance().removeAnim(this);
 		started = false;
+		stopped();
 		doStop();
 		processAnimationEvent("AnimationStopped");
 		return this;
 	}
+
+	/**
+	 * Method called when this animation is stopped, before <code>doStop()</code>.
+	 */
+	void stopped() { }
+
+	/**
+	 * Starts this animation as an entry of a timeline: it is not registered to the animation manager
+	 * since its steps are made by the timeline.
+	 */
+	synchronized void startInTimeline() {
+		t = 0;
+		suspended = false;
+		started = true;
+		started();
+		doStart();
+		processAnimationEvent("AnimationStarted");
+	}
+
+	/**
+	 * Stops this animation as an entry of a timeline.
+	 */
+	synchronized void stopInTimeline() {
+		started = false;
+		stopped();
+		doStop();
+		processAnimationEvent("AnimationStopped");
+	}
 	
 	/**
 	 * Method called when this animation is suspended.
@@ -260,6 +375,7 @@ public abstract class Animation {
 		lastSuspensionTime = -1;
 		nextStepTime = startTime;
 		endTime = startTime + (nbLaps*lapDuration-elapsed);
+		ended = false;
 		suspended = false;
 		processAnimationEvent("AnimationResumed");
 		doResume();
@@ -268,13 +384,16 @@ public abstract class Animation {
 
 	void processAnimationEvent(String event){
 		if(canvas != null) {
-			canvas.processEvent(new VirtualAnimationEvent(event, this));
+			VirtualAnimationEvent animationEvent = new VirtualAnimationEvent(event, this);
+			// the event is only processed if a machine is waiting for it
+			if(canvas.canReactTo(animationEvent))
+				canvas.processEvent(animationEvent);
 		}
 	}
 	
 	/**
 	 * Override this abstract to specify the effect of this animation.
-	 * @param t The parameter of this animation.
+	 * @param t The parameter of this animation, i.e. the value of its pacing function.
 	 */
 	public abstract void step(double t);
 
@@ -292,49 +411,93 @@ public abstract class Animation {
     	if(nbLaps<0) {
     		elapsed = currentTime - startTime - pauseDuration;
     		long timeDoneInLap = elapsed%lapDuration;
-    		long currentLap = (long) (elapsed/lapDuration);
+    		currentLap = (long) (elapsed/lapDuration);
     		if(currentLap%2 == 0) t = (double)timeDoneInLap/lapDuration;
     		else t = 1 - (double)timeDoneInLap/lapDuration;
     	} else {
     		long timeLeft = endTime - currentTime;
         	if(timeLeft<0) {
-        		stop();
-        		return -1;
+        		if(ended) {
+        			stop();
+        			return -1;
+        		}
+        		// the end has been reached between two frames: the last step is played at the end value
+        		timeLeft = 0;
         	}
+        	if(timeLeft == 0) ended = true;
         	long lapsToDo = timeLeft/lapDuration;
         	long timeToDoInLap = timeLeft%lapDuration;
-        	long currentLap = nbLaps-lapsToDo-1;
+        	currentLap = nbLaps-lapsToDo-1;
         	if(currentLap%2 == 0) t = 1 - (double)timeToDoInLap/lapDuration;
     		else t = (double)timeToDoInLap/lapDuration;
         	elapsed = currentLap%2==0 ? (long)(currentLap*lapDuration + t*lapDuration)
     				: (long)(currentLap*lapDuration + (1-t)*lapDuration);
     	}
-		if(type == FUNCTION_SIGMOID)
-			return computeSigmoid(4, t);
-		else
-			if(type == FUNCTION_LINEAR)
-				return t;
 		return t;
 	}
 	
-	void update() {
-		if(suspended) return;
-		if(nextStepTime <= AnimationManager.getInstance().getCurrentTime()) {
-			double on = updateTValue();
-			if(t <= 0) {
-				t = 0;
-			} else {
-				if(t >= 1) {
-					t = 1;
-				}
-			}
-			if(on != -1) step(t);
-			if(getAnimated() != null) {
-				if(getAnimated().getCanvas().isTracking(getAnimated())) {
-					getAnimated().getCanvas().processEvent(new VirtualCElementEvent(getAnimated()));
-				}
+	/**
+	 * @return the index of the lap being played, starting at 0.
+	 */
+	synchronized long getCurrentLap() {
+		return currentLap;
+	}
+
+	/**
+	 * Computes the value that the parameter t has a given time after the start of this animation,
+	 * without pacing function.
+	 * @param time The time in milliseconds elapsed since the start of this animation.
+	 * @return the value of t at <code>time</code>.
+	 */
+	synchronized double valueAt(long time) {
+		if(lapDuration == 0) return 1;
+		long lap = time/lapDuration;
+		double inLap = (double)(time%lapDuration)/lapDuration;
+		if(nbLaps >= 0 && lap >= nbLaps) {
+			lap = nbLaps-1;
+			inLap = 1;
+		}
+		return lap%2 == 0 ? inLap : 1 - inLap;
+	}
+
+	/**
+	 * Computes the value of the parameter t for the frame being played.
+	 * @return true if this animation must make a step during this frame.
+	 */
+	synchronized boolean prepareStep() {
+		// the animation may have been stopped by a previous animation of the frame
+		if(suspended || !started) return false;
+		AnimationManager manager = AnimationManager.getInstance();
+		// half a frame of tolerance since frames are not played exactly on time
+		if(nextStepTime - manager.getFramePeriod()/2 > manager.getCurrentTime()) return false;
+		double on = updateTValue();
+		if(t <= 0) {
+			t = 0;
+		} else {
+			if(t >= 1) {
+				t = 1;
 			}
 		}
+		value = easing.ease(t);
+		return on != -1;
+	}
+	
+	/**
+	 * Makes the step prepared by <code>prepareStep</code>.
+	 */
+	void playStep() {
+		step(value);
+	}
+	
+	/**
+	 * Notifies the state machines that track the animated element that it has changed.
+	 */
+	void fireStepEvent() {
+		CElement element = getAnimated();
+		if(element == null) return;
+		Canvas animatedCanvas = element.getCanvas();
+		if(animatedCanvas != null && animatedCanvas.isTracking(element))
+			animatedCanvas.processEvent(new VirtualCElementEvent(element));
 	}
 
 	/**
@@ -398,10 +561,24 @@ public abstract class Animation {
 	public boolean hasTag(ATag t){
 		if (t == null)
 			return false;
-		t.reset();
-		while(t.hasNext())
-			if(t.nextAnimation() == this) return true;
-		return false;
+		return t.tagsAnimation(this);
+	}
+
+	/**
+	 * @return the extensional tags of this animation, in the order they were added.
+	 */
+	public synchronized AExtensionalTag[] getTags() {
+		if(tags == null) return new AExtensionalTag[0];
+		return tags.toArray(new AExtensionalTag[tags.size()]);
+	}
+
+	synchronized void tagAdded(AExtensionalTag t) {
+		if(tags == null) tags = new ArrayList<AExtensionalTag>(2);
+		tags.add(t);
+	}
+
+	synchronized void tagRemoved(AExtensionalTag t) {
+		if(tags != null) tags.remove(t);
 	}
 
 	/**
@@ -427,6 +604,15 @@ public abstract class Animation {
 		return delay;
 	}
 	
+	/**
+	 * @return The total duration of this animation in milliseconds (i.e. its number of laps times the duration of a lap),
+	 * -1 if it has an infinite number of laps.
+	 */
+	public long getDuration() {
+		if(nbLaps < 0) return -1;
+		return nbLaps*lapDuration;
+	}
+
 	/**
 	 * @return The number of laps in this animation.
 	 */
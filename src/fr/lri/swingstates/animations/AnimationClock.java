@@ -0,0 +1,37 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+/**
+ * The clock that gives the time of animations and plays their frames.
+ * By default, animations use a <code>SwingClock</code> that follows the real time and plays frames
+ * in the event dispatch thread. A <code>VirtualClock</code> can be used instead to play
+ * animations without waiting, e.g. in tests and benchmarks.
+ *
+ * @see fr.lri.swingstates.animations.Animation#setClock(AnimationClock)
+ * @author SwingStates contributors
+ */
+public interface AnimationClock {
+
+	/**
+	 * @return the current time in milliseconds.
+	 */
+	long currentTime();
+
+	/**
+	 * Requests that a frame is played after a given delay. A clock plays at most one frame at a time:
+	 * this request replaces the previous one if it has not been played yet.
+	 * @param frame The task that plays the frame.
+	 * @param delay The delay in milliseconds.
+	 */
+	void schedule(Runnable frame, long delay);
+
+	/**
+	 * Cancels the frame that has been requested and not played yet, if any.
+	 */
+	void cancel();
+
+}
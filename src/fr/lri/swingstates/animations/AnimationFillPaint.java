@@ -6,6 +6,7 @@
 package fr.lri.swingstates.animations;
 
 import java.awt.Color;
+import java.awt.Paint;
 
 import fr.lri.swingstates.canvas.CShape;
 
@@ -22,23 +23,29 @@ public class AnimationFillPaint extends AnimationPaint {
 	 */
 	public AnimationFillPaint(Color colorTarget) {
 		super(colorTarget);
-		colorEnd = colorTarget;
+	}
+
+	/**
+	 * Builds a "fillPaint" animation towards a gradient.
+	 * @param paintTarget The final paint: a color, a <code>GradientPaint</code> or a <code>LinearGradientPaint</code>.
+	 */
+	public AnimationFillPaint(Paint paintTarget) {
+		super(paintTarget);
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public void step(double t) {
-		for(int i = 0; i < animatedShapes.length; i++) {
-			animatedShapes[i].setFillPaint(new Color(
-					(int)(initialColors[i].getRed()*(1-t) + colorEnd.getRed()*t),
-					(int)(initialColors[i].getGreen()*(1-t) + colorEnd.getGreen()*t),
-					(int)(initialColors[i].getBlue()*(1-t) + colorEnd.getBlue()*t)));
-		}
+		stepColors(t);
 	}
 
-	protected Color getColorValue(CShape shape) {
-		return (Color)shape.getFillPaint();
+	protected Paint getPaintValue(CShape shape) {
+		return shape.getFillPaint();
 	}
-	
-}
\ No newline at end of file
+
+	protected void setPaintValue(CShape shape, Paint paint) {
+		shape.setFillPaint(paint);
+	}
+
+}
@@ -5,17 +5,31 @@
 */
 package fr.lri.swingstates.animations;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
-import javax.swing.Timer;
+import fr.lri.swingstates.canvas.CElement;
+import fr.lri.swingstates.canvas.Canvas;
 
 /**
  * An <code>AnimationManager</code> manages a thread to play
  * a list of <code>Animation</code>s.
  * 
+ * <p>Frames are scheduled on a regular grid of <code>delay</code> milliseconds
+ * (the frame period, see <code>Animation.setFrameRate</code>) measured by an <code>AnimationClock</code>
+ * (by default, a <code>SwingClock</code>, see <code>Animation.setClock</code>).
+ * The time of a frame is the real time at which it is played, so animations do not drift when
+ * the event dispatch thread is late. When a frame ends after the time of the next one,
+ * the frames that have been missed are skipped instead of being played in a row.
+ * The clock only runs while there are animations to play: it is started by <code>addAnim</code>
+ * and stops once the last animation has been removed.</p>
+ * 
+ * <p>A frame is played in three phases: the parameters of all the animations that must make
+ * a step are computed, then the steps are applied within a batch of changes of each animated canvas
+ * (see <code>Canvas.beginUpdate</code>), and the state machines that track the animated elements
+ * are notified. Each canvas is repainted once at the end of the frame, in the union of the areas
+ * covered by the animated shapes.</p>
+ * 
  * @author Caroline Appert
  *
  */
@@ -26,58 +40,239 @@ class AnimationManager {
 	protected int 				  delay = 40;
 	protected long 				  duration = 1000;
 	protected long 				  currentTime = 0;
-	protected Timer 			  clock = null;
-	
-	private ConcurrentLinkedQueue<Animation> allAnimations = new ConcurrentLinkedQueue<Animation>();
-	
-	private AnimationManager() {
-		currentTime = System.currentTimeMillis();
-		clock = new Timer(40, new ActionListener() {
-			public void actionPerformed(ActionEvent arg0) {
-				currentTime+=delay;
-				Animation next;
-				for(Iterator<Animation> i = allAnimations.iterator(); i.hasNext(); ) {
-					next = i.next();
-					if(!next.isSuspended()) next.update();
+	
+	private AnimationClock clock;
+	private Runnable frame;
+	private long nextFrameTime = 0;
+	private boolean running = false;
+	private boolean inFrame = false;
+	private long nbFrames = 0;
+	private long nbSkippedFrames = 0;
+	
+	private static final Animation[] NO_ANIMATION = new Animation[0];
+	
+	// the running animations, in the order they were added, and a copy of them that is
+	// browsed by frames (rebuilt when the animations change)
+	private LinkedHashSet<Animation> allAnimations = new LinkedHashSet<Animation>();
+	private Animation[] playedAnimations = NO_ANIMATION;
+	
+	private AnimationManager(AnimationClock clock) {
+		this.clock = clock;
+		currentTime = clock.currentTime();
+		frame = new Runnable() {
+			public void run() {
+				tick();
+				schedule();
+			}
+		};
+	}
+	
+	/**
+	 * @return the current time in milliseconds given by the clock of this manager.
+	 */
+	long now() {
+		return clock.currentTime();
+	}
+	
+	/**
+	 * Plays a frame at the current time: updates every running animation.
+	 */
+	void tick() {
+		tick(now());
+	}
+	
+	/**
+	 * Plays a frame at a given time: updates every running animation.
+	 * @param time The time of the frame in milliseconds.
+	 */
+	void tick(long time) {
+		currentTime = time;
+		inFrame = true;
+		ArrayList<Animation> frameAnimations = new ArrayList<Animation>();
+		ArrayList<Canvas> frameCanvases = new ArrayList<Canvas>();
+		try {
+			// computes the parameters of the animations that make a step during this frame
+			Animation[] played = getPlayedAnimations();
+			for(int i = 0; i < played.length; i++) {
+				if(played[i].prepareStep()) frameAnimations.add(played[i]);
+			}
+			// applies the steps in a batch of changes of each animated canvas
+			for(int i = 0; i < frameAnimations.size(); i++) {
+				Animation next = frameAnimations.get(i);
+				CElement animated = next.getAnimated();
+				Canvas canvas = animated == null ? null : animated.getCanvas();
+				if(canvas != null) {
+					if(!frameCanvases.contains(canvas)) {
+						frameCanvases.add(canvas);
+						canvas.beginUpdate();
+					}
+					canvas.willChange(animated);
 				}
+				next.playStep();
 			}
-		});
-		clock.start();
+			// notifies the machines that track the animated elements
+			for(int i = 0; i < frameAnimations.size(); i++)
+				frameAnimations.get(i).fireStepEvent();
+		} finally {
+			for(int i = 0; i < frameCanvases.size(); i++)
+				frameCanvases.get(i).endUpdate();
+			inFrame = false;
+		}
+		nbFrames++;
+	}
+	
+	private Animation[] getPlayedAnimations() {
+		synchronized(allAnimations) {
+			if(playedAnimations == null)
+				playedAnimations = allAnimations.toArray(new Animation[allAnimations.size()]);
+			return playedAnimations;
+		}
 	}
 	
-	public static AnimationManager getInstance() {
-		if(manager == null) manager = new AnimationManager();
+	private boolean isEmpty() {
+		synchronized(allAnimations) {
+			return allAnimations.isEmpty();
+		}
+	}
+	
+	private synchronized void schedule() {
+		if(!running) return;
+		if(isEmpty()) {
+			running = false;
+			return;
+		}
+		long time = now();
+		nextFrameTime += delay;
+		if(nextFrameTime < time) {
+			// this frame ended too late: skips the frames that have been missed
+			long missed = (time - nextFrameTime) / delay + 1;
+			nextFrameTime += missed * delay;
+			nbSkippedFrames += missed;
+		}
+		clock.schedule(frame, nextFrameTime - time);
+	}
+	
+	private synchronized void startClock() {
+		if(running) return;
+		running = true;
+		currentTime = now();
+		nextFrameTime = currentTime;
+		clock.schedule(frame, 0);
+	}
+	
+	/**
+	 * Stops the clock until an animation is added.
+	 */
+	synchronized void stopClock() {
+		running = false;
+		clock.cancel();
+	}
+	
+	/**
+	 * Replaces the clock of this manager. The frames of the running animations are then scheduled by the new clock.
+	 * Since the time of the new clock may be different, the running animations should be restarted.
+	 * @param newClock The clock.
+	 */
+	synchronized void setClock(AnimationClock newClock) {
+		boolean wasRunning = running;
+		stopClock();
+		clock = newClock;
+		if(wasRunning && !isEmpty()) startClock();
+	}
+	
+	/**
+	 * @return the clock of this manager.
+	 */
+	synchronized AnimationClock getClock() {
+		return clock;
+	}
+	
+	public static synchronized AnimationManager getInstance() {
+		if(manager == null) manager = new AnimationManager(new SwingClock());
 		return manager;
 	}
 	
-	public static void reset() {
+	public static synchronized void reset() {
+		int period = 40;
+		AnimationClock clock = null;
 		if(manager != null) {
-			manager.clock.stop();
-			manager.allAnimations.clear();
-			ANamedTag.namedTags = null;
+			manager.stopClock();
+			synchronized(manager.allAnimations) {
+				manager.allAnimations.clear();
+				manager.playedAnimations = NO_ANIMATION;
+			}
+			ANamedTag.namedTags.clear();
+			period = manager.delay;
+			clock = manager.clock;
 		}
-		manager = new AnimationManager();
+		manager = new AnimationManager(clock == null ? new SwingClock() : clock);
+		manager.delay = period;
 	}
 	
 	public void addAnim(Animation a) {
-		if(!allAnimations.contains(a))
-			allAnimations.add(a);
+		synchronized(allAnimations) {
+			if(allAnimations.add(a)) playedAnimations = null;
+		}
+		startClock();
 	}
 	
 	public void removeAnim(Animation a) {
-		allAnimations.remove(a);
+		boolean empty;
+		synchronized(allAnimations) {
+			if(allAnimations.remove(a)) playedAnimations = null;
+			empty = allAnimations.isEmpty();
+		}
+		if(empty && !inFrame) stopClock();
 	}
 	
+	/**
+	 * @return the time of the frame being played if this method is called during a frame,
+	 * the current time otherwise.
+	 */
 	public long getCurrentTime() {
-		return currentTime;
+		if(inFrame) return currentTime;
+		return now();
 	}
 	
 	void setCurrentTime(long ct) {
 		currentTime = ct;
 	}
 	
+	/**
+	 * Sets the period between two frames.
+	 * @param period The period in milliseconds.
+	 */
+	synchronized void setFramePeriod(int period) {
+		delay = Math.max(1, period);
+	}
+	
+	/**
+	 * @return the period between two frames in milliseconds.
+	 */
+	int getFramePeriod() {
+		return delay;
+	}
 	
+	/**
+	 * @return true if the clock of this manager is running.
+	 */
+	synchronized boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * @return the number of frames played since this manager has been created.
+	 */
+	long getNbFrames() {
+		return nbFrames;
+	}
+	
+	/**
+	 * @return the number of frames skipped because the previous frames ended too late.
+	 */
+	synchronized long getNbSkippedFrames() {
+		return nbSkippedFrames;
+	}
 	
 }
 
-
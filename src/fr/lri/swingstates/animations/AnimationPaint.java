@@ -6,104 +6,214 @@
 package fr.lri.swingstates.animations;
 
 import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint;
 import java.awt.Paint;
-import java.util.Iterator;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import fr.lri.swingstates.canvas.CElement;
+import fr.lri.swingstates.canvas.CExtensionalTag;
 import fr.lri.swingstates.canvas.CShape;
 import fr.lri.swingstates.canvas.CTag;
 import fr.lri.swingstates.canvas.Canvas;
 
 /**
- * An abstract animation that changes the color of a <code>CElement</code> to a given color smoothly by refreshing every 40 milliseconds.
- * 
+ * An abstract animation that changes the paint of a <code>CElement</code> to a given paint smoothly by refreshing every 40 milliseconds.
+ *
+ * <p>The initial and final paints can be colors, <code>GradientPaint</code>s or <code>LinearGradientPaint</code>s.
+ * The colors between the initial color of a shape (or of a stop of its gradient) and the final color
+ * are precomputed in a <code>ColorRamp</code> when the animation starts, and shapes that have the same initial color share
+ * the same ramp. Colors are interpolated in a perceptual color space (Oklab), so that the change looks regular.
+ * A step only sets the paints of the shapes whose color has changed since the previous step,
+ * and the colors of a ramp are shared by all the shapes that follow it.
+ * Shapes whose paint is of another type are not animated.</p>
+ *
+ * <p>The animated shapes are collected when the animation starts. When the animated element is a <code>CExtensionalTag</code>,
+ * the shapes that are added to the tag while the animation is running are animated from their current paint
+ * during the remaining time, and the shapes that are removed from the tag are not animated anymore.</p>
+ *
  * @author Caroline Appert
  *
  */
 abstract class AnimationPaint extends Animation {
 
-	private static String ERROR_ONLY_COLOR = "Can only animate java.awt.Color attributes";
-	
 	protected Color colorEnd;
+	protected Paint paintEnd;
 	protected CShape[] animatedShapes;
-	protected Color[] initialColors;
-	
+	private ColorRamp[] ramps;
+	private GradientTransition[] gradients;
+	private int[] currentIndex;
+	private double[] joinT;
+	private int tagVersion;
+	private HashMap<Long, ColorRamp> rampCache = new HashMap<Long, ColorRamp>();
+
 	/**
 	 * Builds a <code>FillPaint</code> animation.
 	 * @param colorTarget The final color.
 	 */
 	public AnimationPaint(Color colorTarget) {
+		this((Paint)colorTarget);
+	}
+
+	/**
+	 * Builds an animation towards a given paint.
+	 * @param paintTarget The final paint: a color, a <code>GradientPaint</code> or a <code>LinearGradientPaint</code>.
+	 */
+	public AnimationPaint(Paint paintTarget) {
 		super();
-		colorEnd = colorTarget;
+		setTarget(paintTarget);
 	}
-	
-	protected abstract Color getColorValue(CShape shape);
-	
+
+	protected abstract Paint getPaintValue(CShape shape);
+
+	protected abstract void setPaintValue(CShape shape, Paint paint);
+
 	/**
-	 * {@inheritDoc}
+	 * Sets the paints of the animated shapes for a given value of the parameter t.
+	 * @param t The parameter of this animation.
 	 */
-	public Animation setAnimatedElement(CElement ce) {
-		if(Canvas.class.isAssignableFrom(ce.getClass())) {
+	void stepColors(double t) {
+		if(animatedShapes == null) collectShapes();
+		else refreshTag(t);
+		int last = ColorRamp.SIZE - 1;
+		for(int i = 0; i < animatedShapes.length; i++) {
+			double u = t;
+			if(joinT != null && joinT[i] > 0)
+				u = joinT[i] >= 1 ? 1 : (t - joinT[i]) / (1 - joinT[i]);
+			int index = ColorRamp.indexOf(u);
+			if(index == currentIndex[i]) continue;
+			if(ramps[i] != null) {
+				currentIndex[i] = index;
+				setPaintValue(animatedShapes[i], index == last ? paintEnd : ramps[i].getColor(index));
+			} else if(gradients[i] != null) {
+				currentIndex[i] = index;
+				setPaintValue(animatedShapes[i], index == last ? paintEnd : gradients[i].paintAt(index, u));
+			}
+		}
+	}
+
+	void started() {
+		collectShapes();
+	}
+
+	private void collectShapes() {
+		CElement ce = getAnimated();
+		ArrayList<CShape> shapes = new ArrayList<CShape>();
+		if(ce instanceof Canvas) {
 			List<CShape> l = ((Canvas)ce).getDisplayList();
-			int nb = l.size();
-			animatedShapes = new CShape[nb];
-			initialColors = new Color[nb];
-			int cpt = 0;
-			Paint paint;
 			synchronized(l) {
-				for(Iterator i = l.iterator(); i.hasNext();) {
-					CShape next = (CShape) i.next();
-					animatedShapes[cpt] = next;
-					paint = getColorValue(next);
-					if(!(paint instanceof Color)) {
-						System.err.println(ERROR_ONLY_COLOR);
-					} else {
-						initialColors[cpt] = (Color)paint;
-					}
-					cpt++;
-				}
+				shapes.addAll(l);
 			}
-		} else {
-			if(CTag.class.isAssignableFrom(ce.getClass())) {
-				CTag l = (CTag)ce;
-				int nb = ((CTag)ce).size();
-				animatedShapes = new CShape[nb];
-				initialColors = new Color[nb];
-				int cpt = 0;
-				Paint paint;
-				for(l.reset(); l.hasNext();) {
-					CShape next = l.nextShape();
-					animatedShapes[cpt] = next;
-					paint = getColorValue(next);
-					if(!(paint instanceof Color)) {
-						System.err.println(ERROR_ONLY_COLOR);
-					} else {
-						initialColors[cpt] = (Color)paint;
-					}
-					cpt++;
-				}
+		} else if(ce instanceof CTag) {
+			CTag tag = (CTag)ce;
+			for(tag.reset(); tag.hasNext();)
+				shapes.add(tag.nextShape());
+			tagVersion = ce instanceof CExtensionalTag ? ((CExtensionalTag)ce).getVersion() : 0;
+		} else if(ce instanceof CShape) {
+			shapes.add((CShape)ce);
+		}
+		int nb = shapes.size();
+		animatedShapes = shapes.toArray(new CShape[nb]);
+		ramps = new ColorRamp[nb];
+		gradients = new GradientTransition[nb];
+		currentIndex = new int[nb];
+		joinT = null;
+		rampCache.clear();
+		for(int i = 0; i < nb; i++)
+			prepare(i);
+	}
+
+	/**
+	 * Updates the animated shapes if shapes have been added to or removed from the animated tag.
+	 */
+	private void refreshTag(double t) {
+		CElement ce = getAnimated();
+		if(!(ce instanceof CExtensionalTag)) return;
+		CExtensionalTag tag = (CExtensionalTag)ce;
+		if(tag.getVersion() == tagVersion) return;
+		tagVersion = tag.getVersion();
+		IdentityHashMap<CShape, Integer> previous = new IdentityHashMap<CShape, Integer>();
+		for(int i = 0; i < animatedShapes.length; i++)
+			previous.put(animatedShapes[i], Integer.valueOf(i));
+		ArrayList<CShape> shapes = new ArrayList<CShape>();
+		for(tag.reset(); tag.hasNext();)
+			shapes.add(tag.nextShape());
+		int nb = shapes.size();
+		CShape[] newShapes = shapes.toArray(new CShape[nb]);
+		ColorRamp[] newRamps = new ColorRamp[nb];
+		GradientTransition[] newGradients = new GradientTransition[nb];
+		int[] newIndex = new int[nb];
+		double[] newJoinT = new double[nb];
+		boolean[] added = new boolean[nb];
+		for(int i = 0; i < nb; i++) {
+			Integer old = previous.get(newShapes[i]);
+			if(old == null) {
+				added[i] = true;
+				newJoinT[i] = Math.max(0, t);
 			} else {
-				if(CShape.class.isAssignableFrom(ce.getClass())) {
-					animatedShapes = new CShape[1];
-					initialColors = new Color[1];
-					animatedShapes[0] = (CShape)ce;
-					Paint paint = getColorValue((CShape)ce);
-					if(!(paint instanceof Color)) {
-						System.err.println(ERROR_ONLY_COLOR);
-					} else {
-						initialColors[0] = (Color)paint;
-					}
-				}
+				int o = old.intValue();
+				newRamps[i] = ramps[o];
+				newGradients[i] = gradients[o];
+				newIndex[i] = currentIndex[o];
+				newJoinT[i] = joinT == null ? 0 : joinT[o];
 			}
 		}
+		animatedShapes = newShapes;
+		ramps = newRamps;
+		gradients = newGradients;
+		currentIndex = newIndex;
+		joinT = newJoinT;
+		for(int i = 0; i < nb; i++)
+			if(added[i]) prepare(i);
+	}
+
+	/**
+	 * Computes the transition of the paint of the i-th animated shape from its current paint.
+	 */
+	private void prepare(int i) {
+		Paint from = getPaintValue(animatedShapes[i]);
+		ramps[i] = null;
+		gradients[i] = null;
+		currentIndex[i] = 0;
+		if(from instanceof Color && paintEnd instanceof Color) {
+			ramps[i] = getRamp(((Color)from).getRGB(), ((Color)paintEnd).getRGB());
+		} else {
+			// paints that are neither colors nor linear gradients are not animated
+			PaintStops start = PaintStops.of(from);
+			PaintStops end = PaintStops.of(paintEnd);
+			if(start != null && end != null)
+				gradients[i] = new GradientTransition(start, end, this);
+		}
+	}
+
+	ColorRamp getRamp(int from, int to) {
+		Long key = Long.valueOf(((long)from << 32) | (to & 0xFFFFFFFFL));
+		ColorRamp ramp = rampCache.get(key);
+		if(ramp == null) {
+			ramp = new ColorRamp(from, to);
+			rampCache.put(key, ramp);
+		}
+		return ramp;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Animation setAnimatedElement(CElement ce) {
+		// the shapes are collected again when this animation starts
+		animatedShapes = null;
 		super.setAnimatedElement(ce);
 		return this;
 	}
 
 	/**
-	 * @return the final color.
+	 * @return the final color, null if the final paint is not a color.
 	 */
 	public Color getColorTarget() {
 		return colorEnd;
@@ -115,9 +225,142 @@ abstract class AnimationPaint extends Animation {
 	 * @return this animation.
 	 */
 	public AnimationPaint setColorTarget(Color colorTarget) {
-		colorEnd = colorTarget;
+		return setPaintTarget(colorTarget);
+	}
+
+	/**
+	 * @return the final paint.
+	 */
+	public Paint getPaintTarget() {
+		return paintEnd;
+	}
+
+	/**
+	 * Sets the final paint. The transitions of the animated shapes are computed again the next time
+	 * this animation starts.
+	 * @param paintTarget The final paint: a color, a <code>GradientPaint</code> or a <code>LinearGradientPaint</code>.
+	 * @return this animation.
+	 */
+	public AnimationPaint setPaintTarget(Paint paintTarget) {
+		setTarget(paintTarget);
 		return this;
 	}
 
+	private void setTarget(Paint paintTarget) {
+		paintEnd = paintTarget;
+		colorEnd = paintTarget instanceof Color ? (Color)paintTarget : null;
+	}
+
+	/**
+	 * A paint described as a linear gradient: a color is a gradient without geometry that has a single stop.
+	 */
+	private static class PaintStops {
+
+		Point2D start = null, end = null;
+		float[] fractions;
+		int[] colors;
+		MultipleGradientPaint.CycleMethod cycle = MultipleGradientPaint.CycleMethod.NO_CYCLE;
+		AffineTransform transform = null;
+		boolean legacy = true;
+
+		static PaintStops of(Paint paint) {
+			PaintStops stops = new PaintStops();
+			if(paint instanceof Color) {
+				stops.fractions = new float[] { 0 };
+				stops.colors = new int[] { ((Color)paint).getRGB() };
+			} else if(paint instanceof GradientPaint) {
+				GradientPaint gradient = (GradientPaint)paint;
+				stops.start = gradient.getPoint1();
+				stops.end = gradient.getPoint2();
+				stops.fractions = new float[] { 0, 1 };
+				stops.colors = new int[] { gradient.getColor1().getRGB(), gradient.getColor2().getRGB() };
+				if(gradient.isCyclic()) stops.cycle = MultipleGradientPaint.CycleMethod.REFLECT;
+			} else if(paint instanceof LinearGradientPaint) {
+				LinearGradientPaint gradient = (LinearGradientPaint)paint;
+				stops.start = gradient.getStartPoint();
+				stops.end = gradient.getEndPoint();
+				stops.fractions = gradient.getFractions();
+				Color[] colors = gradient.getColors();
+				stops.colors = new int[colors.length];
+				for(int i = 0; i < colors.length; i++)
+					stops.colors[i] = colors[i].getRGB();
+				stops.cycle = gradient.getCycleMethod();
+				stops.transform = gradient.getTransform();
+				stops.legacy = false;
+			} else {
+				return null;
+			}
+			return stops;
+		}
+
+		boolean hasGeometry() {
+			return start != null;
+		}
+
+		int colorAt(float fraction) {
+			if(fraction <= fractions[0]) return colors[0];
+			for(int i = 1; i < fractions.length; i++) {
+				if(fraction <= fractions[i]) {
+					float t = (fraction - fractions[i-1]) / (fractions[i] - fractions[i-1]);
+					int from = colors[i-1], to = colors[i];
+					int argb = 0;
+					for(int shift = 0; shift < 32; shift += 8) {
+						int c0 = (from >>> shift) & 0xFF, c1 = (to >>> shift) & 0xFF;
+						argb |= Math.round(c0 + (c1 - c0) * t) << shift;
+					}
+					return argb;
+				}
+			}
+			return colors[colors.length - 1];
+		}
+
+	}
+
+	/**
+	 * The transition between two paints, one of them at least being a gradient:
+	 * the colors of the stops follow color ramps and the end points of the gradient are interpolated linearly.
+	 */
+	private static class GradientTransition {
+
+		float[] fractions;
+		ColorRamp[] stopRamps;
+		Point2D start0, end0, start1, end1;
+		MultipleGradientPaint.CycleMethod cycle;
+		AffineTransform transform;
+		boolean legacy;
+
+		GradientTransition(PaintStops from, PaintStops to, AnimationPaint animation) {
+			PaintStops reference = to.hasGeometry() ? to : from;
+			fractions = (to.fractions.length > 1 ? to : from).fractions;
+			stopRamps = new ColorRamp[fractions.length];
+			for(int i = 0; i < fractions.length; i++)
+				stopRamps[i] = animation.getRamp(from.colorAt(fractions[i]), to.colorAt(fractions[i]));
+			start0 = (from.hasGeometry() ? from : to).start;
+			end0 = (from.hasGeometry() ? from : to).end;
+			start1 = reference.start;
+			end1 = reference.end;
+			cycle = reference.cycle;
+			transform = reference.transform;
+			legacy = from.legacy && to.legacy && fractions.length == 2;
+		}
+
+		Paint paintAt(int index, double u) {
+			double s = Math.min(1, Math.max(0, u));
+			float x1 = (float)(start0.getX() + (start1.getX() - start0.getX()) * s);
+			float y1 = (float)(start0.getY() + (start1.getY() - start0.getY()) * s);
+			float x2 = (float)(end0.getX() + (end1.getX() - end0.getX()) * s);
+			float y2 = (float)(end0.getY() + (end1.getY() - end0.getY()) * s);
+			if(legacy)
+				return new GradientPaint(x1, y1, stopRamps[0].getColor(index), x2, y2, stopRamps[1].getColor(index),
+						cycle != MultipleGradientPaint.CycleMethod.NO_CYCLE);
+			if(x1 == x2 && y1 == y2) return stopRamps[0].getColor(index);
+			Color[] colors = new Color[stopRamps.length];
+			for(int i = 0; i < colors.length; i++)
+				colors[i] = stopRamps[i].getColor(index);
+			return new LinearGradientPaint(new Point2D.Float(x1, y1), new Point2D.Float(x2, y2), fractions, colors,
+					cycle, MultipleGradientPaint.ColorSpaceType.SRGB, transform == null ? new AffineTransform() : transform);
+		}
+
+	}
 
 }
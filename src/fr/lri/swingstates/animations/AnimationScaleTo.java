@@ -13,10 +13,15 @@ import fr.lri.swingstates.canvas.CElement;
 import fr.lri.swingstates.canvas.CShape;
 import fr.lri.swingstates.canvas.CTag;
 import fr.lri.swingstates.canvas.Canvas;
+import fr.lri.swingstates.canvas.TransformBatch;
 
 /**
  * An animation that scales a <code>CElement</code> to a given factor by scaling smoothly this <code>CElement</code> every 40 milliseconds.
  * 
+ * <p>When the animated element is a <code>CTag</code> or a <code>Canvas</code>, the initial scale factors of the shapes
+ * are stored in primitive arrays, and each step interpolates them in a single loop and writes them back
+ * through a <code>TransformBatch</code>.</p>
+ * 
  * @author Caroline Appert
  *
  */
@@ -25,6 +30,8 @@ public class AnimationScaleTo extends Animation {
 	double sxEnd, syEnd;
 	CShape[] animatedShapes;
 	double[][] scales;
+	TransformBatch batch;
+	double[] startX, startY;
 	
 	/**
 	 * Builds a "scaleTo" animation.
@@ -41,6 +48,16 @@ public class AnimationScaleTo extends Animation {
 	 * {@inheritDoc}
 	 */
 	public void step(double t) {
+			if(batch != null) {
+				double[] scaleX = batch.getScalesX();
+				double[] scaleY = batch.getScalesY();
+				for(int i = 0; i < scaleX.length; i++) {
+					scaleX[i] = startX[i] + (sxEnd - startX[i])*t;
+					scaleY[i] = startY[i] + (syEnd - startY[i])*t;
+				}
+				batch.applyScales();
+				return;
+			}
 			for(int i = 0; i < animatedShapes.length; i++) {
 				animatedShapes[i].scaleTo(scales[i][0]+(sxEnd-scales[i][0])*t, scales[i][1]+(syEnd-scales[i][1])*t);
 			}
@@ -55,12 +72,26 @@ public class AnimationScaleTo extends Animation {
 			scales[i][0] = animatedShapes[i].getScaleX();
 			scales[i][1] = animatedShapes[i].getScaleY();
 		}
+		prepareBatch();
+	}
+	
+	private void prepareBatch() {
+		batch = null;
+		if(animatedShapes.length < 2) return;
+		batch = new TransformBatch(animatedShapes);
+		startX = new double[animatedShapes.length];
+		startY = new double[animatedShapes.length];
+		for(int i = 0; i < animatedShapes.length; i++) {
+			startX[i] = scales[i][0];
+			startY[i] = scales[i][1];
+		}
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public Animation setAnimatedElement(CElement ce) {
+		batch = null;
 		if(Canvas.class.isAssignableFrom(ce.getClass())) {
 			List<CShape> l = ((Canvas)ce).getDisplayList();
 			int nb = l.size();
@@ -5,6 +5,7 @@
 */
 package fr.lri.swingstates.animations;
 
+import java.awt.geom.Rectangle2D;
 import java.util.Iterator;
 import java.util.List;
 
@@ -12,10 +13,15 @@ import fr.lri.swingstates.canvas.CElement;
 import fr.lri.swingstates.canvas.CShape;
 import fr.lri.swingstates.canvas.CTag;
 import fr.lri.swingstates.canvas.Canvas;
+import fr.lri.swingstates.canvas.TransformBatch;
 
 /**
  * An animation that translates a <code>CElement</code> to a given location in one second by translating smoothly this <code>CElement</code> every 40 milliseconds.
  * 
+ * <p>When the animated element is a <code>CTag</code> or a <code>Canvas</code> whose shapes have no parent,
+ * the start and final translations of the shapes are computed once when the animation starts,
+ * and each step interpolates them in a single loop and writes them back through a <code>TransformBatch</code>.</p>
+ * 
  * @author Caroline Appert
  *
  */
@@ -24,6 +30,8 @@ public class AnimationTranslateTo extends Animation {
 	double txEnd, tyEnd;
 	CShape[] animatedShapes;
 	double[][] initialTranslations;
+	TransformBatch batch;
+	double[] startX, startY, endX, endY;
 	
 	/**
 	 * Builds a "translateTo" animation.
@@ -40,6 +48,16 @@ public class AnimationTranslateTo extends Animation {
 	 * {@inheritDoc}
 	 */
 	public void step(double t) {
+		if(batch != null) {
+			double[] tx = batch.getTranslationsX();
+			double[] ty = batch.getTranslationsY();
+			for(int i = 0; i < tx.length; i++) {
+				tx[i] = startX[i] + (endX[i] - startX[i])*t;
+				ty[i] = startY[i] + (endY[i] - startY[i])*t;
+			}
+			batch.applyTranslations();
+			return;
+		}
 		for(int i = 0; i < animatedShapes.length; i++) {
 			animatedShapes[i].translateTo(initialTranslations[i][0]*(1-t) + txEnd*t,  initialTranslations[i][1]*(1-t) + tyEnd*t);
 		}
@@ -53,12 +71,37 @@ public class AnimationTranslateTo extends Animation {
 			initialTranslations[i][0] = animatedShapes[i].getCenterX();
 			initialTranslations[i][1] = animatedShapes[i].getCenterY();
 		}
+		prepareBatch();
+	}
+	
+	private void prepareBatch() {
+		batch = null;
+		if(animatedShapes.length < 2) return;
+		for(int i = 0; i < animatedShapes.length; i++)
+			if(animatedShapes[i].getParent() != null) return;
+		batch = new TransformBatch(animatedShapes);
+		int nb = animatedShapes.length;
+		startX = new double[nb];
+		startY = new double[nb];
+		endX = new double[nb];
+		endY = new double[nb];
+		for(int i = 0; i < nb; i++) {
+			// the reference point of a shape without parent is at its translation plus this offset
+			Rectangle2D bounds = animatedShapes[i].getShape().getBounds2D();
+			double dx = bounds.getX() + animatedShapes[i].getReferenceX() * bounds.getWidth();
+			double dy = bounds.getY() + animatedShapes[i].getReferenceY() * bounds.getHeight();
+			startX[i] = initialTranslations[i][0] - dx;
+			startY[i] = initialTranslations[i][1] - dy;
+			endX[i] = txEnd - dx;
+			endY[i] = tyEnd - dy;
+		}
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public Animation setAnimatedElement(CElement ce) {
+		batch = null;
 		if(Canvas.class.isAssignableFrom(ce.getClass())) {
 			List<CShape> l = ((Canvas)ce).getDisplayList();
 			int nb = l.size();
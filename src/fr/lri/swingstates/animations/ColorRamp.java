@@ -0,0 +1,124 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+import java.awt.Color;
+
+/**
+ * The colors between two colors, precomputed as packed ARGB values.
+ *
+ * <p>Colors are interpolated in the Oklab color space, in which equal steps look like equal changes
+ * of color, and alpha is interpolated linearly. The <code>Color</code> objects of the ramp are built
+ * the first time they are used, so that shapes that follow the same ramp share them.</p>
+ *
+ * @author SwingStates contributors
+ */
+final class ColorRamp {
+
+	/**
+	 * The number of colors of a ramp.
+	 */
+	static final int SIZE = 256;
+
+	private static final double[] SRGB_TO_LINEAR = new double[256];
+	static {
+		for(int i = 0; i < 256; i++) {
+			double c = i / 255.0;
+			SRGB_TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+		}
+	}
+
+	private int[] argb = new int[SIZE];
+	private Color[] colors = new Color[SIZE];
+
+	/**
+	 * Builds the ramp between two colors.
+	 * @param from The first color of the ramp as a packed ARGB value.
+	 * @param to The last color of the ramp as a packed ARGB value.
+	 */
+	ColorRamp(int from, int to) {
+		double[] labFrom = toOklab(from);
+		double[] labTo = toOklab(to);
+		int alphaFrom = from >>> 24, alphaTo = to >>> 24;
+		double[] lab = new double[3];
+		for(int i = 1; i < SIZE - 1; i++) {
+			double t = (double)i / (SIZE - 1);
+			for(int c = 0; c < 3; c++)
+				lab[c] = labFrom[c] + (labTo[c] - labFrom[c]) * t;
+			int alpha = (int)Math.round(alphaFrom + (alphaTo - alphaFrom) * t);
+			argb[i] = (alpha << 24) | fromOklab(lab);
+		}
+		// the ends of the ramp are exactly the given colors
+		argb[0] = from;
+		argb[SIZE - 1] = to;
+	}
+
+	/**
+	 * Returns the index of the color of the ramp for a given value of the parameter of an animation.
+	 * @param t The value, clamped to [0, 1].
+	 * @return the index of the color.
+	 */
+	static int indexOf(double t) {
+		if(!(t > 0)) return 0;
+		if(t >= 1) return SIZE - 1;
+		return (int)(t * (SIZE - 1) + 0.5);
+	}
+
+	/**
+	 * @param index The index of a color of this ramp.
+	 * @return the color as a packed ARGB value.
+	 */
+	int getARGB(int index) {
+		return argb[index];
+	}
+
+	/**
+	 * @param index The index of a color of this ramp.
+	 * @return the color.
+	 */
+	Color getColor(int index) {
+		Color color = colors[index];
+		if(color == null) {
+			color = new Color(argb[index], true);
+			colors[index] = color;
+		}
+		return color;
+	}
+
+	private static double[] toOklab(int argb) {
+		double r = SRGB_TO_LINEAR[(argb >> 16) & 0xFF];
+		double g = SRGB_TO_LINEAR[(argb >> 8) & 0xFF];
+		double b = SRGB_TO_LINEAR[argb & 0xFF];
+		double l = Math.cbrt(0.4122214708 * r + 0.5363325363 * g + 0.0514459929 * b);
+		double m = Math.cbrt(0.2119034982 * r + 0.6806995451 * g + 0.1073969566 * b);
+		double s = Math.cbrt(0.0883024619 * r + 0.2817188376 * g + 0.6299787005 * b);
+		return new double[] {
+				0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s,
+				1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s,
+				0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s
+		};
+	}
+
+	private static int fromOklab(double[] lab) {
+		double l = lab[0] + 0.3963377774 * lab[1] + 0.2158037573 * lab[2];
+		double m = lab[0] - 0.1055613458 * lab[1] - 0.0638541728 * lab[2];
+		double s = lab[0] - 0.0894841775 * lab[1] - 1.2914855480 * lab[2];
+		l = l * l * l;
+		m = m * m * m;
+		s = s * s * s;
+		int r = toSRGB(4.0767416621 * l - 3.3077115913 * m + 0.2309699292 * s);
+		int g = toSRGB(-1.2684380046 * l + 2.6097574011 * m - 0.3413193965 * s);
+		int b = toSRGB(-0.0041960863 * l - 0.7034186147 * m + 1.7076147010 * s);
+		return (r << 16) | (g << 8) | b;
+	}
+
+	private static int toSRGB(double c) {
+		double v = c <= 0.0031308 ? 12.92 * c : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+		int i = (int)Math.round(v * 255);
+		return i < 0 ? 0 : (i > 255 ? 255 : i);
+	}
+
+}
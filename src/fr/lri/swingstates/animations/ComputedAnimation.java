@@ -0,0 +1,218 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>An animation whose steps are split into an expensive computation, made by a pool of worker threads,
+ * and a cheap application of its result to the animated elements, made by the thread that plays frames
+ * (by default, the event dispatch thread). For example, the computation can simulate the physics
+ * of a force-directed graph layout and the application can move the shapes of the graph.</p>
+ *
+ * <p>At each frame, the animation requests the computation of the current step and applies the result
+ * of the computation requested at a previous frame, so results are displayed one frame later. If the previous
+ * computation has not ended, the frame is skipped for this animation: the frame does not wait for it
+ * (see <code>getNbSkippedSteps()</code>). When the animation stops, the computation of its last step
+ * is applied in the event dispatch thread once it is ready.</p>
+ *
+ * <p>The method <code>compute</code> is called in a worker thread, so it must not modify
+ * the shapes or the canvas, and the result it returns must not be modified afterwards.</p>
+ *
+ * <pre>
+ * class LayoutAnimation extends ComputedAnimation&lt;double[]&gt; {
+ * 	public double[] compute(double t) {
+ * 		return graph.computeLayout(t); // new positions of the nodes
+ * 	}
+ * 	public void apply(double[] positions) {
+ * 		for(int i = 0; i &lt; nodes.length; i++)
+ * 			nodes[i].translateTo(positions[2*i], positions[2*i+1]);
+ * 	}
+ * }
+ * </pre>
+ *
+ * @param <R> The type of the results of the computations.
+ * @author SwingStates contributors
+ */
+public abstract class ComputedAnimation<R> extends Animation {
+
+	private static ExecutorService defaultExecutor = null;
+
+	private ExecutorService executor;
+	private Future<R> pending = null;
+	private double pendingT;
+	private double lastT = 0;
+	private boolean stepRequested = false;
+	private int generation = 0;
+	private long nbSkippedSteps = 0;
+
+	/**
+	 * Builds an animation whose computations are made by a shared pool
+	 * that has one daemon thread per available processor.
+	 */
+	public ComputedAnimation() {
+		this(null);
+	}
+
+	/**
+	 * Builds an animation whose computations are made by a given executor.
+	 * @param executor The executor, null to use the shared pool.
+	 */
+	public ComputedAnimation(ExecutorService executor) {
+		super();
+		this.executor = executor;
+	}
+
+	/**
+	 * Computes a step of this animation. This method is called in a worker thread.
+	 * @param t The parameter of this animation.
+	 * @return the result of the computation, that must not be modified afterwards.
+	 * @throws Exception if the computation fails. The exception is printed and the step is skipped.
+	 */
+	public abstract R compute(double t) throws Exception;
+
+	/**
+	 * Applies the result of a computation to the animated elements.
+	 * This method is called by the thread that plays frames, or by the event dispatch thread for the last step.
+	 * @param result The result of <code>compute</code>.
+	 */
+	public abstract void apply(R result);
+
+	/**
+	 * Applies the result of the previous computation if it is ready and requests the computation of a step.
+	 * @param t The parameter of this animation.
+	 */
+	public final void step(double t) {
+		Future<R> done;
+		int currentGeneration;
+		synchronized(this) {
+			lastT = t;
+			stepRequested = true;
+			if(pending != null && !pending.isDone()) {
+				// the frame does not wait for the computation
+				nbSkippedSteps++;
+				return;
+			}
+			done = pending;
+			currentGeneration = generation;
+			submit(t);
+		}
+		if(done != null) applyResult(done, currentGeneration);
+	}
+
+	private void submit(final double t) {
+		pendingT = t;
+		pending = getExecutor().submit(new Callable<R>() {
+			public R call() throws Exception {
+				return compute(t);
+			}
+		});
+	}
+
+	private void applyResult(Future<R> future, int expectedGeneration) {
+		R result;
+		try {
+			result = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			return;
+		}
+		synchronized(this) {
+			// the animation has been restarted since the computation was requested
+			if(expectedGeneration != generation) return;
+		}
+		apply(result);
+	}
+
+	void started() {
+		synchronized(this) {
+			generation++;
+			pending = null;
+			stepRequested = false;
+		}
+	}
+
+	void stopped() {
+		synchronized(this) {
+			if(!stepRequested) return;
+			final int stoppedGeneration = generation;
+			final Future<R> previous = pending;
+			final boolean reuse = previous != null && pendingT == lastT;
+			final double t = lastT;
+			pending = null;
+			// the last step is computed after the computation being made, if any,
+			// and applied in the event dispatch thread
+			getExecutor().execute(new Runnable() {
+				public void run() {
+					try {
+						R result = null;
+						if(previous != null) {
+							// computations of the same animation are not made concurrently
+							try {
+								result = previous.get();
+							} catch (ExecutionException e) {
+								if(reuse) throw e;
+								e.getCause().printStackTrace();
+							}
+						}
+						if(!reuse) result = compute(t);
+						final R last = result;
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								synchronized(ComputedAnimation.this) {
+									if(stoppedGeneration != generation) return;
+								}
+								apply(last);
+							}
+						});
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} catch (ExecutionException e) {
+						e.getCause().printStackTrace();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return the number of steps that have been skipped because the computation
+	 * of a previous step had not ended.
+	 */
+	public synchronized long getNbSkippedSteps() {
+		return nbSkippedSteps;
+	}
+
+	private ExecutorService getExecutor() {
+		return executor != null ? executor : getDefaultExecutor();
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SwingStates animation computation");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+/**
+ * A pacing function that maps the progress of an animation, between 0 and 1, to the value
+ * that is passed to the step of the animation.
+ * Pacing functions that are costly to compute can be precomputed by an <code>EasingTable</code>.
+ *
+ * @see fr.lri.swingstates.animations.EasingTable
+ * @see fr.lri.swingstates.animations.Animation#setEasing(Easing)
+ * @author SwingStates contributors
+ */
+public interface Easing {
+
+	/**
+	 * The linear pacing function: the value is the progress.
+	 */
+	Easing LINEAR = new Easing() {
+		public double ease(double t) {
+			return t;
+		}
+	};
+
+	/**
+	 * The "sigmoid" pacing function, that corresponds to a slow-in/fast-out effect.
+	 */
+	Easing SIGMOID = new EasingTable(new Easing() {
+		public double ease(double t) {
+			return Animation.computeSigmoid(4, t);
+		}
+	});
+
+	/**
+	 * Computes the value for a given progress.
+	 * @param t The progress, between 0 and 1.
+	 * @return the value for <code>t</code>. It usually starts at 0 and ends at 1.
+	 */
+	double ease(double t);
+
+}
@@ -0,0 +1,173 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+/**
+ * A pacing function whose values are precomputed in a table: the value of a progress
+ * is linearly interpolated between the two closest samples of the table, so it costs a lookup
+ * whatever the cost of the function it samples.
+ *
+ * <p>The static methods of this class build the usual pacing functions:
+ * cubic Bezier curves (as in CSS transitions), damped springs and steps.
+ * Any other function can be sampled by <code>new EasingTable(function)</code>:</p>
+ * <pre>
+ * Easing bounce = new EasingTable(new Easing() {
+ * 	public double ease(double t) {
+ * 		return 1 - Math.abs(Math.cos(t * 3 * Math.PI / 2)) * (1 - t);
+ * 	}
+ * });
+ * animation.setEasing(bounce);
+ * </pre>
+ *
+ * @see fr.lri.swingstates.animations.Animation#setEasing(Easing)
+ * @author SwingStates contributors
+ */
+public class EasingTable implements Easing {
+
+	/**
+	 * The default number of intervals between the samples of a table.
+	 */
+	public static final int DEFAULT_SIZE = 512;
+
+	/**
+	 * The pacing function that starts slowly ("ease-in").
+	 */
+	public static final Easing EASE_IN = cubicBezier(0.42, 0, 1, 1);
+
+	/**
+	 * The pacing function that ends slowly ("ease-out").
+	 */
+	public static final Easing EASE_OUT = cubicBezier(0, 0, 0.58, 1);
+
+	/**
+	 * The pacing function that starts and ends slowly ("ease-in-out").
+	 */
+	public static final Easing EASE_IN_OUT = cubicBezier(0.42, 0, 0.58, 1);
+
+	private double[] values;
+	private int size;
+
+	/**
+	 * Builds a table of <code>EasingTable.DEFAULT_SIZE</code> intervals that samples a pacing function.
+	 * @param function The pacing function.
+	 */
+	public EasingTable(Easing function) {
+		this(function, DEFAULT_SIZE);
+	}
+
+	/**
+	 * Builds a table that samples a pacing function.
+	 * @param function The pacing function.
+	 * @param size The number of intervals between samples, i.e. the function is sampled at <code>i/size</code> for <code>i</code> in [0, <code>size</code>].
+	 */
+	public EasingTable(Easing function, int size) {
+		this.size = Math.max(1, size);
+		values = new double[this.size + 1];
+		for(int i = 0; i <= this.size; i++)
+			values[i] = function.ease((double)i/this.size);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * A progress out of [0, 1] is clamped to [0, 1].
+	 */
+	public double ease(double t) {
+		if(!(t > 0)) return values[0];
+		double x = t*size;
+		int i = (int)x;
+		if(i >= size) return values[size];
+		return values[i] + (values[i+1] - values[i])*(x - i);
+	}
+
+	/**
+	 * Builds a pacing function defined by a cubic Bezier curve from (0, 0) to (1, 1),
+	 * in the same way as the <code>cubic-bezier</code> timing function of CSS transitions.
+	 * @param x1 The x coordinate of the first control point, in [0, 1].
+	 * @param y1 The y coordinate of the first control point.
+	 * @param x2 The x coordinate of the second control point, in [0, 1].
+	 * @param y2 The y coordinate of the second control point.
+	 * @return the pacing function.
+	 */
+	public static Easing cubicBezier(double x1, double y1, double x2, double y2) {
+		final double cx1 = Math.min(1, Math.max(0, x1));
+		final double cx2 = Math.min(1, Math.max(0, x2));
+		final double cy1 = y1;
+		final double cy2 = y2;
+		return new EasingTable(new Easing() {
+			public double ease(double t) {
+				// finds the parameter of the curve whose x coordinate is t
+				double s = t;
+				for(int i = 0; i < 8; i++) {
+					double dx = bezier(cx1, cx2, s) - t;
+					if(Math.abs(dx) < 1e-9) return bezier(cy1, cy2, s);
+					double derivative = bezierDerivative(cx1, cx2, s);
+					if(Math.abs(derivative) < 1e-6) break;
+					s -= dx/derivative;
+				}
+				// Newton's method does not converge: uses a bisection
+				double low = 0, high = 1;
+				s = t;
+				for(int i = 0; i < 50; i++) {
+					double x = bezier(cx1, cx2, s);
+					if(Math.abs(x - t) < 1e-9) break;
+					if(x < t) low = s;
+					else high = s;
+					s = (low + high)/2;
+				}
+				return bezier(cy1, cy2, s);
+			}
+		});
+	}
+
+	private static double bezier(double p1, double p2, double s) {
+		double u = 1 - s;
+		return 3*u*u*s*p1 + 3*u*s*s*p2 + s*s*s;
+	}
+
+	private static double bezierDerivative(double p1, double p2, double s) {
+		double u = 1 - s;
+		return 3*u*u*p1 + 6*u*s*(p2 - p1) + 3*s*s*(1 - p2);
+	}
+
+	/**
+	 * Builds a pacing function that behaves like a damped spring: the value overshoots 1
+	 * and oscillates around it until the end, where it is 1.
+	 * @param dampingRatio The damping ratio of the spring, in ]0, 1[: the lower, the larger the oscillations.
+	 * @param nbOscillations The number of oscillations.
+	 * @return the pacing function.
+	 */
+	public static Easing spring(double dampingRatio, double nbOscillations) {
+		double ratio = Math.min(0.999, Math.max(0.001, dampingRatio));
+		final double omega = 2*Math.PI*Math.max(0, nbOscillations);
+		final double decay = ratio*omega/Math.sqrt(1 - ratio*ratio);
+		// the oscillation that is left at the end is removed linearly so that the value ends at 1
+		final double rest = Math.exp(-decay)*Math.cos(omega);
+		return new EasingTable(new Easing() {
+			public double ease(double t) {
+				return 1 - Math.exp(-decay*t)*Math.cos(omega*t) + rest*t;
+			}
+		});
+	}
+
+	/**
+	 * Builds a pacing function that jumps from 0 to 1 in a given number of equal steps.
+	 * The value of a progress t is <code>floor(t * nbSteps) / nbSteps</code>.
+	 * This function is not sampled since its jumps cannot be interpolated.
+	 * @param nbSteps The number of steps.
+	 * @return the pacing function.
+	 */
+	public static Easing steps(int nbSteps) {
+		final int n = Math.max(1, nbSteps);
+		return new Easing() {
+			public double ease(double t) {
+				if(!(t > 0)) return 0;
+				if(t >= 1) return 1;
+				return Math.floor(t*n)/n;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+/**
+ * A curve defined by keyframes that gives the value of the parameter t of an animation
+ * played by a <code>Timeline</code> over time.
+ * A keyframe is a time, in milliseconds since the start of the animation, and a value.
+ * Between two keyframes, the value is interpolated according to the pacing function
+ * of the second keyframe (by default, a linear function).
+ *
+ * <pre>
+ * // goes to the end, comes back halfway with a slow-in/fast-out effect, then goes to the end again
+ * Keyframes keyframes = new Keyframes()
+ * 	.add(0, 0)
+ * 	.add(500, 1)
+ * 	.add(800, 0.5, Easing.SIGMOID)
+ * 	.add(1000, 1);
+ * timeline.at(0, new AnimationTranslateTo(200, 200), keyframes);
+ * </pre>
+ *
+ * @see fr.lri.swingstates.animations.Timeline
+ * @author SwingStates contributors
+ */
+public class Keyframes {
+
+	private long[] times = new long[4];
+	private double[] values = new double[4];
+	private Easing[] easings = new Easing[4];
+	private int size = 0;
+
+	/**
+	 * Builds an empty curve.
+	 */
+	public Keyframes() { }
+
+	/**
+	 * Adds a keyframe reached by a linear interpolation from the previous keyframe.
+	 * @param time The time of the keyframe in milliseconds.
+	 * @param value The value of the parameter t at <code>time</code>.
+	 * @return this curve.
+	 */
+	public Keyframes add(long time, double value) {
+		return add(time, value, Easing.LINEAR);
+	}
+
+	/**
+	 * Adds a keyframe.
+	 * @param time The time of the keyframe in milliseconds. It must not be before the time of the last keyframe.
+	 * @param value The value of the parameter t at <code>time</code>.
+	 * @param easing The pacing function used between the previous keyframe and this one.
+	 * @return this curve.
+	 * @throws IllegalArgumentException if <code>time</code> is negative or before the last keyframe.
+	 */
+	public synchronized Keyframes add(long time, double value, Easing easing) {
+		if(time < 0 || (size > 0 && time < times[size-1]))
+			throw new IllegalArgumentException("Keyframes must be added in chronological order: "+time);
+		if(size == times.length) {
+			long[] newTimes = new long[size*2];
+			double[] newValues = new double[size*2];
+			Easing[] newEasings = new Easing[size*2];
+			System.arraycopy(times, 0, newTimes, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			System.arraycopy(easings, 0, newEasings, 0, size);
+			times = newTimes;
+			values = newValues;
+			easings = newEasings;
+		}
+		times[size] = time;
+		values[size] = value;
+		easings[size] = easing == null ? Easing.LINEAR : easing;
+		size++;
+		return this;
+	}
+
+	/**
+	 * @return the number of keyframes.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the time of the last keyframe, 0 if there is no keyframe.
+	 */
+	public synchronized long getDuration() {
+		return size == 0 ? 0 : times[size-1];
+	}
+
+	/**
+	 * Computes the value of the curve at a given time.
+	 * Before the first keyframe, the value is the one of the first keyframe
+	 * and after the last keyframe, it is the one of the last keyframe.
+	 * @param time The time in milliseconds.
+	 * @return the value at <code>time</code>, 0 if there is no keyframe.
+	 */
+	public synchronized double valueAt(long time) {
+		if(size == 0) return 0;
+		// keyframes that all have the same time are at their last value
+		if(time >= times[size-1]) return values[size-1];
+		if(time <= times[0]) return values[0];
+		// index of the first keyframe after time
+		int low = 1, high = size-1;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(times[middle] <= time) low = middle + 1;
+			else high = middle;
+		}
+		long t0 = times[low-1];
+		double progress = (double)(time - t0)/(times[low] - t0);
+		return values[low-1] + (values[low] - values[low-1])*easings[low].ease(progress);
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+ * The default clock of animations: it follows the real time, measured with <code>System.nanoTime</code>,
+ * and plays frames in the event dispatch thread using a Swing <code>Timer</code>.
+ *
+ * @author SwingStates contributors
+ */
+public class SwingClock implements AnimationClock {
+
+	private long originNanos;
+	private long originTime;
+	private Runnable frame = null;
+	private Timer timer;
+
+	/**
+	 * Builds a clock whose time is the time of <code>System.currentTimeMillis</code> when it is built.
+	 */
+	public SwingClock() {
+		originNanos = System.nanoTime();
+		originTime = System.currentTimeMillis();
+		timer = new Timer(0, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				Runnable toPlay;
+				synchronized(SwingClock.this) {
+					toPlay = frame;
+					frame = null;
+				}
+				if(toPlay != null) toPlay.run();
+			}
+		});
+		timer.setRepeats(false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long currentTime() {
+		return originTime + (System.nanoTime() - originNanos) / 1000000;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void schedule(Runnable f, long delay) {
+		frame = f;
+		timer.setInitialDelay((int)Math.max(0, delay));
+		timer.restart();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void cancel() {
+		frame = null;
+		timer.stop();
+	}
+
+}
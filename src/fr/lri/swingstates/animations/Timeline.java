@@ -0,0 +1,313 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+import java.util.ArrayList;
+
+import fr.lri.swingstates.canvas.CElement;
+import fr.lri.swingstates.canvas.Canvas;
+
+/**
+ * <p>An animation that sequences and composes other animations, its entries.
+ * Each entry starts at a given offset, in milliseconds, from the start of the timeline,
+ * and lasts the duration of its animation (see <code>Animation.getDuration()</code>).
+ * The parameter t of an entry follows the pacing function of its animation, another pacing function
+ * or a curve defined by <code>Keyframes</code>.</p>
+ *
+ * <p>A timeline is registered once to the animation manager: at each frame, it computes the
+ * time elapsed in the timeline and makes the steps of its entries that are being played.
+ * An entry is started (<code>doStart()</code>) and stopped (<code>doStop()</code>) when the timeline
+ * reaches its beginning and its end, and its animation events are only sent to the canvas when a state machine
+ * is waiting for them. An entry whose beginning and end fall between two frames is started,
+ * played at its end value and stopped during the same frame.
+ * The entries must not be started on their own.</p>
+ *
+ * <p>Sequential and parallel groups are built with <code>then</code> and <code>with</code>,
+ * or by adding timelines to a timeline:</p>
+ * <pre>
+ * Timeline timeline = new Timeline()
+ * 	.then(new AnimationTranslateTo(100, 100).setAnimatedElement(shape))
+ * 	.with(new AnimationFillPaint(Color.RED).setAnimatedElement(shape))
+ * 	.then(200, Timeline.parallel(new AnimationScaleTo(2, 2), new AnimationRotateTo(Math.PI)));
+ * timeline.start();
+ * </pre>
+ *
+ * <p>The duration of a lap of a timeline is the end of its last entry.
+ * Setting another lap duration scales the time of the timeline.
+ * A timeline whose lap duration is 0 jumps to its end as soon as it is started:
+ * its entries are played at their end values and the timeline is stopped.
+ * Contrary to other animations, every lap of a timeline plays its entries forward.</p>
+ *
+ * @see fr.lri.swingstates.animations.Keyframes
+ * @author SwingStates contributors
+ */
+public class Timeline extends Animation {
+
+	private ArrayList<Entry> entries = new ArrayList<Entry>();
+	private Entry[] playedEntries = null;
+	private long duration = 0;
+	private long lastStart = 0;
+	private long lap = -1;
+
+	/**
+	 * Builds an empty timeline.
+	 */
+	public Timeline() {
+		super();
+		setLapDuration(0);
+	}
+
+	/**
+	 * Builds a timeline that plays animations one after the other.
+	 * @param animations The animations.
+	 * @return the timeline.
+	 */
+	public static Timeline sequence(Animation... animations) {
+		Timeline timeline = new Timeline();
+		for(int i = 0; i < animations.length; i++)
+			timeline.then(animations[i]);
+		return timeline;
+	}
+
+	/**
+	 * Builds a timeline that plays animations at the same time.
+	 * @param animations The animations.
+	 * @return the timeline.
+	 */
+	public static Timeline parallel(Animation... animations) {
+		Timeline timeline = new Timeline();
+		for(int i = 0; i < animations.length; i++)
+			timeline.at(0, animations[i]);
+		return timeline;
+	}
+
+	/**
+	 * Adds an animation that starts at a given time.
+	 * @param offset The time at which the animation starts, in milliseconds since the start of this timeline.
+	 * @param animation The animation.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the animation has an infinite number of laps or if the offset is negative.
+	 */
+	public Timeline at(long offset, Animation animation) {
+		return add(offset, animation, null, null);
+	}
+
+	/**
+	 * Adds an animation that starts at a given time and whose parameter t follows a pacing function
+	 * instead of the pacing function of the animation.
+	 * @param offset The time at which the animation starts, in milliseconds since the start of this timeline.
+	 * @param animation The animation.
+	 * @param easing The pacing function.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the animation has an infinite number of laps or if the offset is negative.
+	 */
+	public Timeline at(long offset, Animation animation, Easing easing) {
+		return add(offset, animation, easing, null);
+	}
+
+	/**
+	 * Adds an animation that starts at a given time and whose parameter t follows a curve defined by keyframes.
+	 * The animation lasts until the last keyframe, whatever its number of laps.
+	 * @param offset The time at which the animation starts, in milliseconds since the start of this timeline.
+	 * @param animation The animation.
+	 * @param keyframes The keyframes, whose times are relative to <code>offset</code>.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the offset is negative.
+	 */
+	public Timeline at(long offset, Animation animation, Keyframes keyframes) {
+		return add(offset, animation, null, keyframes);
+	}
+
+	/**
+	 * Adds an animation that starts at the end of this timeline, i.e. when all its entries have ended.
+	 * @param animation The animation.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the animation has an infinite number of laps.
+	 */
+	public Timeline then(Animation animation) {
+		return then(0, animation);
+	}
+
+	/**
+	 * Adds an animation that starts a given time after the end of this timeline, i.e. when all its entries have ended.
+	 * @param delay The time between the end of this timeline and the start of <code>animation</code>.
+	 * @param animation The animation.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the animation has an infinite number of laps.
+	 */
+	public synchronized Timeline then(long delay, Animation animation) {
+		return at(duration + delay, animation);
+	}
+
+	/**
+	 * Adds an animation that starts at the same time as the last added animation.
+	 * @param animation The animation.
+	 * @return this timeline.
+	 * @throws IllegalArgumentException if the animation has an infinite number of laps.
+	 */
+	public synchronized Timeline with(Animation animation) {
+		return at(lastStart, animation);
+	}
+
+	private synchronized Timeline add(long offset, Animation animation, Easing easing, Keyframes keyframes) {
+		if(offset < 0)
+			throw new IllegalArgumentException("Negative offset: "+offset);
+		long length = keyframes != null ? keyframes.getDuration() : animation.getDuration();
+		if(length < 0)
+			throw new IllegalArgumentException("An animation with an infinite number of laps cannot be added to a timeline");
+		entries.add(new Entry(animation, offset, length, easing, keyframes));
+		playedEntries = null;
+		lastStart = offset;
+		if(offset + length > duration) {
+			duration = offset + length;
+			setLapDuration(duration);
+		}
+		return this;
+	}
+
+	/**
+	 * @return the time at which the last entry of this timeline ends, in milliseconds.
+	 */
+	public synchronized long getTimelineDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return the animations of this timeline, in the order they were added.
+	 */
+	public synchronized Animation[] getAnimations() {
+		Animation[] animations = new Animation[entries.size()];
+		for(int i = 0; i < animations.length; i++)
+			animations[i] = entries.get(i).animation;
+		return animations;
+	}
+
+	private synchronized Entry[] getPlayedEntries() {
+		if(playedEntries == null)
+			playedEntries = entries.toArray(new Entry[entries.size()]);
+		return playedEntries;
+	}
+
+	void started() {
+		Entry[] played = getPlayedEntries();
+		for(int i = 0; i < played.length; i++)
+			played[i].reset();
+		lap = -1;
+	}
+
+	/**
+	 * A timeline whose laps last 0 milliseconds (e.g. an empty timeline or a timeline whose entries
+	 * last 0 milliseconds) is started, played at its end and stopped at once.
+	 */
+	void startWithoutDuration() {
+		startInTimeline();
+		step(1);
+		fireStepEvent();
+		stop();
+	}
+
+	void stopped() {
+		Entry[] played = getPlayedEntries();
+		for(int i = 0; i < played.length; i++) {
+			if(played[i].active) {
+				played[i].active = false;
+				played[i].animation.stopInTimeline();
+			}
+		}
+	}
+
+	/**
+	 * Makes the steps of the entries of this timeline at a given value of the parameter t.
+	 * @param t The parameter of this timeline.
+	 */
+	public void step(double t) {
+		Entry[] played = getPlayedEntries();
+		long currentLap = getCurrentLap();
+		boolean reversed = currentLap%2 == 1;
+		ArrayList<Canvas> canvases = new ArrayList<Canvas>();
+		ArrayList<Animation> stepped = new ArrayList<Animation>();
+		try {
+			if(currentLap != lap) {
+				if(lap != -1) {
+					// ends the entries of the previous lap that have not been played until their end
+					for(int i = 0; i < played.length; i++)
+						play(played[i], played[i].start + played[i].length, canvases, stepped);
+					for(int i = 0; i < played.length; i++)
+						played[i].reset();
+				}
+				lap = currentLap;
+			}
+			long time = Math.round((reversed ? 1 - t : t)*duration);
+			for(int i = 0; i < played.length; i++)
+				play(played[i], time, canvases, stepped);
+		} finally {
+			for(int i = 0; i < canvases.size(); i++)
+				canvases.get(i).endUpdate();
+		}
+		for(int i = 0; i < stepped.size(); i++)
+			stepped.get(i).fireStepEvent();
+	}
+
+	private void play(Entry entry, long time, ArrayList<Canvas> canvases, ArrayList<Animation> stepped) {
+		if(entry.done || time < entry.start) return;
+		Animation animation = entry.animation;
+		if(!entry.active) {
+			entry.active = true;
+			animation.startInTimeline();
+		}
+		boolean ends = time >= entry.start + entry.length;
+		double value = entry.valueAt(ends ? entry.length : time - entry.start);
+		// steps are made within a batch of changes of the canvas of the animated element
+		CElement animated = animation.getAnimated();
+		Canvas canvas = animated == null ? null : animated.getCanvas();
+		if(canvas != null) {
+			if(!canvases.contains(canvas)) {
+				canvas.beginUpdate();
+				canvases.add(canvas);
+			}
+			canvas.willChange(animated);
+		}
+		animation.step(value);
+		if(!stepped.contains(animation)) stepped.add(animation);
+		if(ends) {
+			entry.active = false;
+			entry.done = true;
+			animation.stopInTimeline();
+		}
+	}
+
+	private static class Entry {
+
+		Animation animation;
+		long start;
+		long length;
+		Easing easing;
+		Keyframes keyframes;
+		boolean active = false;
+		boolean done = false;
+
+		Entry(Animation animation, long start, long length, Easing easing, Keyframes keyframes) {
+			this.animation = animation;
+			this.start = start;
+			this.length = length;
+			this.easing = easing;
+			this.keyframes = keyframes;
+		}
+
+		void reset() {
+			active = false;
+			done = false;
+		}
+
+		double valueAt(long time) {
+			if(keyframes != null) return keyframes.valueAt(time);
+			double value = animation.valueAt(time);
+			return easing == null ? animation.getEasing().ease(value) : easing.ease(value);
+		}
+
+	}
+
+}
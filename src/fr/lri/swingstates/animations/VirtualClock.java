@@ -0,0 +1,126 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.animations;
+
+/**
+ * A clock whose time only changes when it is advanced by the program,
+ * so that animations can be played deterministically and as fast as possible, without a display,
+ * e.g. in tests and benchmarks.
+ *
+ * <p>Frames are played in the thread that advances the clock, at the time they have been scheduled for.
+ * Since animation events are processed by state machines in the event dispatch thread, the clock should
+ * be advanced in this thread for machines to receive them synchronously.</p>
+ *
+ * <pre>
+ * VirtualClock clock = new VirtualClock();
+ * Animation.setClock(clock);
+ * shape.animate(new AnimationTranslateTo(100, 100).setLapDuration(500));
+ * clock.advance(500); // plays the 13 frames of the animation at 25 frames per second
+ * </pre>
+ *
+ * @see fr.lri.swingstates.animations.Animation#setClock(AnimationClock)
+ * @author SwingStates contributors
+ */
+public class VirtualClock implements AnimationClock {
+
+	private long time;
+	private Runnable frame = null;
+	private long frameTime = 0;
+
+	/**
+	 * Builds a virtual clock whose time starts at 0.
+	 */
+	public VirtualClock() {
+		this(0);
+	}
+
+	/**
+	 * Builds a virtual clock whose time starts at a given value.
+	 * @param start The initial time in milliseconds.
+	 */
+	public VirtualClock(long start) {
+		time = start;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long currentTime() {
+		return time;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void schedule(Runnable f, long delay) {
+		frame = f;
+		frameTime = time + Math.max(0, delay);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void cancel() {
+		frame = null;
+	}
+
+	/**
+	 * Advances the time of this clock and plays the frames that are scheduled before the new time.
+	 * @param millis The duration in milliseconds.
+	 * @return the number of played frames.
+	 */
+	public int advance(long millis) {
+		long target;
+		synchronized(this) {
+			target = time + Math.max(0, millis);
+		}
+		int nbFrames = 0;
+		while(playNextFrame(target)) nbFrames++;
+		synchronized(this) {
+			time = Math.max(time, target);
+		}
+		return nbFrames;
+	}
+
+	/**
+	 * Advances the time of this clock to the next scheduled frame and plays it.
+	 * @return false if no frame is scheduled.
+	 */
+	public boolean nextFrame() {
+		return playNextFrame(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Plays the next scheduled frames, advancing the time of this clock to the time of each frame.
+	 * @param nbFrames The number of frames.
+	 * @return the number of played frames, that is smaller than <code>nbFrames</code> if no frame is scheduled anymore.
+	 */
+	public int nextFrames(int nbFrames) {
+		int played = 0;
+		while(played < nbFrames && playNextFrame(Long.MAX_VALUE)) played++;
+		return played;
+	}
+
+	/**
+	 * @return true if a frame is scheduled.
+	 */
+	public synchronized boolean hasScheduledFrame() {
+		return frame != null;
+	}
+
+	private boolean playNextFrame(long limit) {
+		Runnable toPlay;
+		synchronized(this) {
+			if(frame == null || frameTime > limit) return false;
+			time = Math.max(time, frameTime);
+			toPlay = frame;
+			frame = null;
+		}
+		toPlay.run();
+		return true;
+	}
+
+}
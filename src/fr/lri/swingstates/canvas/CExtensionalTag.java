@@ -20,6 +20,8 @@ public abstract class CExtensionalTag extends CTag {
 
 	
 	
+	private int version = 0;
+	
 	/**
 	 * Builds a CExtensionalTag that can tag shapes.
 	 */
@@ -70,6 +72,7 @@ public abstract class CExtensionalTag extends CTag {
 		if(getCanvas() != null && s.getCanvas() != getCanvas()) return this;
 		if(collection.contains(s)) return this;
 		collection.add(s);
+		version++;
 		doAdded(s);
 		return this;
 	}
@@ -94,9 +97,18 @@ public abstract class CExtensionalTag extends CTag {
 	 * @see CExtensionalTag#removed(CShape)
 	 */
 	public final CExtensionalTag removeFrom(CShape s){
-		if(collection.remove(s))
+		if(collection.remove(s)) {
+			version++;
 			removed(s);
+		}
 		return this;
 	}
 
+	/**
+	 * @return a number that changes each time a shape is added to or removed from this tag.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
 }
@@ -98,6 +98,7 @@ public class CShape implements Cloneable, CElement
 	protected static final CShape DEFAULT_CLIP = new CRectangle();
 	private static final Shape PLACEBO_SHAPE = new Line2D.Double();
 	private static final BasicStroke DEFAULT_STROKE = new BasicStroke();
+	private static final double SQRT_2 = Math.sqrt(2);
 
 	protected Shape shape;
 	protected boolean pickable = true;
@@ -136,6 +137,9 @@ public class CShape implements Cloneable, CElement
 	// ghost
 	protected CShape ghost = null;
 
+	// the last batch of changes of the canvas in which this shape has been declared
+	long declaredUpdate = -1;
+
 	private Rectangle pickingRectangle = new Rectangle();
 
 	// ____________________________________ CONSTRUCTORS
@@ -267,10 +271,48 @@ public class CShape implements Cloneable, CElement
 	// mark the shape to be repainted
 	protected void repaint() {
 		if (canvas != null) {
-			canvas.repaint();
+			canvas.shapeChanged(this);
 		}
 	}
 
+	/**
+	 * Adds the area of the canvas in which this shape paints itself,
+	 * i.e. its bounding box enlarged by the width of its outline, to a rectangle.
+	 * 
+	 * @param area
+	 *            The rectangle <code>{minX, minY, maxX, maxY}</code>.
+	 * @return false if the area cannot be bounded (if the stroke of this shape is not a <code>BasicStroke</code>).
+	 */
+	boolean addPaintBounds(double[] area) {
+		Rectangle2D bounds = getShape().getBounds2D();
+		AffineTransform xform = getAbsTransform();
+		double m00 = xform.getScaleX(), m01 = xform.getShearX(), m02 = xform.getTranslateX();
+		double m10 = xform.getShearY(), m11 = xform.getScaleY(), m12 = xform.getTranslateY();
+		// one pixel for antialiasing and one for rounding
+		double margin = 2;
+		if (outlined) {
+			if (!(stroke instanceof BasicStroke))
+				return false;
+			BasicStroke basicStroke = (BasicStroke) stroke;
+			double width = basicStroke.getLineWidth() / 2;
+			if (basicStroke.getLineJoin() == BasicStroke.JOIN_MITER)
+				width *= Math.max(basicStroke.getMiterLimit(), SQRT_2);
+			else if (basicStroke.getEndCap() == BasicStroke.CAP_SQUARE)
+				width *= SQRT_2;
+			margin += width * Math.max(Math.abs(m00) + Math.abs(m01), Math.abs(m10) + Math.abs(m11));
+		}
+		// the bounds of the transformed bounding box
+		double cx = m00 * bounds.getCenterX() + m01 * bounds.getCenterY() + m02;
+		double cy = m10 * bounds.getCenterX() + m11 * bounds.getCenterY() + m12;
+		double hw = (Math.abs(m00) * bounds.getWidth() + Math.abs(m01) * bounds.getHeight()) / 2 + margin;
+		double hh = (Math.abs(m10) * bounds.getWidth() + Math.abs(m11) * bounds.getHeight()) / 2 + margin;
+		area[0] = Math.min(area[0], cx - hw);
+		area[1] = Math.min(area[1], cy - hh);
+		area[2] = Math.max(area[2], cx + hw);
+		area[3] = Math.max(area[3], cy + hh);
+		return true;
+	}
+
 	// ____________________________________ DRAWING
 	// _________________________________________________
 
@@ -919,6 +961,15 @@ public class CShape implements Cloneable, CElement
 		computeAbsTransform();
 	}
 
+	// sets the translation and the scale of this shape without repainting it nor updating its children
+	void setTransformValues(double x, double y, double scaleX, double scaleY) {
+		tx = x;
+		ty = y;
+		sx = scaleX;
+		sy = scaleY;
+		computeTransform();
+	}
+
 	// set absShape to null in order to signal that both transform and absShape
 	// are invalid
 	void changedTransform() {
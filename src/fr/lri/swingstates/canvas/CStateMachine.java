@@ -23,6 +23,7 @@ import fr.lri.swingstates.events.VirtualCElementEvent;
 import fr.lri.swingstates.events.VirtualCanvasEvent;
 import fr.lri.swingstates.events.VirtualEvent;
 import fr.lri.swingstates.sm.BasicInputStateMachine;
+import fr.lri.swingstates.sm.StateMachine;
 import fr.lri.swingstates.sm.Transition;
 import fr.lri.swingstates.sm.transitions.Event;
 import fr.lri.swingstates.sm.transitions.EventOnPosition;
@@ -69,6 +70,9 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 
 	LinkedList<CElement> controlledObjects = new LinkedList<CElement>();
 
+	// the canvases whose list of machines contains this machine
+	LinkedList<Canvas> canvases = new LinkedList<Canvas>();
+
 	/**
 	 * The key string of events that triggered <code>AnimationStopped</code> transitions.
 	 */
@@ -155,6 +159,7 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			ce.getCanvas().attachListeners();
 			controlledObjects.add(ce);
 			ce.getCanvas().registerMachine(this);
+			routingChanged();
 		}
 		if (reset)
 			reset();
@@ -207,8 +212,9 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 	 * 
 	 * @param cl
 	 *            The class of transitions
-	 * @return true if the current state of this state machine contains a
-	 *         transition of class <code>cl</code>.
+	 * @return true if the current state of this state machine, or the current
+	 *         state of one of its active regions, contains a transition of class
+	 *         <code>cl</code>.
 	 */
 	boolean hasTransitionOfClass(Class<?> cl) {
 		for (Iterator<Transition> i = currentState.getTransitions().iterator(); i.hasNext();) {
@@ -216,6 +222,41 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			if (cl.isAssignableFrom(nextTrans.getClass()))
 				return true;
 		}
+		for (Iterator<StateMachine> i = getRegions().iterator(); i.hasNext();) {
+			StateMachine region = i.next();
+			if (region instanceof CStateMachine && region.isActive() && region.getCurrentState() != null
+					&& ((CStateMachine) region).hasTransitionOfClass(cl))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tests whether or not this state machine is waiting for changes of
+	 * <code>element</code>.
+	 * 
+	 * @param element
+	 *            The element.
+	 * @return true if the current state of this state machine, or the current
+	 *         state of one of its active regions, contains a
+	 *         <code>CElementEvent</code> transition on an element that contains
+	 *         <code>element</code>.
+	 */
+	boolean isTracking(CElement element) {
+		for (Iterator<Transition> i = currentState.getTransitions().iterator(); i.hasNext();) {
+			Transition nextTrans = i.next();
+			if (nextTrans instanceof CElementEvent) {
+				CElement elem = ((CElementEvent) nextTrans).getCElement();
+				if (Canvas.contains(elem, element))
+					return true;
+			}
+		}
+		for (Iterator<StateMachine> i = getRegions().iterator(); i.hasNext();) {
+			StateMachine region = i.next();
+			if (region instanceof CStateMachine && region.isActive() && region.getCurrentState() != null
+					&& ((CStateMachine) region).isTracking(element))
+				return true;
+		}
 		return false;
 	}
 
@@ -232,11 +273,29 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		if (controlledObjects.size() == 0) {
 			ce.getCanvas().detachListeners();
 		}
+		routingChanged();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Updates the index of the machines that can react to events of the canvases to which this machine is attached.
+	 */
+	protected void routingChanged() {
+		super.routingChanged();
+		if (canvases == null)
+			return;
+		synchronized(canvases) {
+			for (Iterator<Canvas> i = canvases.iterator(); i.hasNext();)
+				i.next().machineChanged(this);
+		}
 	}
 
 	boolean isSourceControlled(CShape source) {
 		if (!isActive())
 			return false;
+		// a region that is not attached to any element controls the elements of its parent
+		if (controlledObjects.size() == 0 && getParentMachine() instanceof CStateMachine)
+			return ((CStateMachine) getParentMachine()).isSourceControlled(source);
 		boolean isSourceControlled = false;
 		if (source != null) {
 			for (ListIterator<CElement> i = controlledObjects.listIterator(); i.hasNext();) {
@@ -1083,6 +1142,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			return false;
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return true;
+		}
+
 		/**
 		 * @return the event that has just triggered this transition.
 		 */
@@ -1393,6 +1466,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_RELEASED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_RELEASED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1484,6 +1571,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_PRESSED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_PRESSED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1544,6 +1645,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_MOVED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_MOVED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1641,6 +1756,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_WHEEL);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_WHEEL;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1693,6 +1822,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			return false;
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_EXITED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
+
 	}
 
 	/**
@@ -1744,6 +1887,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			}
 			return false;
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_ENTERED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1836,6 +1993,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_DRAGGED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_DRAGGED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -1930,6 +2101,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_CLICKED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_CLICKED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -2869,6 +3054,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matchesIgnoreButtons(eventObject, MouseEvent.MOUSE_ENTERED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_ENTERED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -3043,6 +3242,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matchesIgnoreButtons(eventObject, MouseEvent.MOUSE_EXITED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_EXITED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -3308,6 +3521,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			return matches(eventObject, MouseEvent.MOUSE_PRESSED);
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_PRESSED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
+
 	}
 
 	/**
@@ -3573,6 +3800,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			return matches(eventObject, MouseEvent.MOUSE_RELEASED);
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_RELEASED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
+
 	}
 
 	/**
@@ -3840,6 +4081,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_CLICKED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_CLICKED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -4102,6 +4357,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 			return matches(eventObject, MouseEvent.MOUSE_DRAGGED);
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_DRAGGED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
+
 	}
 
 	/**
@@ -4280,6 +4549,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_MOVED);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_MOVED;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 	/**
@@ -4495,6 +4778,20 @@ public abstract class CStateMachine extends BasicInputStateMachine {
 		public boolean matches(EventObject eventObject) {
 			return matches(eventObject, MouseEvent.MOUSE_WHEEL);
 		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageEventID(int id) {
+			return id == MouseEvent.MOUSE_WHEEL;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public boolean manageVirtualEvent(String name) {
+			return false;
+		}
 	}
 
 }
@@ -32,7 +32,10 @@ import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EventObject;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -42,7 +45,6 @@ import javax.swing.JComponent;
 import javax.swing.JPanel;
 
 import fr.lri.swingstates.animations.Animation;
-import fr.lri.swingstates.canvas.CStateMachine.CElementEvent;
 import fr.lri.swingstates.canvas.CStateMachine.ClickOnShape;
 import fr.lri.swingstates.canvas.CStateMachine.ClickOnTag;
 import fr.lri.swingstates.canvas.CStateMachine.DragOnShape;
@@ -59,12 +61,13 @@ import fr.lri.swingstates.canvas.CStateMachine.ReleaseOnShape;
 import fr.lri.swingstates.canvas.CStateMachine.ReleaseOnTag;
 import fr.lri.swingstates.canvas.CStateMachine.WheelOnShape;
 import fr.lri.swingstates.canvas.CStateMachine.WheelOnTag;
+import fr.lri.swingstates.debug.CanvasMetrics;
+import fr.lri.swingstates.debug.EventRecorder;
 import fr.lri.swingstates.events.Picker;
 import fr.lri.swingstates.events.PickerCEvent;
 import fr.lri.swingstates.events.PickerEvent;
 import fr.lri.swingstates.events.VirtualCanvasEvent;
 import fr.lri.swingstates.events.VirtualEvent;
-import fr.lri.swingstates.sm.Transition;
 import fr.lri.swingstates.sm.transitions.Enter;
 
 /**
@@ -156,6 +159,70 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 */
 	private Vector<CShape> pickedShapes = new Vector<CShape>();
 
+	private CanvasMetrics metrics = null;
+
+	private EventRecorder recorder = null;
+
+	private MachineIndex machineIndex = null;
+
+	private static long nbUpdates = 0;
+	private int updateDepth = 0;
+	private long currentUpdate = -1;
+	private double[] damagedArea = new double[4];
+	private boolean fullyDamaged = false;
+
+	// The list of machines keeps the machines and the index informed of its modifications.
+	// Every modification of an AbstractList, including the ones made through its iterators,
+	// goes through add(int, E), set and remove(int).
+	private class MachineList extends AbstractList<CStateMachine> {
+		private ArrayList<CStateMachine> machines = new ArrayList<CStateMachine>();
+
+		public CStateMachine get(int index) {
+			return machines.get(index);
+		}
+
+		public int size() {
+			return machines.size();
+		}
+
+		public void add(int index, CStateMachine machine) {
+			machines.add(index, machine);
+			modCount++;
+			registered(machine);
+		}
+
+		public CStateMachine set(int index, CStateMachine machine) {
+			CStateMachine previous = machines.set(index, machine);
+			registered(machine);
+			unregistered(previous);
+			return previous;
+		}
+
+		public CStateMachine remove(int index) {
+			CStateMachine machine = machines.remove(index);
+			modCount++;
+			unregistered(machine);
+			return machine;
+		}
+
+		private void registered(CStateMachine machine) {
+			synchronized(machine.canvases) {
+				if (!machine.canvases.contains(Canvas.this))
+					machine.canvases.add(Canvas.this);
+			}
+			machinesChanged();
+		}
+
+		private void unregistered(CStateMachine machine) {
+			if (!contains(machine)) {
+				synchronized(machine.canvases) {
+					machine.canvases.remove(Canvas.this);
+				}
+			}
+			machinesChanged();
+		}
+	}
+
 	/**
 	 * @return all the tags registered on this <code>Canvas</code>.
 	 */
@@ -169,7 +236,8 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	public Canvas() {
 		super();
 		displayOrder = Collections.synchronizedList(new LinkedList<CShape>());
-		stateMachines = Collections.synchronizedList(new LinkedList<CStateMachine>());
+		stateMachines = Collections.synchronizedList(new MachineList());
+		machineIndex = new MachineIndex(stateMachines);
 		allCanvasTags = Collections.synchronizedList(new LinkedList<CTag>());
 		addPicker(masterPicker);
 		setBackground(Color.WHITE);
@@ -272,10 +340,322 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 		listenerAttached = false;
 	}
 
+	/**
+	 * Starts a batch of changes of the shapes displayed in this canvas.
+	 * Until the matching call to <code>endUpdate</code>, changing a shape does not repaint
+	 * this canvas: the areas covered by the changed shapes are accumulated and their union
+	 * is repainted once by <code>endUpdate</code>.
+	 * The shapes that are about to change must be declared by calling <code>willChange</code>
+	 * so that the areas they cover before their changes are repainted too.
+	 * Changing a shape that has not been declared repaints the whole canvas.
+	 * Batches can be nested, only the outermost one repaints this canvas.
+	 * 
+	 * <pre>
+	 * canvas.beginUpdate();
+	 * try {
+	 * 	canvas.willChange(tag);
+	 * 	tag.translateBy(10, 0);
+	 * } finally {
+	 * 	canvas.endUpdate();
+	 * }
+	 * </pre>
+	 * 
+	 * @see Canvas#willChange(CElement)
+	 * @see Canvas#endUpdate()
+	 */
+	public synchronized void beginUpdate() {
+		if (updateDepth++ > 0)
+			return;
+		synchronized(Canvas.class) {
+			currentUpdate = nbUpdates++;
+		}
+		clearDamagedArea();
+		fullyDamaged = false;
+	}
+
+	/**
+	 * Declares that the shapes contained in a <code>CElement</code> are about to change
+	 * during the current batch of changes. Does nothing if no batch has been started.
+	 * 
+	 * @param element
+	 *            The <code>CShape</code>, <code>CTag</code> or <code>Canvas</code>.
+	 * @see Canvas#beginUpdate()
+	 */
+	public void willChange(CElement element) {
+		if (!isUpdating())
+			return;
+		if (element instanceof CShape) {
+			willChange((CShape) element);
+		} else if (element instanceof CTag) {
+			CTag tag = (CTag) element;
+			for (tag.reset(); tag.hasNext();)
+				willChange(tag.nextShape());
+		} else if (element == this) {
+			synchronized(this) {
+				fullyDamaged = true;
+			}
+		}
+	}
+
+	private void willChange(CShape shape) {
+		if (shape.getCanvas() != this)
+			return;
+		synchronized(this) {
+			if (updateDepth == 0 || shape.declaredUpdate == currentUpdate)
+				return;
+			shape.declaredUpdate = currentUpdate;
+			damaged(shape);
+		}
+		// the children of a shape move with it
+		if (shape.children != null) {
+			CShape[] children = shape.children.toArray(new CShape[shape.children.size()]);
+			for (int i = 0; i < children.length; i++)
+				willChange(children[i]);
+		}
+	}
+
+	/**
+	 * Declares that shapes of this canvas are about to change during the current batch of changes.
+	 * 
+	 * @param shapes
+	 *            The shapes.
+	 */
+	void willChange(CShape[] shapes) {
+		boolean hierarchy = false;
+		synchronized(this) {
+			if (updateDepth == 0)
+				return;
+			for (int i = 0; i < shapes.length; i++) {
+				CShape shape = shapes[i];
+				if (shape.getCanvas() != this || shape.declaredUpdate == currentUpdate)
+					continue;
+				shape.declaredUpdate = currentUpdate;
+				damaged(shape);
+				hierarchy |= shape.children != null;
+			}
+		}
+		if (hierarchy)
+			for (int i = 0; i < shapes.length; i++)
+				if (shapes[i].getCanvas() == this && shapes[i].children != null) {
+					CShape[] children = shapes[i].children.toArray(new CShape[shapes[i].children.size()]);
+					willChange(children);
+				}
+	}
+
+	/**
+	 * Ends a batch of changes and repaints the union of the areas covered by the changed shapes.
+	 * 
+	 * @see Canvas#beginUpdate()
+	 */
+	public void endUpdate() {
+		Rectangle area = null;
+		boolean all;
+		synchronized(this) {
+			if (updateDepth == 0 || --updateDepth > 0)
+				return;
+			all = fullyDamaged;
+			if (!all && damagedArea[0] <= damagedArea[2]) {
+				int minX = (int) Math.floor(damagedArea[0]);
+				int minY = (int) Math.floor(damagedArea[1]);
+				area = new Rectangle(minX, minY, (int) Math.ceil(damagedArea[2]) - minX, (int) Math.ceil(damagedArea[3]) - minY);
+			}
+			clearDamagedArea();
+			fullyDamaged = false;
+		}
+		if (all)
+			repaint();
+		else if (area != null)
+			repaint(area);
+	}
+
+	/**
+	 * @return true if a batch of changes has been started and not ended.
+	 * @see Canvas#beginUpdate()
+	 */
+	public synchronized boolean isUpdating() {
+		return updateDepth > 0;
+	}
+
+	/**
+	 * Called each time a shape of this canvas changes.
+	 * Repaints this canvas unless a batch of changes is running.
+	 * 
+	 * @param shape
+	 *            The shape.
+	 */
+	void shapeChanged(CShape shape) {
+		synchronized(this) {
+			if (updateDepth > 0) {
+				if (fullyDamaged)
+					return;
+				if (shape.declaredUpdate == currentUpdate)
+					damaged(shape);
+				else
+					fullyDamaged = true;
+				return;
+			}
+		}
+		repaint();
+	}
+
+	/**
+	 * Called when several shapes of this canvas have changed.
+	 * 
+	 * @param shapes
+	 *            The shapes.
+	 * @see Canvas#shapeChanged(CShape)
+	 */
+	void shapesChanged(CShape[] shapes) {
+		synchronized(this) {
+			if (updateDepth > 0) {
+				for (int i = 0; i < shapes.length && !fullyDamaged; i++) {
+					CShape shape = shapes[i];
+					if (shape.getCanvas() != this)
+						continue;
+					if (shape.declaredUpdate == currentUpdate)
+						damaged(shape);
+					else
+						fullyDamaged = true;
+				}
+				return;
+			}
+		}
+		repaint();
+	}
+
+	private void damaged(CShape shape) {
+		if (!shape.addPaintBounds(damagedArea))
+			fullyDamaged = true;
+	}
+
+	private void clearDamagedArea() {
+		damagedArea[0] = Double.POSITIVE_INFINITY;
+		damagedArea[1] = Double.POSITIVE_INFINITY;
+		damagedArea[2] = Double.NEGATIVE_INFINITY;
+		damagedArea[3] = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Enables or disables the collection of metrics by this canvas:
+	 * time spent to paint each frame and time spent in picking operations.
+	 * Metrics are disabled by default. Disabling metrics unregisters them from JMX if they were registered.
+	 * Note that the metrics of the state machines attached to this canvas are enabled separately.
+	 * @param enabled True to collect metrics, false otherwise.
+	 * @see fr.lri.swingstates.sm.StateMachine#setMetricsEnabled(boolean)
+	 */
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		if(enabled) {
+			if(metrics == null)
+				metrics = new CanvasMetrics(this);
+		} else {
+			if(metrics != null)
+				metrics.unregisterMBean();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * @return true if this canvas collects metrics, false otherwise.
+	 */
+	public boolean isMetricsEnabled() {
+		return metrics != null;
+	}
+
+	/**
+	 * Returns the metrics collected by this canvas.
+	 * @return the metrics of this canvas, null if metrics are disabled.
+	 * @see Canvas#setMetricsEnabled(boolean)
+	 */
+	public CanvasMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the recorder that logs the events received by this canvas.
+	 * Use <code>EventRecorder.recordFrom</code> rather than calling this method directly.
+	 * @param recorder The recorder, null to stop recording.
+	 * @see fr.lri.swingstates.debug.EventRecorder#recordFrom(Canvas)
+	 */
+	public void setEventRecorder(EventRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @return the recorder that logs the events received by this canvas, null if none.
+	 */
+	public EventRecorder getEventRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void processMouseEvent(MouseEvent e) {
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, e);
+		try {
+			super.processMouseEvent(e);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void processMouseMotionEvent(MouseEvent e) {
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, e);
+		try {
+			super.processMouseMotionEvent(e);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void processMouseWheelEvent(MouseWheelEvent e) {
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, e);
+		try {
+			super.processMouseWheelEvent(e);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void processKeyEvent(KeyEvent e) {
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, e);
+		try {
+			super.processKeyEvent(e);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public void paintComponent(Graphics g) {
+		EventRecorder r = recorder;
+		if(r != null) r.frameStarted(this);
+		CanvasMetrics m = metrics;
+		if(m != null) {
+			long start = System.nanoTime();
+			paintCanvas(g);
+			m.painted(System.nanoTime() - start);
+		} else {
+			paintCanvas(g);
+		}
+	}
+
+	private void paintCanvas(Graphics g) {
 		super.paintComponent(g);
 		Graphics2D g2d = (Graphics2D) g;
 		transparency = (AlphaComposite) g2d.getComposite();
@@ -317,26 +697,67 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *            The point on which this event occurred.
 	 */
 	public void processEvent(String event, Point2D pt) {
-		boolean isConsumed = false;
 		CShape picked = pick(pt);
 		VirtualEvent toProcess = new VirtualCanvasEvent(event, picked, pt);
 		toProcess.setSource(this);
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, toProcess);
+		try {
+			dispatchToMachines(toProcess);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
+
+	/**
+	 * Processes an event in the machines attached to this canvas that can react to it,
+	 * in their priority order, until one of them consumes it.
+	 * If the machines change while the event is processed, the next machines are
+	 * looked up again.
+	 */
+	private void dispatchToMachines(EventObject e) {
+		boolean isConsumed = false;
 		CStateMachine machine;
 		synchronized(stateMachines) {
-			Iterator<CStateMachine> i = stateMachines.iterator(); // Must be in synchronized block
-			while (i.hasNext()) {
+			int version = machineIndex.getVersion();
+			CStateMachine[] machines = machineIndex.getMachines(e);
+			int i = 0;
+			while (i < machines.length) {
 				if (isConsumed)
 					break;
-				machine = i.next();
+				machine = machines[i++];
 				machine.consumes(false);
-				if (machine.getCurrentState() == null)
+				if (!machine.isActive() || machine.getCurrentState() == null)
 					continue;
-				machine.processEvent(toProcess);
+				machine.processEvent(e);
 				isConsumed = machine.hasConsumed();
+				if (machineIndex.getVersion() != version) {
+					version = machineIndex.getVersion();
+					machines = machineIndex.getMachinesAfter(e, machine);
+					i = 0;
+				}
 			}
 		}
 	}
 
+	/**
+	 * Clears the index of the machines that can react to events.
+	 * Called each time the list of the machines attached to this canvas changes.
+	 */
+	void machinesChanged() {
+		if (machineIndex != null)
+			machineIndex.invalidate();
+	}
+
+	/**
+	 * Updates the index of the machines that can react to events.
+	 * Called each time a machine attached to this canvas changes.
+	 */
+	void machineChanged(CStateMachine machine) {
+		if (machineIndex != null)
+			machineIndex.machineChanged(machine);
+	}
+
 	/**
 	 * Processes an event to all the state machines that monitor this canvas, a
 	 * shape in this canvas or a tag attached to shapes in this canvas.
@@ -349,27 +770,19 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *            The virtual event to process.
 	 */
 	public void processEvent(VirtualEvent virtualEvent) {
-		boolean isConsumed = false;
 		virtualEvent.setSource(this);
-		if(virtualEvent instanceof VirtualCanvasEvent) {
-			if (hasTransitionOfClass(EventOnShape.class)
-					|| hasTransitionOfClass(EventOnTag.class)) {
-				((VirtualCanvasEvent)virtualEvent).setShape(pick(((VirtualCanvasEvent)virtualEvent).getPoint()));
-			}
-		}
-		CStateMachine machine;
-		synchronized(stateMachines) {
-			Iterator<CStateMachine> i = stateMachines.iterator(); 
-			while (i.hasNext()) {
-				if (isConsumed)
-					break;
-				machine = i.next();
-				machine.consumes(false);
-				if (machine.getCurrentState() == null)
-					continue;
-				machine.processEvent(virtualEvent);
-				isConsumed = machine.hasConsumed();
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, virtualEvent);
+		try {
+			if(virtualEvent instanceof VirtualCanvasEvent) {
+				if (hasTransitionOfClass(EventOnShape.class)
+						|| hasTransitionOfClass(EventOnTag.class)) {
+					((VirtualCanvasEvent)virtualEvent).setShape(pick(((VirtualCanvasEvent)virtualEvent).getPoint()));
+				}
 			}
+			dispatchToMachines(virtualEvent);
+		} finally {
+			if(r != null) r.eventEnded();
 		}
 	}
 
@@ -418,34 +831,28 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *         otherwise.
 	 */
 	public boolean isTracking(CElement element) {
-		CStateMachine machine;
-		synchronized(stateMachines) {
-			Iterator<CStateMachine> i = stateMachines.iterator(); 
-			while (i.hasNext()) {
-				machine = i.next();
-				machine.consumes(false);
-				if (machine.isActive()) {
-					// because animation can fire events before the machine is initialized
-					if (machine.getCurrentState() == null) {
-						machine.initStatesAndTransitions();
-						continue;
-					}
-					for (Iterator<Transition> j = machine.getCurrentState()
-							.getTransitions().iterator(); j.hasNext();) {
-						Transition nextTrans = j.next();
-						if (nextTrans instanceof CElementEvent) {
-							CElement elem = ((CElementEvent) nextTrans)
-							.getCElement();
-							if (contains(elem, element))
-								return true;
-						}
-					}
-				}
-			}
+		CStateMachine[] machines = machineIndex.getTrackingMachines();
+		for (int i = 0; i < machines.length; i++) {
+			if (machines[i].isActive() && machines[i].isTracking(element))
+				return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Tests if one of the attached state machines can react to an event in its current state
+	 * (see <code>StateMachine.canReactTo</code>). For example, animations use it to send their
+	 * events only when a machine is waiting for them.
+	 *
+	 * @param event
+	 *            The event.
+	 * @return true if at least one machine can react to <code>event</code>,
+	 *         false otherwise.
+	 */
+	public boolean canReactTo(EventObject event) {
+		return machineIndex.getMachines(event).length > 0;
+	}
+
 	/**
 	 * Processes an event in all machines attached to this canvas.
 	 * 
@@ -453,21 +860,7 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *            The event to process
 	 */
 	private void processEvent(InputEvent e) {
-		CStateMachine machine;
-		boolean isConsumed = false;
-		synchronized(stateMachines) {
-			Iterator<CStateMachine> i = stateMachines.iterator(); // Must be in synchronized block
-			while (i.hasNext()) {
-				machine = i.next();
-				if (isConsumed)
-					break;
-				machine.consumes(false);
-				if (machine.isActive()) {
-					machine.processEvent(e);
-					isConsumed = machine.hasConsumed();
-				}
-			}
-		}
+		dispatchToMachines(e);
 	}
 
 	/**
@@ -570,20 +963,7 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *         contained a transition of class <code>cl</code>.
 	 */
 	protected boolean hasTransitionOfClass(Class cl) {
-		CStateMachine machine;
-		synchronized(stateMachines) {
-			Iterator<CStateMachine> i = stateMachines.iterator(); // Must be in synchronized block
-			while (i.hasNext()) {
-				machine = i.next();
-				if (machine.isActive()) {
-					if (machine.getCurrentState() == null)
-						continue;
-					if (machine.hasTransitionOfClass(cl))
-						return true;
-				}
-			}
-		}
-		return false;
+		return machineIndex.hasTransitionOfClass(cl);
 	}
 
 	// events incoming from java.awt (MouseEvent)
@@ -761,6 +1141,17 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 *         if there is no shape at this postion.
 	 */
 	public CShape pick(Point2D p) {
+		CanvasMetrics m = metrics;
+		if(m != null) {
+			long start = System.nanoTime();
+			CShape picked = pickTopmost(p);
+			m.picked(System.nanoTime() - start);
+			return picked;
+		}
+		return pickTopmost(p);
+	}
+
+	private CShape pickTopmost(Point2D p) {
 		CShape picked = null;
 		synchronized(displayOrder) {
 			for (Iterator<CShape> i = displayOrder.iterator(); i.hasNext();) {
@@ -781,6 +1172,17 @@ MouseMotionListener, MouseWheelListener, KeyListener, CElement {
 	 * @return the list of shapes, with the topmost shape first.
 	 */
 	public LinkedList<CShape> pickAll(Point2D p) {
+		CanvasMetrics m = metrics;
+		if(m != null) {
+			long start = System.nanoTime();
+			LinkedList<CShape> picked = pickAllShapes(p);
+			m.picked(System.nanoTime() - start);
+			return picked;
+		}
+		return pickAllShapes(p);
+	}
+
+	private LinkedList<CShape> pickAllShapes(Point2D p) {
 		LinkedList<CShape> pickedShapes = new LinkedList<CShape>();
 		synchronized(displayOrder) {
 			for (Iterator<CShape> i = displayOrder.iterator(); i.hasNext();) {
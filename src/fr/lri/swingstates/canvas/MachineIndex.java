@@ -0,0 +1,302 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.canvas;
+
+import java.awt.event.InputEvent;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import fr.lri.swingstates.canvas.CStateMachine.CElementEvent;
+import fr.lri.swingstates.events.VirtualEvent;
+
+/**
+ * The index of the state machines attached to a canvas that can react to a kind of event.
+ *
+ * <p>For each kind of event (type of input event, name of virtual event or class of other events),
+ * the index stores the active machines, in their priority order, whose current state (or one of their regions)
+ * has a transition that can be triggered by this kind of event (see <code>StateMachine.canReactTo</code>).
+ * It also caches the answers of <code>Canvas.hasTransitionOfClass</code> and the machines
+ * that track changes of elements.</p>
+ *
+ * <p>The index is filled lazily. When one of the machines changes state, is suspended, resumed or reset,
+ * only the entries of this machine are updated. The index is cleared when a machine is attached, detached or reordered.</p>
+ *
+ * @author SwingStates contributors
+ */
+class MachineIndex {
+
+	private static final CStateMachine[] NO_MACHINE = new CStateMachine[0];
+
+	/**
+	 * The machines that satisfy a condition (they can react to an event or they have a transition of a class),
+	 * with their positions in the priority order. The arrays are replaced, never modified, when a machine changes,
+	 * so that they can be returned to callers.
+	 */
+	private static final class Entry {
+
+		final Object condition;
+		volatile CStateMachine[] machines;
+		volatile int[] positions;
+
+		Entry(Object condition, CStateMachine[] machines, int[] positions) {
+			this.condition = condition;
+			this.machines = machines;
+			this.positions = positions;
+		}
+
+		void update(CStateMachine machine, int position) {
+			boolean accepted = accepts(machine, condition);
+			int index = indexOf(positions, position);
+			if (index >= 0 && !accepted) {
+				CStateMachine[] m = new CStateMachine[machines.length - 1];
+				int[] p = new int[positions.length - 1];
+				System.arraycopy(machines, 0, m, 0, index);
+				System.arraycopy(machines, index + 1, m, index, m.length - index);
+				System.arraycopy(positions, 0, p, 0, index);
+				System.arraycopy(positions, index + 1, p, index, p.length - index);
+				machines = m;
+				positions = p;
+			} else if (index < 0 && accepted) {
+				index = -index - 1;
+				CStateMachine[] m = new CStateMachine[machines.length + 1];
+				int[] p = new int[positions.length + 1];
+				System.arraycopy(machines, 0, m, 0, index);
+				System.arraycopy(machines, index, m, index + 1, machines.length - index);
+				System.arraycopy(positions, 0, p, 0, index);
+				System.arraycopy(positions, index, p, index + 1, positions.length - index);
+				m[index] = machine;
+				p[index] = position;
+				machines = m;
+				positions = p;
+			}
+		}
+
+	}
+
+	private List<CStateMachine> stateMachines;
+	private int version = 0;
+	private HashMap<CStateMachine, Integer> positions = null;
+	private HashMap<Object, Entry> machinesByKind = new HashMap<Object, Entry>();
+	private HashMap<Class<?>, Entry> transitionClasses = new HashMap<Class<?>, Entry>();
+	private Entry trackingMachines = null;
+
+	/**
+	 * Builds the index of a list of machines.
+	 * @param stateMachines The machines in their priority order.
+	 */
+	MachineIndex(List<CStateMachine> stateMachines) {
+		this.stateMachines = stateMachines;
+	}
+
+	/**
+	 * Clears this index. Called when the list of machines changes.
+	 */
+	synchronized void invalidate() {
+		version++;
+		positions = null;
+		machinesByKind.clear();
+		transitionClasses.clear();
+		trackingMachines = null;
+	}
+
+	/**
+	 * Updates the entries of one machine. Called when the kinds of events this machine can react to may have changed.
+	 * @param machine The machine.
+	 */
+	synchronized void machineChanged(CStateMachine machine) {
+		version++;
+		if (positions == null)
+			return;
+		Integer position = positions.get(machine);
+		if (position == null)
+			return;
+		// testing a machine can initialize it, which calls this method again
+		Entry[] byKind = machinesByKind.values().toArray(new Entry[machinesByKind.size()]);
+		for (int i = 0; i < byKind.length; i++)
+			byKind[i].update(machine, position.intValue());
+		Entry[] byClass = transitionClasses.values().toArray(new Entry[transitionClasses.size()]);
+		for (int i = 0; i < byClass.length; i++)
+			byClass[i].update(machine, position.intValue());
+		if (trackingMachines != null)
+			trackingMachines.update(machine, position.intValue());
+	}
+
+	/**
+	 * @return the number of times this index has changed.
+	 */
+	synchronized int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the machines that can react to an event.
+	 * @param event The event.
+	 * @return the machines that can react to <code>event</code> in their priority order.
+	 */
+	CStateMachine[] getMachines(EventObject event) {
+		return getEntry(event).machines;
+	}
+
+	/**
+	 * Returns the machines that can react to an event and that have a lower priority than a given machine.
+	 * @param event The event.
+	 * @param machine The machine.
+	 * @return the machines that can react to <code>event</code> and follow <code>machine</code>
+	 * in the priority order.
+	 */
+	CStateMachine[] getMachinesAfter(EventObject event, CStateMachine machine) {
+		Entry entry = getEntry(event);
+		CStateMachine[] machines;
+		int[] machinePositions;
+		Integer position;
+		synchronized(this) {
+			machines = entry.machines;
+			machinePositions = entry.positions;
+			position = positions == null ? null : positions.get(machine);
+		}
+		if (position == null)
+			return machines;
+		int first = indexOf(machinePositions, position.intValue());
+		first = first >= 0 ? first + 1 : -first - 1;
+		CStateMachine[] after = new CStateMachine[machines.length - first];
+		System.arraycopy(machines, first, after, 0, after.length);
+		return after;
+	}
+
+	/**
+	 * Tests whether or not one of the machines has a transition of a given class in its current state.
+	 * @param cl The class of transitions.
+	 * @return true if there is at least one active machine whose current state contains a transition of class <code>cl</code>.
+	 */
+	boolean hasTransitionOfClass(Class<?> cl) {
+		Entry entry;
+		synchronized(this) {
+			entry = transitionClasses.get(cl);
+			if (entry != null)
+				return entry.machines.length > 0;
+		}
+		int v = getVersion();
+		entry = build(cl, false);
+		synchronized(this) {
+			if (v == version)
+				transitionClasses.put(cl, entry);
+		}
+		return entry.machines.length > 0;
+	}
+
+	/**
+	 * @return the active machines whose current state contains a <code>CElementEvent</code> transition.
+	 */
+	CStateMachine[] getTrackingMachines() {
+		synchronized(this) {
+			if (trackingMachines != null)
+				return trackingMachines.machines;
+		}
+		int v = getVersion();
+		Entry entry = build(CElementEvent.class, true);
+		synchronized(this) {
+			if (v == version)
+				trackingMachines = entry;
+		}
+		return entry.machines;
+	}
+
+	private Entry getEntry(EventObject event) {
+		Object kind = kindOf(event);
+		Entry entry;
+		synchronized(this) {
+			entry = machinesByKind.get(kind);
+			if (entry != null)
+				return entry;
+		}
+		int v = getVersion();
+		entry = build(event, false);
+		synchronized(this) {
+			// machines may have changed while the entry was built
+			if (v == version)
+				machinesByKind.put(kind, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Builds the entry of a condition, and the positions of the machines if they are not known.
+	 * @param condition An event or a class of transitions.
+	 * @param initMachines True to initialize the active machines that are not initialized yet.
+	 * @return the entry.
+	 */
+	private Entry build(Object condition, boolean initMachines) {
+		int v;
+		boolean needPositions;
+		synchronized(this) {
+			v = version;
+			needPositions = positions == null;
+		}
+		HashMap<CStateMachine, Integer> allPositions = needPositions ? new HashMap<CStateMachine, Integer>() : null;
+		ArrayList<CStateMachine> selected = new ArrayList<CStateMachine>();
+		ArrayList<Integer> selectedPositions = new ArrayList<Integer>();
+		synchronized(stateMachines) {
+			int p = 0;
+			for(Iterator<CStateMachine> i = stateMachines.iterator(); i.hasNext(); p++) {
+				CStateMachine machine = i.next();
+				if (needPositions)
+					allPositions.put(machine, Integer.valueOf(p));
+				// because animation can fire events before the machine is initialized
+				if (initMachines && machine.isActive() && machine.getCurrentState() == null) {
+					machine.initStatesAndTransitions();
+					continue;
+				}
+				if (accepts(machine, condition)) {
+					selected.add(machine);
+					selectedPositions.add(Integer.valueOf(p));
+				}
+			}
+		}
+		int[] machinePositions = new int[selectedPositions.size()];
+		for (int i = 0; i < machinePositions.length; i++)
+			machinePositions[i] = selectedPositions.get(i).intValue();
+		synchronized(this) {
+			if (needPositions && v == version)
+				positions = allPositions;
+		}
+		return new Entry(condition, selected.isEmpty() ? NO_MACHINE : selected.toArray(NO_MACHINE), machinePositions);
+	}
+
+	private static boolean accepts(CStateMachine machine, Object condition) {
+		if (condition instanceof EventObject)
+			return machine.canReactTo((EventObject) condition);
+		return machine.isActive() && machine.getCurrentState() != null && machine.hasTransitionOfClass((Class<?>) condition);
+	}
+
+	// Binary search of a position, returns (-(insertion point) - 1) if it is not found.
+	private static int indexOf(int[] positions, int position) {
+		int low = 0;
+		int high = positions.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (positions[middle] < position)
+				low = middle + 1;
+			else if (positions[middle] > position)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -low - 1;
+	}
+
+	private static Object kindOf(EventObject event) {
+		if(event instanceof InputEvent) return Integer.valueOf(((InputEvent)event).getID());
+		if(event instanceof VirtualEvent) {
+			String name = ((VirtualEvent)event).getNameEvent();
+			return name == null ? VirtualEvent.class : name;
+		}
+		return event.getClass();
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.canvas;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A set of shapes whose translations and scale factors are stored in primitive arrays,
+ * so that they can be changed in bulk, e.g. by an animation of a tag that contains thousands of shapes.
+ *
+ * <p>The arrays are filled with the current values of the shapes when the batch is built
+ * (or when <code>read</code> is called). They can then be modified directly and written back
+ * to the shapes by <code>applyTranslations</code>, <code>applyScales</code> or <code>apply</code>.
+ * Values are written within a batch of changes of the canvases of the shapes
+ * (see <code>Canvas.beginUpdate</code>), so each canvas is repainted once.
+ * When there are more than <code>getParallelThreshold()</code> shapes and none of them has a parent,
+ * the transformations of the shapes are computed in parallel on the available processors.</p>
+ *
+ * <pre>
+ * TransformBatch batch = new TransformBatch(shapes);
+ * double[] tx = batch.getTranslationsX();
+ * for(int i = 0; i &lt; tx.length; i++)
+ * 	tx[i] += 10;
+ * batch.applyTranslations();
+ * </pre>
+ *
+ * @author SwingStates contributors
+ */
+public class TransformBatch {
+
+	private static int parallelThreshold = 4096;
+	private static ExecutorService executor = null;
+	private static int nbThreads = Runtime.getRuntime().availableProcessors();
+
+	private CShape[] shapes;
+	private double[] tx, ty, sx, sy;
+
+	/**
+	 * Builds a batch for a set of shapes and reads their current translations and scale factors.
+	 * @param shapes The shapes.
+	 */
+	public TransformBatch(CShape[] shapes) {
+		this.shapes = shapes;
+		int nb = shapes.length;
+		tx = new double[nb];
+		ty = new double[nb];
+		sx = new double[nb];
+		sy = new double[nb];
+		read();
+	}
+
+	/**
+	 * Reads the current translations and scale factors of the shapes.
+	 */
+	public void read() {
+		for (int i = 0; i < shapes.length; i++) {
+			tx[i] = shapes[i].getTranslateX();
+			ty[i] = shapes[i].getTranslateY();
+			sx[i] = shapes[i].getScaleX();
+			sy[i] = shapes[i].getScaleY();
+		}
+	}
+
+	/**
+	 * @return the number of shapes of this batch.
+	 */
+	public int size() {
+		return shapes.length;
+	}
+
+	/**
+	 * @return the shapes of this batch.
+	 */
+	public CShape[] getShapes() {
+		return shapes;
+	}
+
+	/**
+	 * @return the translations of the shapes along the x-axis (see <code>CShape.getTranslateX()</code>).
+	 */
+	public double[] getTranslationsX() {
+		return tx;
+	}
+
+	/**
+	 * @return the translations of the shapes along the y-axis (see <code>CShape.getTranslateY()</code>).
+	 */
+	public double[] getTranslationsY() {
+		return ty;
+	}
+
+	/**
+	 * @return the scale factors of the shapes along the x-axis.
+	 */
+	public double[] getScalesX() {
+		return sx;
+	}
+
+	/**
+	 * @return the scale factors of the shapes along the y-axis.
+	 */
+	public double[] getScalesY() {
+		return sy;
+	}
+
+	/**
+	 * Writes the translations and the scale factors of this batch to the shapes.
+	 */
+	public void apply() {
+		apply(true, true);
+	}
+
+	/**
+	 * Writes the translations of this batch to the shapes. Their scale factors are left unchanged.
+	 */
+	public void applyTranslations() {
+		apply(true, false);
+	}
+
+	/**
+	 * Writes the scale factors of this batch to the shapes. Their translations are left unchanged.
+	 */
+	public void applyScales() {
+		apply(false, true);
+	}
+
+	private void apply(final boolean translations, final boolean scales) {
+		ArrayList<Canvas> canvases = new ArrayList<Canvas>();
+		boolean flat = true;
+		for (int i = 0; i < shapes.length; i++) {
+			Canvas canvas = shapes[i].getCanvas();
+			if (canvas != null && !canvases.contains(canvas))
+				canvases.add(canvas);
+			flat &= shapes[i].getParent() == null;
+		}
+		for (int i = 0; i < canvases.size(); i++) {
+			Canvas canvas = canvases.get(i);
+			canvas.beginUpdate();
+			canvas.willChange(shapes);
+		}
+		try {
+			if (flat && shapes.length >= parallelThreshold && nbThreads > 1) {
+				applyInParallel(translations, scales);
+			} else {
+				apply(translations, scales, 0, shapes.length);
+			}
+			for (int i = 0; i < shapes.length; i++) {
+				// the transformation of a child depends on the one of its parent
+				if (!flat || shapes[i].children != null)
+					shapes[i].changedTransform();
+			}
+			for (int i = 0; i < canvases.size(); i++)
+				canvases.get(i).shapesChanged(shapes);
+		} finally {
+			for (int i = 0; i < canvases.size(); i++)
+				canvases.get(i).endUpdate();
+		}
+	}
+
+	private void apply(boolean translations, boolean scales, int from, int to) {
+		for (int i = from; i < to; i++) {
+			CShape shape = shapes[i];
+			shape.setTransformValues(
+					translations ? tx[i] : shape.getTranslateX(),
+					translations ? ty[i] : shape.getTranslateY(),
+					scales ? sx[i] : shape.getScaleX(),
+					scales ? sy[i] : shape.getScaleY());
+		}
+	}
+
+	private void applyInParallel(final boolean translations, final boolean scales) {
+		int nbChunks = nbThreads;
+		int chunk = (shapes.length + nbChunks - 1) / nbChunks;
+		ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+		ExecutorService pool = getExecutor();
+		for (int start = chunk; start < shapes.length; start += chunk) {
+			final int from = start;
+			final int to = Math.min(shapes.length, start + chunk);
+			tasks.add(pool.submit(new Runnable() {
+				public void run() {
+					apply(translations, scales, from, to);
+				}
+			}));
+		}
+		// the first chunk is computed by the calling thread
+		apply(translations, scales, 0, Math.min(shapes.length, chunk));
+		for (int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(nbThreads - 1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SwingStates transform batch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Sets the number of shapes from which the transformations of the shapes of a batch
+	 * are computed in parallel. By default, this number is 4096.
+	 * @param nbShapes The number of shapes, <code>Integer.MAX_VALUE</code> to never compute transformations in parallel.
+	 */
+	public static void setParallelThreshold(int nbShapes) {
+		parallelThreshold = nbShapes;
+	}
+
+	/**
+	 * @return the number of shapes from which the transformations of the shapes of a batch
+	 * are computed in parallel.
+	 */
+	public static int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+}
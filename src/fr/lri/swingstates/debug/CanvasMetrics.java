@@ -0,0 +1,195 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.lri.swingstates.canvas.Canvas;
+
+/**
+ * <p>The statistics collected by a canvas whose metrics are enabled:
+ * the time spent to paint each frame and the time spent in picking operations.
+ * Picking times are also accumulated per frame, i.e. between two successive paints.</p>
+ *
+ * <p>Like <code>StateMachineMetrics</code>, a <code>CanvasMetrics</code> can be registered as a JMX MBean.</p>
+ *
+ * @see fr.lri.swingstates.canvas.Canvas#setMetricsEnabled(boolean)
+ * @author SwingStates contributors
+ */
+public class CanvasMetrics implements CanvasMetricsMBean {
+
+	private Canvas canvas;
+	private String canvasName;
+	private LatencyHistogram paintLatency = new LatencyHistogram();
+	private LatencyHistogram pickLatency = new LatencyHistogram();
+	private LatencyHistogram pickLatencyPerFrame = new LatencyHistogram();
+	private long pickTimeInFrame = 0;
+	private ObjectName objectName = null;
+
+	/**
+	 * Builds the metrics of a canvas.
+	 * @param canvas The canvas.
+	 */
+	public CanvasMetrics(Canvas canvas) {
+		this.canvas = canvas;
+		canvasName = canvas.getClass().getName()+"@"+Integer.toHexString(System.identityHashCode(canvas));
+	}
+
+	/**
+	 * For internal use. Records the time spent in a picking operation.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void picked(long nanos) {
+		pickLatency.record(nanos);
+		pickTimeInFrame += nanos;
+	}
+
+	/**
+	 * For internal use. Records the time spent to paint a frame.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void painted(long nanos) {
+		paintLatency.record(nanos);
+		pickLatencyPerFrame.record(pickTimeInFrame);
+		pickTimeInFrame = 0;
+	}
+
+	/**
+	 * @return a copy of these metrics that is not modified by further recordings.
+	 */
+	public synchronized CanvasMetrics snapshot() {
+		CanvasMetrics copy = new CanvasMetrics(canvas);
+		copy.paintLatency = paintLatency.snapshot();
+		copy.pickLatency = pickLatency.snapshot();
+		copy.pickLatencyPerFrame = pickLatencyPerFrame.snapshot();
+		copy.pickTimeInFrame = pickTimeInFrame;
+		return copy;
+	}
+
+	/**
+	 * @return the canvas.
+	 */
+	public Canvas getCanvas() {
+		return canvas;
+	}
+
+	/**
+	 * @return the histogram of the times spent to paint a frame.
+	 */
+	public synchronized LatencyHistogram getPaintLatency() {
+		return paintLatency;
+	}
+
+	/**
+	 * @return the histogram of the times spent in a picking operation.
+	 */
+	public synchronized LatencyHistogram getPickLatency() {
+		return pickLatency;
+	}
+
+	/**
+	 * @return the histogram of the times spent in picking operations between two painted frames.
+	 */
+	public synchronized LatencyHistogram getPickLatencyPerFrame() {
+		return pickLatencyPerFrame;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getFrameCount() {
+		return paintLatency.getCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized double getMeanPaintTime() {
+		return paintLatency.getMean();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getMaxPaintTime() {
+		return paintLatency.getMax();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getPickCount() {
+		return pickLatency.getCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized double getMeanPickTime() {
+		return pickLatency.getMean();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getMaxPickTime() {
+		return pickLatency.getMax();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized double getMeanPickTimePerFrame() {
+		return pickLatencyPerFrame.getMean();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void reset() {
+		paintLatency.reset();
+		pickLatency.reset();
+		pickLatencyPerFrame.reset();
+		pickTimeInFrame = 0;
+	}
+
+	/**
+	 * Registers these metrics in the platform MBean server
+	 * under the name <code>fr.lri.swingstates:type=Canvas,name=...</code>.
+	 * @return true if these metrics have been registered, false otherwise.
+	 */
+	public synchronized boolean registerMBean() {
+		if(objectName != null) return true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(StateMachineMetrics.JMX_DOMAIN+":type=Canvas,name="+ObjectName.quote(canvasName));
+			server.registerMBean(this, name);
+			objectName = name;
+			return true;
+		} catch (JMException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Unregisters these metrics from the platform MBean server. Does nothing if they are not registered.
+	 */
+	public synchronized void unregisterMBean() {
+		if(objectName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		objectName = null;
+	}
+
+}
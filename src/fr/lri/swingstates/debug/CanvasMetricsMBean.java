@@ -0,0 +1,56 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+/**
+ * The JMX management interface of the metrics of a canvas.
+ *
+ * @see fr.lri.swingstates.debug.CanvasMetrics
+ * @author SwingStates contributors
+ */
+public interface CanvasMetricsMBean {
+
+	/**
+	 * @return the number of painted frames.
+	 */
+	long getFrameCount();
+
+	/**
+	 * @return the mean time in nanoseconds spent to paint a frame.
+	 */
+	double getMeanPaintTime();
+
+	/**
+	 * @return the longest time in nanoseconds spent to paint a frame.
+	 */
+	long getMaxPaintTime();
+
+	/**
+	 * @return the number of picking operations.
+	 */
+	long getPickCount();
+
+	/**
+	 * @return the mean time in nanoseconds spent in a picking operation.
+	 */
+	double getMeanPickTime();
+
+	/**
+	 * @return the longest time in nanoseconds spent in a picking operation.
+	 */
+	long getMaxPickTime();
+
+	/**
+	 * @return the mean time in nanoseconds spent in picking operations between two painted frames.
+	 */
+	double getMeanPickTimePerFrame();
+
+	/**
+	 * Clears all the statistics.
+	 */
+	void reset();
+
+}
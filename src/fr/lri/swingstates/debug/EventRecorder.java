@@ -0,0 +1,307 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import fr.lri.swingstates.canvas.CStateMachine;
+import fr.lri.swingstates.canvas.Canvas;
+import fr.lri.swingstates.events.PickerEvent;
+import fr.lri.swingstates.events.VirtualCanvasEvent;
+import fr.lri.swingstates.events.VirtualEvent;
+import fr.lri.swingstates.events.VirtualTimerEvent;
+import fr.lri.swingstates.sm.BasicInputStateMachine;
+import fr.lri.swingstates.sm.TaggedTimer;
+
+/**
+ * <p>An <code>EventRecorder</code> logs the events received by canvases and
+ * <code>BasicInputStateMachine</code>s into a compact binary log that can be
+ * replayed later by an <code>EventReplayer</code>, for instance to measure
+ * dispatch times in headless regression tests.</p>
+ *
+ * <p>The recorded events are mouse, mouse wheel and keyboard events, the events of
+ * pickers, virtual events, time outs and painted frames. Only the events that reach a recorded canvas or
+ * machine from outside are logged: the events generated while another event is
+ * processed (e.g. the events that a canvas sends to its state machines or the
+ * virtual events sent by the action of a transition) are regenerated by the replay.
+ * Events sent by animations are not recorded.</p>
+ *
+ * <pre>
+ * EventRecorder recorder = new EventRecorder(new FileOutputStream("session.log"));
+ * recorder.recordFrom(canvas);
+ * ...
+ * recorder.close();
+ * </pre>
+ *
+ * <p>The log starts with the int <code>MAGIC</code> and the byte <code>VERSION</code>.
+ * Each record is made of a kind (one byte), the index of the target (the canvas or machine
+ * that received the event, in the order of calls to <code>recordFrom</code>), the time elapsed
+ * since the previous record in milliseconds and the fields of the event. Integers are
+ * written as variable length quantities. The name of a virtual event is preceded
+ * by a boolean that tells whether the event has a name.</p>
+ *
+ * @see fr.lri.swingstates.debug.EventReplayer
+ * @author SwingStates contributors
+ */
+public class EventRecorder {
+
+	/**
+	 * The first four bytes of an event log.
+	 */
+	public static final int MAGIC = 0x53534556;
+
+	/**
+	 * The version of the log format.
+	 */
+	public static final int VERSION = 2;
+
+	static final int MOUSE = 1;
+	static final int MOUSE_WHEEL = 2;
+	static final int KEY = 3;
+	static final int VIRTUAL = 4;
+	static final int VIRTUAL_AT = 5;
+	static final int TIME_OUT = 6;
+	static final int FRAME = 7;
+	static final int PICKER = 8;
+
+	private DataOutputStream out;
+	private ArrayList<Object> targets = new ArrayList<Object>();
+	private long lastTime = -1;
+	private int depth = 0;
+	private long nbRecords = 0;
+
+	/**
+	 * Builds a recorder that writes its log in a given stream.
+	 * @param output The stream.
+	 * @throws IOException if the header of the log cannot be written.
+	 */
+	public EventRecorder(OutputStream output) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(output));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	/**
+	 * Records the events received by a canvas and the time outs
+	 * of the state machines that are currently attached to it.
+	 * @param canvas The canvas.
+	 */
+	public synchronized void recordFrom(Canvas canvas) {
+		if(targets.contains(canvas)) return;
+		targets.add(canvas);
+		canvas.setEventRecorder(this);
+		List<CStateMachine> machines = canvas.getSMs();
+		synchronized(machines) {
+			for(Iterator<CStateMachine> i = machines.iterator(); i.hasNext(); )
+				recordFrom(i.next());
+		}
+	}
+
+	/**
+	 * Records the events received by a state machine.
+	 * @param machine The state machine.
+	 */
+	public synchronized void recordFrom(BasicInputStateMachine machine) {
+		if(targets.contains(machine)) return;
+		targets.add(machine);
+		machine.setEventRecorder(this);
+	}
+
+	/**
+	 * @return the number of records written in the log.
+	 */
+	public synchronized long getNbRecords() {
+		return nbRecords;
+	}
+
+	/**
+	 * Stops recording and closes the log.
+	 * @throws IOException if an error occurs while closing the stream.
+	 */
+	public synchronized void close() throws IOException {
+		for(Iterator<Object> i = targets.iterator(); i.hasNext(); ) {
+			Object next = i.next();
+			if(next instanceof Canvas) {
+				if(((Canvas)next).getEventRecorder() == this) ((Canvas)next).setEventRecorder(null);
+			} else {
+				if(((BasicInputStateMachine)next).getEventRecorder() == this) ((BasicInputStateMachine)next).setEventRecorder(null);
+			}
+		}
+		if(out != null) out.close();
+		out = null;
+	}
+
+	/**
+	 * For internal use. Called when a recorded canvas or machine starts processing an event.
+	 * The event is logged unless it is processed while another event is being processed.
+	 * @param target The canvas or machine.
+	 * @param event The event.
+	 */
+	public void eventStarted(Object target, EventObject event) {
+		if(SwingUtilities.isEventDispatchThread()) {
+			if(depth++ > 0) return;
+		}
+		record(target, event);
+	}
+
+	/**
+	 * For internal use. Called when a recorded canvas or machine has processed an event.
+	 */
+	public void eventEnded() {
+		if(SwingUtilities.isEventDispatchThread()) depth--;
+	}
+
+	/**
+	 * For internal use. Called when a recorded canvas starts painting a frame.
+	 * @param canvas The canvas.
+	 */
+	public void frameStarted(Canvas canvas) {
+		synchronized(this) {
+			int target = targets.indexOf(canvas);
+			if(target == -1 || out == null) return;
+			try {
+				writeHeader(FRAME, target, System.currentTimeMillis());
+			} catch (IOException e) {
+				failed(e);
+			}
+		}
+	}
+
+	private void record(Object target, EventObject event) {
+		long time = event instanceof InputEvent ? ((InputEvent)event).getWhen() : System.currentTimeMillis();
+		synchronized(this) {
+			int index = targets.indexOf(target);
+			if(index == -1 || out == null) return;
+			try {
+				if(event instanceof PickerEvent) {
+					// A PickerEvent is a MouseWheelEvent whose wheel fields are -1 when it is not a wheel event.
+					MouseWheelEvent e = (MouseWheelEvent)event;
+					writeHeader(PICKER, index, time);
+					writeMouseEvent(e);
+					writeSignedVarInt(out, e.getScrollType());
+					writeSignedVarInt(out, e.getScrollAmount());
+					writeSignedVarInt(out, e.getWheelRotation());
+				} else if(event instanceof MouseWheelEvent) {
+					MouseWheelEvent e = (MouseWheelEvent)event;
+					writeHeader(MOUSE_WHEEL, index, time);
+					writeMouseEvent(e);
+					writeVarInt(out, e.getScrollType());
+					writeVarInt(out, e.getScrollAmount());
+					writeSignedVarInt(out, e.getWheelRotation());
+				} else if(event instanceof MouseEvent) {
+					writeHeader(MOUSE, index, time);
+					writeMouseEvent((MouseEvent)event);
+				} else if(event instanceof KeyEvent) {
+					KeyEvent e = (KeyEvent)event;
+					writeHeader(KEY, index, time);
+					writeVarInt(out, e.getID() - KeyEvent.KEY_FIRST);
+					writeVarInt(out, e.getModifiersEx());
+					writeVarInt(out, e.getKeyCode());
+					writeVarInt(out, e.getKeyChar());
+					writeVarInt(out, e.getKeyLocation());
+				} else if(event instanceof VirtualTimerEvent) {
+					Object timer = ((VirtualTimerEvent)event).getTimer();
+					writeHeader(TIME_OUT, index, time);
+					if(timer instanceof TaggedTimer) {
+						out.writeBoolean(true);
+						out.writeUTF(((TaggedTimer)timer).getTagName());
+					} else {
+						out.writeBoolean(false);
+					}
+				} else if(event instanceof VirtualCanvasEvent) {
+					Point2D pt = ((VirtualCanvasEvent)event).getPoint();
+					writeHeader(VIRTUAL_AT, index, time);
+					writeName(((VirtualEvent)event).getNameEvent());
+					out.writeDouble(pt.getX());
+					out.writeDouble(pt.getY());
+				} else if(event.getClass() == VirtualEvent.class) {
+					writeHeader(VIRTUAL, index, time);
+					writeName(((VirtualEvent)event).getNameEvent());
+				}
+			} catch (IOException e) {
+				failed(e);
+			}
+		}
+	}
+
+	private void writeHeader(int kind, int target, long time) throws IOException {
+		long delta = lastTime == -1 ? 0 : Math.max(0, time - lastTime);
+		lastTime = Math.max(lastTime, time);
+		out.writeByte(kind);
+		writeVarInt(out, target);
+		writeVarInt(out, (int)Math.min(delta, Integer.MAX_VALUE));
+		nbRecords++;
+	}
+
+	private void writeMouseEvent(MouseEvent e) throws IOException {
+		writeVarInt(out, e.getID() - MouseEvent.MOUSE_FIRST);
+		writeVarInt(out, e.getModifiersEx());
+		writeSignedVarInt(out, e.getX());
+		writeSignedVarInt(out, e.getY());
+		writeVarInt(out, e.getClickCount());
+		writeVarInt(out, e.getButton());
+		out.writeBoolean(e.isPopupTrigger());
+	}
+
+	private void writeName(String name) throws IOException {
+		out.writeBoolean(name != null);
+		if(name != null) out.writeUTF(name);
+	}
+
+	private void failed(IOException e) {
+		e.printStackTrace();
+		System.err.println("Event recording stopped");
+		try {
+			out.close();
+		} catch (IOException ioe) { }
+		out = null;
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static void writeSignedVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0 && shift < 35);
+		return value;
+	}
+
+	static int readSignedVarInt(DataInputStream in) throws IOException {
+		int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+}
@@ -0,0 +1,323 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import fr.lri.swingstates.canvas.CStateMachine;
+import fr.lri.swingstates.canvas.Canvas;
+import fr.lri.swingstates.events.PickerEvent;
+import fr.lri.swingstates.events.VirtualCanvasEvent;
+import fr.lri.swingstates.events.VirtualEvent;
+import fr.lri.swingstates.sm.BasicInputStateMachine;
+
+/**
+ * <p>An <code>EventReplayer</code> feeds the events of a log written by an <code>EventRecorder</code>
+ * back to canvases and state machines and measures the time spent to process them.</p>
+ *
+ * <p>Targets must be declared in the same order as they were recorded.
+ * The replay does not wait between events: it uses a virtual clock that advances by
+ * the recorded delays, and that gives the time stamps of the replayed input events.
+ * The whole log is replayed in a single task of the event dispatch thread, so timers armed
+ * during the replay cannot expire: their time outs are replayed from the log.</p>
+ *
+ * <pre>
+ * EventReplayer replayer = new EventReplayer(new FileInputStream("session.log"));
+ * replayer.replayOn(canvas);
+ * ReplayReport report = replayer.replay();
+ * System.out.println(report);
+ * </pre>
+ *
+ * <p>When a frame painted by a canvas has been recorded, the canvas is painted
+ * into an offscreen image so that the replay also measures painting times
+ * (see <code>setPaintFrames</code>).</p>
+ *
+ * <p>The pickers of the recorded session are not part of the log. The events of a picker
+ * are replayed on a canvas as plain mouse events, i.e. the canvas picks with its own picker,
+ * and on a state machine as <code>PickerEvent</code>s that have no picker and whose source
+ * is the component given to <code>replayOn</code>.</p>
+ *
+ * @see fr.lri.swingstates.debug.EventRecorder
+ * @author SwingStates contributors
+ */
+public class EventReplayer {
+
+	private DataInputStream in;
+	private ArrayList<Object> targets = new ArrayList<Object>();
+	private ArrayList<Component> sources = new ArrayList<Component>();
+	private boolean paintFrames = true;
+	private BufferedImage offscreen = null;
+	private long virtualTime = 0;
+	private int version;
+
+	/**
+	 * Builds a replayer that reads a log in a given stream.
+	 * @param input The stream.
+	 * @throws IOException if the stream does not contain an event log.
+	 */
+	public EventReplayer(InputStream input) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(input));
+		if(in.readInt() != EventRecorder.MAGIC)
+			throw new IOException("Not an event log");
+		version = in.readUnsignedByte();
+		if(version > EventRecorder.VERSION)
+			throw new IOException("Unsupported event log version: "+version);
+	}
+
+	/**
+	 * Replays the recorded events of a canvas on a canvas
+	 * and the recorded time outs on the state machines that are attached to it.
+	 * @param canvas The canvas.
+	 * @return this replayer.
+	 */
+	public EventReplayer replayOn(Canvas canvas) {
+		targets.add(canvas);
+		sources.add(canvas);
+		List<CStateMachine> machines = canvas.getSMs();
+		synchronized(machines) {
+			for(Iterator<CStateMachine> i = machines.iterator(); i.hasNext(); )
+				replayOn(i.next(), canvas);
+		}
+		return this;
+	}
+
+	/**
+	 * Replays the recorded events of a state machine on a state machine.
+	 * @param machine The state machine.
+	 * @param source The component used as the source of replayed input events.
+	 * @return this replayer.
+	 */
+	public EventReplayer replayOn(BasicInputStateMachine machine, Component source) {
+		targets.add(machine);
+		sources.add(source);
+		return this;
+	}
+
+	/**
+	 * Sets whether recorded frames are painted during the replay. By default, they are painted.
+	 * @param paint True to paint frames, false otherwise.
+	 * @return this replayer.
+	 */
+	public EventReplayer setPaintFrames(boolean paint) {
+		paintFrames = paint;
+		return this;
+	}
+
+	/**
+	 * @return the current value of the virtual clock, i.e. the time in milliseconds
+	 * elapsed since the first recorded event.
+	 */
+	public long getVirtualTime() {
+		return virtualTime;
+	}
+
+	/**
+	 * Replays all the events of the log. If this method is not called from the event dispatch thread,
+	 * it waits until the replay, which is run in the event dispatch thread, ends.
+	 * @return the timings measured during the replay.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public ReplayReport replay() throws IOException {
+		if(SwingUtilities.isEventDispatchThread()) return doReplay();
+		final ReplayReport[] report = new ReplayReport[1];
+		final IOException[] error = new IOException[1];
+		try {
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+					try {
+						report[0] = doReplay();
+					} catch (IOException e) {
+						error[0] = e;
+					}
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (InvocationTargetException e) {
+			IOException ioe = new IOException("Replay failed");
+			ioe.initCause(e.getCause());
+			throw ioe;
+		}
+		if(error[0] != null) throw error[0];
+		return report[0];
+	}
+
+	private ReplayReport doReplay() throws IOException {
+		ReplayReport report = new ReplayReport();
+		int kind;
+		while((kind = in.read()) != -1) {
+			int index = EventRecorder.readVarInt(in);
+			virtualTime += EventRecorder.readVarInt(in);
+			Object target = index < targets.size() ? targets.get(index) : null;
+			Component source = index < sources.size() ? sources.get(index) : null;
+			String type = null;
+			Object event = null;
+			switch(kind) {
+			case EventRecorder.MOUSE:
+			case EventRecorder.MOUSE_WHEEL:
+			case EventRecorder.PICKER:
+				int id = EventRecorder.readVarInt(in) + MouseEvent.MOUSE_FIRST;
+				int modifiers = EventRecorder.readVarInt(in);
+				int x = EventRecorder.readSignedVarInt(in);
+				int y = EventRecorder.readSignedVarInt(in);
+				int clickCount = EventRecorder.readVarInt(in);
+				int button = EventRecorder.readVarInt(in);
+				boolean popup = in.readBoolean();
+				if(kind == EventRecorder.PICKER) {
+					int scrollType = EventRecorder.readSignedVarInt(in);
+					int scrollAmount = EventRecorder.readSignedVarInt(in);
+					int rotation = EventRecorder.readSignedVarInt(in);
+					if(source != null && !(target instanceof Canvas))
+						event = new PickerEvent<Component>(source, source, null, id, virtualTime, modifiers, x, y, clickCount, popup, scrollType, scrollAmount, rotation);
+					else if(source != null && id == MouseEvent.MOUSE_WHEEL)
+						event = new MouseWheelEvent(source, id, virtualTime, modifiers, x, y, clickCount, popup, scrollType, scrollAmount, rotation);
+					else if(source != null)
+						event = new MouseEvent(source, id, virtualTime, modifiers, x, y, clickCount, popup, button);
+				} else if(kind == EventRecorder.MOUSE_WHEEL) {
+					int scrollType = EventRecorder.readVarInt(in);
+					int scrollAmount = EventRecorder.readVarInt(in);
+					int rotation = EventRecorder.readSignedVarInt(in);
+					if(source != null)
+						event = new MouseWheelEvent(source, id, virtualTime, modifiers, x, y, clickCount, popup, scrollType, scrollAmount, rotation);
+				} else {
+					if(source != null)
+						event = new MouseEvent(source, id, virtualTime, modifiers, x, y, clickCount, popup, button);
+				}
+				type = mouseEventType(id);
+				break;
+			case EventRecorder.KEY:
+				int keyId = EventRecorder.readVarInt(in) + KeyEvent.KEY_FIRST;
+				int keyModifiers = EventRecorder.readVarInt(in);
+				int keyCode = EventRecorder.readVarInt(in);
+				char keyChar = (char)EventRecorder.readVarInt(in);
+				int keyLocation = EventRecorder.readVarInt(in);
+				if(source != null)
+					event = new KeyEvent(source, keyId, virtualTime, keyModifiers, keyCode, keyChar, keyLocation);
+				type = keyId == KeyEvent.KEY_PRESSED ? "KEY_PRESSED" : keyId == KeyEvent.KEY_RELEASED ? "KEY_RELEASED" : "KEY_TYPED";
+				break;
+			case EventRecorder.VIRTUAL:
+				String eventName = readName();
+				// A virtual event without a name needs another source than its name.
+				event = eventName != null ? new VirtualEvent(eventName) : new VirtualEvent(null, source != null ? (Object)source : this);
+				type = "VIRTUAL";
+				break;
+			case EventRecorder.VIRTUAL_AT:
+				String name = readName();
+				event = new VirtualCanvasEvent(name, new Point2D.Double(in.readDouble(), in.readDouble()));
+				type = "VIRTUAL_AT";
+				break;
+			case EventRecorder.TIME_OUT:
+				event = in.readBoolean() ? in.readUTF() : null;
+				type = "TIME_OUT";
+				break;
+			case EventRecorder.FRAME:
+				long paintTime = -1;
+				if(paintFrames && target instanceof Canvas) {
+					long start = System.nanoTime();
+					paint((Canvas)target);
+					paintTime = System.nanoTime() - start;
+				}
+				report.frameEnded(paintTime);
+				continue;
+			default:
+				throw new IOException("Corrupted event log: unknown record "+kind);
+			}
+			if(target == null) continue;
+			long start = System.nanoTime();
+			dispatch(target, kind, event);
+			report.dispatched(type, System.nanoTime() - start);
+		}
+		report.finished(virtualTime);
+		return report;
+	}
+
+	private String readName() throws IOException {
+		// Logs of version 1 have no flag before the name of a virtual event.
+		if(version >= 2 && !in.readBoolean()) return null;
+		return in.readUTF();
+	}
+
+	private void dispatch(Object target, int kind, Object event) {
+		if(kind == EventRecorder.TIME_OUT) {
+			((BasicInputStateMachine)target).processTimeOut((String)event);
+		} else if(target instanceof Canvas) {
+			Canvas canvas = (Canvas)target;
+			if(event instanceof InputEvent) dispatchInputEvent(canvas, (InputEvent)event);
+			else canvas.processEvent((VirtualEvent)event);
+		} else {
+			((BasicInputStateMachine)target).processEvent((EventObject)event);
+		}
+	}
+
+	private void dispatchInputEvent(Object listener, InputEvent e) {
+		switch(e.getID()) {
+		case MouseEvent.MOUSE_PRESSED: ((MouseListener)listener).mousePressed((MouseEvent)e); break;
+		case MouseEvent.MOUSE_RELEASED: ((MouseListener)listener).mouseReleased((MouseEvent)e); break;
+		case MouseEvent.MOUSE_CLICKED: ((MouseListener)listener).mouseClicked((MouseEvent)e); break;
+		case MouseEvent.MOUSE_ENTERED: ((MouseListener)listener).mouseEntered((MouseEvent)e); break;
+		case MouseEvent.MOUSE_EXITED: ((MouseListener)listener).mouseExited((MouseEvent)e); break;
+		case MouseEvent.MOUSE_MOVED: ((MouseMotionListener)listener).mouseMoved((MouseEvent)e); break;
+		case MouseEvent.MOUSE_DRAGGED: ((MouseMotionListener)listener).mouseDragged((MouseEvent)e); break;
+		case MouseEvent.MOUSE_WHEEL: ((MouseWheelListener)listener).mouseWheelMoved((MouseWheelEvent)e); break;
+		case KeyEvent.KEY_PRESSED: ((KeyListener)listener).keyPressed((KeyEvent)e); break;
+		case KeyEvent.KEY_RELEASED: ((KeyListener)listener).keyReleased((KeyEvent)e); break;
+		case KeyEvent.KEY_TYPED: ((KeyListener)listener).keyTyped((KeyEvent)e); break;
+		default: break;
+		}
+	}
+
+	private void paint(Canvas canvas) {
+		Dimension size = canvas.getSize();
+		if(size.width <= 0 || size.height <= 0) size = canvas.getPreferredSize();
+		if(size.width <= 0 || size.height <= 0) return;
+		if(offscreen == null || offscreen.getWidth() != size.width || offscreen.getHeight() != size.height)
+			offscreen = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = offscreen.createGraphics();
+		try {
+			canvas.paintComponent(g);
+		} finally {
+			g.dispose();
+		}
+	}
+
+	private static String mouseEventType(int id) {
+		switch(id) {
+		case MouseEvent.MOUSE_PRESSED: return "MOUSE_PRESSED";
+		case MouseEvent.MOUSE_RELEASED: return "MOUSE_RELEASED";
+		case MouseEvent.MOUSE_CLICKED: return "MOUSE_CLICKED";
+		case MouseEvent.MOUSE_ENTERED: return "MOUSE_ENTERED";
+		case MouseEvent.MOUSE_EXITED: return "MOUSE_EXITED";
+		case MouseEvent.MOUSE_MOVED: return "MOUSE_MOVED";
+		case MouseEvent.MOUSE_DRAGGED: return "MOUSE_DRAGGED";
+		case MouseEvent.MOUSE_WHEEL: return "MOUSE_WHEEL";
+		default: return "MOUSE";
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+/**
+ * A histogram of durations expressed in nanoseconds.
+ *
+ * <p>Durations are stored in buckets whose bounds are powers of two:
+ * bucket <code>i</code> counts the durations <code>d</code> such that
+ * <code>2^(i-1) &lt;= d &lt; 2^i</code> (bucket 0 counts null durations).
+ * Recording a duration is thus a constant time operation that does not allocate memory.</p>
+ *
+ * @author SwingStates contributors
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets of a histogram.
+	 */
+	public static final int NB_BUCKETS = 64;
+
+	private long[] buckets = new long[NB_BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	/**
+	 * Builds an empty histogram.
+	 */
+	public LatencyHistogram() { }
+
+	/**
+	 * Records a duration.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void record(long nanos) {
+		if(nanos < 0) nanos = 0;
+		buckets[NB_BUCKETS - Long.numberOfLeadingZeros(nanos)]++;
+		count++;
+		total += nanos;
+		if(nanos < min) min = nanos;
+		if(nanos > max) max = nanos;
+	}
+
+	/**
+	 * Clears this histogram.
+	 */
+	public synchronized void reset() {
+		for(int i = 0; i < NB_BUCKETS; i++)
+			buckets[i] = 0;
+		count = 0;
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * @return a copy of this histogram that is not modified by further recordings.
+	 */
+	public synchronized LatencyHistogram snapshot() {
+		LatencyHistogram copy = new LatencyHistogram();
+		System.arraycopy(buckets, 0, copy.buckets, 0, NB_BUCKETS);
+		copy.count = count;
+		copy.total = total;
+		copy.min = min;
+		copy.max = max;
+		return copy;
+	}
+
+	/**
+	 * @return the number of recorded durations.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of recorded durations in nanoseconds.
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the shortest recorded duration in nanoseconds, 0 if no duration has been recorded.
+	 */
+	public synchronized long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return the longest recorded duration in nanoseconds.
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean of recorded durations in nanoseconds, 0 if no duration has been recorded.
+	 */
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double)total / count;
+	}
+
+	/**
+	 * Returns an upper bound of a given percentile of recorded durations.
+	 * Since durations are stored in power of two buckets, the returned value is
+	 * the upper bound of the bucket containing the percentile (bounded by the longest recorded duration).
+	 * @param p The percentile (between 0 and 100).
+	 * @return the upper bound in nanoseconds of the percentile <code>p</code>.
+	 */
+	public synchronized long getPercentile(double p) {
+		if(count == 0) return 0;
+		long rank = (long)Math.ceil(count * p / 100.0);
+		if(rank < 1) rank = 1;
+		long seen = 0;
+		for(int i = 0; i < NB_BUCKETS; i++) {
+			seen += buckets[i];
+			if(seen >= rank)
+				return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+		}
+		return max;
+	}
+
+	/**
+	 * @return a copy of the counts of each bucket.
+	 */
+	public synchronized long[] getBuckets() {
+		long[] res = new long[NB_BUCKETS];
+		System.arraycopy(buckets, 0, res, 0, NB_BUCKETS);
+		return res;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized String toString() {
+		return "count="+count+" mean="+(long)getMean()+"ns p50="+getPercentile(50)+"ns p99="+getPercentile(99)+"ns max="+max+"ns";
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The timings measured while replaying an event log:
+ * the time spent to dispatch each type of event, and, for each frame
+ * (i.e. between two painted frames of the log), the time spent to dispatch
+ * the events of this frame and the time spent to paint it.
+ *
+ * @see fr.lri.swingstates.debug.EventReplayer#replay()
+ * @author SwingStates contributors
+ */
+public class ReplayReport {
+
+	private TreeMap<String, LatencyHistogram> dispatchLatencies = new TreeMap<String, LatencyHistogram>();
+	private LatencyHistogram frameDispatchLatency = new LatencyHistogram();
+	private LatencyHistogram paintLatency = new LatencyHistogram();
+	private long eventCount = 0;
+	private long frameCount = 0;
+	private long virtualDuration = 0;
+	private long dispatchTimeInFrame = 0;
+
+	ReplayReport() { }
+
+	void dispatched(String eventType, long nanos) {
+		LatencyHistogram h = dispatchLatencies.get(eventType);
+		if(h == null) {
+			h = new LatencyHistogram();
+			dispatchLatencies.put(eventType, h);
+		}
+		h.record(nanos);
+		eventCount++;
+		dispatchTimeInFrame += nanos;
+	}
+
+	void frameEnded(long paintNanos) {
+		frameDispatchLatency.record(dispatchTimeInFrame);
+		if(paintNanos >= 0) paintLatency.record(paintNanos);
+		dispatchTimeInFrame = 0;
+		frameCount++;
+	}
+
+	void finished(long virtualTime) {
+		virtualDuration = virtualTime;
+	}
+
+	/**
+	 * @return the number of replayed events (painted frames excluded).
+	 */
+	public long getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * @return the number of frames of the log.
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the duration of the recorded session in milliseconds.
+	 */
+	public long getVirtualDuration() {
+		return virtualDuration;
+	}
+
+	/**
+	 * Returns the time spent to dispatch the events of a given type.
+	 * @param eventType The type of events, e.g. <code>"MOUSE_PRESSED"</code>, <code>"KEY_TYPED"</code>,
+	 * <code>"VIRTUAL"</code> or <code>"TIME_OUT"</code>.
+	 * @return the histogram of dispatch times, null if no event of this type has been replayed.
+	 */
+	public LatencyHistogram getDispatchLatency(String eventType) {
+		return dispatchLatencies.get(eventType);
+	}
+
+	/**
+	 * @return the histograms of dispatch times indexed by the types of events.
+	 */
+	public Map<String, LatencyHistogram> getDispatchLatencies() {
+		return dispatchLatencies;
+	}
+
+	/**
+	 * @return the histogram of the times spent to dispatch the events of a frame.
+	 */
+	public LatencyHistogram getFrameDispatchLatency() {
+		return frameDispatchLatency;
+	}
+
+	/**
+	 * @return the histogram of the times spent to paint a frame.
+	 */
+	public LatencyHistogram getPaintLatency() {
+		return paintLatency;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		StringBuffer res = new StringBuffer();
+		res.append(eventCount+" events, "+frameCount+" frames, "+virtualDuration+"ms\n");
+		for(Iterator<Map.Entry<String, LatencyHistogram>> i = dispatchLatencies.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<String, LatencyHistogram> next = i.next();
+			res.append("  "+next.getKey()+": "+next.getValue()+"\n");
+		}
+		res.append("  dispatch per frame: "+frameDispatchLatency+"\n");
+		res.append("  paint: "+paintLatency);
+		return res.toString();
+	}
+
+}
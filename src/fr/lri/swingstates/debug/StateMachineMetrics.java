@@ -0,0 +1,269 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fr.lri.swingstates.sm.StateMachine;
+import fr.lri.swingstates.sm.Transition;
+
+/**
+ * <p>The statistics collected by a state machine whose metrics are enabled:
+ * the time spent to process each event, and, for each transition, the statistics
+ * stored in a <code>TransitionMetrics</code> object.</p>
+ *
+ * <p>Metrics are disabled by default. They are enabled with <code>setMetricsEnabled</code>:</p>
+ * <pre>
+ * machine.setMetricsEnabled(true);
+ * ...
+ * StateMachineMetrics m = machine.getMetrics().snapshot();
+ * System.out.println(m.getDispatchLatency());
+ * </pre>
+ *
+ * <p>A <code>StateMachineMetrics</code> can also be registered as a JMX MBean
+ * (method <code>registerMBean</code>) in order to be monitored by tools such as <code>jconsole</code>.</p>
+ *
+ * @see fr.lri.swingstates.sm.StateMachine#setMetricsEnabled(boolean)
+ * @author SwingStates contributors
+ */
+public class StateMachineMetrics implements StateMachineMetricsMBean {
+
+	/**
+	 * The JMX domain under which metrics are registered.
+	 */
+	public static final String JMX_DOMAIN = "fr.lri.swingstates";
+
+	private StateMachine sm;
+	private String machineName;
+	private LatencyHistogram dispatchLatency = new LatencyHistogram();
+	private long ignoredEventCount = 0;
+	private IdentityHashMap<Transition, TransitionMetrics> transitions = new IdentityHashMap<Transition, TransitionMetrics>();
+	private ObjectName objectName = null;
+
+	/**
+	 * Builds the metrics of a state machine.
+	 * @param stateMachine The state machine.
+	 */
+	public StateMachineMetrics(StateMachine stateMachine) {
+		sm = stateMachine;
+		machineName = stateMachine.getClass().getName()+"@"+Integer.toHexString(System.identityHashCode(stateMachine));
+	}
+
+	private TransitionMetrics getOrCreate(Transition t) {
+		TransitionMetrics tm = transitions.get(t);
+		if(tm == null) {
+			tm = new TransitionMetrics(t);
+			transitions.put(t, tm);
+		}
+		return tm;
+	}
+
+	/**
+	 * For internal use. Records the time spent in the <code>matches</code> method of a transition.
+	 * @param t The transition.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void matched(Transition t, long nanos) {
+		getOrCreate(t).matched(nanos);
+	}
+
+	/**
+	 * For internal use. Records the time spent in the <code>guard</code> method of a transition.
+	 * @param t The transition.
+	 * @param nanos The duration in nanoseconds.
+	 * @param accepted The value returned by the guard.
+	 */
+	public synchronized void guarded(Transition t, long nanos, boolean accepted) {
+		getOrCreate(t).guarded(nanos, accepted);
+	}
+
+	/**
+	 * For internal use. Records the time spent in the <code>action</code> method of a transition.
+	 * @param t The transition.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void acted(Transition t, long nanos) {
+		getOrCreate(t).acted(nanos);
+	}
+
+	/**
+	 * For internal use. Records the time spent to process an event.
+	 * @param fired The transition that has been fired, null if none.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public synchronized void dispatched(Transition fired, long nanos) {
+		dispatchLatency.record(nanos);
+		if(fired == null) ignoredEventCount++;
+	}
+
+	/**
+	 * @return a copy of these metrics that is not modified by further recordings.
+	 */
+	public synchronized StateMachineMetrics snapshot() {
+		StateMachineMetrics copy = new StateMachineMetrics(sm);
+		copy.dispatchLatency = dispatchLatency.snapshot();
+		copy.ignoredEventCount = ignoredEventCount;
+		for(Iterator<TransitionMetrics> i = transitions.values().iterator(); i.hasNext(); ) {
+			TransitionMetrics next = i.next();
+			copy.transitions.put(next.getTransition(), next.snapshot());
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the state machine.
+	 */
+	public StateMachine getStateMachine() {
+		return sm;
+	}
+
+	/**
+	 * @return the histogram of the times spent to process an event.
+	 */
+	public synchronized LatencyHistogram getDispatchLatency() {
+		return dispatchLatency;
+	}
+
+	/**
+	 * Returns the statistics of a given transition.
+	 * @param t The transition.
+	 * @return the statistics of <code>t</code>, null if no event has been tested against <code>t</code>.
+	 */
+	public synchronized TransitionMetrics getTransitionMetrics(Transition t) {
+		return transitions.get(t);
+	}
+
+	/**
+	 * @return the statistics of all the transitions that have been tested.
+	 */
+	public synchronized List<TransitionMetrics> getAllTransitionMetrics() {
+		return new ArrayList<TransitionMetrics>(transitions.values());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getMachineName() {
+		return machineName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getDispatchCount() {
+		return dispatchLatency.getCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getIgnoredEventCount() {
+		return ignoredEventCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getFiredTransitionCount() {
+		long res = 0;
+		for(Iterator<TransitionMetrics> i = transitions.values().iterator(); i.hasNext(); )
+			res += i.next().getFireCount();
+		return res;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getGuardRejectionCount() {
+		long res = 0;
+		for(Iterator<TransitionMetrics> i = transitions.values().iterator(); i.hasNext(); )
+			res += i.next().getGuardRejectionCount();
+		return res;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized double getMeanDispatchTime() {
+		return dispatchLatency.getMean();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getDispatchTime99thPercentile() {
+		return dispatchLatency.getPercentile(99);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized long getMaxDispatchTime() {
+		return dispatchLatency.getMax();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized String[] getTransitionStatistics() {
+		String[] res = new String[transitions.size()];
+		int cpt = 0;
+		for(Iterator<TransitionMetrics> i = transitions.values().iterator(); i.hasNext(); )
+			res[cpt++] = i.next().toString();
+		return res;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void reset() {
+		dispatchLatency.reset();
+		ignoredEventCount = 0;
+		for(Iterator<TransitionMetrics> i = transitions.values().iterator(); i.hasNext(); )
+			i.next().reset();
+	}
+
+	/**
+	 * Registers these metrics in the platform MBean server
+	 * under the name <code>fr.lri.swingstates:type=StateMachine,name=...</code>.
+	 * @return true if these metrics have been registered, false otherwise.
+	 */
+	public synchronized boolean registerMBean() {
+		if(objectName != null) return true;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(JMX_DOMAIN+":type=StateMachine,name="+ObjectName.quote(machineName));
+			server.registerMBean(this, name);
+			objectName = name;
+			return true;
+		} catch (JMException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Unregisters these metrics from the platform MBean server. Does nothing if they are not registered.
+	 */
+	public synchronized void unregisterMBean() {
+		if(objectName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+		objectName = null;
+	}
+
+}
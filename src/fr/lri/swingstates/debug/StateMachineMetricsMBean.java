@@ -0,0 +1,66 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+/**
+ * The JMX management interface of the metrics of a state machine.
+ *
+ * @see fr.lri.swingstates.debug.StateMachineMetrics
+ * @author SwingStates contributors
+ */
+public interface StateMachineMetricsMBean {
+
+	/**
+	 * @return the name of the state machine.
+	 */
+	String getMachineName();
+
+	/**
+	 * @return the number of events the state machine has processed.
+	 */
+	long getDispatchCount();
+
+	/**
+	 * @return the number of processed events that did not fire any transition.
+	 */
+	long getIgnoredEventCount();
+
+	/**
+	 * @return the number of fired transitions.
+	 */
+	long getFiredTransitionCount();
+
+	/**
+	 * @return the number of matching events rejected by a guard.
+	 */
+	long getGuardRejectionCount();
+
+	/**
+	 * @return the mean time in nanoseconds spent to process an event.
+	 */
+	double getMeanDispatchTime();
+
+	/**
+	 * @return an upper bound of the 99th percentile of the time in nanoseconds spent to process an event.
+	 */
+	long getDispatchTime99thPercentile();
+
+	/**
+	 * @return the longest time in nanoseconds spent to process an event.
+	 */
+	long getMaxDispatchTime();
+
+	/**
+	 * @return one line of statistics per transition that has been tested.
+	 */
+	String[] getTransitionStatistics();
+
+	/**
+	 * Clears all the statistics.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,141 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.debug;
+
+import fr.lri.swingstates.sm.Transition;
+
+/**
+ * The statistics collected for one transition of a state machine whose metrics are enabled:
+ * <ul>
+ * <li> the number of times the transition has been fired,
+ * <li> the number of times its guard has rejected a matching event,
+ * <li> the time spent in its <code>matches</code> and <code>guard</code> methods,
+ * <li> the durations of its <code>action</code> method.
+ * </ul>
+ *
+ * @see fr.lri.swingstates.debug.StateMachineMetrics
+ * @author SwingStates contributors
+ */
+public class TransitionMetrics {
+
+	private Transition transition;
+	private String name;
+	private long fireCount = 0;
+	private long guardRejectionCount = 0;
+	private long matchCount = 0;
+	private long matchTime = 0;
+	private long guardTime = 0;
+	private LatencyHistogram actionLatency = new LatencyHistogram();
+
+	/**
+	 * Builds the statistics of a transition.
+	 * @param t The transition.
+	 */
+	public TransitionMetrics(Transition t) {
+		transition = t;
+		name = (t.getInputState() == null ? "?" : t.getInputState().getName())+"."+t;
+	}
+
+	synchronized void matched(long nanos) {
+		matchCount++;
+		matchTime += nanos;
+	}
+
+	synchronized void guarded(long nanos, boolean accepted) {
+		guardTime += nanos;
+		if(!accepted) guardRejectionCount++;
+	}
+
+	synchronized void acted(long nanos) {
+		fireCount++;
+		actionLatency.record(nanos);
+	}
+
+	synchronized void reset() {
+		fireCount = 0;
+		guardRejectionCount = 0;
+		matchCount = 0;
+		matchTime = 0;
+		guardTime = 0;
+		actionLatency.reset();
+	}
+
+	synchronized TransitionMetrics snapshot() {
+		TransitionMetrics copy = new TransitionMetrics(transition);
+		copy.fireCount = fireCount;
+		copy.guardRejectionCount = guardRejectionCount;
+		copy.matchCount = matchCount;
+		copy.matchTime = matchTime;
+		copy.guardTime = guardTime;
+		copy.actionLatency = actionLatency.snapshot();
+		return copy;
+	}
+
+	/**
+	 * @return the transition.
+	 */
+	public Transition getTransition() {
+		return transition;
+	}
+
+	/**
+	 * @return the name of the transition prefixed by the name of its input state.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of times the transition has been fired.
+	 */
+	public synchronized long getFireCount() {
+		return fireCount;
+	}
+
+	/**
+	 * @return the number of times the guard of the transition returned false.
+	 */
+	public synchronized long getGuardRejectionCount() {
+		return guardRejectionCount;
+	}
+
+	/**
+	 * @return the number of events that have been tested against the transition.
+	 */
+	public synchronized long getMatchCount() {
+		return matchCount;
+	}
+
+	/**
+	 * @return the total time (in nanoseconds) spent in the <code>matches</code> method of the transition.
+	 */
+	public synchronized long getMatchTime() {
+		return matchTime;
+	}
+
+	/**
+	 * @return the total time (in nanoseconds) spent in the <code>guard</code> method of the transition.
+	 */
+	public synchronized long getGuardTime() {
+		return guardTime;
+	}
+
+	/**
+	 * @return the histogram of the durations of the <code>action</code> method of the transition.
+	 */
+	public synchronized LatencyHistogram getActionLatency() {
+		return actionLatency;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized String toString() {
+		return name+": fired="+fireCount+" rejected="+guardRejectionCount
+		+" matches="+matchCount+" ("+matchTime+"ns) guards="+guardTime+"ns action=["+actionLatency+"]";
+	}
+
+}
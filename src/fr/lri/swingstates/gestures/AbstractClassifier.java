@@ -9,15 +9,21 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
 
 import javax.imageio.ImageIO;
 import javax.swing.event.EventListenerList;
@@ -32,6 +38,12 @@ import fr.lri.swingstates.debug.StateMachineEventListener;
 /**
  * The base class for a gesture classifier.
  * 
+ * <p>Lists of gestures can be classified by several threads with <code>classifyAll</code> and
+ * <code>sortedClassesAll</code>, for example to evaluate a classifier on recorded gestures.
+ * The classifier must not be modified while gestures are being classified. To go on training a classifier
+ * while gestures are being classified, the gestures can be classified by an immutable snapshot
+ * of the classifier (see <code>freeze</code>).</p>
+ * 
  * @author Caroline Appert
  */
 public abstract class AbstractClassifier {
@@ -45,6 +57,68 @@ public abstract class AbstractClassifier {
 
 	protected abstract void write(DataOutputStream out) throws IOException;
 
+	/**
+	 * Writes the definition of this classifier in the format of <code>ClassifierFile</code>:
+	 * the classes (see <code>writeClasses</code>) followed by the data of this kind of classifier.
+	 * By default, classifiers do not support this format and are saved with <code>write(DataOutputStream)</code>.
+	 * 
+	 * @param out
+	 *            The content of the file.
+	 * @return True if the definition has been written, false if this classifier does not support this format.
+	 * @throws IOException if the definition cannot be written.
+	 */
+	protected boolean write(ClassifierFile.Output out) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Writes the part of a classifier file that every classifier can read: the number of classes and,
+	 * for each class, its name, its template and its examples.
+	 * 
+	 * @param out
+	 *            The content of the file.
+	 */
+	protected void writeClasses(ClassifierFile.Output out) {
+		out.writeInt(classesNames.size());
+		for (int i = 0; i < classesNames.size(); i++) {
+			out.writeString(classesNames.get(i));
+			Vector<Point2D> template = templates.get(i);
+			out.writeStroke(template == null ? null : PackedStroke.of(template));
+			Vector<Gesture> examples = getExamples(classesNames.get(i));
+			out.writeInt(examples.size());
+			for (int j = 0; j < examples.size(); j++)
+				out.writeGesture(examples.get(j));
+		}
+	}
+
+	/**
+	 * Reads the definition of this classifier in the format of <code>ClassifierFile</code>.
+	 * By default, the classes are read (see <code>writeClasses</code>) and their templates and examples
+	 * are added to this classifier, which computes its data from them. A classifier reads its own data instead
+	 * when the file has been written by the same kind of classifier.
+	 * 
+	 * @param in
+	 *            The content of the file.
+	 * @throws IOException if the file is corrupted.
+	 */
+	protected void read(ClassifierFile.Input in) throws IOException {
+		int nClasses = in.readInt();
+		for (int i = 0; i < nClasses; i++) {
+			String className = in.readString();
+			PackedStroke template = in.readStroke();
+			addClass(className);
+			if (template != null)
+				setTemplate(className, template.toPoints());
+			int nbExamples = in.readInt();
+			for (int j = 0; j < nbExamples; j++) {
+				Gesture example = in.readGesture();
+				// the examples that are only known by their normalized strokes cannot be added
+				if (example != null)
+					addExample(className, example);
+			}
+		}
+	}
+
 	private EventListenerList classifierListeners = null;
 
 	protected double[][] distances = new double[50][50];
@@ -251,20 +325,226 @@ public abstract class AbstractClassifier {
 	public abstract Vector<Score> sortedClasses(Gesture g);
 
 	/**
-	 * Saves the definition of this classifier in a file.
+	 * Computes a sorted list of classes without modifying this classifier, so that several gestures can be
+	 * handled at the same time once <code>prepareRecognition</code> has been called. By default, this method
+	 * calls <code>sortedClasses</code>, which must then not modify this classifier.
+	 * 
+	 * @param g
+	 *            The gesture
+	 * @return the result of <code>sortedClasses</code> for <code>g</code>.
+	 */
+	protected Vector<Score> rankClasses(Gesture g) {
+		return sortedClasses(g);
+	}
+
+	/**
+	 * Recognizes a gesture without modifying this classifier, so that several gestures can be recognized
+	 * at the same time once <code>prepareRecognition</code> has been called. By default, this method calls
+	 * <code>classify</code> in a block synchronized on this classifier and the distance is unknown.
+	 * 
+	 * @param g
+	 *            The gesture to recognize
+	 * @return A score whose name is the name of the recognized class (null if the gesture is not recognized) and whose
+	 *         value is the distance between the gesture and this class (<code>Double.NaN</code> if it is unknown).
+	 * @throws Exception if the gesture cannot be recognized.
+	 */
+	protected Score recognize(Gesture g) throws Exception {
+		synchronized (this) {
+			return new Score(classify(g), Double.NaN);
+		}
+	}
+
+	/**
+	 * Computes what this classifier builds the first time a gesture is classified, so that
+	 * <code>recognize</code> and <code>sortedClasses</code> can then be called by several threads.
+	 * This method is called by <code>classifyAll</code> and <code>sortedClassesAll</code> before they classify gestures.
+	 */
+	protected void prepareRecognition() {
+	}
+
+	/**
+	 * Recognizes a list of gestures with the threads of a pool shared by all the classifiers,
+	 * that has one daemon thread per available processor.
+	 * 
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @return The scores of the gestures, in the same order as <code>gestures</code> (see <code>recognize</code>).
+	 * @throws Exception if a gesture cannot be recognized.
+	 */
+	public ArrayList<Score> classifyAll(List<Gesture> gestures) throws Exception {
+		return classifyAll(gestures, null);
+	}
+
+	/**
+	 * Recognizes a list of gestures with the threads of an executor.
+	 * 
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @param executor
+	 *            The executor, null to use the shared pool.
+	 * @return The scores of the gestures, in the same order as <code>gestures</code> (see <code>recognize</code>).
+	 * @throws Exception if a gesture cannot be recognized.
+	 */
+	public ArrayList<Score> classifyAll(List<Gesture> gestures, ExecutorService executor) throws Exception {
+		return ParallelRecognition.runAll(gestures, recognitionTask(), executor);
+	}
+
+	/**
+	 * Recognizes the gestures of an iterator by batches: each batch is recognized with the threads of an executor
+	 * when the scores of the previous batch have all been read, so that the gestures do not need to be all in memory.
+	 * 
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @param batchSize
+	 *            The number of gestures of a batch
+	 * @param executor
+	 *            The executor, null to use the shared pool.
+	 * @return An iterator on the scores of the gestures, in the same order as <code>gestures</code>
+	 *         (see <code>recognize</code>). Its method <code>next</code> throws an
+	 *         <code>IllegalStateException</code> whose cause is the exception thrown by <code>recognize</code> if a
+	 *         gesture cannot be recognized.
+	 * @throws IllegalArgumentException
+	 *             if <code>batchSize</code> is not positive.
+	 */
+	public Iterator<Score> classifyAll(Iterator<Gesture> gestures, int batchSize, ExecutorService executor) {
+		return ParallelRecognition.runAll(gestures, batchSize, recognitionTask(), executor);
+	}
+
+	/**
+	 * Computes the sorted lists of classes for a list of gestures with the threads of a pool shared by all the classifiers,
+	 * that has one daemon thread per available processor.
+	 * 
+	 * @param gestures
+	 *            The gestures
+	 * @return The results of <code>sortedClasses</code> for the gestures, in the same order as <code>gestures</code>.
+	 * @throws Exception if the thread is interrupted or if <code>sortedClasses</code> fails.
+	 */
+	public ArrayList<Vector<Score>> sortedClassesAll(List<Gesture> gestures) throws Exception {
+		return sortedClassesAll(gestures, null);
+	}
+
+	/**
+	 * Computes the sorted lists of classes for a list of gestures with the threads of an executor.
+	 * 
+	 * @param gestures
+	 *            The gestures
+	 * @param executor
+	 *            The executor, null to use the shared pool.
+	 * @return The results of <code>sortedClasses</code> for the gestures, in the same order as <code>gestures</code>.
+	 * @throws Exception if the thread is interrupted or if <code>sortedClasses</code> fails.
+	 */
+	public ArrayList<Vector<Score>> sortedClassesAll(List<Gesture> gestures, ExecutorService executor) throws Exception {
+		return ParallelRecognition.runAll(gestures, new ParallelRecognition.Task<Vector<Score>>() {
+			public void prepare() {
+				prepareRecognition();
+			}
+
+			public Vector<Score> run(Gesture g) {
+				return rankClasses(g);
+			}
+		}, executor);
+	}
+
+	private ParallelRecognition.Task<Score> recognitionTask() {
+		return new ParallelRecognition.Task<Score>() {
+			public void prepare() {
+				prepareRecognition();
+			}
+
+			public Score run(Gesture g) throws Exception {
+				return recognize(g);
+			}
+		};
+	}
+
+	/**
+	 * Builds an immutable snapshot of this classifier: the snapshot recognizes gestures as this classifier
+	 * currently does and can be used by several threads, while this classifier goes on being modified.
+	 * 
+	 * @return the snapshot.
+	 * @throws UnsupportedOperationException if this classifier cannot build snapshots.
+	 * @throws IllegalStateException if this classifier cannot recognize gestures yet.
+	 */
+	public CompiledClassifier freeze() {
+		throw new UnsupportedOperationException(getClass().getName() + " cannot build snapshots");
+	}
+
+	/**
+	 * Builds a recognizer that recognizes gestures with this classifier while they are being drawn:
+	 * the points of a gesture are added one at a time and the class that best fits the points
+	 * added so far can be read at any moment.
+	 * 
+	 * @return the recognizer.
+	 * @throws UnsupportedOperationException if this classifier cannot recognize gestures incrementally.
+	 */
+	public IncrementalRecognizer newIncrementalRecognizer() {
+		throw new UnsupportedOperationException(getClass().getName() + " cannot recognize gestures incrementally");
+	}
+
+	/**
+	 * Saves the definition of this classifier in a file, in the format of <code>ClassifierFile</code>
+	 * if this classifier supports it, in the format of <code>write(DataOutputStream)</code> otherwise.
 	 * 
 	 * @param filename
 	 *            The name of the file where to write the definition of the
 	 *            classifier.
+	 * @throws IOException if the file cannot be written, in which case a file in the format of
+	 * <code>ClassifierFile</code> that already exists is left unchanged.
 	 */
-	public void save(File filename) {
-		DataOutputStream dos = null;
+	public void save(File filename) throws IOException {
+		ClassifierFile.Output out = new ClassifierFile.Output();
+		if (write(out)) {
+			out.save(filename);
+			return;
+		}
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
 		try {
-			dos = new DataOutputStream(new FileOutputStream(filename));
 			write(dos);
+		} finally {
 			dos.close();
-		} catch (IOException ex) {
-			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads the definition of this classifier in a file, that is either in the format of <code>ClassifierFile</code>
+	 * or in the format of <code>write(DataOutputStream)</code>.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @throws IOException if the file cannot be read.
+	 */
+	protected void load(File file) throws IOException {
+		ClassifierFile.Input input = ClassifierFile.open(file);
+		if (input != null) {
+			read(input);
+			return;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the definition of this classifier in a url, that is either in the format of <code>ClassifierFile</code>
+	 * or in the format of <code>write(DataOutputStream)</code>.
+	 * 
+	 * @param url
+	 *            The url.
+	 * @throws IOException if the url cannot be read.
+	 */
+	protected void load(URL url) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(url.openConnection().getInputStream());
+		try {
+			ClassifierFile.Input input = ClassifierFile.open(in);
+			if (input != null)
+				read(input);
+			else
+				read(new DataInputStream(in));
+		} finally {
+			in.close();
 		}
 	}
 
@@ -0,0 +1,398 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * The binary format of the files in which classifiers are saved by <code>AbstractClassifier.save</code>.
+ *
+ * <p>A file starts with a header of <code>HEADER_SIZE</code> bytes: the int <code>MAGIC</code>, the int version
+ * of the format, the int kind of classifier, an unused int, the long length of the content that follows the header
+ * and the long CRC32 checksum of this content. The content starts with the classes, which every classifier can read
+ * whatever the kind of the file: the int number of classes followed, for each class, by its name, its template
+ * and its examples (their int number followed by the gestures). The rest of the content is the data of the kind of classifier
+ * in the header, which only the classifiers of this kind read instead of training themselves again with the examples.
+ * The content is made of ints, longs
+ * and doubles, strings (their length followed by their UTF-8 bytes), strokes (their number of points, or -1 for no stroke,
+ * followed by their x coordinates and their y coordinates) and gestures (their number of points followed by their x coordinates,
+ * their y coordinates and their input times). All the numbers are little-endian and arrays are contiguous, so they are read
+ * in bulk.</p>
+ *
+ * <p>Files are read in memory at once, since their checksum is computed on all their bytes,
+ * but the points of the gestures are only decoded the first time they are accessed. A file is never overwritten
+ * in place: it is saved in a new file that replaces it, so that the previous file is kept if the new one cannot be written. Files saved in the stream format of <code>AbstractClassifier.write(DataOutputStream)</code>,
+ * which do not start with <code>MAGIC</code>, are still read by the classifiers.</p>
+ *
+ * @see fr.lri.swingstates.gestures.AbstractClassifier#save(File)
+ * @author SwingStates contributors
+ */
+public final class ClassifierFile {
+
+	/**
+	 * The first four bytes of a classifier file, read as a little-endian int.
+	 */
+	public static final int MAGIC = 0x5353434C;
+
+	/**
+	 * The version of the format.
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * The number of bytes of the header.
+	 */
+	public static final int HEADER_SIZE = 32;
+
+	/**
+	 * The kind of the files of <code>RubineClassifier</code>s.
+	 */
+	public static final int RUBINE = 1;
+
+	/**
+	 * The kind of the files of <code>ShapeMatchingClassifier</code>s and <code>Dollar1Classifier</code>s.
+	 */
+	public static final int SHAPE_MATCHING = 2;
+
+	private ClassifierFile() {
+	}
+
+	/**
+	 * Opens a classifier file.
+	 * @param file The file.
+	 * @return The content of the file, null if the file is not in this format.
+	 * @throws IOException if the file cannot be read or if it is corrupted.
+	 */
+	static Input open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < 4 || Integer.reverseBytes(raf.readInt()) != MAGIC)
+				return null;
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("classifier file too large");
+			// the file is not mapped, so that it can be replaced while gestures read from it are still in use
+			ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+			channel.position(0);
+			while (bytes.hasRemaining())
+				if (channel.read(bytes) == -1)
+					throw new IOException("classifier file truncated");
+			bytes.flip();
+			return new Input(bytes);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads a classifier file from a stream that supports <code>mark</code>.
+	 * @param in The stream.
+	 * @return The content of the file, null if the stream is not in this format, in which case the stream has not been read.
+	 * @throws IOException if the stream cannot be read or if it is corrupted.
+	 */
+	static Input open(InputStream in) throws IOException {
+		byte[] magic = new byte[4];
+		in.mark(magic.length);
+		int n = 0;
+		while (n < magic.length) {
+			int read = in.read(magic, n, magic.length - n);
+			if (read == -1)
+				break;
+			n += read;
+		}
+		in.reset();
+		if (n < magic.length || ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() != MAGIC)
+			return null;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			bytes.write(buffer, 0, read);
+		return new Input(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	private static long checksum(ByteBuffer content) {
+		CRC32 crc = new CRC32();
+		ByteBuffer in = content.duplicate();
+		if (in.hasArray()) {
+			crc.update(in.array(), in.arrayOffset() + in.position(), in.remaining());
+		} else {
+			byte[] buffer = new byte[8192];
+			while (in.hasRemaining()) {
+				int n = Math.min(buffer.length, in.remaining());
+				in.get(buffer, 0, n);
+				crc.update(buffer, 0, n);
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * The content of a classifier file that is being written.
+	 */
+	public static final class Output {
+
+		private int kind = 0;
+		private ByteBuffer content = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		Output() {
+		}
+
+		/**
+		 * Sets the kind of classifier written in the header.
+		 * @param kind The kind of classifier.
+		 */
+		public void setKind(int kind) {
+			this.kind = kind;
+		}
+
+		private void ensureCapacity(int n) {
+			if (content.remaining() >= n)
+				return;
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * content.capacity(), content.position() + n)).order(ByteOrder.LITTLE_ENDIAN);
+			content.flip();
+			larger.put(content);
+			content = larger;
+		}
+
+		public void writeInt(int v) {
+			ensureCapacity(4);
+			content.putInt(v);
+		}
+
+		public void writeLong(long v) {
+			ensureCapacity(8);
+			content.putLong(v);
+		}
+
+		public void writeDouble(double v) {
+			ensureCapacity(8);
+			content.putDouble(v);
+		}
+
+		/**
+		 * Writes an array of doubles without its length.
+		 * @param v The array.
+		 * @param offset The index of the first double to write.
+		 * @param length The number of doubles to write.
+		 */
+		public void writeDoubles(double[] v, int offset, int length) {
+			ensureCapacity(8 * length);
+			content.asDoubleBuffer().put(v, offset, length);
+			content.position(content.position() + 8 * length);
+		}
+
+		public void writeString(String s) {
+			byte[] bytes;
+			try {
+				bytes = s.getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				// every implementation of the Java platform supports UTF-8
+				throw new IllegalStateException(e);
+			}
+			writeInt(bytes.length);
+			ensureCapacity(bytes.length);
+			content.put(bytes);
+		}
+
+		/**
+		 * Writes a stroke without the input times of its points.
+		 * @param stroke The stroke, which can be null.
+		 */
+		public void writeStroke(PackedStroke stroke) {
+			if (stroke == null) {
+				writeInt(-1);
+				return;
+			}
+			int n = stroke.size();
+			writeInt(n);
+			writeDoubles(stroke.getXs(), 0, n);
+			writeDoubles(stroke.getYs(), 0, n);
+		}
+
+		/**
+		 * Writes a gesture, which is read back by <code>Input.readGesture</code>.
+		 * @param g The gesture, which can be null.
+		 */
+		public void writeGesture(Gesture g) {
+			if (g == null) {
+				writeInt(-1);
+				return;
+			}
+			if (g instanceof MappedGesture && ((MappedGesture) g).copyTo(this))
+				return;
+			PackedStroke stroke = g.getStroke();
+			int n = stroke.size();
+			writeInt(n);
+			writeDoubles(stroke.getXs(), 0, n);
+			writeDoubles(stroke.getYs(), 0, n);
+			ensureCapacity(8 * n);
+			content.asLongBuffer().put(stroke.getTimes(), 0, n);
+			content.position(content.position() + 8 * n);
+		}
+
+		void writeBytes(ByteBuffer bytes) {
+			ensureCapacity(bytes.remaining());
+			content.put(bytes);
+		}
+
+		/**
+		 * Writes the header and the content in a temporary file of the directory of a file,
+		 * and renames the temporary file to this file. If this file already exists, it is only replaced
+		 * once the new content has been written, so that it is kept if writing fails.
+		 * @param file The file.
+		 * @throws IOException if the file cannot be written or replaced.
+		 */
+		void save(File file) throws IOException {
+			ByteBuffer data = content.duplicate();
+			data.flip();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(kind).putInt(0);
+			header.putLong(data.remaining()).putLong(checksum(data));
+			header.flip();
+			File directory = file.getAbsoluteFile().getParentFile();
+			File tmp = File.createTempFile(file.getName() + ".save", ".tmp", directory);
+			boolean saved = false;
+			try {
+				FileOutputStream out = new FileOutputStream(tmp);
+				try {
+					FileChannel channel = out.getChannel();
+					while (header.hasRemaining())
+						channel.write(header);
+					while (data.hasRemaining())
+						channel.write(data);
+				} finally {
+					out.close();
+				}
+				// renaming does not replace an existing file on every platform
+				saved = tmp.renameTo(file) || (file.delete() && tmp.renameTo(file));
+				if (!saved)
+					throw new IOException("cannot replace " + file);
+			} finally {
+				if (!saved)
+					tmp.delete();
+			}
+		}
+
+	}
+
+	/**
+	 * The content of a classifier file that is being read.
+	 */
+	public static final class Input {
+
+		private final ByteBuffer content;
+		private final int version;
+		private final int kind;
+
+		/**
+		 * Checks the header of a file.
+		 * @param file The bytes of the file.
+		 * @throws IOException if the file is not in this format, if its version is not supported or if it is corrupted.
+		 */
+		Input(ByteBuffer file) throws IOException {
+			file.order(ByteOrder.LITTLE_ENDIAN);
+			if (file.remaining() < HEADER_SIZE || file.getInt() != MAGIC)
+				throw new IOException("not a classifier file");
+			version = file.getInt();
+			if (version != VERSION)
+				throw new IOException("classifier file version " + version + " is not supported");
+			kind = file.getInt();
+			file.getInt();
+			long length = file.getLong();
+			long checksum = file.getLong();
+			if (length != file.remaining())
+				throw new IOException("truncated classifier file");
+			content = file.slice().order(ByteOrder.LITTLE_ENDIAN);
+			if (checksum(content) != checksum)
+				throw new IOException("corrupted classifier file");
+		}
+
+		/**
+		 * @return The version of the format of the file.
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return The kind of classifier the file has been written by.
+		 */
+		public int getKind() {
+			return kind;
+		}
+
+		public int readInt() {
+			return content.getInt();
+		}
+
+		public long readLong() {
+			return content.getLong();
+		}
+
+		public double readDouble() {
+			return content.getDouble();
+		}
+
+		/**
+		 * Reads an array of doubles written without its length.
+		 * @param v The array where to store the doubles.
+		 * @param offset The index where to store the first double.
+		 * @param length The number of doubles to read.
+		 */
+		public void readDoubles(double[] v, int offset, int length) {
+			content.asDoubleBuffer().get(v, offset, length);
+			content.position(content.position() + 8 * length);
+		}
+
+		public String readString() throws IOException {
+			byte[] bytes = new byte[content.getInt()];
+			content.get(bytes);
+			return new String(bytes, "UTF-8");
+		}
+
+		/**
+		 * @return The next stroke, null if no stroke has been written.
+		 */
+		public PackedStroke readStroke() {
+			int n = content.getInt();
+			if (n == -1)
+				return null;
+			PackedStroke stroke = new PackedStroke(n);
+			stroke.setSize(n);
+			readDoubles(stroke.getXs(), 0, n);
+			readDoubles(stroke.getYs(), 0, n);
+			return stroke;
+		}
+
+		/**
+		 * Skips the next gesture, whose points are only decoded the first time they are accessed.
+		 * @return The gesture, null if no gesture has been written.
+		 */
+		public Gesture readGesture() {
+			int offset = content.position();
+			int n = content.getInt(offset);
+			if (n == -1) {
+				content.position(offset + 4);
+				return null;
+			}
+			content.position(offset + MappedGesture.size(n));
+			return new MappedGesture(content, offset);
+		}
+
+	}
+
+}
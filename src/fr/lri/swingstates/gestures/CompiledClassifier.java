@@ -0,0 +1,171 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An immutable snapshot of a classifier, built by <code>AbstractClassifier.freeze()</code>.
+ * A snapshot recognizes gestures as its classifier did when the snapshot was built,
+ * whatever the changes made to the classifier since then, and can be used by several threads at the same time.
+ *
+ * <pre>
+ * CompiledClassifier recognizer = classifier.freeze();
+ * // in any thread
+ * Score score = recognizer.recognize(gesture);
+ * if(score.getName() != null) ...
+ * </pre>
+ *
+ * @see fr.lri.swingstates.gestures.AbstractClassifier#freeze()
+ * @author SwingStates contributors
+ */
+public abstract class CompiledClassifier {
+
+	private final List<String> classesNames;
+
+	/**
+	 * Builds a snapshot.
+	 * @param classesNames The names of the classes of gestures, which are copied.
+	 */
+	protected CompiledClassifier(List<String> classesNames) {
+		this.classesNames = Collections.unmodifiableList(Arrays.asList(classesNames.toArray(new String[classesNames.size()])));
+	}
+
+	/**
+	 * Recognizes a gesture.
+	 *
+	 * @param g
+	 *            The gesture to recognize
+	 * @return A score whose name is the name of the recognized class (null if the gesture is not recognized) and whose
+	 *         value is the distance between the gesture and this class (<code>Double.NaN</code> if the gesture is too short to be recognized).
+	 */
+	public abstract Score recognize(Gesture g);
+
+	/**
+	 * Recognizes a gesture.
+	 *
+	 * @param g
+	 *            The gesture to recognize
+	 * @return The name of the class of gestures that best fit to g, null if the gesture is not recognized.
+	 */
+	public String classify(Gesture g) {
+		return recognize(g).getName();
+	}
+
+	/**
+	 * Computes a sorted list of classes from the best match to the worst match given a gesture.
+	 *
+	 * @param g
+	 *            The gesture
+	 * @return a vector of scores sorted from the best match (index 0) to the worst match.
+	 * @see AbstractClassifier#sortedClasses(Gesture)
+	 */
+	public abstract Vector<Score> sortedClasses(Gesture g);
+
+	/**
+	 * @return The names of the classes of gestures of this snapshot.
+	 */
+	public List<String> getClassesNames() {
+		return classesNames;
+	}
+
+	/**
+	 * Recognizes a list of gestures with the threads of a pool shared by all the classifiers,
+	 * that has one daemon thread per available processor.
+	 *
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @return The scores of the gestures, in the same order as <code>gestures</code> (see <code>recognize</code>).
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public ArrayList<Score> classifyAll(List<Gesture> gestures) throws InterruptedException {
+		return classifyAll(gestures, null);
+	}
+
+	/**
+	 * Recognizes a list of gestures with the threads of an executor.
+	 *
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @param executor
+	 *            The executor, null to use the shared pool.
+	 * @return The scores of the gestures, in the same order as <code>gestures</code> (see <code>recognize</code>).
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public ArrayList<Score> classifyAll(List<Gesture> gestures, ExecutorService executor) throws InterruptedException {
+		return runAll(gestures, recognitionTask(), executor);
+	}
+
+	/**
+	 * Recognizes the gestures of an iterator by batches: each batch is recognized with the threads of an executor
+	 * when the scores of the previous batch have all been read.
+	 *
+	 * @param gestures
+	 *            The gestures to recognize
+	 * @param batchSize
+	 *            The number of gestures of a batch
+	 * @param executor
+	 *            The executor, null to use the shared pool.
+	 * @return An iterator on the scores of the gestures, in the same order as <code>gestures</code> (see <code>recognize</code>).
+	 * @throws IllegalArgumentException
+	 *             if <code>batchSize</code> is not positive.
+	 */
+	public Iterator<Score> classifyAll(Iterator<Gesture> gestures, int batchSize, ExecutorService executor) {
+		return ParallelRecognition.runAll(gestures, batchSize, recognitionTask(), executor);
+	}
+
+	/**
+	 * Computes the sorted lists of classes for a list of gestures with the threads of an executor.
+	 *
+	 * @param gestures
+	 *            The gestures
+	 * @param executor
+	 *            The executor, null to use a pool shared by all the classifiers.
+	 * @return The results of <code>sortedClasses</code> for the gestures, in the same order as <code>gestures</code>.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public ArrayList<Vector<Score>> sortedClassesAll(List<Gesture> gestures, ExecutorService executor) throws InterruptedException {
+		return runAll(gestures, new ParallelRecognition.Task<Vector<Score>>() {
+			public void prepare() {
+			}
+
+			public Vector<Score> run(Gesture g) {
+				return sortedClasses(g);
+			}
+		}, executor);
+	}
+
+	private ParallelRecognition.Task<Score> recognitionTask() {
+		return new ParallelRecognition.Task<Score>() {
+			public void prepare() {
+			}
+
+			public Score run(Gesture g) {
+				return recognize(g);
+			}
+		};
+	}
+
+	private static <R> ArrayList<R> runAll(List<Gesture> gestures, ParallelRecognition.Task<R> task, ExecutorService executor) throws InterruptedException {
+		try {
+			return ParallelRecognition.runAll(gestures, task, executor);
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			// the tasks of a snapshot do not throw checked exceptions
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -17,6 +17,12 @@ import fr.lri.swingstates.canvas.CPolyLine;
 /**
  * A gesture, i.e. a vector of points with their input time.
  * 
+ * <p>The points are also stored in a <code>PackedStroke</code>, which classifiers use
+ * to process gestures without allocating points (see <code>getStroke()</code>).
+ * The stroke is rebuilt from the vectors of points and times once they have been handed out
+ * (by <code>getPoints()</code>, <code>getPointTimes()</code>, <code>getStart()</code> or <code>getEnd()</code>),
+ * since they may have been modified.</p>
+ * 
  * @author Caroline Appert
  * 
  */
@@ -24,6 +30,8 @@ public class Gesture {
 
 	protected Vector<Point2D> points;
 	protected Vector<Long> timePoints;
+	protected PackedStroke stroke;
+	private boolean strokeOutdated = false;
 
 	protected Point2D min, max; /* bounding box */
 
@@ -33,6 +41,7 @@ public class Gesture {
 	public Gesture() {
 		points = new Vector<Point2D>();
 		timePoints = new Vector<Long>();
+		stroke = new PackedStroke();
 		min = new Point2D.Double();
 		max = new Point2D.Double();
 	}
@@ -45,6 +54,7 @@ public class Gesture {
 		max = new Point2D.Double();
 		points.clear();
 		timePoints.clear();
+		stroke.clear();
 	}
 
 	/**
@@ -86,6 +96,7 @@ public class Gesture {
 		for (int i = 0; i < 4; i++)
 			in.readDouble();
 		points = new Vector<Point2D>();
+		stroke.clear();
 		for (int i = 0; i < nPoints; i++) {
 			Point2D pt = new Point2D.Double(in.readDouble(), in.readDouble());
 			long time = in.readLong();
@@ -104,6 +115,7 @@ public class Gesture {
 		}
 		points.add(p);
 		timePoints.add(t);
+		stroke.add(p.getX(), p.getY(), t);
 	}
 
 	/**
@@ -121,6 +133,7 @@ public class Gesture {
 	public Point2D getStart() {
 		if (points.size() == 0)
 			return null;
+		strokeOutdated = true;
 		return points.get(0);
 	}
 
@@ -130,6 +143,7 @@ public class Gesture {
 	public Point2D getEnd() {
 		if (points.size() == 0)
 			return null;
+		strokeOutdated = true;
 		return points.get(points.size() - 1);
 	}
 
@@ -156,13 +170,32 @@ public class Gesture {
 	 * @return the points in this gesture.
 	 */
 	public Vector<Point2D> getPoints() {
+		strokeOutdated = true;
 		return points;
 	}
 
+	/**
+	 * @return the points of this gesture and their input time as a stroke.
+	 * The stroke must not be modified.
+	 */
+	public PackedStroke getStroke() {
+		if (strokeOutdated || stroke.size() != points.size()) {
+			// the vectors of points and times may have been modified directly
+			strokeOutdated = false;
+			stroke.clear();
+			for (int i = 0; i < points.size(); i++) {
+				Point2D pt = points.get(i);
+				stroke.add(pt.getX(), pt.getY(), i < timePoints.size() ? timePoints.get(i) : 0);
+			}
+		}
+		return stroke;
+	}
+
 	/**
 	 * @return the input time for all points in this gesture.
 	 */
 	public Vector<Long> getPointTimes() {
+		strokeOutdated = true;
 		return timePoints;
 	}
 
@@ -33,10 +33,32 @@ import fr.lri.swingstates.canvas.Canvas;
  */
 public class GestureUtils {
 
+	/**
+	 * The points of a stroke must be distinct from the points of the stroke in which the result is written.
+	 */
+	private static final String ERROR_SAME_STROKE = "The source and the destination strokes must be different";
+
+	/**
+	 * The stride with which the points are visited when a distance can be abandoned.
+	 */
+	private static final int DISTANCE_STRIDE = 8;
+
 	public static double pathLength(Vector<Point2D> points) {
+		return pathLength(PackedStroke.of(points));
+	}
+
+	/**
+	 * @param stroke
+	 *            The stroke.
+	 * @return the length of the path going through all the points of the stroke.
+	 */
+	public static double pathLength(PackedStroke stroke) {
+		double[] xs = stroke.xs, ys = stroke.ys;
 		double d = 0;
-		for (int i = 1; i < points.size(); i++) {
-			d += points.get(i - 1).distance(points.get(i));
+		for (int i = 1; i < stroke.size; i++) {
+			double dx = xs[i] - xs[i - 1];
+			double dy = ys[i] - ys[i - 1];
+			d += Math.sqrt(dx * dx + dy * dy);
 		}
 		return d;
 	}
@@ -44,59 +66,133 @@ public class GestureUtils {
 	public static void resample(Vector<Point2D> points, int n, Vector<Point2D> newPoints) {
 		if (points.isEmpty())
 			return;
-		Vector<Point2D> dstPts = new Vector<Point2D>(n);
+		PackedStroke dst = new PackedStroke(n);
+		resample(PackedStroke.of(points), n, dst);
+		newPoints.clear();
+		newPoints.addAll(dst.toPoints());
+	}
+
+	/**
+	 * Resamples a stroke in <code>n</code> points uniformly spaced along its path. The input times of
+	 * the new points are interpolated.
+	 * 
+	 * @param stroke
+	 *            the stroke to resample
+	 * @param n
+	 *            the number of points of the resampled stroke
+	 * @param dst
+	 *            the stroke where to store resampled points, which must be different from <code>stroke</code>
+	 */
+	public static void resample(PackedStroke stroke, int n, PackedStroke dst) {
+		if (stroke == dst)
+			throw new IllegalArgumentException(ERROR_SAME_STROKE);
+		int size = stroke.size;
+		if (size == 0)
+			return;
+		double[] xs = stroke.xs, ys = stroke.ys;
+		long[] ts = stroke.t;
+		dst.setSize(n);
+		double[] dxs = dst.xs, dys = dst.ys;
+		long[] dts = dst.t;
 
-		double segLength = pathLength(points) / (n - 1);
-		
+		double segLength = pathLength(stroke) / (n - 1);
 		double currentSegLength = 0;
-		double totalSegLength = 0;
-		Vector<Point2D> srcPts = new Vector<Point2D>(points);
-		
-		dstPts.add(new Point2D.Double(srcPts.get(0).getX(), srcPts.get(0).getY()));
-		for (int i = 1; i < srcPts.size(); i++) {
-			Point2D pt1 = srcPts.get(i - 1);
-			Point2D pt2 = srcPts.get(i);
-			double d = pt1.distance(pt2);
-			if(d == 0) continue;
-			totalSegLength += d;
+		// (px, py) is the previous point of the path, i.e. either a point of the stroke
+		// or the last point that has been inserted
+		double px = xs[0], py = ys[0];
+		double pt = ts[0];
+		dxs[0] = px;
+		dys[0] = py;
+		dts[0] = ts[0];
+		int count = 1;
+		int i = 1;
+		while (i < size && count < n) {
+			double dx = xs[i] - px;
+			double dy = ys[i] - py;
+			double d = Math.sqrt(dx * dx + dy * dy);
+			if (d == 0) {
+				i++;
+				continue;
+			}
 			if ((currentSegLength + d) >= segLength) {
-				double qx = pt1.getX() + ((segLength - currentSegLength) / d) * (pt2.getX() - pt1.getX());
-				double qy = pt1.getY() + ((segLength - currentSegLength) / d) * (pt2.getY() - pt1.getY());
-				Point2D q = new Point2D.Double(qx, qy);
-				dstPts.add(q); // append new point 'q'
-				srcPts.add(i, q); // insert 'q' at position i in points s.t.
-				// 'q' will be the next i
+				double ratio = (segLength - currentSegLength) / d;
+				px = px + ratio * dx;
+				py = py + ratio * dy;
+				pt = pt + ratio * (ts[i] - pt);
+				dxs[count] = px;
+				dys[count] = py;
+				dts[count] = Math.round(pt);
+				count++;
 				currentSegLength = 0.0;
 			} else {
 				currentSegLength += d;
+				px = xs[i];
+				py = ys[i];
+				pt = ts[i];
+				i++;
 			}
 		}
 		// sometimes we fall a rounding-error short of adding the last point, so
 		// add it if so
-		while (dstPts.size() < n) {
-			dstPts.add(new Point2D.Double(srcPts.get(srcPts.size() - 1).getX(),
-					srcPts.get(srcPts.size() - 1).getY()));
+		for (; count < n; count++) {
+			dxs[count] = xs[size - 1];
+			dys[count] = ys[size - 1];
+			dts[count] = ts[size - 1];
 		}
-		newPoints.clear();
-		newPoints.addAll(dstPts);
 	}
 
 	public static Point2D centroid(Vector<Point2D> points) {
+		double[] c = new double[2];
+		centroid(PackedStroke.of(points), c);
+		return new Point2D.Double(c[0], c[1]);
+	}
+
+	/**
+	 * Computes the centroid of the points of a stroke.
+	 * 
+	 * @param stroke
+	 *            the stroke
+	 * @param dst
+	 *            an array of length 2 where to store the coordinates of the centroid
+	 */
+	public static void centroid(PackedStroke stroke, double[] dst) {
+		double[] xs = stroke.xs, ys = stroke.ys;
 		double sumX = 0;
 		double sumY = 0;
-		for (Iterator<Point2D> iterator = points.iterator(); iterator.hasNext();) {
-			Point2D next = iterator.next();
-			sumX += next.getX();
-			sumY += next.getY();
+		for (int i = 0; i < stroke.size; i++) {
+			sumX += xs[i];
+			sumY += ys[i];
 		}
-		int length = points.size();
-		return new Point2D.Double(sumX / length, sumY / length);
+		dst[0] = sumX / stroke.size;
+		dst[1] = sumY / stroke.size;
 	}
 
 	public static void rotateToZero(Vector<Point2D> points, Vector<Point2D> newPoints) {
-		Point2D c = centroid(points);
-		double theta = Math.atan2(c.getY() - points.get(0).getY(), c.getX() - points.get(0).getX());
-		rotateBy(points, -theta, newPoints);
+		PackedStroke stroke = PackedStroke.of(points);
+		rotateToZero(stroke, stroke);
+		stroke.copyTo(newPoints);
+	}
+
+	/**
+	 * Rotates a stroke around its centroid so that the angle between its first point
+	 * and its centroid is 0.
+	 * 
+	 * @param stroke
+	 *            the stroke to rotate
+	 * @param dst
+	 *            the stroke where to store rotated points, which can be <code>stroke</code>
+	 */
+	public static void rotateToZero(PackedStroke stroke, PackedStroke dst) {
+		double cx = 0, cy = 0;
+		double[] xs = stroke.xs, ys = stroke.ys;
+		for (int i = 0; i < stroke.size; i++) {
+			cx += xs[i];
+			cy += ys[i];
+		}
+		cx /= stroke.size;
+		cy /= stroke.size;
+		double theta = Math.atan2(cy - ys[0], cx - xs[0]);
+		rotateBy(stroke, -theta, cx, cy, dst);
 	}
 
 	/**
@@ -108,33 +204,76 @@ public class GestureUtils {
 	 *            the points where to store rotated points
 	 */
 	public static void rotateBy(Vector<Point2D> points, double theta, Vector<Point2D> newPoints) {
-		Point2D c = centroid(points);
-		Point2D ptSrc, ptDest;
-		for (int i = 0; i < points.size(); i++) {
-			ptSrc = points.get(i);
-			if (newPoints.size() > i) {
-				ptDest = newPoints.get(i);
-			} else {
-				ptDest = new Point2D.Double();
-				newPoints.add(i, ptDest);
-			}
-			ptDest.setLocation((ptSrc.getX() - c.getX()) * Math.cos(theta) - (ptSrc.getY() - c.getY()) * Math.sin(theta) + c.getX(), (ptSrc.getX() - c.getX()) * Math.sin(theta)
-					+ (ptSrc.getY() - c.getY()) * Math.cos(theta) + c.getY());
+		PackedStroke stroke = PackedStroke.of(points);
+		rotateBy(stroke, theta, stroke);
+		stroke.copyTo(newPoints);
+	}
+
+	/**
+	 * Rotates a stroke around its centroid.
+	 * 
+	 * @param stroke
+	 *            the stroke to rotate
+	 * @param theta
+	 *            the angle in radians
+	 * @param dst
+	 *            the stroke where to store rotated points, which can be <code>stroke</code>
+	 */
+	public static void rotateBy(PackedStroke stroke, double theta, PackedStroke dst) {
+		double[] xs = stroke.xs, ys = stroke.ys;
+		double cx = 0, cy = 0;
+		for (int i = 0; i < stroke.size; i++) {
+			cx += xs[i];
+			cy += ys[i];
+		}
+		rotateBy(stroke, theta, cx / stroke.size, cy / stroke.size, dst);
+	}
+
+	private static void rotateBy(PackedStroke stroke, double theta, double cx, double cy, PackedStroke dst) {
+		int size = stroke.size;
+		double[] xs = stroke.xs, ys = stroke.ys;
+		long[] ts = stroke.t;
+		if (dst != stroke)
+			dst.setSize(size);
+		double[] dxs = dst.xs, dys = dst.ys;
+		long[] dts = dst.t;
+		double cos = Math.cos(theta);
+		double sin = Math.sin(theta);
+		for (int i = 0; i < size; i++) {
+			double x = xs[i] - cx;
+			double y = ys[i] - cy;
+			dxs[i] = x * cos - y * sin + cx;
+			dys[i] = x * sin + y * cos + cy;
+			dts[i] = ts[i];
 		}
 	}
 
 	public static Rectangle2D boundingBox(Vector<Point2D> points) {
+		Rectangle2D bb = new Rectangle2D.Double();
+		boundingBox(PackedStroke.of(points), bb);
+		return bb;
+	}
+
+	/**
+	 * Computes the bounding box of a stroke. Its width and its height are at least 1.
+	 * 
+	 * @param stroke
+	 *            the stroke
+	 * @param dst
+	 *            the rectangle where to store the bounding box
+	 */
+	public static void boundingBox(PackedStroke stroke, Rectangle2D dst) {
+		double[] xs = stroke.xs, ys = stroke.ys;
 		double minX = Double.MAX_VALUE;
 		double minY = Double.MAX_VALUE;
-		double maxX = Double.MIN_VALUE;
-		double maxY = Double.MIN_VALUE;
-		Point2D next;
-		for (Iterator<Point2D> iterator = points.iterator(); iterator.hasNext();) {
-			next = iterator.next();
-			minX = Math.min(minX, next.getX());
-			maxX = Math.max(maxX, next.getX());
-			minY = Math.min(minY, next.getY());
-			maxY = Math.max(maxY, next.getY());
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < stroke.size; i++) {
+			double x = xs[i], y = ys[i];
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
 		}
 		double w = maxX - minX;
 		if (w < 1)
@@ -142,86 +281,200 @@ public class GestureUtils {
 		double h = maxY - minY;
 		if (h < 1)
 			h = 1;
-		return new Rectangle2D.Double(minX, minY, w, h);
+		dst.setRect(minX, minY, w, h);
 	}
 
 	public static void scaleToSquare(Vector<Point2D> points, double size, Vector<Point2D> newPoints) {
-		Rectangle2D bb = boundingBox(points);
-		double maxSide = Math.max(bb.getWidth(), bb.getHeight());
-		Point2D ptSrc, ptDest;
-		for (int i = 0; i < points.size(); i++) {
-			ptSrc = points.get(i);
-			if (newPoints.size() > i) {
-				ptDest = newPoints.get(i);
-			} else {
-				ptDest = new Point2D.Double();
-				newPoints.add(i, ptDest);
-			}
-			
-			ptDest.setLocation(ptSrc.getX() * (size / maxSide), ptSrc.getY() * (size / maxSide));
-			if(Double.isNaN(ptDest.getX()) || Double.isNaN(ptDest.getY())) System.out.println("x: "+ptSrc.getX()+" - y: "+ptSrc.getY()+" - "+size+" - "+maxSide+" - "+bb);
+		PackedStroke stroke = PackedStroke.of(points);
+		scaleToSquare(stroke, size, stroke);
+		stroke.copyTo(newPoints);
+	}
+
+	/**
+	 * Scales a stroke so that the largest side of its bounding box is <code>size</code>.
+	 * 
+	 * @param stroke
+	 *            the stroke to scale
+	 * @param size
+	 *            the size of the largest side of the bounding box of the scaled stroke
+	 * @param dst
+	 *            the stroke where to store scaled points, which can be <code>stroke</code>
+	 */
+	public static void scaleToSquare(PackedStroke stroke, double size, PackedStroke dst) {
+		int n = stroke.size;
+		double[] xs = stroke.xs, ys = stroke.ys;
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			double x = xs[i], y = ys[i];
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+		}
+		double maxSide = Math.max(Math.max(maxX - minX, 1), Math.max(maxY - minY, 1));
+		double scale = size / maxSide;
+		long[] ts = stroke.t;
+		if (dst != stroke)
+			dst.setSize(n);
+		double[] dxs = dst.xs, dys = dst.ys;
+		long[] dts = dst.t;
+		for (int i = 0; i < n; i++) {
+			dxs[i] = xs[i] * scale;
+			dys[i] = ys[i] * scale;
+			dts[i] = ts[i];
 		}
 	}
 
 	public static void translateToOrigin(Vector<Point2D> points, Vector<Point2D> newPoints) {
-		Point2D c = centroid(points);
-		Point2D ptSrc, ptDest;
-		Iterator<Point2D> iteratorNewPoints = newPoints.iterator();
-		for (Iterator<Point2D> iterator = points.iterator(); iterator.hasNext();) {
-			ptSrc = iterator.next();
-			if (iteratorNewPoints.hasNext())
-				ptDest = iteratorNewPoints.next();
-			else {
-				ptDest = new Point2D.Double();
-				newPoints.add(ptDest);
-			}
-			ptDest.setLocation(ptSrc.getX() - c.getX(), ptSrc.getY() - c.getY());
+		PackedStroke stroke = PackedStroke.of(points);
+		translateToOrigin(stroke, stroke);
+		stroke.copyTo(newPoints);
+	}
+
+	/**
+	 * Translates a stroke so that its centroid is the origin.
+	 * 
+	 * @param stroke
+	 *            the stroke to translate
+	 * @param dst
+	 *            the stroke where to store translated points, which can be <code>stroke</code>
+	 */
+	public static void translateToOrigin(PackedStroke stroke, PackedStroke dst) {
+		int n = stroke.size;
+		double[] xs = stroke.xs, ys = stroke.ys;
+		long[] ts = stroke.t;
+		double cx = 0, cy = 0;
+		for (int i = 0; i < n; i++) {
+			cx += xs[i];
+			cy += ys[i];
+		}
+		cx /= n;
+		cy /= n;
+		if (dst != stroke)
+			dst.setSize(n);
+		double[] dxs = dst.xs, dys = dst.ys;
+		long[] dts = dst.t;
+		for (int i = 0; i < n; i++) {
+			dxs[i] = xs[i] - cx;
+			dys[i] = ys[i] - cy;
+			dts[i] = ts[i];
 		}
 	}
 
 	public static double distanceAtBestAngle(Vector<Point2D> points, Vector<Point2D> gesturePoints, double thetaA, double thetaB, double deltaTheta) {
+		return distanceAtBestAngle(PackedStroke.of(points), PackedStroke.of(gesturePoints), thetaA, thetaB, deltaTheta, new PackedStroke(points.size()));
+	}
+
+	/**
+	 * Finds the rotation of a stroke that minimizes its distance to another stroke by a golden section search.
+	 * 
+	 * @param stroke
+	 *            the stroke to rotate
+	 * @param gesture
+	 *            the other stroke
+	 * @param thetaA
+	 *            the lower bound of the rotation angle in radians
+	 * @param thetaB
+	 *            the upper bound of the rotation angle in radians
+	 * @param deltaTheta
+	 *            the precision of the search in radians
+	 * @param buffer
+	 *            a stroke used to store rotated points, which must be different from <code>stroke</code>
+	 * @return the distance between <code>gesture</code> and <code>stroke</code> rotated by the best angle
+	 */
+	public static double distanceAtBestAngle(PackedStroke stroke, PackedStroke gesture, double thetaA, double thetaB, double deltaTheta, PackedStroke buffer) {
+		if (stroke == buffer)
+			throw new IllegalArgumentException(ERROR_SAME_STROKE);
+		double[] c = new double[2];
+		centroid(stroke, c);
 		double thetaa = thetaA;
 		double thetab = thetaB;
 		double phi = 0.5 * (-1 + Math.sqrt(5));
-		Vector<Point2D> newPoints = new Vector<Point2D>();
 		double x1 = phi * thetaa + (1 - phi) * thetab;
-		double f1 = distanceAtAngle(points, gesturePoints, x1, newPoints);
+		double f1 = distanceAtAngle(stroke, gesture, x1, c, buffer);
 		double x2 = (1 - phi) * thetaa + phi * thetab;
-		double f2 = distanceAtAngle(points, gesturePoints, x2, newPoints);
+		double f2 = distanceAtAngle(stroke, gesture, x2, c, buffer);
 		while (Math.abs(thetab - thetaa) > deltaTheta) {
 			if (f1 < f2) {
 				thetab = x2;
 				x2 = x1;
 				f2 = f1;
 				x1 = phi * thetaa + (1 - phi) * thetab;
-				f1 = distanceAtAngle(points, gesturePoints, x1, newPoints);
+				f1 = distanceAtAngle(stroke, gesture, x1, c, buffer);
 			} else {
 				thetaa = x1;
 				x1 = x2;
 				f1 = f2;
 				x2 = (1 - phi) * thetaa + phi * thetab;
-				f2 = distanceAtAngle(points, gesturePoints, x2, newPoints);
+				f2 = distanceAtAngle(stroke, gesture, x2, c, buffer);
 			}
 		}
 		return Math.min(f1, f2);
 	}
 
-	private static double distanceAtAngle(Vector<Point2D> points, Vector<Point2D> gesturePoints, double theta, Vector<Point2D> newPoints) {
-		rotateBy(points, theta, newPoints);
-		double res = pathDistance(newPoints, gesturePoints);
-		return res;
+	private static double distanceAtAngle(PackedStroke stroke, PackedStroke gesture, double theta, double[] centroid, PackedStroke buffer) {
+		rotateBy(stroke, theta, centroid[0], centroid[1], buffer);
+		return pathDistance(buffer, gesture);
 	}
 
 	public static double pathDistance(Vector<Point2D> pointsA, Vector<Point2D> pointsB) {
+		return pathDistance(PackedStroke.of(pointsA), PackedStroke.of(pointsB));
+	}
+
+	/**
+	 * Computes the average distance between the points of two strokes, i.e. the sum
+	 * of the distances between points #i of both strokes divided by the number of points.
+	 * 
+	 * @param strokeA
+	 *            the first stroke
+	 * @param strokeB
+	 *            the second stroke, which has at least as many points as the first one
+	 * @return the average distance
+	 */
+	public static double pathDistance(PackedStroke strokeA, PackedStroke strokeB) {
+		double[] xa = strokeA.xs, ya = strokeA.ys;
+		double[] xb = strokeB.xs, yb = strokeB.ys;
+		int n = strokeA.size;
 		double d = 0;
-		Iterator<Point2D> iteratorB = pointsB.iterator();
-		Point2D ptA, ptB;
-		for (Iterator<Point2D> iteratorA = pointsA.iterator(); iteratorA.hasNext();) {
-			ptA = iteratorA.next();
-			ptB = iteratorB.next();
-			d += ptA.distance(ptB);
+		for (int i = 0; i < n; i++) {
+			double dx = xa[i] - xb[i];
+			double dy = ya[i] - yb[i];
+			d += Math.sqrt(dx * dx + dy * dy);
 		}
-		return d / pointsA.size();
+		return d / n;
+	}
+
+	/**
+	 * Computes the average distance between the points of two strokes, but stops as soon as
+	 * it is known to be greater than or equal to a given distance. The points are visited with a stride
+	 * so that the partial sums cover the whole strokes early.
+	 * 
+	 * @param strokeA
+	 *            the first stroke
+	 * @param strokeB
+	 *            the second stroke, which has at least as many points as the first one
+	 * @param maxDistance
+	 *            the distance above which the exact average distance is not needed
+	 * @return the average distance if it is lower than <code>maxDistance</code>, a value greater than
+	 *            or equal to <code>maxDistance</code> otherwise
+	 */
+	public static double pathDistance(PackedStroke strokeA, PackedStroke strokeB, double maxDistance) {
+		double[] xa = strokeA.xs, ya = strokeA.ys;
+		double[] xb = strokeB.xs, yb = strokeB.ys;
+		int n = strokeA.size;
+		double limit = maxDistance * n;
+		double d = 0;
+		for (int start = 0; start < DISTANCE_STRIDE; start++) {
+			for (int i = start; i < n; i += DISTANCE_STRIDE) {
+				double dx = xa[i] - xb[i];
+				double dy = ya[i] - yb[i];
+				d += Math.sqrt(dx * dx + dy * dy);
+			}
+			if (d >= limit)
+				break;
+		}
+		return d / n;
 	}
 
 	/**
@@ -244,6 +497,23 @@ public class GestureUtils {
 		}
 		return polyline;
 	}
+
+	/**
+	 * @param stroke
+	 *            The stroke.
+	 * @return a graphical representation of a stroke as a
+	 *         <code>CPolyLine</code>.
+	 */
+	public static CPolyLine asPolyLine(PackedStroke stroke) {
+		CPolyLine polyline = new CPolyLine();
+		for (int i = 0; i < stroke.size; i++) {
+			if (i == 0)
+				polyline.moveTo(stroke.xs[i], stroke.ys[i]);
+			else
+				polyline.lineTo(stroke.xs[i], stroke.ys[i]);
+		}
+		return polyline;
+	}
 	
 	/**
 	 * Displays a polyline of a gesture example in a bounding box in a
@@ -0,0 +1,147 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Recognizes a gesture while it is being drawn. The points of the gesture are added one at a time,
+ * as they would be added to a <code>Gesture</code>, and the class of gestures that best fits the points
+ * added so far can be read at any moment, e.g. to give feedback or to commit to a command before the gesture is over.
+ * A recognizer is built by <code>AbstractClassifier.newIncrementalRecognizer()</code> and recognizes gestures
+ * with the classifier that has built it. It must be used in a single thread.
+ *
+ * <pre>
+ * IncrementalRecognizer recognizer = classifier.newIncrementalRecognizer();
+ * // on press
+ * recognizer.reset();
+ * recognizer.addPoint(x, y);
+ * // on drag
+ * recognizer.addPoint(x, y);
+ * Score score = recognizer.getCurrentScore();
+ * if(score.getName() != null &amp;&amp; recognizer.getConfidence() &gt; 0.9) ...
+ * </pre>
+ *
+ * <p>Adding a point only updates what the recognizer maintains about the points added so far (e.g. the length
+ * of the path), and the current class is computed the first time it is read after a point has been added.</p>
+ *
+ * @see fr.lri.swingstates.gestures.AbstractClassifier#newIncrementalRecognizer()
+ * @author SwingStates contributors
+ */
+public abstract class IncrementalRecognizer {
+
+	private final Gesture gesture = new Gesture();
+	private double pathLength = 0;
+	private Score currentScore = null;
+	private double confidence = 0;
+
+	/**
+	 * Adds a point at the end of the gesture. The input time of the point is the current time.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 */
+	public final void addPoint(double x, double y) {
+		addPoint(x, y, System.currentTimeMillis());
+	}
+
+	/**
+	 * Adds a point at the end of the gesture.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 * @param t The input time of the point.
+	 */
+	public final void addPoint(double x, double y, long t) {
+		PackedStroke stroke = gesture.getStroke();
+		int n = stroke.size();
+		if (n > 0) {
+			double dx = x - stroke.getX(n - 1);
+			double dy = y - stroke.getY(n - 1);
+			pathLength += Math.sqrt(dx * dx + dy * dy);
+		}
+		gesture.addPoint(new Point2D.Double(x, y), t);
+		currentScore = null;
+		pointAdded(x, y, t);
+	}
+
+	/**
+	 * Removes all the points, to recognize a new gesture.
+	 */
+	public void reset() {
+		gesture.reset();
+		pathLength = 0;
+		currentScore = null;
+	}
+
+	/**
+	 * Recognizes the points added so far.
+	 * @return A score whose name is the name of the class that best fits the points added so far (null if they are
+	 *         not recognized) and whose value is the distance between these points and this class
+	 *         (<code>Double.NaN</code> if the path is too short to be recognized).
+	 * @throws IllegalStateException if the classifier cannot recognize gestures yet.
+	 */
+	public Score getCurrentScore() {
+		if (currentScore == null) {
+			currentScore = recognize();
+			confidence = Double.isNaN(currentScore.getScore()) ? 0 : computeConfidence();
+		}
+		return currentScore;
+	}
+
+	/**
+	 * @return The name of the class that best fits the points added so far, null if they are not recognized.
+	 * @throws IllegalStateException if the classifier cannot recognize gestures yet.
+	 */
+	public String getCurrentClass() {
+		return getCurrentScore().getName();
+	}
+
+	/**
+	 * @return The confidence in the class that best fits the points added so far, between 0 and 1:
+	 *         the closer to 1, the less likely the other classes.
+	 * @throws IllegalStateException if the classifier cannot recognize gestures yet.
+	 */
+	public double getConfidence() {
+		getCurrentScore();
+		return confidence;
+	}
+
+	/**
+	 * @return The points added so far, as a gesture that must not be modified. Once the gesture is over,
+	 *         it can be classified by the classifier.
+	 */
+	public Gesture getGesture() {
+		return gesture;
+	}
+
+	/**
+	 * @return The length of the path going through the points added so far.
+	 */
+	public double getPathLength() {
+		return pathLength;
+	}
+
+	/**
+	 * Called each time a point is added at the end of the gesture.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 * @param t The input time of the point.
+	 */
+	protected abstract void pointAdded(double x, double y, long t);
+
+	/**
+	 * Recognizes the points added so far.
+	 * @return the score returned by <code>getCurrentScore</code>.
+	 */
+	protected abstract Score recognize();
+
+	/**
+	 * Computes the confidence in the score that <code>recognize</code> has just returned,
+	 * if the path was long enough to be recognized.
+	 * @return the confidence returned by <code>getConfidence</code>.
+	 */
+	protected abstract double computeConfidence();
+
+}
@@ -0,0 +1,185 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures;
+
+import java.awt.geom.Point2D;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Vector;
+
+import fr.lri.swingstates.canvas.CPolyLine;
+
+/**
+ * A gesture read from a classifier file, whose points are only decoded from the content of the file
+ * the first time they are accessed. Classifiers that store their examples as normalized strokes or as vectors
+ * of features do not need the points of their examples to recognize gestures, so most examples
+ * of a classifier read from a file are never decoded.
+ *
+ * @see fr.lri.swingstates.gestures.ClassifierFile.Input#readGesture()
+ * @author SwingStates contributors
+ */
+final class MappedGesture extends Gesture {
+
+	/**
+	 * The content of the file, null once the points have been decoded.
+	 */
+	private volatile ByteBuffer content;
+	private final int offset;
+
+	/**
+	 * Builds a gesture whose points are stored in the content of a file.
+	 * @param content The content of the file.
+	 * @param offset The offset of the gesture in <code>content</code>.
+	 */
+	MappedGesture(ByteBuffer content, int offset) {
+		this.content = content;
+		this.offset = offset;
+	}
+
+	/**
+	 * @return The number of bytes of a gesture of <code>n</code> points in a file.
+	 */
+	static int size(int n) {
+		return 4 + n * 24;
+	}
+
+	/**
+	 * Copies the bytes of this gesture to a file if its points have not been decoded.
+	 * @param out The file.
+	 * @return True if the bytes have been copied, false if the gesture must be written point by point.
+	 */
+	boolean copyTo(ClassifierFile.Output out) {
+		ByteBuffer source = content;
+		if (source == null)
+			return false;
+		ByteBuffer record = source.duplicate();
+		record.order(ByteOrder.LITTLE_ENDIAN).position(offset);
+		record.limit(offset + size(record.getInt(offset)));
+		out.writeBytes(record);
+		return true;
+	}
+
+	private void load() {
+		if (content == null)
+			return;
+		synchronized (this) {
+			ByteBuffer source = content;
+			if (source == null)
+				return;
+			ByteBuffer in = source.duplicate();
+			in.order(ByteOrder.LITTLE_ENDIAN).position(offset);
+			int n = in.getInt();
+			double[] xs = new double[n];
+			double[] ys = new double[n];
+			long[] times = new long[n];
+			in.asDoubleBuffer().get(xs).get(ys);
+			in.position(in.position() + 16 * n);
+			in.asLongBuffer().get(times);
+			for (int i = 0; i < n; i++)
+				super.addPoint(new Point2D.Double(xs[i], ys[i]), times[i]);
+			content = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		content = null;
+		super.reset();
+	}
+
+	protected void addPoint(Point2D p, long t) {
+		load();
+		super.addPoint(p, t);
+	}
+
+	public void write(DataOutputStream out) throws IOException {
+		load();
+		super.write(out);
+	}
+
+	public Object read(DataInputStream in) throws IOException {
+		content = null;
+		return super.read(in);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getDuration() {
+		load();
+		return super.getDuration();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Point2D getStart() {
+		load();
+		return super.getStart();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Point2D getEnd() {
+		load();
+		return super.getEnd();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public CPolyLine asPolyLine() {
+		load();
+		return super.asPolyLine();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Vector<Point2D> getPoints() {
+		load();
+		return super.getPoints();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PackedStroke getStroke() {
+		load();
+		return super.getStroke();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Vector<Long> getPointTimes() {
+		load();
+		return super.getPointTimes();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Point2D getMin() {
+		load();
+		return super.getMin();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Point2D getMax() {
+		load();
+		return super.getMax();
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.gestures;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * A sequence of points with their input time stored in arrays of primitive values:
+ * <code>xs[i]</code>, <code>ys[i]</code> and <code>t[i]</code> are the coordinates and the time of point #i,
+ * for i in [0, <code>size()</code>[. The arrays grow when points are added, so a stroke
+ * can be reused as a buffer by the methods of <code>GestureUtils</code> that write their result in a stroke
+ * without allocating any point.
+ *
+ * @see fr.lri.swingstates.gestures.GestureUtils
+ * @author SwingStates contributors
+ *
+ */
+public class PackedStroke {
+
+	protected double[] xs;
+	protected double[] ys;
+	protected long[] t;
+	protected int size = 0;
+
+	/**
+	 * Builds an empty stroke.
+	 */
+	public PackedStroke() {
+		this(16);
+	}
+
+	/**
+	 * Builds an empty stroke that can contain a given number of points without growing.
+	 * @param capacity The initial capacity.
+	 */
+	public PackedStroke(int capacity) {
+		capacity = Math.max(1, capacity);
+		xs = new double[capacity];
+		ys = new double[capacity];
+		t = new long[capacity];
+	}
+
+	/**
+	 * Builds a stroke from a list of points whose input times are unknown (they are set to 0).
+	 * @param points The points.
+	 * @return the stroke.
+	 */
+	public static PackedStroke of(List<Point2D> points) {
+		PackedStroke stroke = new PackedStroke(points.size());
+		stroke.setPoints(points);
+		return stroke;
+	}
+
+	/**
+	 * Sets the points of this stroke to a list of points whose input times are unknown (they are set to 0).
+	 * @param points The points.
+	 * @return this stroke.
+	 */
+	public PackedStroke setPoints(List<Point2D> points) {
+		int n = points.size();
+		setSize(n);
+		for (int i = 0; i < n; i++) {
+			Point2D pt = points.get(i);
+			xs[i] = pt.getX();
+			ys[i] = pt.getY();
+			t[i] = 0;
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a point at the end of this stroke.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 * @param time The input time of the point.
+	 * @return this stroke.
+	 */
+	public PackedStroke add(double x, double y, long time) {
+		ensureCapacity(size + 1);
+		xs[size] = x;
+		ys[size] = y;
+		t[size] = time;
+		size++;
+		return this;
+	}
+
+	/**
+	 * Sets the coordinates of a point of this stroke.
+	 * @param i The index of the point.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 */
+	public void set(int i, double x, double y) {
+		xs[i] = x;
+		ys[i] = y;
+	}
+
+	/**
+	 * Removes all the points of this stroke. Its arrays are kept to be reused.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Sets the number of points of this stroke. The arrays grow if needed and the coordinates
+	 * of the points that are added are undefined.
+	 * @param n The number of points.
+	 */
+	public void setSize(int n) {
+		ensureCapacity(n);
+		size = n;
+	}
+
+	/**
+	 * Makes the arrays of this stroke large enough to contain a given number of points.
+	 * @param capacity The number of points.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= xs.length)
+			return;
+		int newCapacity = Math.max(capacity, 2 * xs.length);
+		double[] newXs = new double[newCapacity];
+		double[] newYs = new double[newCapacity];
+		long[] newT = new long[newCapacity];
+		System.arraycopy(xs, 0, newXs, 0, size);
+		System.arraycopy(ys, 0, newYs, 0, size);
+		System.arraycopy(t, 0, newT, 0, size);
+		xs = newXs;
+		ys = newYs;
+		t = newT;
+	}
+
+	/**
+	 * Copies the points of another stroke into this stroke.
+	 * @param stroke The stroke to copy.
+	 * @return this stroke.
+	 */
+	public PackedStroke copyFrom(PackedStroke stroke) {
+		if (stroke == this)
+			return this;
+		setSize(stroke.size);
+		System.arraycopy(stroke.xs, 0, xs, 0, stroke.size);
+		System.arraycopy(stroke.ys, 0, ys, 0, stroke.size);
+		System.arraycopy(stroke.t, 0, t, 0, stroke.size);
+		return this;
+	}
+
+	/**
+	 * @return a copy of this stroke whose arrays are exactly as long as its number of points.
+	 */
+	public PackedStroke copy() {
+		PackedStroke copy = new PackedStroke(size);
+		return copy.copyFrom(this);
+	}
+
+	/**
+	 * @return The number of points of this stroke.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i The index of a point.
+	 * @return The x coordinate of point #i.
+	 */
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * @param i The index of a point.
+	 * @return The y coordinate of point #i.
+	 */
+	public double getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * @param i The index of a point.
+	 * @return The input time of point #i.
+	 */
+	public long getTime(int i) {
+		return t[i];
+	}
+
+	/**
+	 * @return The array of x coordinates. Only its first <code>size()</code> values are points of this stroke.
+	 */
+	public double[] getXs() {
+		return xs;
+	}
+
+	/**
+	 * @return The array of y coordinates. Only its first <code>size()</code> values are points of this stroke.
+	 */
+	public double[] getYs() {
+		return ys;
+	}
+
+	/**
+	 * @return The array of input times. Only its first <code>size()</code> values are points of this stroke.
+	 */
+	public long[] getTimes() {
+		return t;
+	}
+
+	/**
+	 * @return the points of this stroke as a vector of new points.
+	 */
+	public Vector<Point2D> toPoints() {
+		Vector<Point2D> points = new Vector<Point2D>(size);
+		for (int i = 0; i < size; i++)
+			points.add(new Point2D.Double(xs[i], ys[i]));
+		return points;
+	}
+
+	/**
+	 * Sets the locations of the points of a vector to the points of this stroke: the point #i
+	 * of the vector is moved to point #i of this stroke and points are added to the vector if it is too short.
+	 * @param points The vector of points.
+	 */
+	public void copyTo(Vector<Point2D> points) {
+		for (int i = 0; i < size; i++) {
+			if (i < points.size())
+				points.get(i).setLocation(xs[i], ys[i]);
+			else
+				points.add(new Point2D.Double(xs[i], ys[i]));
+		}
+	}
+
+}
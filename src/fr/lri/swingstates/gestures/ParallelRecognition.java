@@ -0,0 +1,166 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a recognition task on lists of gestures with the threads of an executor, for the batch methods
+ * of <code>AbstractClassifier</code> and <code>CompiledClassifier</code>.
+ *
+ * @author SwingStates contributors
+ */
+final class ParallelRecognition {
+
+	/**
+	 * A recognition task.
+	 * @param <R> The type of the result of the task for a gesture.
+	 */
+	interface Task<R> {
+
+		/**
+		 * Called before a list of gestures is recognized, in the calling thread.
+		 */
+		void prepare();
+
+		/**
+		 * Recognizes a gesture. This method is called by several threads at the same time.
+		 * @param g The gesture.
+		 * @return the result for <code>g</code>.
+		 * @throws Exception if the gesture cannot be recognized.
+		 */
+		R run(Gesture g) throws Exception;
+
+	}
+
+	private static ExecutorService defaultExecutor = null;
+
+	private ParallelRecognition() {
+	}
+
+	/**
+	 * Runs a task on a list of gestures.
+	 * @param gestures The gestures.
+	 * @param task The task.
+	 * @param executor The executor, null to use a pool shared by all the classifiers, that has one daemon thread per available processor.
+	 * @return the results of the task, in the same order as <code>gestures</code>.
+	 * @throws Exception if the task fails for a gesture or if the thread is interrupted.
+	 */
+	static <R> ArrayList<R> runAll(List<Gesture> gestures, final Task<R> task, ExecutorService executor) throws Exception {
+		task.prepare();
+		final Gesture[] input = gestures.toArray(new Gesture[gestures.size()]);
+		final Object[] results = new Object[input.length];
+		if (executor == null)
+			executor = getDefaultExecutor();
+		// a few chunks per thread balance the load without a task per gesture
+		int nbChunks = Math.min(input.length, 4 * Runtime.getRuntime().availableProcessors());
+		ArrayList<Future<Object>> chunks = new ArrayList<Future<Object>>(nbChunks);
+		for (int c = 0; c < nbChunks; c++) {
+			final int from = (int) ((long) c * input.length / nbChunks);
+			final int to = (int) ((long) (c + 1) * input.length / nbChunks);
+			chunks.add(executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					for (int i = from; i < to; i++)
+						results[i] = task.run(input[i]);
+					return null;
+				}
+			}));
+		}
+		try {
+			for (int c = 0; c < chunks.size(); c++)
+				chunks.get(c).get();
+		} catch (ExecutionException e) {
+			for (int c = 0; c < chunks.size(); c++)
+				chunks.get(c).cancel(true);
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw (Error) cause;
+		} catch (InterruptedException e) {
+			for (int c = 0; c < chunks.size(); c++)
+				chunks.get(c).cancel(true);
+			throw e;
+		}
+		ArrayList<R> list = new ArrayList<R>(results.length);
+		for (int i = 0; i < results.length; i++) {
+			@SuppressWarnings("unchecked")
+			R result = (R) results[i];
+			list.add(result);
+		}
+		return list;
+	}
+
+	/**
+	 * Runs a task on the gestures of an iterator by batches: each batch is run when the results
+	 * of the previous batch have all been read.
+	 * @param gestures The gestures.
+	 * @param batchSize The number of gestures of a batch.
+	 * @param task The task.
+	 * @param executor The executor, null to use the shared pool.
+	 * @return an iterator on the results of the task, in the same order as <code>gestures</code>. Its method <code>next</code>
+	 * throws an <code>IllegalStateException</code> whose cause is the exception thrown by the task if the task fails.
+	 * @throws IllegalArgumentException if <code>batchSize</code> is not positive.
+	 */
+	static <R> Iterator<R> runAll(final Iterator<Gesture> gestures, final int batchSize, final Task<R> task, final ExecutorService executor) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("The size of a batch must be positive: " + batchSize);
+		return new Iterator<R>() {
+			private ArrayList<R> batch = new ArrayList<R>();
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < batch.size() || gestures.hasNext();
+			}
+
+			public R next() {
+				if (next == batch.size()) {
+					if (!gestures.hasNext())
+						throw new NoSuchElementException();
+					ArrayList<Gesture> batchGestures = new ArrayList<Gesture>(batchSize);
+					while (batchGestures.size() < batchSize && gestures.hasNext())
+						batchGestures.add(gestures.next());
+					try {
+						batch = runAll(batchGestures, task, executor);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException(e);
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					next = 0;
+				}
+				return batch.get(next++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SwingStates gesture recognition");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+}
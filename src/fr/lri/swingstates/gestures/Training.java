@@ -300,7 +300,11 @@ public class Training {
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			if (classifiers.size() < 1)
 				return;
-			classifiers.get(INDEX_RUBINE).save(chooser.getSelectedFile());
+			try {
+				classifiers.get(INDEX_RUBINE).save(chooser.getSelectedFile());
+			} catch (IOException ioe) {
+				JOptionPane.showMessageDialog(frame, "Cannot save the classifier: " + ioe.getMessage());
+			}
 		}
 	}
 
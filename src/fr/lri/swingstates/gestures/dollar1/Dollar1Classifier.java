@@ -16,77 +16,342 @@ package fr.lri.swingstates.gestures.dollar1;
 import java.awt.geom.Point2D;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.Vector;
 
+import fr.lri.swingstates.gestures.ClassifierFile;
+import fr.lri.swingstates.gestures.Gesture;
 import fr.lri.swingstates.gestures.GestureUtils;
+import fr.lri.swingstates.gestures.PackedStroke;
+import fr.lri.swingstates.gestures.Score;
+import fr.lri.swingstates.gestures.shapeMatching.NamedGesture;
 import fr.lri.swingstates.gestures.shapeMatching.ShapeMatchingClassifier;
 
 /**
  * A classifier that implements $1 algorithm to classify gestures.
  * 
+ * <p>In Protractor mode (see <code>setProtractor</code>), the classifier implements the Protractor variant of $1
+ * (Li, Y. 2010. Protractor: a fast and accurate gesture recognizer. In proc. CHI'10):
+ * each example and template is stored once as a vector of its resampled points whose length is 1,
+ * and the distance between two gestures is the angle between their vectors after the rotation that
+ * best aligns them. This rotation and the distance are computed in closed form, so a comparison
+ * costs a single pass over the points instead of a search over rotation angles.
+ * The distances are then angles in radians, in [0, PI/2], and a gesture is recognized if its
+ * distance is lower than <code>getMaximumAngle()</code>.</p>
+ * 
  * @author Caroline Appert
  * 
  */
 public class Dollar1Classifier extends ShapeMatchingClassifier {
 
+	private boolean protractor = false;
+	private double maximumAngle = Math.PI / 6;
+	private ArrayList<double[]> templateVectors = null;
+	private ArrayList<ArrayList<double[]>> exampleVectors = null;
+
 	public Dollar1Classifier() {
 		super();
 	}
 	
-	public double distance(String gesture1, String gesture2) {
-		int index1 = classesNames.indexOf(gesture1);
-		int index2 = classesNames.indexOf(gesture2);
-		
-		if(!Double.isNaN(distances[index1][index2])) {
-			return distances[index1][index2];
+	/**
+	 * Sets the Protractor mode of this classifier. The vectors of the examples and templates
+	 * are computed when this mode is set, and then each time an example or a template is added.
+	 * @param protractor True to use the Protractor distance, false to use the $1 distance.
+	 */
+	public void setProtractor(boolean protractor) {
+		this.protractor = protractor;
+		// the prefixes used by incremental recognition store the vectors of the Protractor mode
+		invalidateIndex();
+		if (protractor) {
+			buildVectors();
+		} else {
+			templateVectors = null;
+			exampleVectors = null;
+		}
+	}
+
+	/**
+	 * @return True if this classifier uses the Protractor distance, false if it uses the $1 distance.
+	 */
+	public boolean isProtractor() {
+		return protractor;
+	}
+
+	/**
+	 * @return The maximum distance, in radians, for a gesture to be recognized in Protractor mode.
+	 */
+	public double getMaximumAngle() {
+		return maximumAngle;
+	}
+
+	/**
+	 * Sets the maximum distance for a gesture to be recognized in Protractor mode.
+	 * If the distance is greater than this angle, the gesture is not recognized
+	 * (i.e. method <code>classify</code> returns null).
+	 * @param maximumAngle The maximum distance in radians.
+	 */
+	public void setMaximumAngle(double maximumAngle) {
+		this.maximumAngle = maximumAngle;
+	}
+
+	/**
+	 * Computes the Protractor vector of a normalized stroke: the coordinates of its points,
+	 * relative to its centroid, divided by the length of the vector they form.
+	 * @param stroke The stroke.
+	 * @return the vector (x0, y0, x1, y1, ...), null if <code>stroke</code> is null.
+	 */
+	public static double[] vectorize(PackedStroke stroke) {
+		if (stroke == null)
+			return null;
+		int n = stroke.size();
+		double[] xs = stroke.getXs(), ys = stroke.getYs();
+		double cx = 0, cy = 0;
+		for (int i = 0; i < n; i++) {
+			cx += xs[i];
+			cy += ys[i];
+		}
+		if (n > 0) {
+			cx /= n;
+			cy /= n;
+		}
+		double[] vector = new double[2 * n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			double x = xs[i] - cx, y = ys[i] - cy;
+			vector[2 * i] = x;
+			vector[2 * i + 1] = y;
+			sum += x * x + y * y;
+		}
+		if (sum > 0) {
+			double norm = Math.sqrt(sum);
+			for (int i = 0; i < vector.length; i++)
+				vector[i] /= norm;
+		}
+		return vector;
+	}
+
+	/**
+	 * Computes the Protractor distance between two vectors, i.e. the angle between them
+	 * once one of them is rotated by the angle that minimizes this distance.
+	 * @param vector1 The first vector.
+	 * @param vector2 The second vector.
+	 * @return the distance in radians, in [0, PI/2].
+	 */
+	public static double protractorDistance(double[] vector1, double[] vector2) {
+		double cos = Math.sqrt(squaredCosine(vector1, vector2));
+		return Math.acos(cos > 1 ? 1 : cos);
+	}
+
+	/**
+	 * Computes the squared cosine of the Protractor distance between two vectors, which decreases
+	 * when the distance increases: the closest vector can be found without computing any angle.
+	 */
+	private static double squaredCosine(double[] vector1, double[] vector2) {
+		int n = Math.min(vector1.length, vector2.length);
+		double a = 0, b = 0;
+		for (int i = 0; i < n; i += 2) {
+			double x1 = vector1[i], y1 = vector1[i + 1];
+			double x2 = vector2[i], y2 = vector2[i + 1];
+			a += x1 * x2 + y1 * y2;
+			b += x1 * y2 - y1 * x2;
+		}
+		// the optimal rotation is atan(b / a) and the cosine of the angle between the vectors is then sqrt(a^2 + b^2)
+		return a * a + b * b;
+	}
+
+	private static double angle(double squaredCosine) {
+		return squaredCosine >= 1 ? 0 : Math.acos(Math.sqrt(squaredCosine));
+	}
+
+	private void buildVectors() {
+		templateVectors = new ArrayList<double[]>();
+		exampleVectors = new ArrayList<ArrayList<double[]>>();
+		for (int i = 0; i < classes.size(); i++) {
+			templateVectors.add(vectorize(packedTemplates.get(i)));
+			exampleVectors.add(vectorizeExamples(i));
 		}
-		
-		Vector<Point2D> template1 = getTemplate(gesture1);
-		Vector<Point2D> template2 = getTemplate(gesture2);
-		
-		double minDis = distance(template1, template2);
-		ResampledGestureClass gc1 = classes.get(index1);
-		Vector<Vector<Point2D>> examples1 = gc1.getResampledGestures();
-		for (Iterator<Vector<Point2D>> iterator1 = examples1.iterator(); iterator1.hasNext();) {
-			Vector<Point2D> ex1  = iterator1.next();
-			double dis = distance(ex1, template2);
-			if(dis < minDis) {
-				minDis = dis;
+	}
+
+	private ArrayList<double[]> vectorizeExamples(int classIndex) {
+		ArrayList<PackedStroke> examples = classes.get(classIndex).getPackedGestures();
+		ArrayList<double[]> vectors = new ArrayList<double[]>(examples.size());
+		for (int i = 0; i < examples.size(); i++)
+			vectors.add(vectorize(examples.get(i)));
+		return vectors;
+	}
+
+	/**
+	 * The best match of a gesture in Protractor mode.
+	 */
+	private static class Match {
+		int classIndex = -1;
+		PackedStroke stroke = null;
+		double squaredCosine = -1;
+		int compared = 0;
+	}
+
+	private Match bestMatch(double[] input, boolean templateIfExamples) {
+		Match match = new Match();
+		for (int nc = 0; nc < classes.size(); nc++) {
+			ArrayList<double[]> vectors = exampleVectors.get(nc);
+			match.compared += vectors.size();
+			for (int i = 0; i < vectors.size(); i++) {
+				double c = squaredCosine(input, vectors.get(i));
+				if (c > match.squaredCosine) {
+					match.squaredCosine = c;
+					match.classIndex = nc;
+					match.stroke = classes.get(nc).getPackedGestures().get(i);
+				}
+			}
+			double[] template = templateVectors.get(nc);
+			if (template != null && (templateIfExamples || vectors.size() == 0)) {
+				match.compared++;
+				double c = squaredCosine(input, template);
+				if (c > match.squaredCosine) {
+					match.squaredCosine = c;
+					match.classIndex = nc;
+					match.stroke = packedTemplates.get(nc);
+				}
 			}
 		}
-		distances[index1][index2] = minDis;
-		
-		minDis = distance(template2, template1);
-		ResampledGestureClass gc2 = classes.get(index2);
-		Vector<Vector<Point2D>> examples2 = gc2.getResampledGestures();
-		for (Iterator<Vector<Point2D>> iterator = examples2.iterator(); iterator.hasNext();) {
-			Vector<Point2D> ex2  = iterator.next();
-			double dis = distance(template1, ex2);
-			if(dis < minDis) {
-				minDis = dis;
+		return match;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String classify(Gesture g) {
+		if (!protractor)
+			return super.classify(g);
+		PackedStroke stroke = g.getStroke();
+		if (GestureUtils.pathLength(stroke) < minimumStrokeLength)
+			return null;
+		Match match = bestMatch(vectorize(normalize(stroke, new PackedStroke(getNbPoints()))), true);
+		nbComparedTemplates = match.compared;
+		nbPrunedTemplates = 0;
+		if (match.classIndex == -1)
+			return null;
+		currentDistance = angle(match.squaredCosine);
+		if (currentDistance > maximumAngle)
+			return null;
+		return classes.get(match.classIndex).getName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected Score recognize(Gesture g) {
+		if (!protractor)
+			return super.recognize(g);
+		PackedStroke stroke = g.getStroke();
+		if (GestureUtils.pathLength(stroke) < minimumStrokeLength)
+			return new Score(null, Double.NaN);
+		Match match = bestMatch(vectorize(normalize(stroke, new PackedStroke(getNbPoints()))), true);
+		if (match.classIndex == -1)
+			return new Score(null, Double.NaN);
+		double distance = angle(match.squaredCosine);
+		if (distance > maximumAngle)
+			return new Score(null, distance);
+		return new Score(classes.get(match.classIndex).getName(), distance);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public NamedGesture classifyAndResample(Gesture g) {
+		if (!protractor)
+			return super.classifyAndResample(g);
+		PackedStroke stroke = g.getStroke();
+		if (GestureUtils.pathLength(stroke) < minimumStrokeLength)
+			return null;
+		PackedStroke inputPointsResampled = normalize(stroke, new PackedStroke(getNbPoints()));
+		Match match = bestMatch(vectorize(inputPointsResampled), false);
+		nbComparedTemplates = match.compared;
+		nbPrunedTemplates = 0;
+		if (match.classIndex == -1)
+			return null;
+		currentDistance = angle(match.squaredCosine);
+		if (currentDistance > maximumAngle)
+			return null;
+		return new NamedGesture(classes.get(match.classIndex).getName(), inputPointsResampled.toPoints(), match.stroke.toPoints());
+	}
+
+	/**
+	 * {@inheritDoc} In Protractor mode, the scores are distances in radians.
+	 */
+	public Vector<Score> sortedClasses(Gesture g) {
+		if (!protractor)
+			return super.sortedClasses(g);
+		return rankClasses(g);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected Vector<Score> rankClasses(Gesture g) {
+		if (!protractor)
+			return super.rankClasses(g);
+		Vector<Score> sortedScores = new Vector<Score>();
+		double[] input = vectorize(normalize(g.getStroke(), new PackedStroke(getNbPoints())));
+		for (int nc = 0; nc < classes.size(); nc++) {
+			double minClassScore = Integer.MAX_VALUE;
+			ArrayList<double[]> vectors = exampleVectors.get(nc);
+			if (vectors.size() > 0) {
+				double maxCosine = -1;
+				for (int i = 0; i < vectors.size(); i++)
+					maxCosine = Math.max(maxCosine, squaredCosine(input, vectors.get(i)));
+				minClassScore = angle(maxCosine);
+			} else if (templateVectors.get(nc) != null) {
+				minClassScore = protractorDistance(input, templateVectors.get(nc));
 			}
+			int i = 0;
+			while (i < sortedScores.size() && sortedScores.get(i).getScore() < minClassScore)
+				i++;
+			sortedScores.add(i, new Score(classes.get(nc).getName(), minClassScore));
 		}
-		distances[index2][index1] = minDis;
-		
-		return distances[index1][index2];
+		return sortedScores;
 	}
-	
-	public double distance(Vector<Point2D> inputPointsResampled1, Vector<Point2D> inputPointsResampled2) {
-		Vector<Point2D> rotatedPoints1 = new Vector<Point2D>();
-		Vector<Point2D> rotatedPoints2 = new Vector<Point2D>();
-		GestureUtils.rotateToZero(inputPointsResampled1, rotatedPoints1);
-		GestureUtils.rotateToZero(inputPointsResampled2, rotatedPoints2);
-//		double dis = GestureUtils.distanceAtBestAngle(rotatedPoints1, rotatedPoints2, -theta, theta, deltaTheta);
-		return GestureUtils.pathDistance(rotatedPoints1, rotatedPoints2);
-//		return dis;
+
+	/**
+	 * {@inheritDoc} The strokes are rotated around their centroid so that the angle between
+	 * their first point and their centroid is 0: the examples and the templates are rotated once,
+	 * when they are added, and a gesture is rotated once per classification.
+	 */
+	protected PackedStroke align(PackedStroke stroke) {
+		GestureUtils.rotateToZero(stroke, stroke);
+		return stroke;
+	}
+
+	/**
+	 * {@inheritDoc} Both strokes have been rotated when they were normalized (see <code>align</code>).
+	 * In Protractor mode, the distance is the Protractor distance between their vectors.
+	 */
+	public double distance(PackedStroke inputPointsResampled1, PackedStroke inputPointsResampled2) {
+		if (protractor)
+			return protractorDistance(vectorize(inputPointsResampled1), vectorize(inputPointsResampled2));
+		return GestureUtils.pathDistance(inputPointsResampled1, inputPointsResampled2);
 	}
 	
+	/**
+	 * {@inheritDoc} In Protractor mode, the values are the vector of the stroke (see <code>vectorize</code>).
+	 */
+	protected double[] prepare(PackedStroke stroke) {
+		return protractor ? vectorize(stroke) : null;
+	}
+
+	/**
+	 * {@inheritDoc} In Protractor mode, the exact distance is computed from the vectors of the strokes.
+	 */
+	protected double distance(PackedStroke inputPointsResampled1, double[] prepared1,
+			PackedStroke inputPointsResampled2, double[] prepared2, double maxDistance) {
+		if (protractor && prepared1 != null && prepared2 != null)
+			return angle(squaredCosine(prepared1, prepared2));
+		return distance(inputPointsResampled1, inputPointsResampled2, maxDistance);
+	}
+
 	/**
 	 * Builds a new classifier by loading its definition in a file.
 	 * 
@@ -110,7 +375,7 @@ public class Dollar1Classifier extends ShapeMatchingClassifier {
 	public static Dollar1Classifier newClassifier(File filename) {
 		Dollar1Classifier c = new Dollar1Classifier();
 		try {
-			c.read(new DataInputStream(new FileInputStream(filename)));
+			c.load(filename);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -129,9 +394,7 @@ public class Dollar1Classifier extends ShapeMatchingClassifier {
 	public static Dollar1Classifier newClassifier(URL url) {
 		Dollar1Classifier c = new Dollar1Classifier();
 		try {
-			URLConnection urlc = null;
-			urlc = url.openConnection();
-			c.read(new DataInputStream(urlc.getInputStream()));
+			c.load(url);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -140,4 +403,153 @@ public class Dollar1Classifier extends ShapeMatchingClassifier {
 		return c;
 	}
 
+	/**
+	 * {@inheritDoc} In Protractor mode, the exact distance is returned.
+	 */
+	public double distance(PackedStroke inputPointsResampled1, PackedStroke inputPointsResampled2, double maxDistance) {
+		if (protractor)
+			return distance(inputPointsResampled1, inputPointsResampled2);
+		return GestureUtils.pathDistance(inputPointsResampled1, inputPointsResampled2, maxDistance);
+	}
+
+	/**
+	 * {@inheritDoc} The metric tree is not searched in Protractor mode.
+	 */
+	protected boolean useIndex() {
+		return !protractor && super.useIndex();
+	}
+
+	/**
+	 * {@inheritDoc} In Protractor mode, the distances are angles that the summaries do not bound, so 0 is returned.
+	 */
+	protected double lowerBound(double[] summary1, double[] summary2) {
+		return protractor ? 0 : super.lowerBound(summary1, summary2);
+	}
+
+	/**
+	 * {@inheritDoc} In Protractor mode, the maximum distance is the maximum angle.
+	 */
+	protected double getRecognitionThreshold() {
+		return protractor ? maximumAngle : super.getRecognitionThreshold();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int addClass(String className) {
+		int index = super.addClass(className);
+		if (index != -1 && protractor) {
+			templateVectors.add(null);
+			exampleVectors.add(new ArrayList<double[]>());
+		}
+		return index;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addClass(String className, Vector<Point2D> template) {
+		super.addClass(className, template);
+		updateTemplateVector(className);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setTemplate(String className, Vector<Point2D> template) {
+		super.setTemplate(className, template);
+		updateTemplateVector(className);
+	}
+
+	private void updateTemplateVector(String className) {
+		int index = classesNames.indexOf(className);
+		if (index != -1 && protractor)
+			templateVectors.set(index, vectorize(packedTemplates.get(index)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addExample(String className, Gesture example) {
+		super.addExample(className, example);
+		int index = classesNames.indexOf(className);
+		if (index != -1 && protractor) {
+			ArrayList<PackedStroke> examples = classes.get(index).getPackedGestures();
+			exampleVectors.get(index).add(vectorize(examples.get(examples.size() - 1)));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeExample(Gesture example) {
+		super.removeExample(example);
+		if (protractor)
+			buildVectors();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeClass(String className) {
+		int index = classesNames.indexOf(className);
+		super.removeClass(className);
+		if (index != -1 && protractor) {
+			templateVectors.remove(index);
+			exampleVectors.remove(index);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected ShapeMatchingClassifier copy() {
+		Dollar1Classifier copy = new Dollar1Classifier();
+		copy.copyFrom(this);
+		return copy;
+	}
+
+	/**
+	 * {@inheritDoc} The Protractor mode, the maximum angle and the vectors are copied from a <code>Dollar1Classifier</code>.
+	 */
+	protected void copyFrom(ShapeMatchingClassifier source) {
+		super.copyFrom(source);
+		if (!(source instanceof Dollar1Classifier))
+			return;
+		Dollar1Classifier dollar1 = (Dollar1Classifier) source;
+		protractor = dollar1.protractor;
+		maximumAngle = dollar1.maximumAngle;
+		if (protractor) {
+			templateVectors = new ArrayList<double[]>(dollar1.templateVectors);
+			exampleVectors = new ArrayList<ArrayList<double[]>>();
+			for (int i = 0; i < dollar1.exampleVectors.size(); i++)
+				exampleVectors.add(new ArrayList<double[]>(dollar1.exampleVectors.get(i)));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		super.reset();
+		if (protractor)
+			buildVectors();
+	}
+
+	protected Object read(DataInputStream in) throws IOException {
+		super.read(in);
+		if (protractor)
+			buildVectors();
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void read(ClassifierFile.Input in) throws IOException {
+		super.read(in);
+		if (protractor)
+			buildVectors();
+	}
+
 }
@@ -0,0 +1,79 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.rubine;
+
+import java.util.List;
+import java.util.Vector;
+
+import fr.lri.swingstates.gestures.CompiledClassifier;
+import fr.lri.swingstates.gestures.Gesture;
+import fr.lri.swingstates.gestures.GestureUtils;
+import fr.lri.swingstates.gestures.Score;
+
+/**
+ * An immutable snapshot of a trained <code>RubineClassifier</code>: the snapshot shares the model of the classifier
+ * (the weights, the averages of the classes and the inverse of the average covariance matrix), which is never modified.
+ *
+ * @see fr.lri.swingstates.gestures.rubine.RubineClassifier#freeze()
+ * @author SwingStates contributors
+ */
+final class CompiledRubineClassifier extends CompiledClassifier {
+
+	private final String[] names;
+	private final RubineModel model;
+	private final int mahalanobisThreshold;
+	private final int minimumStrokeLength;
+
+	CompiledRubineClassifier(List<String> classesNames, RubineModel model, int mahalanobisThreshold, int minimumStrokeLength) {
+		super(classesNames);
+		names = classesNames.toArray(new String[classesNames.size()]);
+		this.model = model;
+		this.mahalanobisThreshold = mahalanobisThreshold;
+		this.minimumStrokeLength = minimumStrokeLength;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Score recognize(Gesture g) {
+		if (GestureUtils.pathLength(g.getStroke()) < minimumStrokeLength)
+			return new Score(null, Double.NaN);
+		double[] fv = RubineClassifier.features(g);
+		int maxclass = 0;
+		double maxvalue = -Double.MAX_VALUE;
+		for (int nc = 0; nc < names.length; nc++) {
+			double value = model.value(nc, fv);
+			if (value > maxvalue) {
+				maxclass = nc;
+				maxvalue = value;
+			}
+		}
+		double distance = model.mahalanobisDistance(fv, maxclass);
+		if (distance <= mahalanobisThreshold)
+			return new Score(names[maxclass], distance);
+		return new Score(null, distance);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Vector<Score> sortedClasses(Gesture g) {
+		Vector<Score> sortedClasses = new Vector<Score>();
+		double[] fv = RubineClassifier.features(g);
+		double[] sortedValues = new double[names.length];
+		for (int nc = 0; nc < names.length; nc++) {
+			double value = model.value(nc, fv);
+			int i = 0;
+			while (i < nc && sortedValues[i] > value)
+				i++;
+			System.arraycopy(sortedValues, i, sortedValues, i + 1, nc - i);
+			sortedValues[i] = value;
+			sortedClasses.add(i, new Score(names[nc], model.mahalanobisDistance(fv, nc)));
+		}
+		return sortedClasses;
+	}
+
+}
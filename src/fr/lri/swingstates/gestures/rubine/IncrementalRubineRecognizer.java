@@ -0,0 +1,92 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.rubine;
+
+import fr.lri.swingstates.gestures.IncrementalRecognizer;
+import fr.lri.swingstates.gestures.Score;
+
+/**
+ * Recognizes a gesture with a <code>RubineClassifier</code> while it is being drawn. The features of the gesture
+ * are updated in constant time each time a point is added, so that recognizing the points added so far only
+ * computes the discrimination functions of the classes. Once the last point has been added,
+ * the current score is the score of the whole gesture.
+ *
+ * <p>The confidence is the probability of non-ambiguity of Rubine's algorithm, that estimates
+ * the probability that the gesture belongs to the recognized class given the values of the discrimination
+ * functions of the other classes.</p>
+ *
+ * @see fr.lri.swingstates.gestures.rubine.RubineClassifier#newIncrementalRecognizer()
+ * @author SwingStates contributors
+ */
+final class IncrementalRubineRecognizer extends IncrementalRecognizer {
+
+	private final RubineClassifier classifier;
+	private final RubineFeatures features = new RubineFeatures();
+	private final double[] fv = new double[RubineClassifier.NAME_FEATURES.length];
+	private double[] values = new double[0];
+	private int nbValues = 0;
+	private double maxValue = 0;
+
+	IncrementalRubineRecognizer(RubineClassifier classifier) {
+		this.classifier = classifier;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		super.reset();
+		features.reset();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void pointAdded(double x, double y, long t) {
+		features.addPoint(x, y, t);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected Score recognize() {
+		if (getPathLength() < classifier.getMinimumStrokeLength())
+			return new Score(null, Double.NaN);
+		RubineModel m = classifier.getModel();
+		if (m == null)
+			throw new IllegalStateException("A Rubine classifier must have at least 2 classes and 2 examples per classes");
+
+		features.getFeatures(fv);
+		nbValues = m.cnst.length;
+		if (values.length < nbValues)
+			values = new double[nbValues];
+		int maxindex = -1;
+		maxValue = -Double.MAX_VALUE;
+		for (int nc = 0; nc < nbValues; nc++) {
+			values[nc] = m.value(nc, fv);
+			if (values[nc] > maxValue) {
+				maxindex = nc;
+				maxValue = values[nc];
+			}
+		}
+		double distance = m.mahalanobisDistance(fv, maxindex);
+		if (distance <= classifier.getMaximumDistance())
+			return new Score(classifier.getClassesNames().get(maxindex), distance);
+		return new Score(null, distance);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected double computeConfidence() {
+		/* compute probability of non-ambiguity */
+		double denom = 0.;
+		for (int nc = 0; nc < nbValues; nc++)
+			denom += Math.exp(values[nc] - maxValue);
+		return 1.0 / denom;
+	}
+
+}
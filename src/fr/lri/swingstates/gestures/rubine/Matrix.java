@@ -18,22 +18,20 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 
 /**
- * Matrix class.
+ * Matrix class. The items of a matrix are stored row by row in a single array.
  * 
  * @author Caroline Appert
  *
  */
 class Matrix {
 
-	static int PERMBUFSIZE = 200;
-	
-	double[][] items;
+	double[] items;
 	int nRows, nCols;
 	
 	Matrix(int r, int c, boolean clear){
 		nRows = r;
 		nCols = c;
-		items = new double[r][c];
+		items = new double[r * c];
 		if(clear)
 			clear();
 	}
@@ -45,19 +43,23 @@ class Matrix {
 	Matrix(Matrix m){
 		nRows = m.nRows;
 		nCols = m.nCols;
-		items = new double[nRows][nCols];
-		for(int i = 0; i < nRows; i++)
-			for(int j = 0; j < nCols; j++)
-				items[i][j] = m.items[i][j];
+		items = m.items.clone();
+	}
+	
+	double get(int i, int j) {
+		return items[i * nCols + j];
+	}
+
+	void set(int i, int j, double d) {
+		items[i * nCols + j] = d;
 	}
 	
 	public Object read(DataInputStream in) throws IOException {
 		nRows = in.readInt();
 		nCols = in.readInt();
-		items = new double[nRows][nCols];
+		items = new double[nRows * nCols];
 		for(int i=0; i < items.length; i++)
-			for(int j=0; j < items[i].length; j++)
-				items[i][j] = in.readDouble();
+			items[i] = in.readDouble();
 		return this;
 	}
 
@@ -65,38 +67,31 @@ class Matrix {
 		out.writeInt(nRows);
 		out.writeInt(nCols);
 		for(int i=0; i < items.length; i++)
-			for(int j=0; j < items[i].length; j++)
-				out.writeDouble(items[i][j]);
+			out.writeDouble(items[i]);
 	}
 	
 	public void clear(){
-		for(int i = 0; i < nRows; i++)
-			for(int j = 0; j < nCols; j++)
-				items[i][j] = 0;
+		fill(0);
 	}
 	
 	public void fill(double d){
-		for(int i = 0; i < nRows; i++)
-			for(int j = 0; j < nCols; j++)
-				items[i][j] = d;
+		for(int i = 0; i < items.length; i++)
+			items[i] = d;
 	}
 	
 	public Matrix copy(Matrix m){
 		if (nRows != m.nRows || nCols != m.nCols) {
 			nRows = m.nRows;
 			nCols = m.nCols;
-			items= new double[nRows][nCols];
+			items = new double[nRows * nCols];
 		}
-		for (int i = 0 ; i < nRows ; i++)
-			for (int j = 0; j < nCols ; j++)
-				items[i][j] = m.items[i][j];
+		System.arraycopy(m.items, 0, items, 0, items.length);
 		return this;
 	}
 	
 	public Matrix multiplyByScalar(double d){
-		for (int i = 0 ; i < nRows ; i++)
-			for (int j = 0; j < nCols ; j++)
-				items[i][j] *= d;
+		for (int i = 0 ; i < items.length ; i++)
+			items[i] *= d;
 		return this;
 	}
 	
@@ -105,20 +100,29 @@ class Matrix {
 		int c = (nCols <m.nCols) ? nCols : m.nCols;
 		for(int i = 0; i < r; i++)
 			for(int j = 0; j < c; j++)
-				items[i][j] += items[i][j];
+				items[i * nCols + j] += m.items[i * m.nCols + j];
 		return this;
 	}
 
 	public Matrix mult(Matrix m){
+		return mult(m, new Matrix(nRows, m.nCols));
+	}
+
+	/**
+	 * Multiplies this matrix by a matrix.
+	 * @param m The matrix.
+	 * @param res The matrix in which the product is stored, which must be different from this matrix and <code>m</code>.
+	 * @return <code>res</code>.
+	 */
+	public Matrix mult(Matrix m, Matrix res){
 		if(nCols != m.nRows)
 			System.err.println("Matrix Multiply: Different sizes\n");
-		Matrix res = new Matrix(nRows, m.nCols);
 		for (int i = 0; i < nRows; i++)
 			for(int j = 0; j < m.nCols; j++) {
 				double sum = 0;
 				for(int k = 0; k < nCols; k++)
-					sum += items[i][k] * m.items[k][j];
-				res.items[i][j] = sum;
+					sum += items[i * nCols + k] * m.items[k * m.nCols + j];
+				res.items[i * res.nCols + j] = sum;
 			}
 		return res;
 	}	
@@ -127,7 +131,7 @@ class Matrix {
 		String res = "M "+nRows+" "+nCols+"\n";
 		for(int i = 0; i < nRows; i++) {
 			for (int j = 0; j < nCols ; j++)
-				res += " "+items[i][j];
+				res += " "+get(i, j);
 			res += "\n";
 		}
 		res+="\n";
@@ -136,34 +140,30 @@ class Matrix {
 	
 	// We can't modify an argument of type double in java
 	// So, we modify an array containing only one element of type double
+	// The matrix is inverted in place
 	public Matrix invert(double[] rdet){
 		int i, j, k;
 		double recipBiga, hold;
-		int[] l = new int[PERMBUFSIZE];
-		int[] m = new int[PERMBUFSIZE];
+		int n = nRows;
+		int[] l = new int[n];
+		int[] m = new int[n];
 
 		if (nRows != nCols)
 			System.err.println("InvertMatrix: not square");
 			
-		Matrix rm = this;
-
-	    /* Allocate permutation vectors for l and m, with the same origin
-	       as the matrix. */
-
-		if (nRows >= PERMBUFSIZE)
-			System.err.println("InvertMatrix: PERMBUFSIZE");
+		double[] rm = items;
 
 		double det = 1.0;
-		for (k = 0; k < nRows;  k++) {
+		for (k = 0; k < n;  k++) {
 			l[k] = k;  
 			m[k] = k;
-			double biga = rm.items[k][k];
+			double biga = rm[k * n + k];
 
 			/* Find the biggest element in the submatrix */
-			for (i = k;  i < nRows;  i++)
-				for (j = k; j < nRows; j++)
-					if (Math.abs(rm.items[i][j]) > Math.abs(biga)) {
-						biga = rm.items[i][j];
+			for (i = k;  i < n;  i++)
+				for (j = k; j < n; j++)
+					if (Math.abs(rm[i * n + j]) > Math.abs(biga)) {
+						biga = rm[i * n + j];
 						l[k] = i;
 						m[k] = j;
 					}
@@ -171,85 +171,95 @@ class Matrix {
 			/* Interchange rows */
 			i = l[k];
 			if (i > k)
-				for (j = 0; j < nRows; j++) {
-					hold = -rm.items[k][j];
-					rm.items[k][j] = rm.items[i][j];
-					rm.items[i][j] = hold;
+				for (j = 0; j < n; j++) {
+					hold = -rm[k * n + j];
+					rm[k * n + j] = rm[i * n + j];
+					rm[i * n + j] = hold;
 				}
 
 			/* Interchange columns */
 			j = m[k];
 			if (j > k)
-				for (i = 0; i < nRows; i++) {
-					hold = -rm.items[i][k];
-					rm.items[i][k] = rm.items[i][j];
-					rm.items[i][j] = hold;
+				for (i = 0; i < n; i++) {
+					hold = -rm[i * n + k];
+					rm[i * n + k] = rm[i * n + j];
+					rm[i * n + j] = hold;
 				}
 
 			/* Divide column by minus pivot
 			    (value of pivot element is contained in biga). */
 			if (biga == 0.0) {
 				rdet[0] = 0.;
-				return rm;
+				return this;
 			}
 
 			recipBiga = 1/biga;
-			for (i = 0; i < nRows; i++)
+			for (i = 0; i < n; i++)
 				if (i != k)
-					rm.items[i][k] *= -recipBiga;
+					rm[i * n + k] *= -recipBiga;
 
 			/* Reduce matrix */
-			for (i = 0; i < nRows; i++)
+			for (i = 0; i < n; i++)
 				if (i != k) {
-					hold = rm.items[i][k];
-					for (j = 0; j < nRows; j++)
+					hold = rm[i * n + k];
+					for (j = 0; j < n; j++)
 						if (j != k)
-							rm.items[i][j] += hold * rm.items[k][j];
+							rm[i * n + j] += hold * rm[k * n + j];
 				}
 
 			/* Divide row by pivot */
-			for (j = 0; j < nRows; j++)
+			for (j = 0; j < n; j++)
 				if (j != k)
-					rm.items[k][j] *= recipBiga;
+					rm[k * n + j] *= recipBiga;
 
 			det *= biga;	/* Product of pivots */
 			
-			rm.items[k][k] = recipBiga;
+			rm[k * n + k] = recipBiga;
 
 		}	/* K loop */
 
 		/* Final row & column interchanges */
-		for (k = nRows - 1; k >= 0; k--) {
+		for (k = n - 1; k >= 0; k--) {
 			i = l[k];
 			if (i > k)
-				for (j = 0; j < nRows; j++) {
-					hold = rm.items[j][k];
-					rm.items[j][k] = -rm.items[j][i];
-					rm.items[j][i] = hold;
+				for (j = 0; j < n; j++) {
+					hold = rm[j * n + k];
+					rm[j * n + k] = -rm[j * n + i];
+					rm[j * n + i] = hold;
 				}
 			j = m[k];
 			if (j > k)
-				for (i = 0; i < nRows; i++) {
-					hold = rm.items[k][i];
-					rm.items[k][i] = -rm.items[j][i];
-					rm.items[j][i] = hold;
+				for (i = 0; i < n; i++) {
+					hold = rm[k * n + i];
+					rm[k * n + i] = -rm[j * n + i];
+					rm[j * n + i] = hold;
 				}
 		}
 
 		rdet[0] = det;
-		return rm;
+		return this;
 
 	}
 	
 	public Matrix slice(BitVector rowmask, BitVector colmask){
-		Matrix r = new Matrix(rowmask.bitCount (nRows), colmask.bitCount (nCols));
+		return slice(rowmask, colmask, new Matrix(rowmask.bitCount (nRows), colmask.bitCount (nCols)));
+	}
+
+	/**
+	 * Copies the items of the rows and the columns of a mask in a matrix.
+	 * @param rowmask The rows.
+	 * @param colmask The columns.
+	 * @param r The matrix in which the items are copied, whose size is the number of rows and columns of the masks.
+	 * @return <code>r</code>.
+	 */
+	public Matrix slice(BitVector rowmask, BitVector colmask, Matrix r){
 		int ri = 0;
 		for (int i = 0; i < nRows; i++)
 			if (rowmask.isSet (i) ) {
 				int rj = 0;
 				for (int j = 0; j < nCols; j++)
 					if(colmask.isSet (j))
-						r.items[ri][rj++] = items[i][j];
+						r.items[ri * r.nCols + rj++] = items[i * nCols + j];
 				ri++;
 			}
 		return r;
@@ -265,7 +275,7 @@ class Matrix {
 				int rj = 0;
 				for (int j = 0; j < ncol; j++)
 					if (colmask.isSet (j))
-						r.items[i][j] = items[ri][rj++];
+						r.items[i * ncol + j] = items[ri * nCols + rj++];
 				ri++;
 			}
 		}
@@ -18,20 +18,26 @@ import java.awt.geom.Rectangle2D;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import fr.lri.swingstates.canvas.CPolyLine;
 import fr.lri.swingstates.gestures.AbstractClassifier;
+import fr.lri.swingstates.gestures.ClassifierFile;
+import fr.lri.swingstates.gestures.CompiledClassifier;
 import fr.lri.swingstates.gestures.Gesture;
 import fr.lri.swingstates.gestures.GestureClass;
 import fr.lri.swingstates.gestures.GestureUtils;
+import fr.lri.swingstates.gestures.IncrementalRecognizer;
+import fr.lri.swingstates.gestures.PackedStroke;
 import fr.lri.swingstates.gestures.Score;
 
 /**
@@ -44,14 +50,12 @@ public class RubineClassifier extends AbstractClassifier {
 	
 	class RubineGestureClass extends GestureClass {
 
-		private Vector<Double> average;
+		private double[] average;
 		private Matrix sumCov;
 
 		RubineGestureClass() {
 			super();
-			average = new Vector<Double>(RubineClassifier.NAME_FEATURES.length);
-			for (int i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				average.add(0.0);
+			average = new double[RubineClassifier.NAME_FEATURES.length];
 			sumCov = new Matrix(RubineClassifier.NAME_FEATURES.length, RubineClassifier.NAME_FEATURES.length, true);
 		}
 
@@ -70,26 +74,29 @@ public class RubineClassifier extends AbstractClassifier {
 			int i, j;
 			int nExamples = gestures.size();
 
-			double[] nfv = new double[RubineClassifier.NAME_FEATURES.length];
-			Vector<Double> fv = RubineClassifier.getFeatures(gesture);
+			int n = RubineClassifier.NAME_FEATURES.length;
+			double[] nfv = new double[n];
+			double[] fv = RubineClassifier.getFeatures(gesture, new double[n]);
 
 			double nm1on = ((double) nExamples - 1) / nExamples;
 			double recipn = 1.0 / nExamples;
 
 			/* incrementally update mean vector */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				average.set(i, (average.get(i) - recipn * fv.get(i)) / nm1on);
+			for (i = 0; i < n; i++)
+				average[i] = (average[i] - recipn * fv[i]) / nm1on;
 
 			/* incrementally update covariance matrix */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				nfv[i] = fv.get(i) - average.get(i);
+			for (i = 0; i < n; i++)
+				nfv[i] = fv[i] - average[i];
 
 			/* only upper triangular part computed */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				for (j = i; j < RubineClassifier.NAME_FEATURES.length; j++)
-					sumCov.items[i][j] -= nm1on * nfv[i] * nfv[j];
+			for (i = 0; i < n; i++)
+				for (j = i; j < n; j++)
+					sumCov.items[i * n + j] -= nm1on * nfv[i] * nfv[j];
 
-			return super.removeExample(gesture);
+			boolean removed = super.removeExample(gesture);
+			exampleChanged(this, nfv, -nm1on, -1);
+			return removed;
 		}
 
 		/**
@@ -98,30 +105,32 @@ public class RubineClassifier extends AbstractClassifier {
 		public void addExample(Gesture gesture) {
 			super.addExample(gesture);
 			int i, j;
-			double[] nfv = new double[RubineClassifier.NAME_FEATURES.length];
-			Vector<Double> fv = RubineClassifier.getFeatures(gesture);
+			int n = RubineClassifier.NAME_FEATURES.length;
+			double[] nfv = new double[n];
+			double[] fv = RubineClassifier.getFeatures(gesture, new double[n]);
 			int nExamples = gestures.size();
 
 			double nm1on = ((double) nExamples - 1) / nExamples;
 			double recipn = 1.0 / nExamples;
 
 			/* incrementally update covariance matrix */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				nfv[i] = fv.get(i) - average.get(i);
+			for (i = 0; i < n; i++)
+				nfv[i] = fv[i] - average[i];
 			/* only upper triangular part computed */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				for (j = i; j < RubineClassifier.NAME_FEATURES.length; j++)
-					sumCov.items[i][j] += nm1on * nfv[i] * nfv[j];
+			for (i = 0; i < n; i++)
+				for (j = i; j < n; j++)
+					sumCov.items[i * n + j] += nm1on * nfv[i] * nfv[j];
 			/* incrementally update mean vector */
-			for (i = 0; i < RubineClassifier.NAME_FEATURES.length; i++)
-				average.set(i, nm1on * average.get(i) + recipn * fv.get(i));
+			for (i = 0; i < n; i++)
+				average[i] = nm1on * average[i] + recipn * fv[i];
 
+			exampleChanged(this, nfv, nm1on, 1);
 		}
 
 		/**
 		 * @return the average vector features of this gesture class.
 		 */
-		public Vector<Double> getAverage() {
+		public double[] getAverage() {
 			return average;
 		}
 
@@ -135,7 +144,7 @@ public class RubineClassifier extends AbstractClassifier {
 	}
 
 
-	private static double EPSILON = 1.0e-6;
+	static double EPSILON = 1.0e-6;
 
 	public static double DIST_SQ_THRESHOLD = 3 * 3;
 	public static double SE_TH_ROLLOFF = 4 * 4;
@@ -210,10 +219,16 @@ public class RubineClassifier extends AbstractClassifier {
 	};
 
 
-	private ArrayList<Double> cnst = null;
-	private Vector<Vector<Double>> weights = null;
-	private Matrix invAvgCov;
-	private boolean compiled;
+	/**
+	 * The model the classifier has been trained with, which is replaced by a new model when the classifier is trained.
+	 */
+	private final AtomicReference<RubineModel> model = new AtomicReference<RubineModel>();
+	/**
+	 * The version of the examples, incremented each time the examples of the classifier change.
+	 */
+	private int version = 0;
+	private ExecutorService trainingExecutor = null;
+	private Future<?> training = null;
 
 //	private double probabilityThreshold = 1.0;
 	private int mahalanobisThreshold = 500000;
@@ -223,6 +238,24 @@ public class RubineClassifier extends AbstractClassifier {
 
 	protected ArrayList<RubineGestureClass>    classes = new ArrayList<RubineGestureClass>();
 
+	/**
+	 * The vector of features of the last gesture recognized by each thread.
+	 */
+	private static final ThreadLocal<double[]> FEATURES = new ThreadLocal<double[]>() {
+		protected double[] initialValue() {
+			return new double[NAME_FEATURES.length];
+		}
+	};
+
+	/**
+	 * The object that computes the features of gestures in each thread.
+	 */
+	private static final ThreadLocal<RubineFeatures> ACCUMULATOR = new ThreadLocal<RubineFeatures>() {
+		protected RubineFeatures initialValue() {
+			return new RubineFeatures();
+		}
+	};
+
 	public RubineClassifier() {
 		super();
 	}
@@ -249,9 +282,7 @@ public class RubineClassifier extends AbstractClassifier {
 	public static RubineClassifier newClassifier(URL url) {
 		RubineClassifier c = new RubineClassifier();
 		try {
-			URLConnection urlc = null;
-			urlc = url.openConnection();
-			c.read(new DataInputStream(urlc.getInputStream()));
+			c.load(url);
 			c.compile();
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -261,15 +292,7 @@ public class RubineClassifier extends AbstractClassifier {
 		return c;
 	}
 
-	private double mahalanobisDistance(Vector<Double> v, Vector<Double> u, Matrix sigma) {
-		Vector<Double> tmp = VectorUtility.minus(v, u);
-		double quadForm = VectorUtility.quadraticForm(tmp, sigma);
-		return quadForm;
-	}
-
-	private void fix(Matrix avgcov) {
-		double[] det = new double[1];
-		BitVector bv = new BitVector();
+	static Matrix fix(Matrix avgcov, BitVector bv, double[] det) {
 		// just add the features one by one, discarding any that cause the
 		// matrix to be non-invertible
 		bv.zero();
@@ -283,7 +306,7 @@ public class RubineClassifier extends AbstractClassifier {
 		if (Math.abs(det[0]) <= EPSILON)
 			System.err.println("Can't fix classifier!\n");
 
-		invAvgCov = m.deSlice(0.0, NAME_FEATURES.length, NAME_FEATURES.length, bv, bv);
+		return m.deSlice(0.0, NAME_FEATURES.length, NAME_FEATURES.length, bv, bv);
 	}
 
 	/**
@@ -297,7 +320,7 @@ public class RubineClassifier extends AbstractClassifier {
 	public static RubineClassifier newClassifier(File filename) {
 		RubineClassifier c = new RubineClassifier();
 		try {
-			c.read(new DataInputStream(new FileInputStream(filename)));
+			c.load(filename);
 			c.compile();
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -311,12 +334,9 @@ public class RubineClassifier extends AbstractClassifier {
 	 * {@inheritDoc}
 	 */
 	public void reset() {
-		cnst = null;
-		weights = null;
-		init();
 		classes.clear();
 		super.reset();
-		compiled = false;
+		invalidateModel();
 	}
 
 	/**
@@ -326,10 +346,8 @@ public class RubineClassifier extends AbstractClassifier {
 		int index = classesNames.indexOf(className);
 		if(index == -1) return;
 		classes.remove(index);
-		weights.remove(index);
-		cnst.remove(index);
 		super.removeClass(className);
-		compiled = false;
+		invalidateModel();
 		fireClassRemoved(className);
 	}
 	
@@ -344,7 +362,7 @@ public class RubineClassifier extends AbstractClassifier {
 	 *         <code>className</code>.
 	 */
 	public CPolyLine getRepresentative(String className) {
-		compile();
+		RubineModel m = compile();
 		int i = 0;
 		GestureClass gestureClass = null;
 
@@ -354,7 +372,7 @@ public class RubineClassifier extends AbstractClassifier {
 				break;
 		}
 
-		if (i >= classes.size())
+		if (i >= classes.size() || m == null)
 			return null;
 
 		CPolyLine representative = null;
@@ -363,8 +381,7 @@ public class RubineClassifier extends AbstractClassifier {
 
 		for (Iterator<Gesture> iterator = gestureClass.getGestures().iterator(); iterator.hasNext();) {
 			next = iterator.next();
-			Vector<Double> fv = getFeatures(next);
-			double value = VectorUtility.scalarProduct(weights.get(i), fv) + cnst.get(i);
+			double value = m.value(i, features(next));
 			if (value > maxValue) {
 				maxValue = value;
 				representative = next.asPolyLine();
@@ -375,79 +392,180 @@ public class RubineClassifier extends AbstractClassifier {
 		return representative;
 	}
 
-	void compute() {
-		if (classes.size() == 0)
-			return;
+	/**
+	 * The examples of the classes of a classifier, copied so that the classifier can be trained in another thread.
+	 */
+	private static class TrainingSet {
+
+		private int version;
+		private double[][] averages;
+		private Matrix[] sumCovs;
+		private int[] nbExamples;
+
+		TrainingSet(int version, ArrayList<RubineGestureClass> classes) {
+			this.version = version;
+			int n = classes.size();
+			averages = new double[n][];
+			sumCovs = new Matrix[n];
+			nbExamples = new int[n];
+			for (int nc = 0; nc < n; nc++) {
+				RubineGestureClass gestureClass = classes.get(nc);
+				averages[nc] = gestureClass.getAverage().clone();
+				sumCovs[nc] = new Matrix(gestureClass.getSumCov());
+				nbExamples[nc] = gestureClass.getNumberOfExamples();
+			}
+		}
 
-		Matrix avgcov = new Matrix(NAME_FEATURES.length, NAME_FEATURES.length, true);
-		int ne = 0;
-		int nc;
-		ArrayList<RubineGestureClass> d = classes;
+		/**
+		 * Trains a classifier from scratch.
+		 * @return The model, null if there are not enough examples.
+		 */
+		RubineModel train() {
+			if (averages.length == 0)
+				return null;
+
+			int n = NAME_FEATURES.length;
+			Matrix avgcov = new Matrix(n, n, true);
+			int ne = 0;
+			int nc;
+
+			for (nc = 0; nc < averages.length; nc++) {
+				ne += nbExamples[nc];
+				/* should do : avgcov += d->Sumcov; for triangular */
+				for (int i = 0; i < n; i++)
+					for (int j = i; j < n; j++)
+						avgcov.items[i * n + j] += sumCovs[nc].items[i * n + j];
+			}
 
-		for (nc = 0; nc < classes.size(); nc++) {
-			ne += d.get(nc).getNumberOfExamples();
-			/* should do : avgcov += d->Sumcov; for triangular */
-			for (int i = 0; i < NAME_FEATURES.length; i++)
-				for (int j = i; j < NAME_FEATURES.length; j++)
-					avgcov.items[i][j] += d.get(nc).getSumCov().items[i][j];
-		}
+			int denom = ne - averages.length;
+			if (denom <= 0) {
+				System.out.println("no examples, denom=" + denom + "\n");
+				return null;
+			}
 
-		int denom = ne - classes.size();
-		if (denom <= 0) {
-			System.out.println("no examples, denom=" + denom + "\n");
-			return;
-		}
+			Matrix sumCov = new Matrix(n, n);
+			double oneoverdenom = 1.0 / denom;
+			/* should have : avgcov *= oneoverdenom and detriangularize */
+			for (int i = 0; i < n; i++)
+				for (int j = i; j < n; j++) {
+					sumCov.items[i * n + j] = avgcov.items[i * n + j];
+					sumCov.items[j * n + i] = avgcov.items[i * n + j];
+					avgcov.items[i * n + j] *= oneoverdenom;
+					avgcov.items[j * n + i] = avgcov.items[i * n + j];
+				}
 
-		double oneoverdenom = 1.0 / denom;
-		/* should have : avgcov *= oneoverdenom and detriangularize */
-		for (int i = 0; i < NAME_FEATURES.length; i++)
-			for (int j = i; j < NAME_FEATURES.length; j++) {
-				avgcov.items[i][j] *= oneoverdenom;
-				avgcov.items[j][i] = avgcov.items[i][j];
+			/* invert the avg covariance matrix */
+			double[] det = new double[1];
+
+			// invert works in place and fix needs the avg covariance matrix
+			Matrix invAvgCov = new Matrix(avgcov).invert(det);
+			BitVector features = null;
+			if (Math.abs(det[0]) <= EPSILON) {
+				features = new BitVector();
+				invAvgCov = fix(avgcov, features, det);
 			}
 
-		/* invert the avg covariance matrix */
-		double[] det = new double[1];
+			/* now compute discrimination functions */
+			Matrix weights = new Matrix(averages.length, n);
+			double[] cnst = new double[averages.length];
+			double[] w = new double[n];
+			for (nc = 0; nc < averages.length; nc++) {
+				VectorUtility.mult(averages[nc], invAvgCov, w);
+				System.arraycopy(w, 0, weights.items, nc * n, n);
+				cnst[nc] = -0.5 * VectorUtility.scalarProduct(w, averages[nc]);
+				/* could add log(priorprob class) to cnst */
+			}
+			return new RubineModel(version, weights, cnst, averages, invAvgCov, denom, sumCov, features, det[0], 0);
+		}
 
-		invAvgCov = avgcov.invert(det);
-		if (Math.abs(det[0]) <= EPSILON)
-			fix(avgcov);
+	}
 
-		/* now compute discrimination functions */
-		d = classes;
+	/**
+	 * Called when an example has been added to or removed from a class: the model is updated if it is up to date,
+	 * otherwise the classifier will be trained from scratch.
+	 */
+	private void exampleChanged(RubineGestureClass gestureClass, double[] nfv, double coefficient, int nbExamplesChange) {
+		version++;
+		RubineModel m = model.get();
+		if (m == null || m.version != version - 1)
+			return;
+		int index = classes.indexOf(gestureClass);
+		if (index == -1)
+			return;
+		RubineModel updated = m.update(version, index, gestureClass.getAverage().clone(), nfv, coefficient, m.denominator + nbExamplesChange);
+		if (updated != null)
+			model.compareAndSet(m, updated);
+	}
 
-		init();
+	/**
+	 * Called when the classes of the classifier change: the classifier will be trained from scratch.
+	 */
+	private void invalidateModel() {
+		version++;
+		model.set(null);
+	}
 
-		for (nc = 0; nc < classes.size(); nc++) {
-			if (nc >= weights.size())
-				weights.add(VectorUtility.mult(d.get(nc).getAverage(), invAvgCov));
-			else
-				weights.set(nc, VectorUtility.mult(d.get(nc).getAverage(), invAvgCov));
-			cnst.set(nc, -0.5 * VectorUtility.scalarProduct(weights.get(nc), d.get(nc).getAverage()));
-			/* could add log(priorprob class) to cnst */
-		}
-		compiled = true;
+	/**
+	 * Compiles this classifier (i.e. performs training) if its examples have changed since it has been trained.
+	 * @return The model, null if the classifier cannot be trained.
+	 */
+	private RubineModel compile() {
+		RubineModel m = model.get();
+		if (m != null && m.version == version)
+			return m;
+		m = new TrainingSet(version, classes).train();
+		model.set(m);
+		return m;
 	}
 
-	private void init() {
-		if (cnst == null) {
-			cnst = new ArrayList<Double>();
-			for (int i = 0; i < classes.size(); i++)
-				cnst.add(0.0);
-		}
-		if (weights == null) {
-			weights = new Vector<Vector<Double>>();
-			for (int i = 0; i < classes.size(); i++)
-				weights.add(new Vector<Double>(NAME_FEATURES.length));
+	/**
+	 * @return The model to recognize gestures: the model that is being trained in background may be out of date.
+	 */
+	RubineModel getModel() {
+		RubineModel m = model.get();
+		if (m != null && m.version == version)
+			return m;
+		if (m != null && trainingExecutor != null) {
+			trainInBackground();
+			return m;
 		}
+		return compile();
+	}
+
+	private synchronized void trainInBackground() {
+		if (training != null && !training.isDone())
+			return;
+		final RubineModel previous = model.get();
+		final TrainingSet trainingSet = new TrainingSet(version, classes);
+		training = trainingExecutor.submit(new Runnable() {
+			public void run() {
+				// the model is not replaced if the classes have changed or if the classifier has been trained in the meantime
+				model.compareAndSet(previous, trainingSet.train());
+			}
+		});
 	}
 
 	/**
-	 * Compiles this classifier (i.e. performs training).
+	 * Sets the executor that trains this classifier in background. When an example is added or removed,
+	 * the weights of the classes are usually updated without training the classifier from scratch.
+	 * If the classifier must be trained from scratch (e.g. after a large number of updates), it is trained by default
+	 * when the next gesture is recognized. If an executor is set, it is trained by a thread of the executor instead,
+	 * and gestures are recognized with the previous weights until the new weights replace them.
+	 * Adding or removing a class always trains the classifier when the next gesture is recognized.
+	 * 
+	 * @param executor
+	 *            The executor, null to train the classifier in the thread that recognizes gestures.
 	 */
-	private void compile() {
-		if (!compiled)
-			compute();
+	public void setBackgroundTraining(ExecutorService executor) {
+		trainingExecutor = executor;
+	}
+
+	/**
+	 * @return The executor that trains this classifier in background, null if the classifier is trained
+	 * in the thread that recognizes gestures.
+	 */
+	public ExecutorService getBackgroundTraining() {
+		return trainingExecutor;
 	}
 
 	/**
@@ -458,23 +576,33 @@ public class RubineClassifier extends AbstractClassifier {
 	 * @return The class of gestures that best fit to g.
 	 */
 	public String classify(Gesture g) throws Exception {
-		if(GestureUtils.pathLength(g.getPoints()) < minimumStrokeLength) return null;
+		Score score = recognize(g);
+		if (!Double.isNaN(score.getScore()))
+			currentDistance = score.getScore();
+		return score.getName();
+	}
 
-		compile();
+	/**
+	 * {@inheritDoc} The distance is the distance returned by <code>getCurrentDistance()</code> after <code>classify</code>.
+	 */
+	protected Score recognize(Gesture g) throws Exception {
+		if(GestureUtils.pathLength(g.getStroke()) < minimumStrokeLength) return new Score(null, Double.NaN);
 
-		Vector<Double> fv = getFeatures(g);
-		Vector<Vector<Double>> wghts = weights;
-		ArrayList<Double> cst = cnst;
+		RubineModel m = getModel();
+		if (m == null)
+			throw new Exception("A Rubine classifier must have at least 2 classes and 2 examples per classes");
+
+		double[] fv = features(g);
 		ArrayList<RubineGestureClass> d = classes;
-		double[] values = new double[classes.size()];
 		RubineGestureClass maxclass = null;
+		int maxindex = -1;
 		double maxvalue = -Double.MAX_VALUE;
 
 		for (int nc = 0; nc < classes.size(); nc++) {
-			double value = VectorUtility.scalarProduct(wghts.get(nc), fv) + cst.get(nc);
-			values[nc] = value;
+			double value = m.value(nc, fv);
 			if (value > maxvalue) {
 				maxclass = d.get(nc);
+				maxindex = nc;
 				maxvalue = value;
 			}
 		}
@@ -488,8 +616,9 @@ public class RubineClassifier extends AbstractClassifier {
 //		currentProbability = 1.0 / denom;
 
 		// calculate distance to mean of chosen class
+		double distance;
 		try {
-			currentDistance = mahalanobisDistance(fv, maxclass.getAverage(), invAvgCov);
+			distance = m.mahalanobisDistance(fv, maxindex);
 		} catch(Exception e) {
 			throw new Exception("A Rubine classifier must have at least 2 classes and 2 examples per classes");
 		}
@@ -500,9 +629,34 @@ public class RubineClassifier extends AbstractClassifier {
 //		System.out.println("mahalanobisThreshold: " + mahalanobisThreshold);
 //		if (currentProbability >= probabilityThreshold && currentDistance <= mahalanobisThreshold)
 //		return maxclass.getName();
-		if (currentDistance <= mahalanobisThreshold)
-			return maxclass.getName();
-		return null;
+		if (distance <= mahalanobisThreshold)
+			return new Score(maxclass.getName(), distance);
+		return new Score(null, distance);
+	}
+
+	/**
+	 * {@inheritDoc} The classifier is trained if it has changed.
+	 */
+	protected void prepareRecognition() {
+		compile();
+	}
+
+	/**
+	 * {@inheritDoc} The classifier is trained if it has changed.
+	 */
+	public CompiledClassifier freeze() {
+		RubineModel m = compile();
+		if (m == null)
+			throw new IllegalStateException("A Rubine classifier must have at least 2 classes and 2 examples per classes");
+		return new CompiledRubineClassifier(classesNames, m, mahalanobisThreshold, minimumStrokeLength);
+	}
+
+	/**
+	 * {@inheritDoc} The features of the gesture are updated each time a point is added, and the confidence
+	 * is the probability of non-ambiguity of the recognized class.
+	 */
+	public IncrementalRecognizer newIncrementalRecognizer() {
+		return new IncrementalRubineRecognizer(this);
 	}
 
 	/**
@@ -513,24 +667,31 @@ public class RubineClassifier extends AbstractClassifier {
 		if(index == -1) return -1;
 		RubineGestureClass gcr = new RubineGestureClass(className);
 		classes.add(gcr);
-		init();
-		weights.add(new Vector<Double>(NAME_FEATURES.length));
-		cnst.add(0.0);
-		compiled = false;
+		invalidateModel();
 		fireClassAdded(className);
 		return index;
 	}
 	
 	public Vector<Double> getWeights(String className) {
-		compile();
+		RubineModel m = compile();
 		int index = -1;
 		for (int i = 0; i < getClassesNames().size(); i++) {
 			String clName = getClassesNames().get(i);
 			if(clName.compareTo(className) == 0)
 				index = i;
 		}
-		if(index == -1) return null;
-		return weights.get(index);
+		if(index == -1 || m == null) return null;
+		Vector<Double> weights = new Vector<Double>(NAME_FEATURES.length);
+		for (int i = 0; i < NAME_FEATURES.length; i++)
+			weights.add(m.weights.get(index, i));
+		return weights;
+	}
+
+	private static Vector<Double> toVector(double[] array) {
+		Vector<Double> vector = new Vector<Double>(array.length);
+		for (int i = 0; i < array.length; i++)
+			vector.add(array[i]);
+		return vector;
 	}
 
 	/**
@@ -560,7 +721,7 @@ public class RubineClassifier extends AbstractClassifier {
 		int index = classesNames.indexOf(className);
 		if(index == -1) return null;
 		RubineGestureClass gClass = classes.get(index);
-		return gClass.getAverage();
+		return toVector(gClass.getAverage());
 	}
 
 	/**
@@ -621,6 +782,95 @@ public class RubineClassifier extends AbstractClassifier {
 		return this;
 	}
 
+	/**
+	 * {@inheritDoc} The classes are followed by the averages and the covariance matrices of the classes and
+	 * the model the classifier has been trained with, so that a <code>RubineClassifier</code> is not trained again
+	 * when the file is read. The points of the examples are only decoded when they are accessed.
+	 */
+	protected boolean write(ClassifierFile.Output out) throws IOException {
+		out.setKind(ClassifierFile.RUBINE);
+		writeClasses(out);
+		int n = NAME_FEATURES.length;
+		out.writeInt(mahalanobisThreshold);
+		out.writeInt(minimumStrokeLength);
+		out.writeInt(n);
+		for (int nc = 0; nc < classes.size(); nc++) {
+			RubineGestureClass gestureClass = classes.get(nc);
+			out.writeDoubles(gestureClass.average, 0, n);
+			out.writeDoubles(gestureClass.sumCov.items, 0, n * n);
+		}
+		RubineModel m = compile();
+		if (m == null) {
+			out.writeInt(0);
+			return true;
+		}
+		out.writeInt(1);
+		out.writeInt(m.denominator);
+		out.writeDouble(m.determinant);
+		out.writeInt(m.nbUpdates);
+		out.writeInt(m.features == null ? 0 : 1);
+		out.writeLong(m.features == null ? 0 : m.features.direct);
+		out.writeDoubles(m.weights.items, 0, classes.size() * n);
+		out.writeDoubles(m.cnst, 0, classes.size());
+		out.writeDoubles(m.invAvgCov.items, 0, n * n);
+		out.writeDoubles(m.sumCov.items, 0, n * n);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void read(ClassifierFile.Input in) throws IOException {
+		if (in.getKind() != ClassifierFile.RUBINE) {
+			super.read(in);
+			return;
+		}
+		int nClasses = in.readInt();
+		for (int nc = 0; nc < nClasses; nc++) {
+			classesNames.add(in.readString());
+			PackedStroke template = in.readStroke();
+			templates.add(template == null ? null : template.toPoints());
+			RubineGestureClass gestureClass = new RubineGestureClass(classesNames.get(nc));
+			// the average and the covariance matrix are read below, the examples are not added with addExample
+			int nbExamples = in.readInt();
+			for (int i = 0; i < nbExamples; i++)
+				gestureClass.getGestures().add(in.readGesture());
+			classes.add(gestureClass);
+		}
+		int n = NAME_FEATURES.length;
+		mahalanobisThreshold = in.readInt();
+		minimumStrokeLength = in.readInt();
+		if (in.readInt() != n)
+			throw new IOException("the classifier file does not have " + n + " features");
+		for (int nc = 0; nc < nClasses; nc++) {
+			RubineGestureClass gestureClass = classes.get(nc);
+			in.readDoubles(gestureClass.average, 0, n);
+			in.readDoubles(gestureClass.sumCov.items, 0, n * n);
+		}
+		invalidateModel();
+		if (in.readInt() == 0)
+			return;
+		int denominator = in.readInt();
+		double determinant = in.readDouble();
+		int nbUpdates = in.readInt();
+		BitVector features = in.readInt() == 0 ? null : new BitVector();
+		long direct = in.readLong();
+		if (features != null)
+			features.direct = direct;
+		Matrix weights = new Matrix(nClasses, n);
+		in.readDoubles(weights.items, 0, nClasses * n);
+		double[] cnst = new double[nClasses];
+		in.readDoubles(cnst, 0, nClasses);
+		Matrix invAvgCov = new Matrix(n, n);
+		in.readDoubles(invAvgCov.items, 0, n * n);
+		Matrix sumCov = new Matrix(n, n);
+		in.readDoubles(sumCov.items, 0, n * n);
+		double[][] averages = new double[nClasses][];
+		for (int nc = 0; nc < nClasses; nc++)
+			averages[nc] = classes.get(nc).getAverage().clone();
+		model.set(new RubineModel(version, weights, cnst, averages, invAvgCov, denominator, sumCov, features, determinant, nbUpdates));
+	}
+
 	/**
 	 * @return The probability of non ambiguity for the last recognized gesture.
 	 */
@@ -682,12 +932,12 @@ public class RubineClassifier extends AbstractClassifier {
 	 * {@inheritDoc}
 	 */
 	public Vector<Score> sortedClasses(Gesture g) {
-		compile();
+		RubineModel m = getModel();
 		Vector<Score> sortedClasses = new Vector<Score>();
+		if (m == null)
+			return sortedClasses;
 
-		Vector<Double> fv = getFeatures(g);
-		Vector<Vector<Double>> wghts = weights;
-		ArrayList<Double> cst = cnst;
+		double[] fv = features(g);
 
 //		for (int nc = 0; nc < classes.size(); nc++) {
 //		double value = VectorUtility.scalarProduct(wghts.get(nc), fv) + cst.get(nc);
@@ -701,21 +951,16 @@ public class RubineClassifier extends AbstractClassifier {
 //		}
 //		}
 
-		Vector<Double> sortedScalarProduct = new Vector<Double>();
+		double[] sortedScalarProduct = new double[classes.size()];
 		for (int nc = 0; nc < classes.size(); nc++) {
-			double value = VectorUtility.scalarProduct(wghts.get(nc), fv) + cst.get(nc);
-			if (nc == 0) {
-				sortedClasses.add(new Score(classes.get(nc).getName(), 
-						mahalanobisDistance(fv, classes.get(nc).getAverage(), invAvgCov)));
-				sortedScalarProduct.add(value);
-			} else {
-				int i = 0;
-				while (i < sortedScalarProduct.size() && sortedScalarProduct.get(i) > value)
-					i++;
-				sortedClasses.add(i, new Score(classes.get(nc).getName(), 
-						mahalanobisDistance(fv, classes.get(nc).getAverage(), invAvgCov)));
-				sortedScalarProduct.add(i, value);
-			}
+			double value = m.value(nc, fv);
+			int i = 0;
+			while (i < nc && sortedScalarProduct[i] > value)
+				i++;
+			System.arraycopy(sortedScalarProduct, i, sortedScalarProduct, i + 1, nc - i);
+			sortedScalarProduct[i] = value;
+			sortedClasses.add(i, new Score(classes.get(nc).getName(), 
+					m.mahalanobisDistance(fv, nc)));
 		}
 		return sortedClasses;
 	}
@@ -726,155 +971,35 @@ public class RubineClassifier extends AbstractClassifier {
 	 * @return The vector of features.
 	 */
 	public static Vector<Double> getFeatures(Gesture g) {
+		return toVector(getFeatures(g, new double[NAME_FEATURES.length]));
+	}
 
-		Vector<Double> compiledData = new Vector<Double>();
-		for (int i = 0; i < NAME_FEATURES.length; i++)
-			compiledData.add(0.0);
-
-		if (g.getPoints().size() < 3)
-			return compiledData; // a feature vector of all zeros, at least 3
-		// points are required to compute initial
-		// sin and cos
-
-		// initial cos and sin
-		/* compute initial theta */
-		Point2D thirdPoint = g.getPoints().get(2);
-		/* find angle w.r.t. positive x axis e.g. (1,0) */
-		double dx = thirdPoint.getX() - g.getStart().getX();
-		double dy = thirdPoint.getY() - g.getStart().getY();
-		double dist2 = dx * dx + dy * dy;
-		if (dist2 > DIST_SQ_THRESHOLD) {
-			double d = Math.sqrt(dist2);
-			compiledData.set(PF_INIT_COS, dx / d);
-			compiledData.set(PF_INIT_SIN, dy / d);
-		}
-
-		// compute features related to bounding box (length and orientation)
-		double t1 = g.getMax().getX() - g.getMin().getX();
-		double t2 = g.getMax().getY() - g.getMin().getY();
-		double bblen = Math.sqrt(t1 * t1 + t2 * t2);
-		compiledData.set(PF_BB_LEN, bblen);
-		if (bblen * bblen > DIST_SQ_THRESHOLD) {
-			double tmp = Math.atan2(t2, t1);
-			compiledData.set(PF_BB_TH, tmp);
-		}
-
-		t1 = g.getEnd().getX() - g.getStart().getX();
-		t2 = g.getEnd().getY() - g.getStart().getY();
-		double selen = Math.sqrt(t1 * t1 + t2 * t2);
-		compiledData.set(PF_SE_LEN, selen);
-		double factor = selen * selen / SE_TH_ROLLOFF;
-		if (factor > 1.0)
-			factor = 1.0;
-		factor = selen > EPSILON ? factor / selen : 0.0;
-
-		compiledData.set(PF_SE_COS, (g.getEnd().getX() - g.getStart().getX()) * factor);
-		compiledData.set(PF_SE_SIN, (g.getEnd().getY() - g.getStart().getY()) * factor);
-
-		Point2D next = null;
-		Point2D previous = null;
-		double magsq = 0;
-		int i = 1;
-		double length = 0;
-		double rotation = 0;
-		double sumAbsAngles = 0;
-		double sharpness = 0;
-		Point2D del = null;
-//		Point2D delta = new Point2D.Double();
-		double maxSpeed = 0;
-
-//		for (Iterator<Point2D> iterator = g.getPoints().iterator(); iterator.hasNext();) {
-//			next = iterator.next();
-//			if (previous != null) {
-//				del = new Point2D.Double(previous.getX() - next.getX(), previous.getY() - next.getY()); // delta
-//				magsq = del.getX() * del.getX() + del.getY() * del.getY();
-//				if (magsq <= DIST_SQ_THRESHOLD) {
-//					continue; /* ignore this point */
-//				}
-//			}
-//
-//			double dist = Math.sqrt(magsq);
-//			length += dist;
-//
-//			if (i >= 3) {
-//				double theta1 = del.getX() * delta.getY() - delta.getX() * del.getY();
-//				double theta2 = del.getX() * delta.getX() + del.getY() * delta.getY();
-//				double th = Math.atan2(theta1, theta2);
-//				double absth = Math.abs(th);
-//				rotation += th;
-//				sumAbsAngles += absth;
-//				sharpness += th * th;
-//
-//				int indexPrevious = g.getPoints().indexOf(previous);
-//				double lastTime = g.getPointTimes().get(indexPrevious);
-////				double v = dist / (g.getPointTimes().get(g.getPointTimes().size() - 1) - lasttime);
-////				if (g.getPointTimes().get(g.getPointTimes().size() - 1) > lasttime && v > maxSpeed)
-////					maxSpeed = v;
-//				
-////				int indexCurrent = g.getPoints().indexOf(next);
-////				double currentTime = g.getPointTimes().get(indexCurrent);
-////				if(currentTime != lastTime) {
-////					double v = dist / (currentTime - lastTime);
-////					if (v > maxSpeed) {
-////						maxSpeed = v;
-////					}
-////				}
-//			}
-//
-//			if (previous != null) {
-//				delta.setLocation(del.getX(), del.getY());
-//			}
-//			
-//			previous = next;
-//			i++;
-//		}
-
-		for (Iterator<Point2D> iterator = g.getPoints().iterator(); iterator.hasNext();) {
-			next = iterator.next();
-			if (previous != null) {
-				del = new Point2D.Double(previous.getX() - next.getX(), previous.getY() - next.getY()); // delta
-				magsq = del.getX() * del.getX() + del.getY() * del.getY();
-				if (magsq <= DIST_SQ_THRESHOLD) {
-					continue; /* ignore this point */
-				}
-			}
-
-			double dist = Math.sqrt(magsq);
-			length += dist;
-
-			if (i >= 3) {
-				t1 = next.getX() - previous.getX();
-				t2 = next.getY() - previous.getY();
-				double r = Math.sqrt(t1 * t1 + t2 * t2);
-				
-				if(r == 0) continue;
-				
-				double th = t2 < 0 ? Math.acos(t1/r) : -Math.acos(t1/r);
-				double absth = Math.abs(th);
-				
-				rotation += th;
-				sumAbsAngles += absth;
-				sharpness += th * th;
+	/**
+	 * Computes the vector of features of a gesture used to recognize it in the current thread.
+	 * @param g The gesture
+	 * @return The vector of features, which is overwritten by the next call in the same thread.
+	 */
+	static double[] features(Gesture g) {
+		return getFeatures(g, FEATURES.get());
+	}
 
-			}
-			
-			previous = next;
-			i++;
-		}
-		
-		compiledData.set(PF_LEN, length);
-		compiledData.set(PF_TH, rotation);
-		compiledData.set(PF_ATH, sumAbsAngles);
-		compiledData.set(PF_SQTH, sharpness);
-
-		compiledData.set(PF_DUR, g.getDuration() * .01); // sensitive to
-		// a 1/10th of
-		// second
-
-//		compiledData.set(PF_MAXV, maxSpeed * 10000);
-		compiledData.set(PF_MAXV, maxSpeed);
-//		System.out.println("\t-- maxSpeed: "+maxSpeed);
-		return compiledData;
+	/**
+	 * Computes the vector of features for a gesture.
+	 * @param g The gesture
+	 * @param compiledData The array in which the features are stored, whose length is the number of features.
+	 * @return <code>compiledData</code>.
+	 */
+	public static double[] getFeatures(Gesture g, double[] compiledData) {
+		PackedStroke stroke = g.getStroke();
+		int nbPoints = stroke.size();
+		double[] xs = stroke.getXs();
+		double[] ys = stroke.getYs();
+		long[] times = stroke.getTimes();
+		RubineFeatures features = ACCUMULATOR.get();
+		features.reset();
+		for (int i = 0; i < nbPoints; i++)
+			features.addPoint(xs[i], ys[i], times[i]);
+		return features.getFeatures(compiledData);
 	}
 
 	/**
@@ -885,10 +1010,19 @@ public class RubineClassifier extends AbstractClassifier {
 	 * @return The vector of features.
 	 */
 	public static Vector<Double> getFeatures(Vector<Point2D> points) {
+		return toVector(getFeatures(points, new double[NAME_FEATURES.length]));
+	}
 
-		Vector<Double> compiledData = new Vector<Double>();
-		for (int i = 0; i < NAME_FEATURES.length; i++)
-			compiledData.add(0.0);
+	/**
+	 * Computes the vector of features for a list of points. Since we do not have
+	 * time information, features related to time are set to NaN 
+	 * (<i>path duration</i> and <i>maximum speed</i>).
+	 * @param points The list of points
+	 * @param compiledData The array in which the features are stored, whose length is the number of features.
+	 * @return <code>compiledData</code>.
+	 */
+	public static double[] getFeatures(Vector<Point2D> points, double[] compiledData) {
+		Arrays.fill(compiledData, 0);
 
 		if (points.size() < 3)
 			return compiledData; 
@@ -909,8 +1043,8 @@ public class RubineClassifier extends AbstractClassifier {
 		double dist2 = dx * dx + dy * dy;
 		if (dist2 > DIST_SQ_THRESHOLD) {
 			double d = Math.sqrt(dist2);
-			compiledData.set(PF_INIT_COS, dx / d);
-			compiledData.set(PF_INIT_SIN, dy / d);
+			compiledData[PF_INIT_COS] = dx / d;
+			compiledData[PF_INIT_SIN] = dy / d;
 		}
 
 		// compute features related to bounding box (length and orientation)
@@ -918,23 +1052,23 @@ public class RubineClassifier extends AbstractClassifier {
 		double t1 = bb.getMaxX() - bb.getMinX();
 		double t2 = bb.getMaxY() - bb.getMinY();
 		double bblen = Math.sqrt(t1 * t1 + t2 * t2);
-		compiledData.set(PF_BB_LEN, bblen);
+		compiledData[PF_BB_LEN] = bblen;
 		if (bblen * bblen > DIST_SQ_THRESHOLD) {
 			double tmp = Math.atan2(t2, t1);
-			compiledData.set(PF_BB_TH, tmp);
+			compiledData[PF_BB_TH] = tmp;
 		}
 
 		t1 = endPoint.getX() - startPoint.getX();
 		t2 = endPoint.getY() - startPoint.getY();
 		double selen = Math.sqrt(t1 * t1 + t2 * t2);
-		compiledData.set(PF_SE_LEN, selen);
+		compiledData[PF_SE_LEN] = selen;
 		double factor = selen * selen / SE_TH_ROLLOFF;
 		if (factor > 1.0)
 			factor = 1.0;
 		factor = selen > EPSILON ? factor / selen : 0.0;
 
-		compiledData.set(PF_SE_COS, (endPoint.getX() - startPoint.getX()) * factor);
-		compiledData.set(PF_SE_SIN, (endPoint.getY() - startPoint.getY()) * factor);
+		compiledData[PF_SE_COS] = (endPoint.getX() - startPoint.getX()) * factor;
+		compiledData[PF_SE_SIN] = (endPoint.getY() - startPoint.getY()) * factor;
 
 		Point2D next = null;
 		Point2D previous = null;
@@ -978,14 +1112,14 @@ public class RubineClassifier extends AbstractClassifier {
 			i++;
 		}
 
-		compiledData.set(PF_LEN, length);
-		compiledData.set(PF_TH, rotation);
-		compiledData.set(PF_ATH, sumAbsAngles);
-		compiledData.set(PF_SQTH, sharpness);
+		compiledData[PF_LEN] = length;
+		compiledData[PF_TH] = rotation;
+		compiledData[PF_ATH] = sumAbsAngles;
+		compiledData[PF_SQTH] = sharpness;
 
 		// cannot compute features related to time
-		compiledData.set(PF_DUR, Double.NaN);
-		compiledData.set(PF_MAXV, Double.NaN);
+		compiledData[PF_DUR] = Double.NaN;
+		compiledData[PF_MAXV] = Double.NaN;
 
 		return compiledData;
 	}
@@ -1042,8 +1176,8 @@ public class RubineClassifier extends AbstractClassifier {
 
 	
 	public double distance(String gesture1, String gesture2) {
-		compile();
-		if(!compiled) return 10;
+		RubineModel m = compile();
+		if(m == null) return 10;
 		
 		int index1 = classesNames.indexOf(gesture1);
 		int index2 = classesNames.indexOf(gesture2);
@@ -1056,13 +1190,11 @@ public class RubineClassifier extends AbstractClassifier {
 		
 		RubineGestureClass gc1 = classes.get(index1);
 		RubineGestureClass gc2 = classes.get(index2);
-		Vector<Double> av1 = gc1.getAverage();
-		Vector<Double> av2 = gc2.getAverage();
+		double[] av1 = gc1.getAverage();
+		double[] av2 = gc2.getAverage();
 		
-		Vector<Double> w1 = weights.get(index1);
-		Vector<Double> w2 = weights.get(index2);
-		for (int i = 0; i < av1.size(); i++) {
-			dis += Math.pow(w1.get(i)*av1.get(i) - w2.get(i)*av2.get(i), 2);
+		for (int i = 0; i < av1.length; i++) {
+			dis += Math.pow(m.weights.get(index1, i)*av1[i] - m.weights.get(index2, i)*av2[i], 2);
 		}
 		dis = Math.sqrt(dis);
 		
@@ -0,0 +1,158 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.rubine;
+
+/**
+ * Computes the features of a gesture as its points are added. The features only depend on the first, the third
+ * and the last points of the gesture, on its bounding box and on sums over its segments, so a point is added
+ * in constant time and the features of the points added so far can be read at any moment.
+ *
+ * @see fr.lri.swingstates.gestures.rubine.RubineClassifier#getFeatures(fr.lri.swingstates.gestures.Gesture, double[])
+ * @author SwingStates contributors
+ */
+final class RubineFeatures {
+
+	private int nbPoints;
+	private double startX, startY, thirdX, thirdY, endX, endY;
+	private double minX, minY, maxX, maxY;
+	private long startTime, endTime;
+
+	/* the last point that has not been ignored and the number of points that have not been ignored */
+	private double previousX, previousY;
+	private int nbKeptPoints;
+
+	private double length;
+	private double rotation;
+	private double sumAbsAngles;
+	private double sharpness;
+
+	RubineFeatures() {
+		reset();
+	}
+
+	/**
+	 * Removes all the points.
+	 */
+	void reset() {
+		nbPoints = 0;
+		nbKeptPoints = 0;
+		length = 0;
+		rotation = 0;
+		sumAbsAngles = 0;
+		sharpness = 0;
+	}
+
+	/**
+	 * @return The number of points that have been added.
+	 */
+	int size() {
+		return nbPoints;
+	}
+
+	/**
+	 * Adds a point at the end of the gesture.
+	 * @param x The x coordinate of the point.
+	 * @param y The y coordinate of the point.
+	 * @param t The input time of the point.
+	 */
+	void addPoint(double x, double y, long t) {
+		if (nbPoints == 0) {
+			startX = x;
+			startY = y;
+			startTime = t;
+			minX = maxX = x;
+			minY = maxY = y;
+		} else {
+			minX = Math.min(x, minX);
+			minY = Math.min(y, minY);
+			maxX = Math.max(x, maxX);
+			maxY = Math.max(y, maxY);
+		}
+		if (nbPoints == 2) {
+			thirdX = x;
+			thirdY = y;
+		}
+		endX = x;
+		endY = y;
+		endTime = t;
+		nbPoints++;
+
+		if (nbKeptPoints > 0) {
+			double delX = previousX - x; // delta
+			double delY = previousY - y;
+			double magsq = delX * delX + delY * delY;
+			if (magsq <= RubineClassifier.DIST_SQ_THRESHOLD)
+				return; /* ignore this point */
+			length += Math.sqrt(magsq);
+
+			if (nbKeptPoints >= 2) {
+				double t1 = x - previousX;
+				double t2 = y - previousY;
+				double r = Math.sqrt(t1 * t1 + t2 * t2);
+				double th = t2 < 0 ? Math.acos(t1 / r) : -Math.acos(t1 / r);
+				rotation += th;
+				sumAbsAngles += Math.abs(th);
+				sharpness += th * th;
+			}
+		}
+		previousX = x;
+		previousY = y;
+		nbKeptPoints++;
+	}
+
+	/**
+	 * Computes the vector of features of the points that have been added.
+	 * @param compiledData The array in which the features are stored, whose length is the number of features.
+	 * @return <code>compiledData</code>.
+	 */
+	double[] getFeatures(double[] compiledData) {
+		for (int i = 0; i < compiledData.length; i++)
+			compiledData[i] = 0;
+		if (nbPoints < 3)
+			return compiledData; // a feature vector of all zeros, at least 3
+		// points are required to compute initial
+		// sin and cos
+
+		// initial cos and sin
+		double dx = thirdX - startX;
+		double dy = thirdY - startY;
+		double dist2 = dx * dx + dy * dy;
+		if (dist2 > RubineClassifier.DIST_SQ_THRESHOLD) {
+			double d = Math.sqrt(dist2);
+			compiledData[RubineClassifier.PF_INIT_COS] = dx / d;
+			compiledData[RubineClassifier.PF_INIT_SIN] = dy / d;
+		}
+
+		// compute features related to bounding box (length and orientation)
+		double t1 = maxX - minX;
+		double t2 = maxY - minY;
+		double bblen = Math.sqrt(t1 * t1 + t2 * t2);
+		compiledData[RubineClassifier.PF_BB_LEN] = bblen;
+		if (bblen * bblen > RubineClassifier.DIST_SQ_THRESHOLD)
+			compiledData[RubineClassifier.PF_BB_TH] = Math.atan2(t2, t1);
+
+		t1 = endX - startX;
+		t2 = endY - startY;
+		double selen = Math.sqrt(t1 * t1 + t2 * t2);
+		compiledData[RubineClassifier.PF_SE_LEN] = selen;
+		double factor = selen * selen / RubineClassifier.SE_TH_ROLLOFF;
+		if (factor > 1.0)
+			factor = 1.0;
+		factor = selen > RubineClassifier.EPSILON ? factor / selen : 0.0;
+		compiledData[RubineClassifier.PF_SE_COS] = t1 * factor;
+		compiledData[RubineClassifier.PF_SE_SIN] = t2 * factor;
+
+		compiledData[RubineClassifier.PF_LEN] = length;
+		compiledData[RubineClassifier.PF_TH] = rotation;
+		compiledData[RubineClassifier.PF_ATH] = sumAbsAngles;
+		compiledData[RubineClassifier.PF_SQTH] = sharpness;
+
+		compiledData[RubineClassifier.PF_DUR] = (endTime - startTime) * .01; // sensitive to a 1/10th of second
+		compiledData[RubineClassifier.PF_MAXV] = 0;
+		return compiledData;
+	}
+
+}
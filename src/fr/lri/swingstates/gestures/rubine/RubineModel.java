@@ -0,0 +1,214 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.rubine;
+
+/**
+ * The result of the training of a <code>RubineClassifier</code>: the weights and the constants of the discrimination
+ * functions of the classes, the averages of the classes and the inverse of the average covariance matrix.
+ * A model is never modified once it has been built: when an example is added to or removed from a class,
+ * the classifier builds a new model from the previous one with <code>update</code>.
+ *
+ * <p>The sum of the covariance matrices of the classes changes by a matrix of rank one when an example is added or removed,
+ * so its inverse is updated with the Sherman-Morrison formula and the weights of the classes whose average has not changed
+ * are updated in linear time. If some features have been discarded to invert the average covariance matrix,
+ * the update only concerns the other features, since the inverse is null for the discarded ones, and the model
+ * is only updated if a classifier trained from scratch would discard the same features.
+ * Rounding errors accumulate over the updates, so a model can only be updated
+ * <code>MAX_UPDATES</code> times before the classifier is trained from scratch.</p>
+ *
+ * @author SwingStates contributors
+ */
+final class RubineModel {
+
+	/**
+	 * The maximum number of successive updates of a model trained from scratch.
+	 */
+	static final int MAX_UPDATES = 64;
+
+	private static final double EPSILON = 1.0e-6;
+
+	/**
+	 * The version of the examples of the classifier the model has been trained with.
+	 */
+	final int version;
+	/**
+	 * The weights of the classes, one row per class.
+	 */
+	final Matrix weights;
+	final double[] cnst;
+	final double[][] averages;
+	final Matrix invAvgCov;
+	/**
+	 * The number of examples minus the number of classes, by which the sum of the covariance matrices is divided.
+	 */
+	final int denominator;
+	/**
+	 * The sum of the covariance matrices of the classes.
+	 */
+	final Matrix sumCov;
+	/**
+	 * The features that have not been discarded to invert the average covariance matrix, null if no feature has been discarded.
+	 */
+	final BitVector features;
+	/**
+	 * The determinant of the average covariance matrix, restricted to the features that have not been discarded.
+	 */
+	final double determinant;
+	final int nbUpdates;
+
+	RubineModel(int version, Matrix weights, double[] cnst, double[][] averages, Matrix invAvgCov,
+			int denominator, Matrix sumCov, BitVector features, double determinant, int nbUpdates) {
+		this.version = version;
+		this.weights = weights;
+		this.cnst = cnst;
+		this.averages = averages;
+		this.invAvgCov = invAvgCov;
+		this.denominator = denominator;
+		this.sumCov = sumCov;
+		this.features = features;
+		this.determinant = determinant;
+		this.nbUpdates = nbUpdates;
+	}
+
+	/**
+	 * Builds the model of the classifier once an example has been added to or removed from one of its classes.
+	 * The sum of the covariance matrices of the classes has changed by <code>coefficient * nfv * nfv'</code>.
+	 *
+	 * @param newVersion The version of the examples of the classifier.
+	 * @param classIndex The index of the class that has changed.
+	 * @param average The new average of this class.
+	 * @param nfv The vector that defines the change of the sum of the covariance matrices.
+	 * @param coefficient The coefficient of the change, positive if an example has been added, negative if it has been removed.
+	 * @param newDenominator The number of examples minus the number of classes.
+	 * @return The new model, null if this model cannot be updated and the classifier must be trained from scratch.
+	 */
+	RubineModel update(int newVersion, int classIndex, double[] average, double[] nfv, double coefficient, int newDenominator) {
+		if (Math.abs(determinant) <= EPSILON || nbUpdates >= MAX_UPDATES || newDenominator <= 0)
+			return null;
+		int n = nfv.length;
+		// z = S^-1 * nfv, where S^-1 = invAvgCov / denominator is the inverse of the sum of the covariance matrices
+		double[] z = VectorUtility.mult(nfv, invAvgCov, new double[n]);
+		for (int i = 0; i < n; i++)
+			z[i] /= denominator;
+		double q = VectorUtility.scalarProduct(nfv, z);
+		double den = 1 + coefficient * q;
+		// matrix determinant lemma: the classifier is trained from scratch if the new avg covariance matrix is singular,
+		// as a classifier that would be trained from scratch would discard other features
+		int nbFeatures = features == null ? n : features.bitCount(n);
+		double newDeterminant = determinant * den * Math.pow((double) denominator / newDenominator, nbFeatures);
+		if (Math.abs(newDeterminant) <= EPSILON)
+			return null;
+		double k = coefficient / den;
+
+		Matrix newSumCov = new Matrix(sumCov);
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				newSumCov.items[i * n + j] += coefficient * nfv[i] * nfv[j];
+		if (features != null && !discardsSameFeatures(newSumCov, newDenominator))
+			return null;
+
+		Matrix inverse = new Matrix(n, n);
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				inverse.items[i * n + j] = newDenominator * (invAvgCov.items[i * n + j] / denominator - k * z[i] * z[j]);
+
+		int nClasses = cnst.length;
+		double[][] newAverages = averages.clone();
+		newAverages[classIndex] = average;
+		Matrix newWeights = new Matrix(nClasses, n);
+		double[] newCnst = new double[nClasses];
+		double ratio = (double) newDenominator / denominator;
+		double[] w = new double[n];
+		for (int nc = 0; nc < nClasses; nc++) {
+			double[] avg = newAverages[nc];
+			if (nc == classIndex) {
+				VectorUtility.mult(avg, inverse, w);
+			} else {
+				double factor = newDenominator * k * VectorUtility.scalarProduct(z, avg);
+				for (int i = 0; i < n; i++)
+					w[i] = ratio * weights.items[nc * n + i] - factor * z[i];
+			}
+			System.arraycopy(w, 0, newWeights.items, nc * n, n);
+			newCnst[nc] = -0.5 * VectorUtility.scalarProduct(w, avg);
+		}
+		return new RubineModel(newVersion, newWeights, newCnst, newAverages, inverse, newDenominator,
+				newSumCov, features, newDeterminant, nbUpdates + 1);
+	}
+
+	/**
+	 * Checks that a classifier trained from scratch with a new sum of covariance matrices would discard the same features
+	 * as this model. The features are selected as in <code>RubineClassifier.fix</code>, but the determinants of
+	 * the slices of the average covariance matrix are computed by a single Gaussian elimination: the pivot of a feature
+	 * is the ratio between the determinant of the slice of the selected features plus this feature and the determinant
+	 * of the slice of the selected features.
+	 */
+	private boolean discardsSameFeatures(Matrix newSumCov, int newDenominator) {
+		int n = newSumCov.nRows;
+		Matrix avgcov = new Matrix(newSumCov).multiplyByScalar(1.0 / newDenominator);
+		// a classifier trained from scratch does not discard features if the matrix is invertible
+		if (Math.abs(eliminate(new Matrix(avgcov), false)) > EPSILON)
+			return false;
+		BitVector bv = new BitVector();
+		eliminate(avgcov, true);
+		for (int i = 0; i < n; i++)
+			if (avgcov.get(i, i) != 0)
+				bv.set(i);
+		return bv.direct == features.direct;
+	}
+
+	/**
+	 * Gaussian elimination of a symmetric positive semi-definite matrix, in place and without pivoting.
+	 * @param m The matrix.
+	 * @param select True if the features whose pivot makes the determinant lower than <code>EPSILON</code>
+	 * are discarded, in which case their diagonal element is set to 0.
+	 * @return The determinant of the slice of the features that have not been discarded.
+	 */
+	private static double eliminate(Matrix m, boolean select) {
+		int n = m.nRows;
+		double[] items = m.items;
+		double det = 1;
+		for (int k = 0; k < n; k++) {
+			double pivot = items[k * n + k];
+			if (select && Math.abs(det * pivot) <= EPSILON) {
+				items[k * n + k] = 0;
+				continue;
+			}
+			det *= pivot;
+			if (pivot == 0)
+				return 0;
+			for (int i = k + 1; i < n; i++) {
+				double factor = items[i * n + k] / pivot;
+				for (int j = k + 1; j < n; j++)
+					items[i * n + j] -= factor * items[k * n + j];
+			}
+		}
+		return det;
+	}
+
+	/**
+	 * @param classIndex The index of a class.
+	 * @param features The vector of features of a gesture.
+	 * @return The value of the discrimination function of the class for the gesture.
+	 */
+	double value(int classIndex, double[] features) {
+		int n = features.length;
+		double[] w = weights.items;
+		double res = 0;
+		for (int i = 0; i < n; i++)
+			res += w[classIndex * n + i] * features[i];
+		return res + cnst[classIndex];
+	}
+
+	/**
+	 * @param features The vector of features of a gesture.
+	 * @param classIndex The index of a class.
+	 * @return The mahalanobis distance between the gesture and the average of the class.
+	 */
+	double mahalanobisDistance(double[] features, int classIndex) {
+		return VectorUtility.quadraticForm(features, averages[classIndex], invAvgCov);
+	}
+
+}
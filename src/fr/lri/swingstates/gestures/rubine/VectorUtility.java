@@ -5,8 +5,6 @@
 */
 package fr.lri.swingstates.gestures.rubine;
 
-import java.util.Vector;
-
 /*******************************************************************************
  * The algorithm and original C code are: (C) Copyright, 1990 by Dean Rubine,
  * Carnegie Mellon University Permission to use this code for noncommercial
@@ -17,63 +15,52 @@ import java.util.Vector;
 
 class VectorUtility {
 
-	public static double scalarProduct(Vector<Double> vector, Vector<Double> v) {
-		if (vector.size() != v.size())
-			System.err.println("Scalar product: " + vector.size() + "x" + v.size());
+	public static double scalarProduct(double[] vector, double[] v) {
+		if (vector.length != v.length)
+			System.err.println("Scalar product: " + vector.length + "x" + v.length);
 		double res = 0;
-		for (int i = 0; i < vector.size(); i++)
-			res += vector.get(i) * v.get(i);
-		return res;
-	}
-
-	static Vector<Double> substract(Vector<Double> vector, Vector<Double> v) {
-		int dim = (vector.size() < v.size()) ? vector.size() : v.size();
-		for (int i = 0; i < dim; i++)
-			vector.set(i, vector.get(i) - v.get(i));
-		return vector;
-	}
-
-	public static Vector<Double> minus(Vector<Double> vector, Vector<Double> v) {
-		Vector<Double> res = new Vector<Double>(vector);
-		res = substract(res, v);
+		for (int i = 0; i < vector.length; i++)
+			res += vector[i] * v[i];
 		return res;
 	}
 
-	public static Vector<Double> mult(Vector<Double> vector, Matrix m) {
-		Vector<Double> res = new Vector<Double>();
-		if (vector.size() != m.nRows) {
+	/*
+	 * Compute m * vector in res
+	 */
+	public static double[] mult(double[] vector, Matrix m, double[] res) {
+		if (vector.length != m.nRows) {
 			System.err.println("Vector times Matrix\n");
 			return res;
 		}
 		for (int i = 0; i < m.nCols; i++) {
 			double resi = 0;
-			for (int j = 0; j < vector.size(); j++)
-				resi += vector.get(j) * m.items[i][j];
-			res.add(resi);
+			for (int j = 0; j < vector.length; j++)
+				resi += vector[j] * m.items[i * m.nCols + j];
+			res[i] = resi;
 		}
 		return res;
 	}
 
 	/*
-	 * Compute v' * m * v
+	 * Compute (v - u)' * m * (v - u)
 	 */
-	public static double quadraticForm(Vector<Double> vector, Matrix m) {
-		double res = 0;
-		if (vector.size() != m.nRows || vector.size() != m.nCols)
-			System.err.println("QuadraticForm: bad matrix size\n");
-		for (int i = 0; i < vector.size(); i++)
-			for (int j = 0; j < vector.size(); j++) {
-				res += m.items[i][j] * vector.get(i) * vector.get(j);
-			}
-		return res;
+	public static double quadraticForm(double[] v, double[] u, Matrix m) {
+		return quadraticForm(v, u, m.items);
 	}
 
-	public Vector<Double> slice(Vector<Double> vector, BitVector rowmask) {
-		Vector<Double> res = new Vector<Double>();
-		int length = rowmask.bitCount(vector.size());
-		for (int i = 0; i < length; i++)
-			if (rowmask.isSet(i))
-				res.add(vector.get(i));
+	/*
+	 * Compute (v - u)' * m * (v - u), m being stored row by row
+	 */
+	static double quadraticForm(double[] v, double[] u, double[] m) {
+		double res = 0;
+		int n = v.length;
+		if (m.length != n * n)
+			System.err.println("QuadraticForm: bad matrix size\n");
+		for (int i = 0; i < n; i++) {
+			double di = v[i] - u[i];
+			for (int j = 0; j < n; j++)
+				res += m[i * n + j] * di * (v[j] - u[j]);
+		}
 		return res;
 	}
 
@@ -0,0 +1,49 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.shapeMatching;
+
+import java.util.Vector;
+
+import fr.lri.swingstates.gestures.CompiledClassifier;
+import fr.lri.swingstates.gestures.Gesture;
+import fr.lri.swingstates.gestures.Score;
+
+/**
+ * An immutable snapshot of a <code>ShapeMatchingClassifier</code> (or of a <code>Dollar1Classifier</code>):
+ * a copy of the classifier that is only used to recognize gestures. The copy shares the normalized strokes
+ * of the classifier, which are never modified once they have been computed.
+ *
+ * @see fr.lri.swingstates.gestures.shapeMatching.ShapeMatchingClassifier#freeze()
+ * @author SwingStates contributors
+ */
+final class CompiledShapeMatchingClassifier extends CompiledClassifier {
+
+	private final ShapeMatchingClassifier classifier;
+
+	/**
+	 * Builds a snapshot.
+	 * @param classifier The copy of the classifier, which is not modified afterwards.
+	 */
+	CompiledShapeMatchingClassifier(ShapeMatchingClassifier classifier) {
+		super(classifier.getClassesNames());
+		this.classifier = classifier;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Score recognize(Gesture g) {
+		return classifier.recognize(g);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Vector<Score> sortedClasses(Gesture g) {
+		return classifier.rankClasses(g);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.shapeMatching;
+
+import java.util.Arrays;
+
+import fr.lri.swingstates.gestures.IncrementalRecognizer;
+import fr.lri.swingstates.gestures.PackedStroke;
+import fr.lri.swingstates.gestures.Score;
+
+/**
+ * Recognizes a gesture with a <code>ShapeMatchingClassifier</code> (or a <code>Dollar1Classifier</code>) while it is
+ * being drawn. A gesture is normalized as a whole (resampled, scaled and translated), so the points added so far
+ * are normalized each time they are recognized, and they are compared to the prefixes of the examples and of the templates
+ * of the classifier (see <code>StrokePrefixes</code>): the distance to a class is the smallest distance to the prefixes
+ * of its strokes. Adding a point does not compare anything and the points added so far are only recognized
+ * when the current score is read.
+ *
+ * <p>Only the distances to the two closest classes are needed, so a prefix is skipped when the lower bound
+ * of its distance (see <code>ShapeMatchingClassifier.lowerBound</code>) is greater than the distance to its class
+ * or to the second closest class found so far. Reading the score after a point has been added then costs
+ * the normalization of the points drawn so far, which is linear in their number, one lower bound in constant time
+ * per prefix (8 per example and per template), and one comparison in O(<code>getNbPoints()</code>) per class
+ * and per prefix that cannot be skipped. In the worst case, when the bounds skip nothing,
+ * the gesture is compared to every prefix, i.e. 8 times as many strokes as when it is classified. This is always
+ * the case with a <code>Dollar1Classifier</code> in Protractor mode, whose distances are not bounded by the summaries,
+ * but the vectors of the prefixes are then computed once, when the prefixes are built, and the vector of the gesture
+ * once per reading, so that each comparison is a single pass over two vectors (see <code>ShapeMatchingClassifier.prepare</code>).</p>
+ *
+ * <p>The current class is the class of the stroke that best fits the beginning of the gesture, which may not be the class
+ * of the whole gesture once it is over: the gesture can then be classified by the classifier (see <code>getGesture()</code>).
+ * The confidence is <code>1 - d1 / d2</code>, where <code>d1</code> and <code>d2</code> are the distances
+ * to the closest class and to the second closest class.</p>
+ *
+ * @see fr.lri.swingstates.gestures.shapeMatching.ShapeMatchingClassifier#newIncrementalRecognizer()
+ * @author SwingStates contributors
+ */
+final class IncrementalShapeMatcher extends IncrementalRecognizer {
+
+	private final ShapeMatchingClassifier classifier;
+	private PackedStroke normalized;
+	private double[] classDistances = new double[0];
+	private int[] closestPrefixes = new int[0];
+	private double[] bounds = new double[0];
+	private int nbClasses = 0;
+	private int bestClass = -1;
+
+	IncrementalShapeMatcher(ShapeMatchingClassifier classifier) {
+		this.classifier = classifier;
+		normalized = new PackedStroke(classifier.getNbPoints());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected void pointAdded(double x, double y, long t) {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected Score recognize() {
+		if (getPathLength() < classifier.getMinimumStrokeLength())
+			return new Score(null, Double.NaN);
+		StrokePrefixes prefixes = classifier.getPrefixes();
+		classifier.normalize(getGesture().getStroke(), normalized);
+		double[] summary = ShapeMatchingClassifier.summarize(normalized);
+		double[] prepared = classifier.prepare(normalized);
+
+		nbClasses = prefixes.getNbClasses();
+		if (classDistances.length < nbClasses) {
+			classDistances = new double[nbClasses];
+			closestPrefixes = new int[nbClasses];
+		}
+		if (bounds.length < prefixes.size())
+			bounds = new double[prefixes.size()];
+		Arrays.fill(classDistances, 0, nbClasses, Double.MAX_VALUE);
+		Arrays.fill(closestPrefixes, 0, nbClasses, -1);
+		// the prefix of each class whose bound is the lowest gives a first distance to each class
+		for (int i = 0; i < prefixes.size(); i++) {
+			int nc = prefixes.getClassIndex(i);
+			bounds[i] = classifier.lowerBound(summary, prefixes.getSummary(i));
+			if (closestPrefixes[nc] == -1 || bounds[i] < bounds[closestPrefixes[nc]])
+				closestPrefixes[nc] = i;
+		}
+		for (int nc = 0; nc < nbClasses; nc++)
+			if (closestPrefixes[nc] != -1)
+				classDistances[nc] = classifier.distance(normalized, prepared,
+						prefixes.getPrefix(closestPrefixes[nc]), prefixes.getPrepared(closestPrefixes[nc]), Double.MAX_VALUE);
+		double second = secondDistance();
+		for (int i = 0; i < prefixes.size(); i++) {
+			int nc = prefixes.getClassIndex(i);
+			if (i == closestPrefixes[nc])
+				continue;
+			// a prefix only matters if it can bring its class closer than the second closest class
+			double threshold = Math.min(classDistances[nc], second);
+			if (bounds[i] >= threshold)
+				continue;
+			double distance = classifier.distance(normalized, prepared, prefixes.getPrefix(i), prefixes.getPrepared(i), threshold);
+			if (distance < threshold) {
+				classDistances[nc] = distance;
+				second = secondDistance();
+			}
+		}
+		bestClass = -1;
+		for (int nc = 0; nc < nbClasses; nc++)
+			if (bestClass == -1 || classDistances[nc] < classDistances[bestClass])
+				bestClass = nc;
+
+		if (bestClass == -1 || classDistances[bestClass] == Double.MAX_VALUE)
+			return new Score(null, Double.MAX_VALUE);
+		double distance = classDistances[bestClass];
+		if (distance > classifier.getRecognitionThreshold())
+			return new Score(null, distance);
+		return new Score(classifier.getClassesNames().get(bestClass), distance);
+	}
+
+	/**
+	 * @return the second lowest distance to a class.
+	 */
+	private double secondDistance() {
+		double first = Double.MAX_VALUE, second = Double.MAX_VALUE;
+		for (int nc = 0; nc < nbClasses; nc++) {
+			if (classDistances[nc] < first) {
+				second = first;
+				first = classDistances[nc];
+			} else if (classDistances[nc] < second) {
+				second = classDistances[nc];
+			}
+		}
+		return second;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	protected double computeConfidence() {
+		if (bestClass == -1 || classDistances[bestClass] == Double.MAX_VALUE)
+			return 0;
+		double second = Double.MAX_VALUE;
+		for (int nc = 0; nc < nbClasses; nc++)
+			if (nc != bestClass && classDistances[nc] < second)
+				second = classDistances[nc];
+		if (second == Double.MAX_VALUE)
+			return 1;
+		return second > 0 ? 1 - classDistances[bestClass] / second : 0;
+	}
+
+}
@@ -9,20 +9,21 @@ import java.awt.geom.Point2D;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Vector;
 
 import fr.lri.swingstates.gestures.AbstractClassifier;
+import fr.lri.swingstates.gestures.ClassifierFile;
+import fr.lri.swingstates.gestures.CompiledClassifier;
 import fr.lri.swingstates.gestures.Gesture;
 import fr.lri.swingstates.gestures.GestureClass;
 import fr.lri.swingstates.gestures.GestureUtils;
+import fr.lri.swingstates.gestures.IncrementalRecognizer;
+import fr.lri.swingstates.gestures.PackedStroke;
 import fr.lri.swingstates.gestures.Score;
 
 /**
@@ -34,6 +35,24 @@ import fr.lri.swingstates.gestures.Score;
  * <li> Returns the name of the class for the template that minimizes this sum of distances. </li>
  * </ol>
  * 
+ * <p>Gestures and templates are stored as <code>PackedStroke</code>s, on which distances are computed.
+ * The methods that take or return vectors of points convert them.</p>
+ * 
+ * <p>To classify a gesture, the examples and templates that cannot be closer than the best match found so far
+ * are skipped: a lower bound of their distance to the gesture is computed in constant time
+ * from values stored with each stroke (see <code>summarize</code> and <code>lowerBound</code>), and
+ * the computation of a distance is abandoned as soon as its partial sum exceeds the best distance.
+ * <code>getNbComparedTemplates()</code> and <code>getNbPrunedTemplates()</code> count the examples and templates
+ * that have been considered and skipped during the last classification.</p>
+ * 
+ * <p>For large sets of examples, the examples and templates can be stored in a metric tree
+ * (see <code>setIndexed</code>) that is searched instead of comparing the gesture with every example.
+ * The tree is built the first time a gesture is classified and is rebuilt after examples, templates or
+ * classes have been added or removed. The results are the same as without the tree.</p>
+ * 
+ * <p><code>freeze()</code> builds an immutable snapshot of the classifier that can be used by several threads:
+ * it is a copy of the classifier that shares its normalized strokes.</p>
+ * 
  * @author Caroline Appert
  *
  */
@@ -42,6 +61,8 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	protected class ResampledGestureClass extends GestureClass {
 
 		private Vector<Vector<Point2D>> resampledGestures = new Vector<Vector<Point2D>>();
+		private ArrayList<PackedStroke> packedGestures = new ArrayList<PackedStroke>();
+		private ArrayList<double[]> summaries = new ArrayList<double[]>();
 
 		ResampledGestureClass() {
 			super();
@@ -57,17 +78,23 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		 * computed and stored in <code>resampledGestures</code>.
 		 */
 		public void addExample(Gesture gesture) {
-			super.addExample(gesture);
-			Vector<Point2D> newPoints = new Vector<Point2D>();
-			GestureUtils.resample(gesture.getPoints(), ShapeMatchingClassifier.this.getNbPoints(), newPoints);
-			GestureUtils.scaleToSquare(newPoints, ShapeMatchingClassifier.this.getSizeScaleToSquare(), newPoints);
-			GestureUtils.translateToOrigin(newPoints, newPoints);
-			resampledGestures.add(newPoints);
+			addNormalizedExample(gesture, normalize(gesture.getStroke(), new PackedStroke(getNbPoints())));
 		}
 		
 		public void addResampledExample(Vector<Point2D> gesture) {
-			super.addExample(null);
-			resampledGestures.add(gesture);
+			addNormalizedExample(null, align(PackedStroke.of(gesture)));
+		}
+
+		/**
+		 * Adds an example whose normalized stroke has already been computed.
+		 * @param gesture The example, null if only its normalized stroke is known.
+		 * @param normalized The normalized stroke of the example.
+		 */
+		void addNormalizedExample(Gesture gesture, PackedStroke normalized) {
+			super.addExample(gesture);
+			packedGestures.add(normalized);
+			summaries.add(summarize(normalized));
+			resampledGestures.add(normalized.toPoints());
 		}
 
 		/**
@@ -77,11 +104,27 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 			if (!gestures.contains(gesture))
 				return false;
 			int index = gestures.indexOf(gesture);
-			if (index != -1)
+			if (index != -1) {
 				resampledGestures.remove(index);
+				packedGestures.remove(index);
+				summaries.remove(index);
+			}
 			return super.removeExample(gesture);
 		}
 
+		/**
+		 * Sets the examples of this class to the examples of another class. The lists are copied
+		 * but the gestures and the strokes are shared.
+		 * @param source The class to copy.
+		 */
+		void copyFrom(ResampledGestureClass source) {
+			name = source.name;
+			gestures = new Vector<Gesture>(source.gestures);
+			resampledGestures = new Vector<Vector<Point2D>>(source.resampledGestures);
+			packedGestures = new ArrayList<PackedStroke>(source.packedGestures);
+			summaries = new ArrayList<double[]>(source.summaries);
+		}
+
 		/**
 		 * @return The vector of gesture examples as resampled and scaled.
 		 * @see Dollar1GestureClass#addExample(Gesture)
@@ -90,6 +133,22 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 			return resampledGestures;
 		}
 
+		/**
+		 * @return The gesture examples as resampled and scaled strokes, in the same order
+		 * as <code>getResampledGestures()</code>.
+		 */
+		public ArrayList<PackedStroke> getPackedGestures() {
+			return packedGestures;
+		}
+
+		/**
+		 * @return The summaries of the gesture examples (see <code>summarize</code>), in the same order
+		 * as <code>getPackedGestures()</code>.
+		 */
+		public ArrayList<double[]> getSummaries() {
+			return summaries;
+		}
+
 		/**
 		 * @return The average vector of this class. A point#i in this vector is the
 		 *         gravity center of points#i of all examples.
@@ -114,14 +173,21 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	}
 
 	protected ArrayList<ResampledGestureClass>    classes = new ArrayList<ResampledGestureClass>();
+	protected ArrayList<PackedStroke>             packedTemplates = new ArrayList<PackedStroke>();
+	protected ArrayList<double[]>                 templateSummaries = new ArrayList<double[]>();
 
 	protected double theta = Math.PI / 8;
 	protected double deltaTheta = Math.PI / 90;
 
 	private int nbPoints = 100;
 
-	private double currentDistance = -1;
+	protected double currentDistance = -1;
+	protected int nbComparedTemplates = 0;
+	protected int nbPrunedTemplates = 0;
 	private double maximumDistance = 30;
+	private boolean indexed = false;
+	private volatile TemplateIndex index = null;
+	private volatile StrokePrefixes prefixes = null;
 	private double sizeScaleToSquare = 100;
 
 //	private Vector<Vector<Double>> distances = new Vector<Vector<Double>>();
@@ -141,15 +207,14 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 			return distances[index1][index2];
 		}
 		
-		Vector<Point2D> template1 = getTemplate(gesture1);
-		Vector<Point2D> template2 = getTemplate(gesture2);
+		PackedStroke template1 = packedTemplates.get(index1);
+		PackedStroke template2 = packedTemplates.get(index2);
 		
 		double minDis = distance(template1, template2);
 		ResampledGestureClass gc1 = classes.get(index1);
-		Vector<Vector<Point2D>> examples1 = gc1.getResampledGestures();
-		for (Iterator<Vector<Point2D>> iterator = examples1.iterator(); iterator.hasNext();) {
-			Vector<Point2D> ex1  = iterator.next();
-			double dis = distance(ex1, template2);
+		ArrayList<PackedStroke> examples1 = gc1.getPackedGestures();
+		for (int i = 0; i < examples1.size(); i++) {
+			double dis = distance(examples1.get(i), template2);
 			if(dis < minDis) {
 				minDis = dis;
 			}
@@ -158,10 +223,9 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		
 		minDis = distance(template2, template1);
 		ResampledGestureClass gc2 = classes.get(index2);
-		Vector<Vector<Point2D>> examples2 = gc2.getResampledGestures();
-		for (Iterator<Vector<Point2D>> iterator = examples2.iterator(); iterator.hasNext();) {
-			Vector<Point2D> ex2  = iterator.next();
-			double dis = distance(template1, ex2);
+		ArrayList<PackedStroke> examples2 = gc2.getPackedGestures();
+		for (int i = 0; i < examples2.size(); i++) {
+			double dis = distance(template1, examples2.get(i));
 			if(dis < minDis) {
 				minDis = dis;
 			}
@@ -176,63 +240,332 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	 * {@inheritDoc}
 	 */
 	public double distance(Gesture gesture, String gesture2) {
-		Vector<Point2D> inputPointsResampled = normalize(gesture);
-		return distance(inputPointsResampled, gesture2);
+		PackedStroke inputPointsResampled = normalize(gesture.getStroke(), new PackedStroke(nbPoints));
+		return distance(inputPointsResampled, getPackedTemplate(gesture2));
 	}
 
 	public Vector<Point2D> normalize(Gesture gesture) {
-		Vector<Point2D> inputPointsResampled = new Vector<Point2D>();
-		GestureUtils.resample(gesture.getPoints(), nbPoints, inputPointsResampled);
-		GestureUtils.scaleToSquare(inputPointsResampled, sizeScaleToSquare, inputPointsResampled);
-		GestureUtils.translateToOrigin(inputPointsResampled, inputPointsResampled);
-		return inputPointsResampled;
+		return normalize(gesture.getStroke(), new PackedStroke(nbPoints)).toPoints();
+	}
+
+	/**
+	 * Resamples a stroke, scales it to a square, translates its centroid to the origin and aligns it (see <code>align</code>).
+	 * @param stroke The stroke.
+	 * @param dst The stroke where to store the result, which must be different from <code>stroke</code>.
+	 * @return <code>dst</code>.
+	 */
+	public PackedStroke normalize(PackedStroke stroke, PackedStroke dst) {
+		GestureUtils.resample(stroke, nbPoints, dst);
+		GestureUtils.scaleToSquare(dst, sizeScaleToSquare, dst);
+		GestureUtils.translateToOrigin(dst, dst);
+		return align(dst);
+	}
+
+	/**
+	 * Transforms a resampled, scaled and translated stroke before it is stored or compared to other strokes.
+	 * The stored strokes are aligned once, when they are added, and a gesture is aligned once per classification.
+	 * This implementation does nothing.
+	 * @param stroke The stroke, which is modified.
+	 * @return <code>stroke</code>.
+	 */
+	protected PackedStroke align(PackedStroke stroke) {
+		return stroke;
 	}
 
 	public double distance(Vector<Point2D> inputPointsResampled, String gesture2) {
-		return distance(inputPointsResampled, getTemplate(gesture2));
+		return distance(align(PackedStroke.of(inputPointsResampled)), getPackedTemplate(gesture2));
 	}
 
 	public double distance(Vector<Point2D> inputPointsResampled1, Vector<Point2D> inputPointsResampled2) {
+		return distance(align(PackedStroke.of(inputPointsResampled1)), align(PackedStroke.of(inputPointsResampled2)));
+	}
+
+	/**
+	 * Computes the distance between two normalized strokes.
+	 * @param inputPointsResampled1 The first stroke.
+	 * @param inputPointsResampled2 The second stroke.
+	 * @return the distance.
+	 */
+	public double distance(PackedStroke inputPointsResampled1, PackedStroke inputPointsResampled2) {
 		return GestureUtils.pathDistance(inputPointsResampled1, inputPointsResampled2);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Computes the distance between two normalized strokes, or any value greater than or equal to
+	 * <code>maxDistance</code> if their distance is greater than or equal to <code>maxDistance</code>.
+	 * @param inputPointsResampled1 The first stroke.
+	 * @param inputPointsResampled2 The second stroke.
+	 * @param maxDistance The distance above which the exact distance is not needed.
+	 * @return the distance, or a value greater than or equal to <code>maxDistance</code>.
 	 */
-	public String classify(Gesture g) {
-		if(GestureUtils.pathLength(g.getPoints()) < minimumStrokeLength) return null;
+	public double distance(PackedStroke inputPointsResampled1, PackedStroke inputPointsResampled2, double maxDistance) {
+		return GestureUtils.pathDistance(inputPointsResampled1, inputPointsResampled2, maxDistance);
+	}
+
+	/**
+	 * Computes the values that stand for a normalized stroke when it is compared several times
+	 * with other strokes (see <code>distance(PackedStroke, double[], PackedStroke, double[], double)</code>),
+	 * so that they are computed once per stroke instead of once per comparison.
+	 * @param stroke The stroke.
+	 * @return the values, null if the strokes are compared directly.
+	 */
+	protected double[] prepare(PackedStroke stroke) {
+		return null;
+	}
+
+	/**
+	 * Computes the distance between two normalized strokes from the values returned by <code>prepare</code>.
+	 * By default, the values are ignored and the strokes are compared.
+	 * @param inputPointsResampled1 The first stroke.
+	 * @param prepared1 The values computed by <code>prepare</code> for the first stroke.
+	 * @param inputPointsResampled2 The second stroke.
+	 * @param prepared2 The values computed by <code>prepare</code> for the second stroke.
+	 * @param maxDistance The distance above which the exact distance is not needed.
+	 * @return the distance, or a value greater than or equal to <code>maxDistance</code>.
+	 */
+	protected double distance(PackedStroke inputPointsResampled1, double[] prepared1,
+			PackedStroke inputPointsResampled2, double[] prepared2, double maxDistance) {
+		return distance(inputPointsResampled1, inputPointsResampled2, maxDistance);
+	}
+
+	/**
+	 * Computes the values from which the lower bounds of the distances between a stroke
+	 * and other strokes are computed: the coordinates of its centroid and the average distances of its points
+	 * to its centroid in the plane, along the x axis and along the y axis.
+	 * @param stroke The stroke, null for a missing template.
+	 * @return the array {cx, cy, radius, radiusX, radiusY}, null if <code>stroke</code> is null.
+	 */
+	public static double[] summarize(PackedStroke stroke) {
+		if (stroke == null)
+			return null;
+		int n = stroke.size();
+		double[] xs = stroke.getXs(), ys = stroke.getYs();
+		double[] c = new double[2];
+		GestureUtils.centroid(stroke, c);
+		double r = 0, rx = 0, ry = 0;
+		for (int i = 0; i < n; i++) {
+			double dx = xs[i] - c[0], dy = ys[i] - c[1];
+			r += Math.sqrt(dx * dx + dy * dy);
+			rx += Math.abs(dx);
+			ry += Math.abs(dy);
+		}
+		return new double[] { c[0], c[1], r / n, rx / n, ry / n };
+	}
+
+	/**
+	 * Computes a lower bound of the distance between two strokes from their summaries.
+	 * The distance between two points is greater than the difference of their distances to the centroids
+	 * of their strokes minus the distance between the centroids, and greater than the sum of the
+	 * differences of their coordinates divided by sqrt(2).
+	 * @param summary1 The summary of the first stroke.
+	 * @param summary2 The summary of the second stroke.
+	 * @return a value lower than or equal to the distance between the two strokes.
+	 */
+	protected double lowerBound(double[] summary1, double[] summary2) {
+		double dcx = Math.abs(summary1[0] - summary2[0]);
+		double dcy = Math.abs(summary1[1] - summary2[1]);
+		double radial = Math.abs(summary1[2] - summary2[2]) - Math.sqrt(dcx * dcx + dcy * dcy);
+		double axes = (Math.abs(summary1[3] - summary2[3]) - dcx + Math.abs(summary1[4] - summary2[4]) - dcy) / Math.sqrt(2);
+		// rounding errors must not make the bound greater than the distance
+		return Math.max(radial, axes) - 1e-9;
+	}
+
+	/**
+	 * @return The number of examples and templates that have been considered during the last classification.
+	 */
+	public int getNbComparedTemplates() {
+		return nbComparedTemplates;
+	}
+
+	/**
+	 * @return The number of examples and templates that have been skipped during the last classification
+	 * because the lower bound of their distance to the gesture was greater than the best distance.
+	 */
+	public int getNbPrunedTemplates() {
+		return nbPrunedTemplates;
+	}
+
+	/**
+	 * Sets whether the examples and templates of this classifier are stored in a metric tree
+	 * that is searched to classify gestures. The tree pays off when classes have many examples.
+	 * @param indexed True to use a metric tree, false to compare gestures with every example.
+	 */
+	public void setIndexed(boolean indexed) {
+		this.indexed = indexed;
+	}
+
+	/**
+	 * @return True if the examples and templates of this classifier are stored in a metric tree.
+	 * @see ShapeMatchingClassifier#setIndexed(boolean)
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * @return True if gestures are classified by searching the metric tree.
+	 */
+	protected boolean useIndex() {
+		return indexed;
+	}
 
-		double minScore = Double.MAX_VALUE;
+	private TemplateIndex getIndex() {
+		TemplateIndex current = index;
+		if (current == null) {
+			// gestures can be recognized by several threads: the lock is only taken to build the tree
+			synchronized (this) {
+				if (index == null)
+					index = new TemplateIndex(this);
+				current = index;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return The prefixes of the examples and of the templates, which are built the first time
+	 * a gesture is recognized incrementally.
+	 */
+	StrokePrefixes getPrefixes() {
+		StrokePrefixes current = prefixes;
+		if (current == null) {
+			synchronized (this) {
+				if (prefixes == null)
+					prefixes = new StrokePrefixes(this);
+				current = prefixes;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Discards the metric tree and the prefixes of the strokes, which are rebuilt the next time they are used.
+	 */
+	protected void invalidateIndex() {
+		index = null;
+		prefixes = null;
+	}
+
+	/**
+	 * @return The maximum distance between a gesture and the class it is recognized as.
+	 */
+	protected double getRecognitionThreshold() {
+		return maximumDistance;
+	}
+
+	/**
+	 * @param className the name of the class of gestures.
+	 * @return the template for the class className as a stroke if it exists, null otherwise.
+	 */
+	protected PackedStroke getPackedTemplate(String className) {
+		int index = classesNames.indexOf(className);
+		if (index == -1)
+			System.err.println("no class " + className + " in the classifier");
+		return packedTemplates.get(index);
+	}
+
+	/**
+	 * The closest example or template of a gesture.
+	 */
+	private static class Match {
+		int classIndex = -1;
+		double distance = Double.MAX_VALUE;
+		PackedStroke stroke = null;
+		int compared = 0;
+		int pruned = 0;
+	}
+
+	/**
+	 * Searches the closest example or template of a gesture without modifying this classifier.
+	 * @param inputPointsResampled The gesture as a normalized stroke.
+	 * @param allTemplates True if the templates of the classes that have examples are compared to the gesture.
+	 * @return the match, whose class index is -1 if this classifier has no example and no template.
+	 */
+	private Match bestMatch(PackedStroke inputPointsResampled, boolean allTemplates) {
+		Match match = new Match();
+		double[] inputSummary = summarize(inputPointsResampled);
+		if (useIndex()) {
+			TemplateIndex.Search search = getIndex().search(inputPointsResampled, inputSummary, 1, allTemplates);
+			match.classIndex = search.getBestClass();
+			if (match.classIndex != -1) {
+				match.distance = search.getDistance(match.classIndex);
+				match.stroke = search.getStroke(match.classIndex);
+			}
+			match.compared = search.getNbCandidates();
+			match.pruned = match.compared - search.getNbComparedCandidates();
+			return match;
+		}
 		double currentScore;
-		GestureClass recognized = null;
-
-		Vector<Point2D> inputPointsResampled = normalize(g);
-
-		for (Iterator<ResampledGestureClass> classesIterator = classes.iterator(); classesIterator.hasNext();) {
-			ResampledGestureClass nextClass = classesIterator.next();
-			if(nextClass.getResampledGestures().size() > 0) {
-				for (Iterator<Vector<Point2D>> gesturesIterator = nextClass.getResampledGestures().iterator(); gesturesIterator.hasNext();) {
-					Vector<Point2D> gesturePoints = gesturesIterator.next();
-					currentScore = distance(inputPointsResampled, gesturePoints);
-					if (currentScore < minScore) {
-						minScore = currentScore;
-						recognized = nextClass;
-					}
+		for (int nc = 0; nc < classes.size(); nc++) {
+			ResampledGestureClass nextClass = classes.get(nc);
+			ArrayList<PackedStroke> examples = nextClass.getPackedGestures();
+			ArrayList<double[]> summaries = nextClass.getSummaries();
+			for (int i = 0; i < examples.size(); i++) {
+				match.compared++;
+				if (lowerBound(inputSummary, summaries.get(i)) >= match.distance) {
+					match.pruned++;
+					continue;
 				}
-			} 
-			Vector<Point2D> gesturePoints = getTemplates().get(getClassesNames().indexOf(nextClass.getName()));
-			if(gesturePoints != null) {
-				currentScore = distance(inputPointsResampled, gesturePoints);
-				if (currentScore < minScore) {
-					minScore = currentScore;
-					recognized = nextClass;
+				currentScore = distance(inputPointsResampled, examples.get(i), match.distance);
+				if (currentScore < match.distance) {
+					match.distance = currentScore;
+					match.classIndex = nc;
+					match.stroke = examples.get(i);
+				}
+			}
+			PackedStroke gesturePoints = packedTemplates.get(nc);
+			if (gesturePoints != null && (allTemplates || examples.size() == 0)) {
+				match.compared++;
+				if (lowerBound(inputSummary, templateSummaries.get(nc)) >= match.distance) {
+					match.pruned++;
+					continue;
+				}
+				currentScore = distance(inputPointsResampled, gesturePoints, match.distance);
+				if (currentScore < match.distance) {
+					match.distance = currentScore;
+					match.classIndex = nc;
+					match.stroke = gesturePoints;
 				}
 			}
 		}
-		currentDistance = minScore;
-		if (currentDistance > maximumDistance)
+		return match;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String classify(Gesture g) {
+		PackedStroke stroke = g.getStroke();
+		if(GestureUtils.pathLength(stroke) < minimumStrokeLength) return null;
+
+		Match match = bestMatch(normalize(stroke, new PackedStroke(nbPoints)), true);
+		nbComparedTemplates = match.compared;
+		nbPrunedTemplates = match.pruned;
+		currentDistance = match.distance;
+		if (currentDistance > maximumDistance || match.classIndex == -1)
 			return null;
-		return recognized.getName();
+		return classes.get(match.classIndex).getName();
+	}
+
+	/**
+	 * {@inheritDoc} The distance is the distance returned by <code>getCurrentDistance()</code> after <code>classify</code>.
+	 */
+	protected Score recognize(Gesture g) {
+		PackedStroke stroke = g.getStroke();
+		if(GestureUtils.pathLength(stroke) < minimumStrokeLength) return new Score(null, Double.NaN);
+
+		Match match = bestMatch(normalize(stroke, new PackedStroke(nbPoints)), true);
+		if (match.distance > maximumDistance || match.classIndex == -1)
+			return new Score(null, match.distance);
+		return new Score(classes.get(match.classIndex).getName(), match.distance);
+	}
+
+	/**
+	 * {@inheritDoc} The metric tree is built if it is used.
+	 */
+	protected void prepareRecognition() {
+		if (useIndex())
+			getIndex();
 	}
 
 	/**
@@ -241,47 +574,18 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	 * @return a NamedGesture that contains the name of the recognized class and the set of resampled points.
 	 */
 	public NamedGesture classifyAndResample(Gesture g) {
-		if(GestureUtils.pathLength(g.getPoints()) < minimumStrokeLength) return null;
+		PackedStroke stroke = g.getStroke();
+		if(GestureUtils.pathLength(stroke) < minimumStrokeLength) return null;
 
-		double minScore = Double.MAX_VALUE;
-		double currentScore;
-		GestureClass recognized = null;
-
-		Vector<Point2D> inputPointsResampled = normalize(g);
-		Vector<Point2D> bestTemplate = null;
-
-		for (Iterator<ResampledGestureClass> classesIterator = classes.iterator(); classesIterator.hasNext();) {
-			ResampledGestureClass nextClass = classesIterator.next();
-			if(nextClass.getResampledGestures().size() > 0) {
-				for (Iterator<Vector<Point2D>> gesturesIterator = nextClass.getResampledGestures().iterator(); gesturesIterator.hasNext();) {
-					Vector<Point2D> gesturePoints = gesturesIterator.next();
-					currentScore = distance(inputPointsResampled, gesturePoints);
-					if (currentScore < minScore) {
-						minScore = currentScore;
-						recognized = nextClass;
-						bestTemplate = gesturePoints;
-					}
-				}
-			} else {
-				Vector<Point2D> gesturePoints = getTemplates().get(getClassesNames().indexOf(nextClass.getName()));
-				currentScore = distance(inputPointsResampled, gesturePoints);
-				if (currentScore < minScore) {
-					minScore = currentScore;
-					recognized = nextClass;
-					bestTemplate = gesturePoints;
-				}
-			}
-		}
-		currentDistance = minScore;
-		if (currentDistance > maximumDistance)
+		PackedStroke inputPointsResampled = normalize(stroke, new PackedStroke(nbPoints));
+		Match match = bestMatch(inputPointsResampled, false);
+		nbComparedTemplates = match.compared;
+		nbPrunedTemplates = match.pruned;
+		currentDistance = match.distance;
+		if (currentDistance > maximumDistance || match.classIndex == -1)
 			return null;
-		Vector<Point2D> bestTemplateCopy = new Vector<Point2D>();
-		for (Iterator<Point2D> iterator = bestTemplate.iterator(); iterator.hasNext();) {
-			Point2D next = iterator.next();
-			bestTemplateCopy.add(new Point2D.Double(next.getX(), next.getY()));
-		}
 		// previously, there was a copy of inputPointsResampled instead
-		return new NamedGesture(recognized.getName(), inputPointsResampled, bestTemplateCopy);
+		return new NamedGesture(classes.get(match.classIndex).getName(), inputPointsResampled.toPoints(), match.stroke.toPoints());
 	}
 
 	/**
@@ -307,7 +611,7 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	public static ShapeMatchingClassifier newClassifier(File filename) {
 		ShapeMatchingClassifier c = new ShapeMatchingClassifier();
 		try {
-			c.read(new DataInputStream(new FileInputStream(filename)));
+			c.load(filename);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -326,9 +630,7 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	public static ShapeMatchingClassifier newClassifier(URL url) {
 		ShapeMatchingClassifier c = new ShapeMatchingClassifier();
 		try {
-			URLConnection urlc = null;
-			urlc = url.openConnection();
-			c.read(new DataInputStream(urlc.getInputStream()));
+			c.load(url);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -345,6 +647,9 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		if(index == -1) return -1;
 		ResampledGestureClass gcr = new ResampledGestureClass(className);
 		classes.add(gcr);
+		packedTemplates.add(null);
+		templateSummaries.add(null);
+		invalidateIndex();
 		fireClassAdded(className);
 		return index;
 	}
@@ -368,6 +673,9 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		if(index == -1) return;
 		super.removeClass(className);
 		classes.remove(index);
+		packedTemplates.remove(index);
+		templateSummaries.remove(index);
+		invalidateIndex();
 		fireClassRemoved(className);
 	}
 	
@@ -378,14 +686,15 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 	 */
 	public void addClass(String className, Vector<Point2D> template) {
 		int index = addClass(className);
-		Vector<Point2D> newPoints = new Vector<Point2D>();
-		GestureUtils.resample(template, getNbPoints(), newPoints);
-		GestureUtils.scaleToSquare(newPoints, getSizeScaleToSquare(), newPoints);
-		GestureUtils.translateToOrigin(newPoints, newPoints);
-		templates.set(index, newPoints);
+		PackedStroke newPoints = normalize(PackedStroke.of(template), new PackedStroke(nbPoints));
+		templates.set(index, newPoints.toPoints());
+		packedTemplates.set(index, newPoints);
+		templateSummaries.set(index, summarize(newPoints));
+		invalidateIndex();
 	}
 
 	protected Object read(DataInputStream in) throws IOException {
+		invalidateIndex();
 		int nClasses = in.readInt();
 		for (int i = 0; i < nClasses; i++) {
 			classesNames.add(in.readUTF());
@@ -394,7 +703,10 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 			for (int j = 0; j < nbPoints; j++) {
 				points.add(new Point2D.Double(in.readDouble(), in.readDouble()));
 			}
-			templates.add(points);
+			PackedStroke packed = align(PackedStroke.of(points));
+			templates.add(packed.toPoints());
+			packedTemplates.add(packed);
+			templateSummaries.add(summarize(packed));
 			ResampledGestureClass gestureClass = new ResampledGestureClass(classesNames.get(i));
 			classes.add(gestureClass);
 			gestureClass.read(in);
@@ -430,59 +742,165 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		out.writeInt(minimumStrokeLength);
 	}
 
+	/**
+	 * {@inheritDoc} The classes are followed by the normalized strokes of the examples, which are not normalized again
+	 * when the file is read by a <code>ShapeMatchingClassifier</code>. The templates are already normalized
+	 * and the points of the examples are only decoded when they are accessed.
+	 */
+	protected boolean write(ClassifierFile.Output out) throws IOException {
+		out.setKind(ClassifierFile.SHAPE_MATCHING);
+		writeClasses(out);
+		out.writeInt(nbPoints);
+		out.writeDouble(sizeScaleToSquare);
+		out.writeDouble(maximumDistance);
+		out.writeInt(minimumStrokeLength);
+		for (int i = 0; i < classes.size(); i++) {
+			ArrayList<PackedStroke> examples = classes.get(i).getPackedGestures();
+			for (int j = 0; j < examples.size(); j++)
+				out.writeStroke(examples.get(j));
+		}
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
-	public Vector<Score> sortedClasses(Gesture g) {
-		Vector<Score> sortedScores = new Vector<Score>();
-		Vector<Point2D> inputPointsResampled = normalize(g);
+	protected void read(ClassifierFile.Input in) throws IOException {
+		if (in.getKind() != ClassifierFile.SHAPE_MATCHING) {
+			super.read(in);
+			return;
+		}
+		invalidateIndex();
+		int nClasses = in.readInt();
+		Gesture[][] gestures = new Gesture[nClasses][];
+		for (int i = 0; i < nClasses; i++) {
+			classesNames.add(in.readString());
+			PackedStroke template = in.readStroke();
+			templates.add(template == null ? null : template.toPoints());
+			packedTemplates.add(template);
+			templateSummaries.add(summarize(template));
+			gestures[i] = new Gesture[in.readInt()];
+			for (int j = 0; j < gestures[i].length; j++)
+				gestures[i][j] = in.readGesture();
+		}
+		nbPoints = in.readInt();
+		sizeScaleToSquare = in.readDouble();
+		maximumDistance = in.readDouble();
+		minimumStrokeLength = in.readInt();
+		for (int i = 0; i < nClasses; i++) {
+			ResampledGestureClass gestureClass = new ResampledGestureClass(classesNames.get(i));
+			classes.add(gestureClass);
+			for (int j = 0; j < gestures[i].length; j++)
+				gestureClass.addNormalizedExample(gestures[i][j], in.readStroke());
+		}
+	}
 
-		double score;
-		double minClassScore = 0;
-		for (int nc = 0; nc < classes.size(); nc++) {
-			minClassScore = Integer.MAX_VALUE;
-			if(classes.get(nc).getResampledGestures().size() > 0) {
-				for (Iterator<Vector<Point2D>> gesturesIterator = classes.get(nc).getResampledGestures().iterator(); gesturesIterator.hasNext();) {
-					Vector<Point2D> gesturePoints = gesturesIterator.next();
+	/**
+	 * The classes sorted by their distances to a gesture.
+	 */
+	private static class Ranking {
+		Vector<Score> scores = new Vector<Score>();
+		int compared = 0;
+		int pruned = 0;
+	}
+
+	/**
+	 * Sorts the classes by their distances to a gesture without modifying this classifier.
+	 * @param g The gesture.
+	 * @param k The number of classes to keep.
+	 * @return the ranking of the <code>k</code> closest classes.
+	 */
+	private Ranking rank(Gesture g, int k) {
+		Ranking ranking = new Ranking();
+		Vector<Score> sortedScores = ranking.scores;
+		PackedStroke inputPointsResampled = normalize(g.getStroke(), new PackedStroke(nbPoints));
+		double[] inputSummary = summarize(inputPointsResampled);
+		if (useIndex()) {
+			TemplateIndex.Search search = getIndex().search(inputPointsResampled, inputSummary, k, false);
+			for (int nc = 0; nc < classes.size(); nc++) {
+				if (!search.isFound(nc))
+					continue;
+				double minClassScore = search.getDistance(nc);
+				int i = 0;
+				while (i < sortedScores.size() && sortedScores.get(i).getScore() < minClassScore)
+					i++;
+				sortedScores.add(i, new Score(classes.get(nc).getName(), minClassScore));
+			}
+			ranking.compared = search.getNbCandidates();
+			ranking.pruned = ranking.compared - search.getNbComparedCandidates();
+		} else {
+			double score;
+			double minClassScore = 0;
+			for (int nc = 0; nc < classes.size(); nc++) {
+				minClassScore = Integer.MAX_VALUE;
+				ArrayList<PackedStroke> examples = classes.get(nc).getPackedGestures();
+				ArrayList<double[]> summaries = classes.get(nc).getSummaries();
+				if(examples.size() > 0) {
+					// the score of a class is exact: only the examples farther than its best example are skipped
+					for (int i = 0; i < examples.size(); i++) {
+						ranking.compared++;
+						if (lowerBound(inputSummary, summaries.get(i)) >= minClassScore) {
+							ranking.pruned++;
+							continue;
+						}
+						score = distance(inputPointsResampled, examples.get(i), minClassScore);
+						if (score < minClassScore)
+							minClassScore = score;
+					}
+				} else {
+					ranking.compared++;
+					PackedStroke gesturePoints = packedTemplates.get(nc);
 					score = distance(inputPointsResampled, gesturePoints);
 					if (score < minClassScore)
 						minClassScore = score;
 				}
-			} else {
-				Vector<Point2D> gesturePoints = getTemplates().get(nc);
-				score = distance(inputPointsResampled, gesturePoints);
-				if (score < minClassScore)
-					minClassScore = score;
-			}
-			if (nc == 0) {
-				sortedScores.add(new Score(classes.get(nc).getName(), minClassScore));
-			} else {
 				int i = 0;
 				while (i < sortedScores.size() && sortedScores.get(i).getScore() < minClassScore)
 					i++;
 				sortedScores.add(i, new Score(classes.get(nc).getName(), minClassScore));
 			}
 		}
+		if (sortedScores.size() > k)
+			sortedScores.setSize(k);
+		return ranking;
+	}
 
-		return sortedScores;
+	/**
+	 * {@inheritDoc}
+	 */
+	public Vector<Score> sortedClasses(Gesture g) {
+		Ranking ranking = rank(g, classes.size());
+		nbComparedTemplates = ranking.compared;
+		nbPrunedTemplates = ranking.pruned;
+		return ranking.scores;
 	}
 
 	/**
-	 * Saves the definition of this classifier in a file.
-	 * 
-	 * @param filename
-	 *            The name of the file where to write the definition of the
-	 *            classifier.
+	 * Computes the scores of the <code>k</code> classes that are the closest to a gesture.
+	 * With a metric tree (see <code>setIndexed</code>), the other classes are not all compared
+	 * to the gesture.
+	 * @param g The gesture to classify.
+	 * @param k The number of classes.
+	 * @return The vector of scores for the <code>k</code> closest classes sorted in the order of increasing distances.
 	 */
-	public void save(File filename) {
-		DataOutputStream dos = null;
-		try {
-			dos = new DataOutputStream(new FileOutputStream(filename));
-			write(dos);
-			dos.close();
-		} catch (IOException ex) {
-			ex.printStackTrace();
+	public Vector<Score> sortedClasses(Gesture g, int k) {
+		if (!useIndex()) {
+			Vector<Score> sortedScores = sortedClasses(g);
+			if (sortedScores.size() > k)
+				sortedScores.setSize(k);
+			return sortedScores;
 		}
+		Ranking ranking = rank(g, k);
+		nbComparedTemplates = ranking.compared;
+		nbPrunedTemplates = ranking.pruned;
+		return ranking.scores;
+	}
+
+	/**
+	 * {@inheritDoc} The numbers of compared and pruned templates are not updated.
+	 */
+	protected Vector<Score> rankClasses(Gesture g) {
+		return rank(g, classes.size()).scores;
 	}
 
 	/**
@@ -493,6 +911,7 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 			ResampledGestureClass next = iterator.next();
 			if(next != null) {
 				invalidateDistance(next.getName());
+				invalidateIndex();
 				next.removeExample(example);
 				fireExampleRemoved(next.getName(), example);
 			}
@@ -508,6 +927,7 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		if(index == -1) return;
 		ResampledGestureClass gestureClass = classes.get(index);
 		if(gestureClass != null) {
+			invalidateIndex();
 			gestureClass.addExample(example);
 			fireExampleAdded(className, example);
 		}
@@ -542,11 +962,12 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		invalidateDistance(className);
 		if(index == -1) return;
 		templates.remove(index);
-		Vector<Point2D> newPoints = new Vector<Point2D>();
-		GestureUtils.resample(template, getNbPoints(), newPoints);
-		GestureUtils.scaleToSquare(newPoints, getSizeScaleToSquare(), newPoints);
-		GestureUtils.translateToOrigin(newPoints, newPoints);
+		PackedStroke packed = normalize(PackedStroke.of(template), new PackedStroke(nbPoints));
+		Vector<Point2D> newPoints = packed.toPoints();
 		templates.add(index, newPoints);
+		packedTemplates.set(index, packed);
+		templateSummaries.set(index, summarize(packed));
+		invalidateIndex();
 		fireTemplateSet(className, newPoints);
 	}
 
@@ -584,12 +1005,68 @@ public class ShapeMatchingClassifier extends AbstractClassifier {
 		return currentDistance;
 	}
 	
+	/**
+	 * {@inheritDoc} The snapshot is a copy of this classifier whose strokes are shared with this classifier.
+	 */
+	public CompiledClassifier freeze() {
+		ShapeMatchingClassifier copy = copy();
+		copy.prepareRecognition();
+		return new CompiledShapeMatchingClassifier(copy);
+	}
+
+	/**
+	 * {@inheritDoc} The gesture is compared to the prefixes of the examples and of the templates
+	 * that can be closer to it than the two closest classes, each time the current score is read after a point has been added.
+	 */
+	public IncrementalRecognizer newIncrementalRecognizer() {
+		return new IncrementalShapeMatcher(this);
+	}
+
+	/**
+	 * @return A new classifier that recognizes gestures as this classifier does.
+	 * @see ShapeMatchingClassifier#copyFrom(ShapeMatchingClassifier)
+	 */
+	protected ShapeMatchingClassifier copy() {
+		ShapeMatchingClassifier copy = new ShapeMatchingClassifier();
+		copy.copyFrom(this);
+		return copy;
+	}
+
+	/**
+	 * Sets the classes, the examples, the templates and the parameters of this classifier to those of another classifier.
+	 * The lists are copied but the gestures and the strokes are shared, since a stroke is never modified once
+	 * it has been stored in a classifier.
+	 * @param source The classifier to copy.
+	 */
+	protected void copyFrom(ShapeMatchingClassifier source) {
+		reset();
+		minimumStrokeLength = source.minimumStrokeLength;
+		theta = source.theta;
+		deltaTheta = source.deltaTheta;
+		nbPoints = source.nbPoints;
+		maximumDistance = source.maximumDistance;
+		sizeScaleToSquare = source.sizeScaleToSquare;
+		indexed = source.indexed;
+		classesNames.addAll(source.classesNames);
+		templates.addAll(source.templates);
+		packedTemplates.addAll(source.packedTemplates);
+		templateSummaries.addAll(source.templateSummaries);
+		for (int nc = 0; nc < source.classes.size(); nc++) {
+			ResampledGestureClass gestureClass = new ResampledGestureClass();
+			gestureClass.copyFrom(source.classes.get(nc));
+			classes.add(gestureClass);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public void reset() {
 		super.reset();
 		classes.clear();
+		packedTemplates.clear();
+		templateSummaries.clear();
+		invalidateIndex();
 	}
 
 }
@@ -0,0 +1,130 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.shapeMatching;
+
+import java.util.ArrayList;
+
+import fr.lri.swingstates.gestures.PackedStroke;
+
+/**
+ * The prefixes of the examples and of the templates of a <code>ShapeMatchingClassifier</code>, to which the beginning
+ * of a gesture is compared while the gesture is being drawn. Each normalized stroke is cut after 1/n, 2/n, ..., n/n
+ * of its points and each prefix is normalized as gestures are, so that a gesture that has been drawn up to some point
+ * is close to the prefix of the same length of the strokes of its class.
+ *
+ * <p>The summary of each prefix (see <code>ShapeMatchingClassifier.summarize</code>) is stored with it, so that
+ * the prefixes that are too far from a gesture can be skipped without being compared to it, and so are the values
+ * that the classifier compares instead of the prefix (see <code>ShapeMatchingClassifier.prepare</code>),
+ * e.g. the vector of the prefix for a <code>Dollar1Classifier</code> in Protractor mode.</p>
+ *
+ * <p>The prefixes are built the first time a gesture is recognized incrementally, and they are discarded when
+ * the examples or the templates of the classifier change. They are never modified once they have been built.</p>
+ *
+ * @see fr.lri.swingstates.gestures.shapeMatching.IncrementalShapeMatcher
+ * @author SwingStates contributors
+ */
+final class StrokePrefixes {
+
+	/**
+	 * The number of prefixes of a stroke, the last one being the stroke itself.
+	 */
+	static final int NB_PREFIXES = 8;
+
+	private final int nbClasses;
+	private final ArrayList<PackedStroke> prefixes = new ArrayList<PackedStroke>();
+	private final ArrayList<double[]> summaries = new ArrayList<double[]>();
+	private final ArrayList<double[]> prepared = new ArrayList<double[]>();
+	private final int[] classIndices;
+
+	/**
+	 * Builds the prefixes of the strokes of a classifier.
+	 * @param classifier The classifier.
+	 */
+	StrokePrefixes(ShapeMatchingClassifier classifier) {
+		nbClasses = classifier.classes.size();
+		ArrayList<Integer> indices = new ArrayList<Integer>();
+		for (int nc = 0; nc < nbClasses; nc++) {
+			ArrayList<PackedStroke> examples = classifier.classes.get(nc).getPackedGestures();
+			for (int i = 0; i < examples.size(); i++)
+				addPrefixes(classifier, nc, examples.get(i), indices);
+			PackedStroke template = classifier.packedTemplates.get(nc);
+			if (template != null)
+				addPrefixes(classifier, nc, template, indices);
+		}
+		classIndices = new int[indices.size()];
+		for (int i = 0; i < classIndices.length; i++)
+			classIndices[i] = indices.get(i).intValue();
+	}
+
+	private void addPrefixes(ShapeMatchingClassifier classifier, int classIndex, PackedStroke stroke, ArrayList<Integer> indices) {
+		int n = stroke.size();
+		double[] xs = stroke.getXs(), ys = stroke.getYs();
+		for (int k = 1; k < NB_PREFIXES; k++) {
+			int size = 1 + (int) Math.round((double) k * (n - 1) / NB_PREFIXES);
+			if (size < 2)
+				continue;
+			PackedStroke prefix = new PackedStroke(size);
+			for (int i = 0; i < size; i++)
+				prefix.add(xs[i], ys[i], 0);
+			PackedStroke normalized = classifier.normalize(prefix, new PackedStroke(classifier.getNbPoints()));
+			prefixes.add(normalized);
+			summaries.add(ShapeMatchingClassifier.summarize(normalized));
+			prepared.add(classifier.prepare(normalized));
+			indices.add(Integer.valueOf(classIndex));
+		}
+		prefixes.add(stroke);
+		summaries.add(ShapeMatchingClassifier.summarize(stroke));
+		prepared.add(classifier.prepare(stroke));
+		indices.add(Integer.valueOf(classIndex));
+	}
+
+	/**
+	 * @return The number of classes of the classifier.
+	 */
+	int getNbClasses() {
+		return nbClasses;
+	}
+
+	/**
+	 * @return The number of prefixes.
+	 */
+	int size() {
+		return prefixes.size();
+	}
+
+	/**
+	 * @param i The index of a prefix.
+	 * @return The prefix, as a normalized stroke.
+	 */
+	PackedStroke getPrefix(int i) {
+		return prefixes.get(i);
+	}
+
+	/**
+	 * @param i The index of a prefix.
+	 * @return The summary of the prefix.
+	 */
+	double[] getSummary(int i) {
+		return summaries.get(i);
+	}
+
+	/**
+	 * @param i The index of a prefix.
+	 * @return The values computed by the classifier for the prefix, null if the prefix itself is compared.
+	 */
+	double[] getPrepared(int i) {
+		return prepared.get(i);
+	}
+
+	/**
+	 * @param i The index of a prefix.
+	 * @return The index of the class of the stroke the prefix has been cut from.
+	 */
+	int getClassIndex(int i) {
+		return classIndices[i];
+	}
+
+}
@@ -0,0 +1,281 @@
+/*  
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+ */
+package fr.lri.swingstates.gestures.shapeMatching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import fr.lri.swingstates.gestures.PackedStroke;
+
+/**
+ * A vantage point tree over the examples and templates of a <code>ShapeMatchingClassifier</code>.
+ * Each node of the tree splits the strokes of its subtree into the strokes that are closer to its vantage point
+ * than the median distance and the other strokes, so that, by triangle inequality, a search skips the subtrees
+ * whose strokes cannot be closer to the gesture than the best matches found so far.
+ * Searches are exact: they return the same distances as a comparison of the gesture with every stroke.
+ *
+ * <p>The distance is the distance of the classifier (<code>distance(PackedStroke, PackedStroke)</code>),
+ * which must be a metric on normalized strokes. An index is built from the current examples and templates
+ * of the classifier and must be rebuilt when they change.</p>
+ *
+ * @author SwingStates contributors
+ *
+ */
+final class TemplateIndex {
+
+	/**
+	 * The maximum number of strokes of a leaf. The strokes of a leaf are compared to the gesture
+	 * with the lower bounds of the classifier and distances that are abandoned early.
+	 */
+	private static final int LEAF_SIZE = 8;
+
+	static class Entry {
+
+		PackedStroke stroke;
+		double[] summary;
+		int classIndex;
+		boolean extraTemplate;
+		double buildDistance;
+
+		Entry(PackedStroke stroke, double[] summary, int classIndex, boolean extraTemplate) {
+			this.stroke = stroke;
+			this.summary = summary;
+			this.classIndex = classIndex;
+			this.extraTemplate = extraTemplate;
+		}
+
+	}
+
+	private static class Node {
+
+		Entry vantagePoint;
+		Entry[] bucket;
+		Node inner, outer;
+		double innerMin, innerMax, outerMin, outerMax;
+
+	}
+
+	private static final Comparator<Entry> BY_BUILD_DISTANCE = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return Double.compare(e1.buildDistance, e2.buildDistance);
+		}
+	};
+
+	private ShapeMatchingClassifier classifier;
+	private Node root = null;
+	private int nbClasses;
+	private int nbEntries = 0;
+	private int nbExtraTemplates = 0;
+	private int nbClassesWithEntries = 0;
+
+	/**
+	 * Builds the index of the examples and templates of a classifier.
+	 * @param classifier The classifier.
+	 */
+	TemplateIndex(ShapeMatchingClassifier classifier) {
+		this.classifier = classifier;
+		nbClasses = classifier.classes.size();
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		for (int nc = 0; nc < nbClasses; nc++) {
+			ArrayList<PackedStroke> examples = classifier.classes.get(nc).getPackedGestures();
+			ArrayList<double[]> summaries = classifier.classes.get(nc).getSummaries();
+			for (int i = 0; i < examples.size(); i++)
+				entries.add(new Entry(examples.get(i), summaries.get(i), nc, false));
+			PackedStroke template = classifier.packedTemplates.get(nc);
+			if (template != null) {
+				entries.add(new Entry(template, classifier.templateSummaries.get(nc), nc, examples.size() > 0));
+				if (examples.size() > 0)
+					nbExtraTemplates++;
+			}
+			if (examples.size() > 0 || template != null)
+				nbClassesWithEntries++;
+		}
+		nbEntries = entries.size();
+		if (nbEntries > 0)
+			root = build(entries.toArray(new Entry[nbEntries]), 0, nbEntries, new Random(0));
+	}
+
+	private Node build(Entry[] entries, int from, int to, Random random) {
+		Node node = new Node();
+		if (to - from <= LEAF_SIZE) {
+			node.bucket = new Entry[to - from];
+			System.arraycopy(entries, from, node.bucket, 0, to - from);
+			return node;
+		}
+		int vantage = from + random.nextInt(to - from);
+		Entry swap = entries[from];
+		entries[from] = entries[vantage];
+		entries[vantage] = swap;
+		node.vantagePoint = entries[from];
+		for (int i = from + 1; i < to; i++)
+			entries[i].buildDistance = classifier.distance(node.vantagePoint.stroke, entries[i].stroke);
+		Arrays.sort(entries, from + 1, to, BY_BUILD_DISTANCE);
+		int median = from + 1 + (to - from - 1) / 2;
+		if (median > from + 1) {
+			node.innerMin = entries[from + 1].buildDistance;
+			node.innerMax = entries[median - 1].buildDistance;
+			node.inner = build(entries, from + 1, median, random);
+		}
+		node.outerMin = entries[median].buildDistance;
+		node.outerMax = entries[to - 1].buildDistance;
+		node.outer = build(entries, median, to, random);
+		return node;
+	}
+
+	/**
+	 * Searches the classes whose examples or templates are the closest to a gesture.
+	 * @param stroke The gesture as a normalized stroke.
+	 * @param summary The summary of <code>stroke</code>.
+	 * @param k The number of classes to find.
+	 * @param allTemplates True if the templates of the classes that have examples are compared to the gesture.
+	 * @return the search, whose distances are exact for the <code>k</code> closest classes.
+	 */
+	Search search(PackedStroke stroke, double[] summary, int k, boolean allTemplates) {
+		Search search = new Search(stroke, summary, Math.min(k, nbClassesWithEntries), allTemplates);
+		if (root != null && search.k > 0)
+			search(root, search);
+		return search;
+	}
+
+	private void search(Node node, Search search) {
+		if (node.bucket != null) {
+			for (int i = 0; i < node.bucket.length; i++) {
+				Entry entry = node.bucket[i];
+				if (!search.isCandidate(entry)
+						|| classifier.lowerBound(search.summary, entry.summary) >= search.threshold)
+					continue;
+				search.nbComparedCandidates++;
+				search.offer(entry, classifier.distance(search.stroke, entry.stroke, search.threshold));
+			}
+			return;
+		}
+		double d = classifier.distance(search.stroke, node.vantagePoint.stroke);
+		if (search.isCandidate(node.vantagePoint)) {
+			search.nbComparedCandidates++;
+			search.offer(node.vantagePoint, d);
+		}
+		// rounding errors must not make the bounds greater than the distances
+		double innerBound = node.inner == null ? Double.MAX_VALUE : Math.max(node.innerMin - d, d - node.innerMax) - 1e-9;
+		double outerBound = Math.max(node.outerMin - d, d - node.outerMax) - 1e-9;
+		// the closest subtree is searched first so that the threshold is lower for the other one
+		if (innerBound <= outerBound) {
+			if (innerBound < search.threshold)
+				search(node.inner, search);
+			if (outerBound < search.threshold)
+				search(node.outer, search);
+		} else {
+			if (outerBound < search.threshold)
+				search(node.outer, search);
+			if (innerBound < search.threshold)
+				search(node.inner, search);
+		}
+	}
+
+	/**
+	 * The state and the result of a search: the best distance found for each class and the threshold
+	 * above which a stroke cannot change the <code>k</code> closest classes.
+	 */
+	final class Search {
+
+		private PackedStroke stroke;
+		private double[] summary;
+		private int k;
+		private boolean allTemplates;
+		private double[] classDistances;
+		private Entry[] classEntries;
+		private int nbFoundClasses = 0;
+		private double threshold = Double.MAX_VALUE;
+		private int nbComparedCandidates = 0;
+
+		private Search(PackedStroke stroke, double[] summary, int k, boolean allTemplates) {
+			this.stroke = stroke;
+			this.summary = summary;
+			this.k = k;
+			this.allTemplates = allTemplates;
+			classDistances = new double[nbClasses];
+			Arrays.fill(classDistances, Double.MAX_VALUE);
+			classEntries = new Entry[nbClasses];
+		}
+
+		private boolean isCandidate(Entry entry) {
+			return allTemplates || !entry.extraTemplate;
+		}
+
+		private void offer(Entry entry, double distance) {
+			// a distance that is not lower than the threshold may have been abandoned
+			if (distance >= threshold || distance >= classDistances[entry.classIndex])
+				return;
+			double previous = classDistances[entry.classIndex];
+			classDistances[entry.classIndex] = distance;
+			classEntries[entry.classIndex] = entry;
+			if (previous == Double.MAX_VALUE)
+				nbFoundClasses++;
+			if (nbFoundClasses < k)
+				return;
+			if (k == 1) {
+				threshold = distance;
+			} else if (previous >= threshold) {
+				// the threshold is the distance of the k-th closest class
+				double[] sorted = classDistances.clone();
+				Arrays.sort(sorted);
+				threshold = sorted[k - 1];
+			}
+		}
+
+		/**
+		 * @param classIndex The index of a class in the classifier.
+		 * @return True if the class is one of the closest classes, in which case its distance is exact.
+		 */
+		boolean isFound(int classIndex) {
+			return classDistances[classIndex] < Double.MAX_VALUE && classDistances[classIndex] <= threshold;
+		}
+
+		/**
+		 * @return The index of the closest class, -1 if no stroke has been found.
+		 */
+		int getBestClass() {
+			int best = -1;
+			for (int nc = 0; nc < nbClasses; nc++)
+				if (classDistances[nc] < Double.MAX_VALUE && (best == -1 || classDistances[nc] < classDistances[best]))
+					best = nc;
+			return best;
+		}
+
+		/**
+		 * @param classIndex The index of a class in the classifier.
+		 * @return The distance between the gesture and the closest stroke of the class.
+		 */
+		double getDistance(int classIndex) {
+			return classDistances[classIndex];
+		}
+
+		/**
+		 * @param classIndex The index of a class in the classifier.
+		 * @return The closest stroke of the class.
+		 */
+		PackedStroke getStroke(int classIndex) {
+			return classEntries[classIndex] == null ? null : classEntries[classIndex].stroke;
+		}
+
+		/**
+		 * @return The number of examples and templates that can match the gesture.
+		 */
+		int getNbCandidates() {
+			return allTemplates ? nbEntries : nbEntries - nbExtraTemplates;
+		}
+
+		/**
+		 * @return The number of examples and templates that have been compared to the gesture.
+		 */
+		int getNbComparedCandidates() {
+			return nbComparedCandidates;
+		}
+
+	}
+
+}
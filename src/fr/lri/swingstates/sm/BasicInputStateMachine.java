@@ -13,7 +13,9 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.util.EventObject;
 
+import fr.lri.swingstates.debug.EventRecorder;
 
 /**
  * A state machine to handle basic input events (mouse events and keyboard events).
@@ -130,12 +132,44 @@ public class BasicInputStateMachine extends StateMachine implements MouseListene
 	 */
 	public static final int ANYMODIFIER = 8;
 
+	private EventRecorder recorder = null;
+
 	/**
 	 * Builds a state machine that handles basic input events. 
 	 */
 	public BasicInputStateMachine() {
 		super();
 	}
+
+	/**
+	 * Sets the recorder that logs the events processed by this machine.
+	 * Use <code>EventRecorder.recordFrom</code> rather than calling this method directly.
+	 * @param recorder The recorder, null to stop recording.
+	 * @see fr.lri.swingstates.debug.EventRecorder#recordFrom(BasicInputStateMachine)
+	 */
+	public void setEventRecorder(EventRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @return the recorder that logs the events processed by this machine, null if none.
+	 */
+	public EventRecorder getEventRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void processEvent(EventObject event) {
+		EventRecorder r = recorder;
+		if(r != null) r.eventStarted(this, event);
+		try {
+			super.processEvent(event);
+		} finally {
+			if(r != null) r.eventEnded();
+		}
+	}
 	
 	/**
 	 * Installs this <code>BasicInputStateMachine</code> 
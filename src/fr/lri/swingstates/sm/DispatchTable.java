@@ -0,0 +1,274 @@
+/*
+ *   Authors: SwingStates contributors
+ *   Copyright (c) SwingStates contributors, 2026. All Rights Reserved
+ *   Licensed under the GNU LGPL. For full terms see the file COPYING.
+*/
+package fr.lri.swingstates.sm;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Vector;
+
+import fr.lri.swingstates.events.VirtualEvent;
+
+/**
+ * The compiled form of a state machine built by <code>StateMachine.compile()</code>.
+ *
+ * <p>States are numbered and events are classified into kinds: one kind per type of input
+ * events (<code>KeyEvent.KEY_PRESSED</code>, <code>MouseEvent.MOUSE_PRESSED</code>, ...),
+ * one kind per name of virtual event that appears in a transition and one kind for the
+ * other virtual events. For each pair (state, kind), the table stores the array of transitions
+ * that can be triggered by events of this kind, in the order of the state's transitions,
+ * so that an event is only tested against these transitions.</p>
+ *
+ * <p>A transition is indexed according to its methods <code>manageEventID</code> and
+ * <code>manageVirtualEvent</code>. If its class redefines <code>matches</code> without
+ * redefining these methods, the transition is considered to accept any kind of events.</p>
+ *
+ * <p>For a state machine that contains regions, the table also stores, for each kind of event,
+ * the regions that have a transition for this kind of event in one of their states (or in one of their
+ * own regions), so that an event is only sent to these regions.</p>
+ *
+ * @author SwingStates contributors
+ */
+class DispatchTable {
+
+	private static final int[] INPUT_IDS = {
+		KeyEvent.KEY_TYPED, KeyEvent.KEY_PRESSED, KeyEvent.KEY_RELEASED,
+		MouseEvent.MOUSE_CLICKED, MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_RELEASED,
+		MouseEvent.MOUSE_MOVED, MouseEvent.MOUSE_ENTERED, MouseEvent.MOUSE_EXITED,
+		MouseEvent.MOUSE_DRAGGED, MouseEvent.MOUSE_WHEEL
+	};
+	private static final int FIRST_ID = KeyEvent.KEY_FIRST;
+	private static final int[] INPUT_KINDS = new int[MouseEvent.MOUSE_LAST - FIRST_ID + 1];
+	static {
+		for(int i = 0; i < INPUT_KINDS.length; i++)
+			INPUT_KINDS[i] = -1;
+		for(int i = 0; i < INPUT_IDS.length; i++)
+			INPUT_KINDS[INPUT_IDS[i] - FIRST_ID] = i;
+	}
+
+	private static final Transition[] NO_TRANSITION = new Transition[0];
+	private static final StateMachine[] NO_REGION = new StateMachine[0];
+
+	private State[] states;
+	private HashMap<String, Integer> virtualKinds = new HashMap<String, Integer>();
+	private int unknownVirtualKind;
+	private int nbKinds;
+	private Transition[][] table;
+
+	private StateMachine[] regions;
+	private StateMachine[][] regionsByInputKind;
+	private HashMap<String, StateMachine[]> regionsByName;
+	private StateMachine[] regionsForOtherNames;
+
+	/**
+	 * Compiles the states and the regions of an initialized state machine.
+	 * @param allStates The states of the machine.
+	 * @param regions The regions of the machine, null if it has no region.
+	 */
+	DispatchTable(Vector<State> allStates, StateMachine[] regions) {
+		states = allStates.toArray(new State[allStates.size()]);
+		ArrayList<Transition[]> transitions = new ArrayList<Transition[]>();
+		ArrayList<boolean[]> indexable = new ArrayList<boolean[]>();
+		ArrayList<String> names = new ArrayList<String>();
+		for(int i = 0; i < states.length; i++) {
+			states[i].setId(i);
+			Transition[] trans = states[i].getTransitions().toArray(NO_TRANSITION);
+			boolean[] index = new boolean[trans.length];
+			for(int j = 0; j < trans.length; j++) {
+				index[j] = isIndexable(trans[j]);
+				// resolves the output state once for all
+				trans[j].getOutputState();
+				if(index[j] && trans[j] instanceof fr.lri.swingstates.sm.transitions.Event
+						&& ((fr.lri.swingstates.sm.transitions.Event)trans[j]).getEventClass() == null) {
+					// a transition triggered by a class of events is indexed by manageEventID and manageVirtualEvent only
+					String name = ((fr.lri.swingstates.sm.transitions.Event)trans[j]).getEventName();
+					if(!trans[j].manageVirtualEvent(name)) {
+						// the name of the event cannot be known, the transition is not indexed
+						// unless it is triggered by input events
+						index[j] = managesInputEvents(trans[j]);
+					} else if(!virtualKinds.containsKey(name)) {
+						virtualKinds.put(name, Integer.valueOf(INPUT_IDS.length + names.size()));
+						names.add(name);
+					}
+				}
+			}
+			transitions.add(trans);
+			indexable.add(index);
+		}
+		unknownVirtualKind = INPUT_IDS.length + names.size();
+		nbKinds = unknownVirtualKind + 1;
+		String unknownName = "";
+		while(virtualKinds.containsKey(unknownName)) unknownName += "?";
+
+		table = new Transition[states.length * nbKinds][];
+		ArrayList<Transition> row = new ArrayList<Transition>();
+		for(int i = 0; i < states.length; i++) {
+			Transition[] trans = transitions.get(i);
+			boolean[] index = indexable.get(i);
+			for(int k = 0; k < nbKinds; k++) {
+				row.clear();
+				for(int j = 0; j < trans.length; j++) {
+					if(!index[j]) row.add(trans[j]);
+					else if(k < INPUT_IDS.length) {
+						if(trans[j].manageEventID(INPUT_IDS[k])) row.add(trans[j]);
+					} else {
+						String name = k == unknownVirtualKind ? unknownName : names.get(k - INPUT_IDS.length);
+						if(trans[j].manageVirtualEvent(name)) row.add(trans[j]);
+					}
+				}
+				table[i * nbKinds + k] = row.isEmpty() ? NO_TRANSITION : row.toArray(NO_TRANSITION);
+			}
+		}
+		compileRegions(regions);
+	}
+
+	private void compileRegions(StateMachine[] parallel) {
+		regions = parallel == null ? NO_REGION : parallel;
+		regionsByInputKind = new StateMachine[INPUT_IDS.length][];
+		regionsByName = new HashMap<String, StateMachine[]>();
+		DispatchTable[] tables = new DispatchTable[regions.length];
+		Set<String> names = new HashSet<String>();
+		for(int r = 0; r < regions.length; r++) {
+			tables[r] = regions[r].getDispatchTable();
+			tables[r].collectNames(names);
+		}
+		ArrayList<StateMachine> selected = new ArrayList<StateMachine>();
+		for(int k = 0; k < INPUT_IDS.length; k++) {
+			selected.clear();
+			for(int r = 0; r < regions.length; r++)
+				if(tables[r].reactsToInput(k)) selected.add(regions[r]);
+			regionsByInputKind[k] = selected.toArray(NO_REGION);
+		}
+		for(Iterator<String> i = names.iterator(); i.hasNext(); ) {
+			String name = i.next();
+			selected.clear();
+			for(int r = 0; r < regions.length; r++)
+				if(tables[r].reactsToName(name)) selected.add(regions[r]);
+			regionsByName.put(name, selected.toArray(NO_REGION));
+		}
+		String unknownName = "";
+		while(names.contains(unknownName)) unknownName += "?";
+		selected.clear();
+		for(int r = 0; r < regions.length; r++)
+			if(tables[r].reactsToName(unknownName)) selected.add(regions[r]);
+		regionsForOtherNames = selected.toArray(NO_REGION);
+	}
+
+	private void collectNames(Set<String> names) {
+		names.addAll(virtualKinds.keySet());
+		names.addAll(regionsByName.keySet());
+	}
+
+	private boolean reacts(int kind) {
+		for(int i = 0; i < states.length; i++)
+			if(table[i * nbKinds + kind].length > 0) return true;
+		return false;
+	}
+
+	private boolean reactsToInput(int inputKind) {
+		return reacts(inputKind) || regionsByInputKind[inputKind].length > 0;
+	}
+
+	private boolean reactsToName(String name) {
+		Integer k = virtualKinds.get(name);
+		if(reacts(k == null ? unknownVirtualKind : k.intValue())) return true;
+		StateMachine[] r = regionsByName.get(name);
+		return (r == null ? regionsForOtherNames : r).length > 0;
+	}
+
+	/**
+	 * Returns the regions of the machine that can react to an event.
+	 * @param event The event.
+	 * @return the regions that must process <code>event</code>, in the order of the regions of the machine.
+	 */
+	StateMachine[] getRegions(EventObject event) {
+		if(event instanceof InputEvent) {
+			int id = ((InputEvent)event).getID() - FIRST_ID;
+			if(id < 0 || id >= INPUT_KINDS.length || INPUT_KINDS[id] == -1) return regions;
+			return regionsByInputKind[INPUT_KINDS[id]];
+		} else if(event instanceof VirtualEvent) {
+			StateMachine[] r = regionsByName.get(((VirtualEvent)event).getNameEvent());
+			return r == null ? regionsForOtherNames : r;
+		}
+		return regions;
+	}
+
+	/**
+	 * Returns the transitions of a state that can be triggered by an event.
+	 * @param state The state.
+	 * @param event The event.
+	 * @return the transitions that must be tested, null if the event cannot be classified
+	 * (in this case, all the transitions of <code>state</code> must be tested).
+	 */
+	Transition[] getTransitions(State state, EventObject event) {
+		int s = state.getId();
+		if(s < 0 || s >= states.length || states[s] != state) return null;
+		int kind;
+		if(event instanceof InputEvent) {
+			int id = ((InputEvent)event).getID() - FIRST_ID;
+			if(id < 0 || id >= INPUT_KINDS.length || INPUT_KINDS[id] == -1) return null;
+			kind = INPUT_KINDS[id];
+		} else if(event instanceof VirtualEvent) {
+			Integer k = virtualKinds.get(((VirtualEvent)event).getNameEvent());
+			kind = k == null ? unknownVirtualKind : k.intValue();
+		} else {
+			return null;
+		}
+		return table[s * nbKinds + kind];
+	}
+
+	private static boolean managesInputEvents(Transition t) {
+		for(int k = 0; k < INPUT_IDS.length; k++)
+			if(t.manageEventID(INPUT_IDS[k])) return true;
+		return false;
+	}
+
+	private static boolean isIndexable(Transition t) {
+		Class<?> matchesClass = declaringClass(t.getClass(), "matches", EventObject.class);
+		if(matchesClass == null) return false;
+		String packageName = matchesClass.getPackage() == null ? "" : matchesClass.getPackage().getName();
+		if(!matchesClass.isAnonymousClass()
+				&& (packageName.equals("fr.lri.swingstates.sm.transitions")
+						|| packageName.equals("fr.lri.swingstates.canvas")))
+			return true;
+		Class<?> idClass = declaringClass(t.getClass(), "manageEventID", int.class);
+		Class<?> nameClass = declaringClass(t.getClass(), "manageVirtualEvent", String.class);
+		return idClass != null && nameClass != null
+		&& matchesClass.isAssignableFrom(idClass) && matchesClass.isAssignableFrom(nameClass);
+	}
+
+	private static Class<?> declaringClass(Class<?> c, String methodName, Class<?> parameterType) {
+		for(Class<?> tmp = c; tmp != null; tmp = tmp.getSuperclass()) {
+			try {
+				Method m = tmp.getDeclaredMethod(methodName, new Class<?>[] { parameterType });
+				if(m != null) return tmp;
+			} catch (NoSuchMethodException e) { }
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString() {
+		StringBuffer res = new StringBuffer();
+		for(int i = 0; i < states.length; i++) {
+			res.append(i+" "+states[i].getName()+":");
+			for(int k = 0; k < nbKinds; k++)
+				res.append(" "+table[i * nbKinds + k].length);
+			res.append("\n");
+		}
+		return res.toString();
+	}
+
+}
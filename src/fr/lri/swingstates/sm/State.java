@@ -30,6 +30,7 @@ public abstract class State {
 	private StateMachine machine;
 	private String name = null;
 	private LinkedList<Transition> transitions;
+	private int id = -1;
 	
 	/**
 	 * Builds a new state. 
@@ -77,6 +78,14 @@ public abstract class State {
 		this.machine = machine;
 	}
 	
+	int getId() {
+		return id;
+	}
+	
+	void setId(int id) {
+		this.id = id;
+	}
+	
 	/**
 	 * @return The result of the <code>toString</code> default method.
 	 */
@@ -134,6 +143,7 @@ public abstract class State {
 			transitions.add(i, t);
 		}
 		t.setInputState(this);
+		if(machine != null) machine.invalidateDispatchTable();
 	}
 	
 	/**
@@ -143,6 +153,7 @@ public abstract class State {
 	public final void removeTransition(Transition t) {
 		transitions.remove(t);
 		t.setInputState(null);
+		if(machine != null) machine.invalidateDispatchTable();
 	}
 	
 }
@@ -9,15 +9,18 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EventObject;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Vector;
 
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import fr.lri.swingstates.debug.StateMachineEventListener;
+import fr.lri.swingstates.debug.StateMachineMetrics;
 import fr.lri.swingstates.debug.Watcher;
 import fr.lri.swingstates.events.VirtualEvent;
 import fr.lri.swingstates.events.VirtualTimerEvent;
@@ -71,6 +74,10 @@ import fr.lri.swingstates.events.VirtualTimerEvent;
  * 		}
  * 	}
  * </pre>
+ * 
+ * <p>A state machine can also contain <i>orthogonal regions</i>, i.e. state machines that run in parallel
+ * inside it (see <code>addRegion</code>). Each event processed by the machine is processed by its current state
+ * and then by each of its active regions, which can in turn contain regions.
  *
  *
  * @author Caroline Appert and Michel Beaudouin-Lafon
@@ -97,6 +104,13 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 
 	private Watcher                          watcher = null;
 	private LinkedList<StateMachineListener> stateMachineListeners = null;
+	private StateMachineMetrics              metrics = null;
+
+	private boolean       compiled = false;
+	private DispatchTable dispatchTable = null;
+
+	private LinkedList<StateMachine> regions = null;
+	private StateMachine             parentMachine = null;
 
 	/**
 	 * Builds a state machine. 
@@ -183,6 +197,43 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 	}
 
 
+	/**
+	 * Enables or disables the collection of metrics by this state machine:
+	 * time spent to process events, number of times each transition is fired or rejected by its guard,
+	 * time spent in <code>matches</code>, <code>guard</code> and <code>action</code> methods of transitions.
+	 * Metrics are disabled by default. Disabling metrics unregisters them from JMX if they were registered.
+	 * @param enabled True to collect metrics, false otherwise.
+	 * @see StateMachine#getMetrics()
+	 */
+	public synchronized void setMetricsEnabled(boolean enabled) {
+		if(enabled) {
+			if(this.metrics == null)
+				this.metrics = new StateMachineMetrics(this);
+		} else {
+			if(this.metrics != null)
+				this.metrics.unregisterMBean();
+			this.metrics = null;
+		}
+	}
+
+	/**
+	 * @return true if this state machine collects metrics, false otherwise.
+	 */
+	public boolean isMetricsEnabled() {
+		return this.metrics != null;
+	}
+
+	/**
+	 * Returns the metrics collected by this state machine.
+	 * Use <code>StateMachineMetrics.snapshot()</code> to get a copy that is not modified by further events,
+	 * or <code>StateMachineMetrics.registerMBean()</code> to monitor this state machine through JMX.
+	 * @return the metrics of this state machine, null if metrics are disabled.
+	 * @see StateMachine#setMetricsEnabled(boolean)
+	 */
+	public StateMachineMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	/**
 	 * Method called when this state machine is reset.
 	 * This method does nothing. It can be redefined in derived classes.
@@ -200,9 +251,92 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 		this.currentState = this.initialState;
 		this.disarmTimer();
 		this.doReset();
+		if(this.regions != null) {
+			for(Iterator<StateMachine> i = getRegions().iterator(); i.hasNext(); )
+				i.next().reset();
+		}
+		routingChanged();
+		return this;
+	}
+
+	/**
+	 * Adds an orthogonal region to this state machine.
+	 * A region is a state machine that runs in parallel with the states of this state machine:
+	 * every event processed by this state machine is also processed by its active regions, in the order they were added,
+	 * after it has been processed by the current state of this state machine. 
+	 * Resetting this state machine resets its regions.
+	 * A state machine that has no state of its own is a pure container of regions.
+	 * 
+	 * <pre>
+	 * 	StateMachine sm = new StateMachine () { };
+	 * 	sm.addRegion(new StateMachine () {
+	 * 		public State idle = new State () { ... };
+	 * 		...
+	 * 	});
+	 * 	sm.addRegion(new StateMachine () {
+	 * 		...
+	 * 	});
+	 * </pre>
+	 * 
+	 * <p>Once this state machine is compiled (see <code>compile</code>), an event is only sent to
+	 * the regions that have a transition for this kind of event.</p>
+	 * 
+	 * @param region The state machine to add as a region.
+	 * @return this state machine.
+	 * @throws IllegalArgumentException if <code>region</code> is already a region of a state machine
+	 * or if it contains this state machine.
+	 */
+	public synchronized StateMachine addRegion(StateMachine region) {
+		for(StateMachine sm = this; sm != null; sm = sm.parentMachine)
+			if(sm == region) throw new IllegalArgumentException("A state machine cannot be a region of itself");
+		if(region.parentMachine != null)
+			throw new IllegalArgumentException("State machine "+region+" is already a region of "+region.parentMachine);
+		if(this.regions == null) this.regions = new LinkedList<StateMachine>();
+		this.regions.add(region);
+		region.parentMachine = this;
+		if(this.inited && this.currentState == null) addRegionsState();
+		if(this.compiled) region.compile();
+		invalidateDispatchTable();
 		return this;
 	}
 
+	/**
+	 * Removes a region from this state machine. Does nothing if <code>region</code> is not a region of this state machine.
+	 * @param region The region to remove.
+	 */
+	public synchronized void removeRegion(StateMachine region) {
+		if(this.regions == null || !this.regions.remove(region)) return;
+		region.parentMachine = null;
+		invalidateDispatchTable();
+	}
+
+	/**
+	 * @return an unmodifiable copy of the list of the regions of this state machine,
+	 * an empty list if it has no region.
+	 * @see StateMachine#addRegion(StateMachine)
+	 */
+	public synchronized List<StateMachine> getRegions() {
+		if(this.regions == null) return Collections.emptyList();
+		return Collections.unmodifiableList(new ArrayList<StateMachine>(this.regions));
+	}
+
+	/**
+	 * @return the state machine of which this state machine is a region, null if it is not a region.
+	 * @see StateMachine#addRegion(StateMachine)
+	 */
+	public StateMachine getParentMachine() {
+		return this.parentMachine;
+	}
+
+	// A state machine made only of regions stays in a single empty state.
+	private void addRegionsState() {
+		State s = new State("regions") { };
+		s.setMachine(this);
+		allStates.add(s);
+		initialState = s;
+		currentState = s;
+	}
+
 	/**
 	 * Returns the active state of this state machine. The machine is active unless <code>suspend()</code> has been called.
 	 * @return the active state of this state machine.
@@ -225,6 +359,7 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 	public void suspend() {
 		if(this.active) this.doSuspend();
 		this.active = false;
+		routingChanged();
 		if(this.watcher != null) this.watcher.fireSmSuspended();
 	}
 
@@ -254,6 +389,7 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 		if(!inited) initStatesAndTransitions();
 		if(!this.active) this.doResume();
 		this.active = true;
+		routingChanged();
 		if(this.watcher != null) this.watcher.fireSmResumed();
 	}
 
@@ -376,12 +512,112 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 		}
 		// System.out.println(".");
 		inited = true;
+		if(currentState == null && regions != null) addRegionsState();
 		if(currentState == null) {
 			System.err.println("Failed in initializing the state machine "+this);
 		}
+		routingChanged();
 		if(watcher != null) watcher.fireSMInited();
 	}
 
+	/**
+	 * Compiles this state machine into a dispatch table: for each state and each kind of event
+	 * (type of input event or name of virtual event), the table stores the transitions that can be
+	 * triggered by this kind of event. Once compiled, an event received by this state machine is only
+	 * tested against the transitions of the current state that can match it instead of all its transitions.
+	 * The transitions are still tested in the same order, and guards, actions and
+	 * <code>StateMachineListener</code>s behave as before.
+	 * 
+	 * <p>The kinds of events a transition can be triggered by are given by its methods
+	 * <code>Transition.manageEventID</code> and <code>Transition.manageVirtualEvent</code>.
+	 * A transition whose <code>matches</code> method is redefined without redefining these methods
+	 * is tested against every event.</p>
+	 * 
+	 * <p>The regions of this state machine are compiled too, and the table also indicates, for each
+	 * kind of event, the regions that have a transition for this kind of event in one of their states.</p>
+	 * 
+	 * <p>Adding or removing a transition invalidates the table, which is rebuilt when the next event is processed.</p>
+	 * 
+	 * @return this state machine.
+	 * @see Transition#manageEventID(int)
+	 * @see Transition#manageVirtualEvent(String)
+	 */
+	public StateMachine compile() {
+		if(!inited) initStatesAndTransitions();
+		compiled = true;
+		if(regions != null) {
+			for(Iterator<StateMachine> i = getRegions().iterator(); i.hasNext(); )
+				i.next().compile();
+		}
+		getDispatchTable();
+		return this;
+	}
+
+	/**
+	 * @return true if this state machine has been compiled, false otherwise.
+	 * @see StateMachine#compile()
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	DispatchTable getDispatchTable() {
+		if(!inited) initStatesAndTransitions();
+		DispatchTable table = dispatchTable;
+		if(table == null) {
+			StateMachine[] parallel;
+			synchronized(this) {
+				parallel = regions == null ? null : regions.toArray(new StateMachine[regions.size()]);
+			}
+			table = new DispatchTable(allStates, parallel);
+			dispatchTable = table;
+		}
+		return table;
+	}
+
+	void invalidateDispatchTable() {
+		for(StateMachine sm = this; sm != null; sm = sm.parentMachine)
+			sm.dispatchTable = null;
+		routingChanged();
+	}
+
+	/**
+	 * Tests whether or not this state machine can react to an event in its current state, i.e. if this state machine is active
+	 * and if its current state, or the current state of one of its active regions, has a transition that can be triggered
+	 * by this kind of event (see <code>Transition.manageEventID</code> and <code>Transition.manageVirtualEvent</code>).
+	 * This test does not evaluate <code>matches</code> and <code>guard</code> methods: a state machine that can react
+	 * to an event may finally not fire any transition.
+	 * @param event The event.
+	 * @return false if this state machine cannot fire any transition when it receives <code>event</code>, true otherwise.
+	 * @see StateMachine#routingChanged()
+	 */
+	public boolean canReactTo(EventObject event) {
+		if(!active) return false;
+		if(!inited) initStatesAndTransitions();
+		// because animation can fire events before the machine is initialized
+		if(!inited || currentState == null) return true;
+		DispatchTable table = getDispatchTable();
+		Transition[] candidates = table.getTransitions(currentState, event);
+		if(candidates == null || candidates.length > 0) return true;
+		StateMachine[] parallel = table.getRegions(event);
+		for(int i = 0; i < parallel.length; i++)
+			if(parallel[i].canReactTo(event)) return true;
+		return false;
+	}
+
+	/**
+	 * Method called each time the result of <code>canReactTo</code> may change: when this state machine
+	 * goes to another state, is initialized, reset, suspended or resumed, when a transition is added to or
+	 * removed from one of its states, or when the same happens to one of its regions.
+	 * By default, it calls the method <code>routingChanged</code> of the machine of which this machine is a region.
+	 * It can be redefined in derived classes, e.g. to update an index of the machines that can react to events,
+	 * in which case the redefinition must call <code>super.routingChanged()</code>.
+	 * @see StateMachine#canReactTo(EventObject)
+	 */
+	protected void routingChanged() {
+		if(parentMachine != null) parentMachine.routingChanged();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -426,6 +662,24 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 		t.start();
 	}
 
+	/**
+	 * Processes a <code>TimeOut</code> event as if a timer of this machine had expired.
+	 * This method is used to replay recorded sessions without waiting for timers to expire.
+	 * @param tag The tag of the timer, null for the default timer.
+	 * @see fr.lri.swingstates.debug.EventReplayer
+	 */
+	public void processTimeOut(String tag) {
+		Timer t;
+		if(tag == null) {
+			if(this.timer == null) this.timer = new Timer(0, this);
+			t = this.timer;
+		} else {
+			t = TaggedTimer.getTimer(tag);
+			if(t == null) t = new TaggedTimer(tag, 0, this);
+		}
+		processEvent(new VirtualTimerEvent(t));
+	}
+
 	/**
 	 * Disarms the timer.
 	 */
@@ -509,6 +763,33 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 
 	protected Transition fireTransition(EventObject event) {
 		if(!inited) initStatesAndTransitions();
+		Transition hasFired = fireStateTransition(event);
+		if(regions != null) {
+			Transition firedInRegion = fireRegionTransitions(event);
+			if(hasFired == null) hasFired = firedInRegion;
+		}
+		return hasFired;
+	}
+
+	// Processes an event in the current state of this state machine.
+	// Transitions are fired by fireTransition(Transition), which subclasses can override.
+	private Transition fireStateTransition(EventObject event) {
+		if(currentState == null) return null;
+		StateMachineMetrics m = metrics;
+		if(m != null) return fireMeasuredTransition(event, m);
+		if(compiled) {
+			Transition[] candidates = getDispatchTable().getTransitions(currentState, event);
+			if(candidates != null) {
+				for(int i = 0; i < candidates.length; i++) {
+					Transition t = candidates[i];
+					if(t.matches(event)) {
+						t.setTriggeringEvent(event);
+						if (fireTransition(t)) return t;
+					}
+				}
+				return null;
+			}
+		}
 		LinkedList<Transition> trans = currentState.getTransitions();
 		Transition hasFired = null;
 		if(trans!=null){
@@ -527,6 +808,28 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 		return hasFired;
 	}
 
+	// Processes an event in the active regions of this state machine.
+	private Transition fireRegionTransitions(EventObject event) {
+		StateMachine[] targets;
+		if(compiled) {
+			targets = getDispatchTable().getRegions(event);
+		} else {
+			synchronized(this) {
+				targets = regions.toArray(new StateMachine[regions.size()]);
+			}
+		}
+		Transition hasFired = null;
+		for(int i = 0; i < targets.length; i++) {
+			StateMachine region = targets[i];
+			if(!region.isActive()) continue;
+			region.consumes(false);
+			Transition t = region.fireTransition(event);
+			if(hasFired == null) hasFired = t;
+			if(region.hasConsumed()) consumes(true);
+		}
+		return hasFired;
+	}
+
 	/**
 	 * Processes in the state machine the virtual event received. 
 	 * @param event The virtual event to process
@@ -556,20 +859,67 @@ public abstract class StateMachine implements ActionListener, StateMachineListen
 	protected boolean fireTransition (Transition t) {
 		final State outputState = t.getOutputState();
 		if(!inited) initStatesAndTransitions();
+		StateMachineMetrics m = metrics;
+		if(m != null) return fireMeasuredTransition(t, outputState, m);
 		if (! t.guard()) {
 			return false;
 		}
 		if (outputState != null && outputState != currentState) currentState.leave();
 		t.action();
+		enterOutputState(t, outputState);
+		return true;
+	}
+
+	private void enterOutputState(Transition t, State outputState) {
 		if (outputState != null && outputState != currentState) {
 			if(watcher != null) {
 				watcher.fireStateChanged(t, currentState, outputState);
 			}
 			currentState = outputState;
+			routingChanged();
 			outputState.enter();
 		} else {
 			if(watcher != null) watcher.fireStateLooped(t, currentState);
 		}
+	}
+
+	// Same as fireTransition(EventObject) but records durations in metrics.
+	private Transition fireMeasuredTransition(EventObject event, StateMachineMetrics m) {
+		long start = System.nanoTime();
+		Transition hasFired = null;
+		LinkedList<Transition> trans = currentState.getTransitions();
+		if(trans != null) {
+			for(Iterator<Transition> i = trans.iterator(); i.hasNext(); ){
+				Transition t = i.next();
+				long matchStart = System.nanoTime();
+				boolean matches = t.matches(event);
+				m.matched(t, System.nanoTime() - matchStart);
+				if(matches) {
+					t.setTriggeringEvent(event);
+					if (fireTransition(t)) {
+						hasFired = t;
+						break;
+					}
+				}
+			}
+		}
+		m.dispatched(hasFired, System.nanoTime() - start);
+		return hasFired;
+	}
+
+	// Same as fireTransition(Transition) but records durations in metrics.
+	private boolean fireMeasuredTransition(Transition t, State outputState, StateMachineMetrics m) {
+		long start = System.nanoTime();
+		boolean guard = t.guard();
+		m.guarded(t, System.nanoTime() - start, guard);
+		if (! guard) {
+			return false;
+		}
+		if (outputState != null && outputState != currentState) currentState.leave();
+		start = System.nanoTime();
+		t.action();
+		m.acted(t, System.nanoTime() - start);
+		enterOutputState(t, outputState);
 		return true;
 	}
 
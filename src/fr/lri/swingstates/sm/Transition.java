@@ -215,9 +215,31 @@ public abstract class Transition {
 		return false;
 	}
 	
+	/**
+	 * Tests if input events of a given type can trigger this transition.
+	 * This method is used by compiled state machines to index transitions by type of events:
+	 * it must return true for any type of events that <code>matches</code> may accept.
+	 * This method always returns true. 
+	 * @param id The type of input events, e.g. <code>MouseEvent.MOUSE_PRESSED</code>.
+	 * @return False if no input event of type <code>id</code> can trigger this transition.
+	 * @see StateMachine#compile()
+	 */
 	public boolean manageEventID(int id) {
 		return true;
 	}
 	
+	/**
+	 * Tests if virtual events having a given name can trigger this transition.
+	 * This method is used by compiled state machines to index transitions by type of events:
+	 * it must return true for any name of virtual events that <code>matches</code> may accept.
+	 * This method always returns true. 
+	 * @param name The name of virtual events.
+	 * @return False if no virtual event named <code>name</code> can trigger this transition.
+	 * @see StateMachine#compile()
+	 */
+	public boolean manageVirtualEvent(String name) {
+		return true;
+	}
+	
 }
 
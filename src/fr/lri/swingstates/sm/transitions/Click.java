@@ -70,4 +70,11 @@ public class Click extends MouseOnPosition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, MouseEvent.MOUSE_CLICKED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == MouseEvent.MOUSE_CLICKED;
+	}
 }
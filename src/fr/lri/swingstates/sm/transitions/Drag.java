@@ -68,4 +68,11 @@ public class Drag extends MouseOnPosition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, MouseEvent.MOUSE_DRAGGED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == MouseEvent.MOUSE_DRAGGED;
+	}
 }
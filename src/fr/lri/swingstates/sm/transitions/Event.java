@@ -1,5 +1,6 @@
 package fr.lri.swingstates.sm.transitions;
 
+import java.awt.event.InputEvent;
 import java.util.EventObject;
 
 import fr.lri.swingstates.events.VirtualEvent;
@@ -123,6 +124,43 @@ public class Event extends Transition {
 		return false;
 	}
 	
+	/**
+	 * @return The name of the virtual events that trigger this transition,
+	 * null if this transition is triggered by a class of events or by virtual events that have no name.
+	 */
+	public String getEventName() {
+		return classEvent != null ? null : event;
+	}
+	
+	/**
+	 * @return The class of the events that trigger this transition,
+	 * null if this transition is triggered by virtual events having a given name.
+	 */
+	public Class<?> getEventClass() {
+		return classEvent;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return classEvent != null && accepts(InputEvent.class);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageVirtualEvent(String name) {
+		if(classEvent != null) return accepts(VirtualEvent.class);
+		return (event == null && name == null)
+		|| (event != null && name != null && event.compareTo(name) == 0);
+	}
+	
+	// true if some instances of eventClass can be instances of the class of events of this transition
+	private boolean accepts(Class<?> eventClass) {
+		return classEvent.isAssignableFrom(eventClass) || eventClass.isAssignableFrom(classEvent);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
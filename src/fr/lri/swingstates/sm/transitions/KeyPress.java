@@ -65,4 +65,18 @@ public class KeyPress extends KeyTransition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, KeyEvent.KEY_PRESSED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == KeyEvent.KEY_PRESSED;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageVirtualEvent(String name) {
+		return false;
+	}
 }
@@ -67,4 +67,18 @@ public class KeyType extends KeyTransition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, KeyEvent.KEY_TYPED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == KeyEvent.KEY_TYPED;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageVirtualEvent(String name) {
+		return false;
+	}
 }
@@ -68,4 +68,11 @@ public class Leave extends MouseOnPosition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, MouseEvent.MOUSE_EXITED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == MouseEvent.MOUSE_EXITED;
+	}
 }
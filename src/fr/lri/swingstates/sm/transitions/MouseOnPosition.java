@@ -139,6 +139,20 @@ public abstract class MouseOnPosition extends EventOnPosition {
 		return false;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id >= MouseEvent.MOUSE_FIRST && id <= MouseEvent.MOUSE_LAST;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageVirtualEvent(String name) {
+		return false;
+	}
+	
 	protected boolean matches(EventObject eventObject, int typeEvent) {
 		if(!(eventObject instanceof MouseEvent)) return false;
 		MouseEvent me = (MouseEvent)eventObject;
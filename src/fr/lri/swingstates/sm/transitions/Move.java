@@ -49,4 +49,11 @@ public class Move extends MouseOnPosition {
 	public boolean matches(EventObject eventObject) {
 		return matches(eventObject, MouseEvent.MOUSE_MOVED);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean manageEventID(int id) {
+		return id == MouseEvent.MOUSE_MOVED;
+	}
 }
\ No newline at end of file